@@ -0,0 +1,125 @@
+package org.snomed.snowstorm.benchmark;
+
+import org.snomed.snowstorm.core.data.domain.Concepts;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark content taken from the dummy-snomed-content test resources and extended with synthetic data,
+ * so that benchmarks run offline and against large inputs.
+ */
+public class BenchmarkContent {
+
+	private static final String DUMMY_SNAPSHOT = "/dummy-snomed-content/SnomedCT_MiniRF2_Base_snapshot/Snapshot/Terminology/";
+	public static final String RELATIONSHIP_SNAPSHOT = DUMMY_SNAPSHOT + "sct2_Relationship_Snapshot_INT_20180731.txt";
+	public static final String DESCRIPTION_SNAPSHOT = DUMMY_SNAPSHOT + "sct2_Description_Snapshot-en_INT_20180731.txt";
+
+	public static final long SYNTHETIC_CONCEPT_ID_START = 100_000_100L;
+
+	// Fixed seed so that every run benchmarks the same content
+	private static final long SEED = 20220101L;
+
+	/**
+	 * Reads the rows of an RF2 file from the classpath, skipping the header and comments.
+	 */
+	public static List<String[]> readRF2Rows(String resourcePath) {
+		List<String[]> rows = new ArrayList<>();
+		try (InputStream inputStream = BenchmarkContent.class.getResourceAsStream(resourcePath)) {
+			if (inputStream == null) {
+				throw new IllegalStateException("Benchmark content not found on classpath " + resourcePath);
+			}
+			BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.startsWith("#") || line.startsWith("id\t")) {
+					continue;
+				}
+				rows.add(line.split("\t", -1));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to read benchmark content " + resourcePath, e);
+		}
+		return rows;
+	}
+
+	/**
+	 * Active inferred IS-A relationships from the dummy content as source and destination pairs.
+	 */
+	public static List<long[]> readDummyIsARelationships() {
+		List<long[]> isARelationships = new ArrayList<>();
+		for (String[] row : readRF2Rows(RELATIONSHIP_SNAPSHOT)) {
+			if ("1".equals(row[2]) && Concepts.ISA.equals(row[7])) {
+				isARelationships.add(new long[]{Long.parseLong(row[4]), Long.parseLong(row[5])});
+			}
+		}
+		return isARelationships;
+	}
+
+	/**
+	 * Synthetic polyhierarchy below the SNOMED CT root as child and parent pairs.
+	 * Each concept has one to three parents chosen from the concepts created before it,
+	 * biased towards recent concepts to give a realistic depth.
+	 */
+	public static List<long[]> createSyntheticHierarchy(int conceptCount) {
+		Random random = new Random(SEED);
+		long root = Long.parseLong(Concepts.SNOMEDCT_ROOT);
+		List<long[]> isARelationships = new ArrayList<>(conceptCount * 2);
+		for (int i = 0; i < conceptCount; i++) {
+			long conceptId = SYNTHETIC_CONCEPT_ID_START + i;
+			if (i == 0) {
+				isARelationships.add(new long[]{conceptId, root});
+				continue;
+			}
+			int parentCount = 1 + random.nextInt(3);
+			for (int p = 0; p < parentCount; p++) {
+				int window = Math.min(i, 1_000);
+				long parentId = SYNTHETIC_CONCEPT_ID_START + i - 1 - random.nextInt(window);
+				isARelationships.add(new long[]{conceptId, parentId});
+			}
+		}
+		return isARelationships;
+	}
+
+	/**
+	 * Dummy content terms plus synthetic terms containing accented and non latin characters.
+	 */
+	public static List<String> createTerms(int count) {
+		List<String> dummyTerms = new ArrayList<>();
+		for (String[] row : readRF2Rows(DESCRIPTION_SNAPSHOT)) {
+			dummyTerms.add(row[7]);
+		}
+		String[] words = {"Ménière's", "disease", "Öl", "fracture", "Sjögren", "syndrome", "ç", "structure", "Ångström", "of", "left", "Straße",
+				"hæmatoma", "Œdème", "pyelonéphrite", "aiguë", "Übelkeit", "ñandú", "κύτταρο", "finding"};
+		Random random = new Random(SEED);
+		List<String> terms = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			if (i % 10 == 0) {
+				terms.add(dummyTerms.get(random.nextInt(dummyTerms.size())));
+			} else {
+				StringBuilder term = new StringBuilder();
+				int wordCount = 2 + random.nextInt(6);
+				for (int w = 0; w < wordCount; w++) {
+					if (w > 0) {
+						term.append(" ");
+					}
+					term.append(words[random.nextInt(words.length)]);
+				}
+				terms.add(term.toString());
+			}
+		}
+		return terms;
+	}
+
+	public static Random newRandom() {
+		return new Random(SEED);
+	}
+
+}
@@ -0,0 +1,85 @@
+package org.snomed.snowstorm.core.data.domain;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.snomed.snowstorm.benchmark.BenchmarkContent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialisation of the grouped attributes map held by each semantic index document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryConceptBenchmark {
+
+	private static final int CONCEPT_COUNT = 1_000;
+
+	private static final Long[] ATTRIBUTE_TYPES = {363698007L, 116676008L, 246075003L, 370135005L, 127489000L, 411116001L};
+	private static final Long CONCRETE_ATTRIBUTE_TYPE = 1142135004L;
+
+	@Param({"2", "8"})
+	private int groupCount;
+
+	private List<QueryConcept> queryConcepts;
+	private List<String> serialisedAttributeMaps;
+
+	@Setup
+	public void setup() {
+		Random random = BenchmarkContent.newRandom();
+		queryConcepts = new ArrayList<>();
+		serialisedAttributeMaps = new ArrayList<>();
+		for (int i = 0; i < CONCEPT_COUNT; i++) {
+			QueryConcept queryConcept = new QueryConcept(BenchmarkContent.SYNTHETIC_CONCEPT_ID_START + i, Collections.emptySet(), Collections.emptySet(), false);
+			for (int group = 0; group < groupCount; group++) {
+				int attributeCount = 1 + random.nextInt(4);
+				for (int a = 0; a < attributeCount; a++) {
+					// Mostly concept values with some concrete values
+					if (random.nextInt(10) == 0) {
+						queryConcept.addAttribute(group, CONCRETE_ATTRIBUTE_TYPE, 1 + random.nextInt(500));
+					} else {
+						queryConcept.addAttribute(group, ATTRIBUTE_TYPES[random.nextInt(ATTRIBUTE_TYPES.length)],
+								Long.toString(BenchmarkContent.SYNTHETIC_CONCEPT_ID_START + random.nextInt(100_000)));
+					}
+				}
+			}
+			queryConcepts.add(queryConcept);
+			serialisedAttributeMaps.add(queryConcept.getAttrMap());
+		}
+	}
+
+	@Benchmark
+	public void serialize(Blackhole blackhole) {
+		for (QueryConcept queryConcept : queryConcepts) {
+			queryConcept.serializeGroupedAttributesMap();
+			blackhole.consume(queryConcept.getAttrMap());
+		}
+	}
+
+	@Benchmark
+	public void deserialize(Blackhole blackhole) {
+		for (String attrMap : serialisedAttributeMaps) {
+			QueryConcept queryConcept = new QueryConcept();
+			queryConcept.setAttrMap(attrMap);
+			blackhole.consume(queryConcept.getGroupedAttributesMap());
+		}
+	}
+
+	@Benchmark
+	public void deserializeFlatMap(Blackhole blackhole) {
+		for (String attrMap : serialisedAttributeMaps) {
+			QueryConcept queryConcept = new QueryConcept();
+			queryConcept.setAttrMap(attrMap);
+			blackhole.consume(queryConcept.getAttr());
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+package org.snomed.snowstorm.core.data.services.transitiveclosure;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.snomed.snowstorm.benchmark.BenchmarkContent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Graph building and transitive closure calculation as performed by the semantic index update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBuilderBenchmark {
+
+	@Param({"10000", "100000"})
+	private int syntheticConceptCount;
+
+	private List<long[]> isARelationships;
+	private GraphBuilder graphBuilder;
+
+	@Setup
+	public void setup() {
+		isARelationships = new ArrayList<>(BenchmarkContent.readDummyIsARelationships());
+		isARelationships.addAll(BenchmarkContent.createSyntheticHierarchy(syntheticConceptCount));
+		graphBuilder = buildGraph();
+	}
+
+	@Benchmark
+	public GraphBuilder addParents() {
+		return buildGraph();
+	}
+
+	@Benchmark
+	public void transitiveClosureOfAllNodes(Blackhole blackhole) throws GraphBuilderException {
+		for (Node node : graphBuilder.getNodes()) {
+			blackhole.consume(node.getTransitiveClosure("MAIN", false));
+		}
+	}
+
+	@Benchmark
+	public void ancestorOrSelfUpdated(Blackhole blackhole) {
+		for (Node node : graphBuilder.getNodes()) {
+			blackhole.consume(node.isAncestorOrSelfUpdated());
+		}
+	}
+
+	private GraphBuilder buildGraph() {
+		GraphBuilder builder = new GraphBuilder();
+		for (long[] isARelationship : isARelationships) {
+			builder.addParent(isARelationship[0], isARelationship[1]);
+		}
+		return builder;
+	}
+
+}
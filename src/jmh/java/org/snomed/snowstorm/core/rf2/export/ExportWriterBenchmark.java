@@ -0,0 +1,102 @@
+package org.snomed.snowstorm.core.rf2.export;
+
+import org.openjdk.jmh.annotations.*;
+import org.snomed.snowstorm.benchmark.BenchmarkContent;
+import org.snomed.snowstorm.core.data.domain.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.snomed.snowstorm.core.data.domain.Concepts.*;
+
+/**
+ * Writing of RF2 rows by each export writer. Output is discarded so that only formatting and buffering is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportWriterBenchmark {
+
+	private static final int COMPONENT_COUNT = 100_000;
+
+	private List<Concept> concepts;
+	private List<Description> descriptions;
+	private List<Relationship> relationships;
+	private List<Relationship> concreteRelationships;
+	private List<ReferenceSetMember> members;
+
+	@Setup
+	public void setup() {
+		Random random = BenchmarkContent.newRandom();
+		List<String> terms = BenchmarkContent.createTerms(COMPONENT_COUNT);
+		concepts = new ArrayList<>(COMPONENT_COUNT);
+		descriptions = new ArrayList<>(COMPONENT_COUNT);
+		relationships = new ArrayList<>(COMPONENT_COUNT);
+		concreteRelationships = new ArrayList<>(COMPONENT_COUNT);
+		members = new ArrayList<>(COMPONENT_COUNT);
+		for (int i = 0; i < COMPONENT_COUNT; i++) {
+			String conceptId = Long.toString(BenchmarkContent.SYNTHETIC_CONCEPT_ID_START + i);
+			// Some components unpublished to exercise the transient effective time
+			Integer effectiveTime = i % 20 == 0 ? null : 20220131;
+			concepts.add(new Concept(conceptId, effectiveTime, true, CORE_MODULE, PRIMITIVE));
+			descriptions.add(new Description(i + "011", effectiveTime, true, CORE_MODULE, conceptId, "en", FSN, terms.get(i), ENTIRE_TERM_CASE_SENSITIVE));
+			relationships.add(new Relationship(i + "021", effectiveTime, true, CORE_MODULE, conceptId, SNOMEDCT_ROOT, 0, ISA, INFERRED_RELATIONSHIP, EXISTENTIAL));
+			concreteRelationships.add(new Relationship(i + "021", effectiveTime, true, CORE_MODULE, conceptId, "#" + random.nextInt(1000), 1,
+					"1142135004", INFERRED_RELATIONSHIP, EXISTENTIAL));
+			members.add(new ReferenceSetMember(UUID.nameUUIDFromBytes(conceptId.getBytes()).toString(), effectiveTime, true, CORE_MODULE,
+					US_EN_LANG_REFSET, i + "011").setAdditionalField(ReferenceSetMember.LanguageFields.ACCEPTABILITY_ID, PREFERRED));
+		}
+	}
+
+	@Benchmark
+	public int writeConcepts() throws IOException {
+		return writeAll(new ConceptExportWriter(newBufferedWriter()), concepts);
+	}
+
+	@Benchmark
+	public int writeDescriptions() throws IOException {
+		return writeAll(new DescriptionExportWriter(newBufferedWriter()), descriptions);
+	}
+
+	@Benchmark
+	public int writeRelationships() throws IOException {
+		return writeAll(new RelationshipExportWriter(newBufferedWriter()), relationships);
+	}
+
+	@Benchmark
+	public int writeConcreteRelationships() throws IOException {
+		return writeAll(new ConcreteRelationshipExportWriter(newBufferedWriter()), concreteRelationships);
+	}
+
+	@Benchmark
+	public int writeReferenceSetMembers() throws IOException {
+		return writeAll(new ReferenceSetMemberExportWriter(newBufferedWriter(), List.of(ReferenceSetMember.LanguageFields.ACCEPTABILITY_ID)), members);
+	}
+
+	private <T> int writeAll(ExportWriter<T> writer, List<T> components) throws IOException {
+		try (writer) {
+			writer.writeHeader();
+			writer.setTransientEffectiveTime("20220731");
+			for (T component : components) {
+				writer.write(component);
+			}
+		}
+		return writer.getContentLinesWritten();
+	}
+
+	private BufferedWriter newBufferedWriter() {
+		return new BufferedWriter(new OutputStreamWriter(OutputStream.nullOutputStream(), StandardCharsets.UTF_8));
+	}
+
+}
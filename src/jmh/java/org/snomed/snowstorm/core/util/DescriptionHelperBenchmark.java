@@ -0,0 +1,49 @@
+package org.snomed.snowstorm.core.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.snomed.snowstorm.benchmark.BenchmarkContent;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Term folding, performed for every description saved and every description search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DescriptionHelperBenchmark {
+
+	private static final int TERM_COUNT = 10_000;
+
+	// Swedish characters not folded, as configured for the Swedish edition
+	private static final Set<Character> SWEDISH_CHARACTERS_NOT_FOLDED = Set.of('å', 'ä', 'ö', 'Å', 'Ä', 'Ö');
+
+	private List<String> terms;
+
+	@Setup
+	public void setup() {
+		terms = BenchmarkContent.createTerms(TERM_COUNT);
+	}
+
+	@Benchmark
+	public void foldTerm(Blackhole blackhole) {
+		for (String term : terms) {
+			blackhole.consume(DescriptionHelper.foldTerm(term, Collections.emptySet()));
+		}
+	}
+
+	@Benchmark
+	public void foldTermWithCharactersNotFolded(Blackhole blackhole) {
+		for (String term : terms) {
+			blackhole.consume(DescriptionHelper.foldTerm(term, SWEDISH_CHARACTERS_NOT_FOLDED));
+		}
+	}
+
+}
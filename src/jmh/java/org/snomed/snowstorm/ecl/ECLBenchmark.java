@@ -0,0 +1,86 @@
+package org.snomed.snowstorm.ecl;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongComparators;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.snomed.snowstorm.benchmark.BenchmarkContent;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.SearchAfterPageRequest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ECL processing that does not need Elasticsearch: cache key normalisation and paging of selected concept ids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ECLBenchmark {
+
+	private static final String[] ECL_STRINGS = {
+			"<< 404684003 |Clinical finding|",
+			"<<  404684003 |Clinical finding| AND << 64572001 |Disease|",
+			"< 404684003 |Clinical finding|: 363698007 |Finding site| = << 39057004 |Pulmonary valve structure|",
+			"<< 19829001 |Disorder of lung| AND < 301867009 |Edema of trunk| MINUS ^ 723264001 |Lateralizable body structure reference set|",
+			"< 373873005 |Pharmaceutical / biologic product|: [1..3] { 127489000 |Has active ingredient| = < 105590001 |Substance|, " +
+					"1142135004 |Has presentation strength numerator value| >= #250 }",
+			"(< 125605004 |Fracture of bone| OR < 423125000 |Closed fracture of bone|) {{ term = \"leg\", language = en }}"
+	};
+
+	@Param({"10000", "1000000"})
+	private int idCount;
+
+	private List<Long> ids;
+	private PageRequest firstPage;
+	private PageRequest deepPage;
+	private PageRequest searchAfterPage;
+
+	@Setup
+	public void setup() {
+		LongArrayList selectedIds = new LongArrayList(idCount);
+		for (int i = 0; i < idCount; i++) {
+			selectedIds.add(BenchmarkContent.SYNTHETIC_CONCEPT_ID_START + i);
+		}
+		// Same order as ECL results
+		selectedIds.sort(LongComparators.OPPOSITE_COMPARATOR);
+		ids = selectedIds;
+		firstPage = PageRequest.of(0, 100);
+		deepPage = PageRequest.of(idCount / 100 - 1, 100);
+		searchAfterPage = SearchAfterPageRequest.of(new Object[]{selectedIds.getLong(idCount / 2)}, 100, Sort.unsorted());
+	}
+
+	@Benchmark
+	public void normaliseEclString(Blackhole blackhole) {
+		for (String ecl : ECL_STRINGS) {
+			blackhole.consume(BranchVersionECLCache.normaliseEclString(ecl));
+		}
+	}
+
+	@Benchmark
+	public Page<Long> getFirstPage() {
+		return ConceptSelectorHelper.getPage(firstPage, ids);
+	}
+
+	@Benchmark
+	public Page<Long> getDeepPage() {
+		return ConceptSelectorHelper.getPage(deepPage, ids);
+	}
+
+	@Benchmark
+	public Page<Long> getSearchAfterPage() {
+		return ConceptSelectorHelper.getPage(searchAfterPage, ids);
+	}
+
+	@Benchmark
+	public Page<Long> getUnpagedPage() {
+		return ConceptSelectorHelper.getPage(null, ids);
+	}
+
+}
@@ -15,17 +15,23 @@ import org.snomed.langauges.ecl.ECLQueryBuilder;
 import org.snomed.snowstorm.core.data.domain.CodeSystem;
 import org.snomed.snowstorm.core.data.domain.CodeSystemVersion;
 import org.snomed.snowstorm.core.data.domain.Concepts;
+import org.snomed.snowstorm.core.data.domain.PublishedDescription;
+import org.snomed.snowstorm.core.data.domain.PublishedDescriptionIndexLock;
+import org.snomed.snowstorm.core.data.domain.PublishedDescriptionVersion;
 import org.snomed.snowstorm.core.data.domain.SnomedComponent;
 import org.snomed.snowstorm.core.data.domain.classification.Classification;
 import org.snomed.snowstorm.core.data.domain.classification.EquivalentConcepts;
 import org.snomed.snowstorm.core.data.domain.classification.RelationshipChange;
 import org.snomed.snowstorm.core.data.domain.jobs.ExportConfiguration;
+import org.snomed.snowstorm.core.data.domain.jobs.IdentifierSequence;
 import org.snomed.snowstorm.core.data.domain.jobs.IdentifiersForRegistration;
+import org.snomed.snowstorm.core.data.domain.jobs.TraceabilityCommitRecord;
 import org.snomed.snowstorm.core.data.services.*;
 import org.snomed.snowstorm.core.data.services.classification.BranchClassificationStatusService;
 import org.snomed.snowstorm.core.data.services.identifier.IdentifierCacheManager;
 import org.snomed.snowstorm.core.data.services.identifier.IdentifierSource;
 import org.snomed.snowstorm.core.data.services.identifier.LocalRandomIdentifierSource;
+import org.snomed.snowstorm.core.data.services.identifier.LocalSequenceIdentifierSource;
 import org.snomed.snowstorm.core.data.services.identifier.SnowstormCISClient;
 import org.snomed.snowstorm.core.data.services.pojo.DescriptionCriteria;
 import org.snomed.snowstorm.core.data.services.servicehook.CommitServiceHookClient;
@@ -151,9 +157,6 @@ public abstract class Config extends ElasticsearchConfig {
 	@Autowired
 	private IntegrityService integrityService;
 	
-	@Autowired
-	private MultiSearchService multiSearchService;
-
 	@Autowired
 	private CommitServiceHookClient commitServiceHookClient;
 
@@ -166,25 +169,40 @@ public abstract class Config extends ElasticsearchConfig {
 	@Autowired
 	private RefsetDescriptorUpdaterService refsetDescriptorUpdaterService;
 
+	@Autowired
+	private ComponentCountCacheService componentCountCacheService;
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Autowired
+	private CommitListenerPipeline commitListenerPipeline;
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	@PostConstruct
 	public void configureCommitListeners() {
-		// Commit listeners will be called in this order
-		branchService.addCommitListener(mrcmLoader);
-		branchService.addCommitListener(conceptDefinitionStatusUpdateService);
-		branchService.addCommitListener(semanticIndexUpdateService);
-		branchService.addCommitListener(mrcmUpdateService);
-		branchService.addCommitListener(branchClassificationStatusService);
-		branchService.addCommitListener(refsetDescriptorUpdaterService);
-		branchService.addCommitListener(traceabilityLogService);
-		branchService.addCommitListener(integrityService);
-		branchService.addCommitListener(multiSearchService);
-		branchService.addCommitListener(eclPreprocessingService);
-		branchService.addCommitListener(commitServiceHookClient);
-		branchService.addCommitListener(BranchMetadataHelper::clearTransientMetadata);
-		branchService.addCommitListener(commit ->
-			logger.info("Completed commit on {} in {} seconds.", commit.getBranch().getPath(), secondsDuration(commit.getTimepoint())));
+		// Listeners which write content or branch metadata run one after another because they share the versions replaced and metadata of the commit.
+		// Each listener starts as soon as the listeners it runs after have completed.
+		commitListenerPipeline
+				.add("ecl-concrete-attribute-cache", eclPreprocessingService)
+				.add("concept-definition-status", conceptDefinitionStatusUpdateService)
+				.add("semantic-index", semanticIndexUpdateService, "concept-definition-status")
+				.add("mrcm-update", mrcmUpdateService, "semantic-index")
+				.add("refset-descriptor", refsetDescriptorUpdaterService, "mrcm-update")
+				.add("classification-status", branchClassificationStatusService, "refset-descriptor")
+				.add("component-counts", componentCountCacheService, "refset-descriptor")
+				.add("traceability", traceabilityLogService, "classification-status")
+				.add("integrity", integrityService, "traceability")
+				.add("service-hook", commitServiceHookClient, "integrity")
+				.add("clear-transient-metadata", BranchMetadataHelper::clearTransientMetadata, "service-hook", "component-counts");
+		if (versionControlHelper instanceof CachingVersionControlHelper) {
+			commitListenerPipeline.addAfterRelease("branch-criteria-cache", (CachingVersionControlHelper) versionControlHelper);
+		}
+		commitListenerPipeline.addAfterRelease("mrcm-cache", mrcmLoader);
+		commitListenerPipeline.addAfterRelease("commit-log", commit ->
+				logger.info("Completed commit on {} in {} seconds.", commit.getBranch().getPath(), secondsDuration(commit.getTimepoint())));
+		branchService.addCommitListener(commitListenerPipeline);
 
 		// Push configured term constraints into static field
 		DescriptionCriteria.configure(searchTermMinimumLength, searchTermMaximumLength);
@@ -205,7 +223,13 @@ public abstract class Config extends ElasticsearchConfig {
 	}
 
 	@Bean
-	public VersionControlHelper getVersionControlHelper() {
+	public VersionControlHelper getVersionControlHelper(
+			@Value("${cache.branch-criteria.enabled}") boolean branchCriteriaCacheEnabled,
+			@Value("${cache.branch-criteria.max-size}") int branchCriteriaCacheMaxSize,
+			@Value("${cache.branch-criteria.keep-version-branches}") boolean keepVersionBranches) {
+		if (branchCriteriaCacheEnabled) {
+			return new CachingVersionControlHelper(branchCriteriaCacheMaxSize, keepVersionBranches);
+		}
 		return new VersionControlHelper();
 	}
 
@@ -215,10 +239,14 @@ public abstract class Config extends ElasticsearchConfig {
 			@Value("${cis.username}") String username,
 			@Value("${cis.password}") String password,
 			@Value("${cis.softwareName}") String softwareName,
-			@Value("${cis.timeout}") int timeoutSeconds) {
+			@Value("${cis.timeout}") int timeoutSeconds,
+			@Value("${cis.sequence.block-size}") int sequenceBlockSize,
+			@Value("${cis.sequence.thread-range-size}") int sequenceThreadRangeSize) {
 
 		if (cisApiUrl.equals("local-random") || cisApiUrl.equals("local")) {// local is the legacy name
 			return new LocalRandomIdentifierSource(elasticsearchRestTemplate());
+		} else if (cisApiUrl.equals("local-sequence")) {
+			return new LocalSequenceIdentifierSource(elasticsearchRestTemplate(), sequenceBlockSize, sequenceThreadRangeSize);
 		} else {
 			return new SnowstormCISClient(cisApiUrl, username, password, softwareName, timeoutSeconds);
 		}
@@ -329,7 +357,12 @@ public abstract class Config extends ElasticsearchConfig {
 					RelationshipChange.class,
 					EquivalentConcepts.class,
 					IdentifiersForRegistration.class,
-					ExportConfiguration.class
+					ExportConfiguration.class,
+					TraceabilityCommitRecord.class,
+					IdentifierSequence.class,
+					PublishedDescription.class,
+					PublishedDescriptionVersion.class,
+					PublishedDescriptionIndexLock.class
 			);
 			for (Class aClass : objectsNotVersionControlled) {
 				IndexCoordinates indexCoordinates = elasticsearchTemplate.getIndexCoordinatesFor(aClass);
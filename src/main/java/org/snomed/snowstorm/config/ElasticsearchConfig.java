@@ -3,6 +3,7 @@ package org.snomed.snowstorm.config;
 import com.amazonaws.auth.AWS4Signer;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import com.amazonaws.regions.DefaultAwsRegionProviderChain;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -18,7 +19,10 @@ import org.snomed.snowstorm.config.aws.AWSRequestSigningApacheInterceptor;
 import org.snomed.snowstorm.config.elasticsearch.DateToLongConverter;
 import org.snomed.snowstorm.config.elasticsearch.IndexConfig;
 import org.snomed.snowstorm.config.elasticsearch.LongToDateConverter;
+import org.snomed.snowstorm.config.elasticsearch.MeteredElasticsearchRestTemplate;
 import org.snomed.snowstorm.config.elasticsearch.SnowstormElasticsearchMappingContext;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.elasticsearch.client.RestClients;
@@ -51,9 +55,15 @@ public class ElasticsearchConfig {
 	@Value("${elasticsearch.index.replicas}")
 	private short indexReplicas;
 
+	@Value("${elasticsearch.metrics.caller-sample-interval}")
+	private int callerSampleInterval;
+
 	@Value("${snowstorm.aws.request-signing.enabled}")
 	private Boolean awsRequestSigning;
 
+	@Autowired
+	private ObjectProvider<MeterRegistry> meterRegistryProvider;
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	@Bean
@@ -120,7 +130,7 @@ public class ElasticsearchConfig {
 
 	@Bean(name = { "elasticsearchOperations", "elasticsearchTemplate"})
 	public ElasticsearchRestTemplate elasticsearchRestTemplate() {
-		return new ElasticsearchRestTemplate(elasticsearchRestClient().rest(), elasticsearchConverter());
+		return new MeteredElasticsearchRestTemplate(elasticsearchRestClient().rest(), elasticsearchConverter(), meterRegistryProvider, callerSampleInterval);
 	}
 
 	@Bean
@@ -1,8 +1,12 @@
 package org.snomed.snowstorm.config;
 
+import org.snomed.snowstorm.rest.config.BranchHeadETagInterceptor;
+import org.snomed.snowstorm.rest.config.TraceabilityOutboxInterceptor;
 import org.snomed.snowstorm.rest.converter.ItemsPageCSVConverter;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import java.util.List;
@@ -10,8 +14,20 @@ import java.util.List;
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+	@Autowired
+	private BranchHeadETagInterceptor branchHeadETagInterceptor;
+
+	@Autowired
+	private TraceabilityOutboxInterceptor traceabilityOutboxInterceptor;
+
 	@Override
 	public void configureMessageConverters(List<HttpMessageConverter<?>> converters) {
 		converters.add(new ItemsPageCSVConverter());
 	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(branchHeadETagInterceptor);
+		registry.addInterceptor(traceabilityOutboxInterceptor);
+	}
 }
@@ -0,0 +1,136 @@
+package org.snomed.snowstorm.config.elasticsearch;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
+import org.springframework.data.elasticsearch.core.IndexedObjectInformation;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchScrollHits;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Records a timer for each search, count, scroll and bulk request sent to Elasticsearch, tagged by entity.
+ * Documents read through scroll streams are counted separately.
+ * Finding the Snowstorm class that made a call means walking the stack, so only a sample of requests is counted by caller.
+ * Requests are not metered when there is no MeterRegistry in the application context.
+ */
+public class MeteredElasticsearchRestTemplate extends ElasticsearchRestTemplate {
+
+	public static final String REQUEST_TIMER = "snowstorm.elasticsearch.requests";
+	public static final String DOCUMENTS_STREAMED_COUNTER = "snowstorm.elasticsearch.documents.streamed";
+	public static final String SAMPLED_CALLER_COUNTER = "snowstorm.elasticsearch.requests.sampled";
+
+	private static final String SNOWSTORM_PACKAGE = "org.snomed.snowstorm.";
+	private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+	private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+	private final int callerSampleInterval;
+	private final AtomicLong requestCount = new AtomicLong();
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * @param callerSampleInterval	One in this many requests is counted by caller, zero to never find the caller.
+	 */
+	public MeteredElasticsearchRestTemplate(RestHighLevelClient client, ElasticsearchConverter elasticsearchConverter, ObjectProvider<MeterRegistry> meterRegistryProvider,
+			int callerSampleInterval) {
+		super(client, elasticsearchConverter);
+		this.meterRegistryProvider = meterRegistryProvider;
+		this.callerSampleInterval = callerSampleInterval;
+	}
+
+	@Override
+	public <T> SearchHits<T> search(Query query, Class<T> clazz, IndexCoordinates index) {
+		return record("search", getEntityName(clazz, index), () -> super.search(query, clazz, index));
+	}
+
+	@Override
+	public long count(Query query, @Nullable Class<?> clazz, IndexCoordinates index) {
+		return record("count", getEntityName(clazz, index), () -> super.count(query, clazz, index));
+	}
+
+	@Override
+	public <T> SearchScrollHits<T> searchScrollStart(long scrollTimeInMillis, Query query, Class<T> clazz, IndexCoordinates index) {
+		String entityName = getEntityName(clazz, index);
+		return countStreamed(entityName, record("scroll", entityName, () -> super.searchScrollStart(scrollTimeInMillis, query, clazz, index)));
+	}
+
+	@Override
+	public <T> SearchScrollHits<T> searchScrollContinue(@Nullable String scrollId, long scrollTimeInMillis, Class<T> clazz, IndexCoordinates index) {
+		String entityName = getEntityName(clazz, index);
+		return countStreamed(entityName, record("scroll", entityName, () -> super.searchScrollContinue(scrollId, scrollTimeInMillis, clazz, index)));
+	}
+
+	@Override
+	public List<IndexedObjectInformation> doBulkOperation(List<?> queries, BulkOptions bulkOptions, IndexCoordinates index) {
+		String entityName = index.getIndexName();
+		if (!queries.isEmpty() && queries.get(0) instanceof IndexQuery) {
+			Object object = ((IndexQuery) queries.get(0)).getObject();
+			if (object != null) {
+				entityName = object.getClass().getSimpleName();
+			}
+		}
+		return record("bulk", entityName, () -> super.doBulkOperation(queries, bulkOptions, index));
+	}
+
+	private <R> R record(String operation, String entityName, Supplier<R> request) {
+		MeterRegistry registry = getMeterRegistry();
+		if (registry == null) {
+			return request.get();
+		}
+		if (callerSampleInterval > 0 && requestCount.incrementAndGet() % callerSampleInterval == 0) {
+			registry.counter(SAMPLED_CALLER_COUNTER, "operation", operation, "entity", entityName, "caller", findCaller()).increment();
+		}
+		return Timer.builder(REQUEST_TIMER)
+				.description("Requests sent to Elasticsearch")
+				.tag("operation", operation)
+				.tag("entity", entityName)
+				.register(registry)
+				.record(request);
+	}
+
+	private <T> SearchScrollHits<T> countStreamed(String entityName, SearchScrollHits<T> searchHits) {
+		MeterRegistry registry = getMeterRegistry();
+		if (registry != null && searchHits != null) {
+			registry.counter(DOCUMENTS_STREAMED_COUNTER, "entity", entityName).increment(searchHits.getSearchHits().size());
+		}
+		return searchHits;
+	}
+
+	private MeterRegistry getMeterRegistry() {
+		if (meterRegistry == null) {
+			meterRegistry = meterRegistryProvider.getIfAvailable();
+		}
+		return meterRegistry;
+	}
+
+	private static String getEntityName(@Nullable Class<?> clazz, IndexCoordinates index) {
+		return clazz != null ? clazz.getSimpleName() : index.getIndexName();
+	}
+
+	// The first Snowstorm class on the stack, other than this one. Calls made through Spring Data repositories or elasticvc
+	// are attributed to the Snowstorm service that used them.
+	static String findCaller() {
+		return STACK_WALKER.walk(frames -> frames
+				.map(StackWalker.StackFrame::getClassName)
+				.filter(className -> className.startsWith(SNOWSTORM_PACKAGE) && !className.equals(MeteredElasticsearchRestTemplate.class.getName()))
+				.findFirst()
+				.map(className -> {
+					String simpleName = className.substring(className.lastIndexOf('.') + 1);
+					int nestedClassIndex = simpleName.indexOf('$');
+					return nestedClassIndex > 0 ? simpleName.substring(0, nestedClassIndex) : simpleName;
+				})
+				.orElse("other"));
+	}
+
+}
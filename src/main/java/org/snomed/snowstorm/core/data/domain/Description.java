@@ -11,6 +11,8 @@ import org.springframework.data.annotation.Transient;
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.InnerField;
+import org.springframework.data.elasticsearch.annotations.MultiField;
 
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -28,6 +30,7 @@ public class Description extends SnomedComponent<Description> implements SnomedC
 		String DESCRIPTION_ID = "descriptionId";
 		String TERM = "term";
 		String TERM_FOLDED = "termFolded";
+		String TERM_FOLDED_PREFIX = "termFolded.prefix";
 		String TERM_LEN = "termLen";
 		String TAG = "tag";
 		String CONCEPT_ID = "conceptId";
@@ -45,7 +48,9 @@ public class Description extends SnomedComponent<Description> implements SnomedC
 	@NotNull
 	private String term;
 
-	@Field(type = FieldType.Text)
+	// The prefix sub-field is a search_as_you_type field with edge ngram sub-fields, used for autocomplete
+	@MultiField(mainField = @Field(type = FieldType.Text),
+			otherFields = @InnerField(suffix = "prefix", type = FieldType.Search_As_You_Type))
 	private String termFolded;
 
 	@Field(type = FieldType.Integer)
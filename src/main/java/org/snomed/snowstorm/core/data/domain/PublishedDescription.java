@@ -0,0 +1,287 @@
+package org.snomed.snowstorm.core.data.domain;
+
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.InnerField;
+import org.springframework.data.elasticsearch.annotations.MultiField;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Denormalised copy of a description within a published code system version, used to search across code systems.
+ * Not version controlled, documents are written when a version becomes the latest published version of a code system.
+ * Term fields use the same names and mapping as the description index so the same term clauses can be used.
+ */
+@Document(indexName = "published-description")
+public class PublishedDescription {
+
+	public interface Fields {
+		String VERSION_BRANCH_PATH = "versionBranchPath";
+		String CODE_SYSTEM = "codeSystem";
+		String ACTIVE = Description.Fields.ACTIVE;
+		String CONCEPT_ACTIVE = "conceptActive";
+		String MODULE_ID = Description.Fields.MODULE_ID;
+		String CONCEPT_ID = Description.Fields.CONCEPT_ID;
+	}
+
+	@Field(type = FieldType.Keyword)
+	private String id;
+
+	@Field(type = FieldType.Keyword)
+	private String versionBranchPath;
+
+	@Field(type = FieldType.Keyword)
+	private String codeSystem;
+
+	// Path of the description document within the version
+	@Field(type = FieldType.Keyword)
+	private String path;
+
+	@Field(type = FieldType.Keyword)
+	private String descriptionId;
+
+	@Field(type = FieldType.Boolean)
+	private boolean active;
+
+	@Field(type = FieldType.Keyword)
+	private String moduleId;
+
+	@Field(type = FieldType.Integer)
+	private Integer effectiveTimeI;
+
+	@Field(type = FieldType.Boolean)
+	private boolean released;
+
+	@Field(type = FieldType.Integer)
+	private Integer releasedEffectiveTime;
+
+	@Field(type = FieldType.Keyword)
+	private String term;
+
+	@MultiField(mainField = @Field(type = FieldType.Text),
+			otherFields = @InnerField(suffix = "prefix", type = FieldType.Search_As_You_Type))
+	private String termFolded;
+
+	@Field(type = FieldType.Integer)
+	private int termLen;
+
+	@Field(type = FieldType.Keyword)
+	private String conceptId;
+
+	@Field(type = FieldType.Boolean)
+	private boolean conceptActive;
+
+	@Field(type = FieldType.Keyword)
+	private String languageCode;
+
+	@Field(type = FieldType.Keyword)
+	private String typeId;
+
+	@Field(type = FieldType.Keyword)
+	private String caseSignificanceId;
+
+	// Language refset id to acceptability name, stored but not searchable
+	@Field(type = FieldType.Object, enabled = false)
+	private Map<String, String> acceptabilityMap;
+
+	public PublishedDescription() {
+	}
+
+	public PublishedDescription(Description description, String versionBranchPath, String codeSystem, boolean conceptActive) {
+		this.id = getId(versionBranchPath, description.getDescriptionId());
+		this.versionBranchPath = versionBranchPath;
+		this.codeSystem = codeSystem;
+		this.path = description.getPath();
+		this.descriptionId = description.getDescriptionId();
+		this.active = description.isActive();
+		this.moduleId = description.getModuleId();
+		this.effectiveTimeI = description.getEffectiveTimeI();
+		this.released = description.isReleased();
+		this.releasedEffectiveTime = description.getReleasedEffectiveTime();
+		this.term = description.getTerm();
+		this.termFolded = description.getTermFolded();
+		this.termLen = description.getTermLen();
+		this.conceptId = description.getConceptId();
+		this.conceptActive = conceptActive;
+		this.languageCode = description.getLanguageCode();
+		this.typeId = description.getTypeId();
+		this.caseSignificanceId = description.getCaseSignificanceId();
+		this.acceptabilityMap = description.getAcceptabilityMapFromLangRefsetMembers();
+	}
+
+	public static String getId(String versionBranchPath, String descriptionId) {
+		return versionBranchPath + "_" + descriptionId;
+	}
+
+	public Description toDescription() {
+		Description description = new Description(descriptionId, term);
+		description.setPath(path);
+		description.setActive(active);
+		description.setModuleId(moduleId);
+		description.setEffectiveTimeI(effectiveTimeI);
+		description.setReleased(released);
+		description.setReleasedEffectiveTime(releasedEffectiveTime);
+		description.setConceptId(conceptId);
+		description.setLanguageCode(languageCode);
+		description.setTypeId(typeId);
+		description.setCaseSignificanceId(caseSignificanceId);
+		if (acceptabilityMap != null) {
+			description.setAcceptabilityMap(new HashMap<>(acceptabilityMap));
+		}
+		return description;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getVersionBranchPath() {
+		return versionBranchPath;
+	}
+
+	public void setVersionBranchPath(String versionBranchPath) {
+		this.versionBranchPath = versionBranchPath;
+	}
+
+	public String getCodeSystem() {
+		return codeSystem;
+	}
+
+	public void setCodeSystem(String codeSystem) {
+		this.codeSystem = codeSystem;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public void setPath(String path) {
+		this.path = path;
+	}
+
+	public String getDescriptionId() {
+		return descriptionId;
+	}
+
+	public void setDescriptionId(String descriptionId) {
+		this.descriptionId = descriptionId;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public void setActive(boolean active) {
+		this.active = active;
+	}
+
+	public String getModuleId() {
+		return moduleId;
+	}
+
+	public void setModuleId(String moduleId) {
+		this.moduleId = moduleId;
+	}
+
+	public Integer getEffectiveTimeI() {
+		return effectiveTimeI;
+	}
+
+	public void setEffectiveTimeI(Integer effectiveTimeI) {
+		this.effectiveTimeI = effectiveTimeI;
+	}
+
+	public boolean isReleased() {
+		return released;
+	}
+
+	public void setReleased(boolean released) {
+		this.released = released;
+	}
+
+	public Integer getReleasedEffectiveTime() {
+		return releasedEffectiveTime;
+	}
+
+	public void setReleasedEffectiveTime(Integer releasedEffectiveTime) {
+		this.releasedEffectiveTime = releasedEffectiveTime;
+	}
+
+	public String getTerm() {
+		return term;
+	}
+
+	public void setTerm(String term) {
+		this.term = term;
+	}
+
+	public String getTermFolded() {
+		return termFolded;
+	}
+
+	public void setTermFolded(String termFolded) {
+		this.termFolded = termFolded;
+	}
+
+	public int getTermLen() {
+		return termLen;
+	}
+
+	public void setTermLen(int termLen) {
+		this.termLen = termLen;
+	}
+
+	public String getConceptId() {
+		return conceptId;
+	}
+
+	public void setConceptId(String conceptId) {
+		this.conceptId = conceptId;
+	}
+
+	public boolean isConceptActive() {
+		return conceptActive;
+	}
+
+	public void setConceptActive(boolean conceptActive) {
+		this.conceptActive = conceptActive;
+	}
+
+	public String getLanguageCode() {
+		return languageCode;
+	}
+
+	public void setLanguageCode(String languageCode) {
+		this.languageCode = languageCode;
+	}
+
+	public String getTypeId() {
+		return typeId;
+	}
+
+	public void setTypeId(String typeId) {
+		this.typeId = typeId;
+	}
+
+	public String getCaseSignificanceId() {
+		return caseSignificanceId;
+	}
+
+	public void setCaseSignificanceId(String caseSignificanceId) {
+		this.caseSignificanceId = caseSignificanceId;
+	}
+
+	public Map<String, String> getAcceptabilityMap() {
+		return acceptabilityMap;
+	}
+
+	public void setAcceptabilityMap(Map<String, String> acceptabilityMap) {
+		this.acceptabilityMap = acceptabilityMap;
+	}
+}
@@ -0,0 +1,68 @@
+package org.snomed.snowstorm.core.data.domain;
+
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
+
+/**
+ * Lock held by the Snowstorm instance updating the published description index.
+ * The lock expires unless renewed so that it is not held forever by an instance which stopped during an update.
+ * Updates use optimistic concurrency so that only one instance can take over an expired lock.
+ */
+@Document(indexName = "published-description-lock")
+public class PublishedDescriptionIndexLock {
+
+	public static final String ID = "published-description-index";
+
+	private String id;
+
+	@Field(type = FieldType.Keyword)
+	private String owner;
+
+	@Field(type = FieldType.Long)
+	private long expires;
+
+	private SeqNoPrimaryTerm seqNoPrimaryTerm;
+
+	public PublishedDescriptionIndexLock() {
+	}
+
+	public PublishedDescriptionIndexLock(String owner, long expires) {
+		this.id = ID;
+		this.owner = owner;
+		this.expires = expires;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public void setOwner(String owner) {
+		this.owner = owner;
+	}
+
+	public long getExpires() {
+		return expires;
+	}
+
+	public void setExpires(long expires) {
+		this.expires = expires;
+	}
+
+	public SeqNoPrimaryTerm getSeqNoPrimaryTerm() {
+		return seqNoPrimaryTerm;
+	}
+
+	public void setSeqNoPrimaryTerm(SeqNoPrimaryTerm seqNoPrimaryTerm) {
+		this.seqNoPrimaryTerm = seqNoPrimaryTerm;
+	}
+}
@@ -0,0 +1,71 @@
+package org.snomed.snowstorm.core.data.domain;
+
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+/**
+ * Marker written once all descriptions of a code system version have been written to the published description index.
+ * The marker is shared by all Snowstorm instances so that any of them can tell whether the index is complete.
+ */
+@Document(indexName = "published-description-version")
+public class PublishedDescriptionVersion {
+
+	public interface Fields {
+		String CODE_SYSTEM = "codeSystem";
+	}
+
+	// The version branch path
+	private String id;
+
+	@Field(type = FieldType.Keyword)
+	private String codeSystem;
+
+	@Field(type = FieldType.Long)
+	private long descriptionCount;
+
+	@Field(type = FieldType.Long)
+	private long indexedTimestamp;
+
+	public PublishedDescriptionVersion() {
+	}
+
+	public PublishedDescriptionVersion(String versionBranchPath, String codeSystem, long descriptionCount) {
+		this.id = versionBranchPath;
+		this.codeSystem = codeSystem;
+		this.descriptionCount = descriptionCount;
+		this.indexedTimestamp = System.currentTimeMillis();
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getCodeSystem() {
+		return codeSystem;
+	}
+
+	public void setCodeSystem(String codeSystem) {
+		this.codeSystem = codeSystem;
+	}
+
+	public long getDescriptionCount() {
+		return descriptionCount;
+	}
+
+	public void setDescriptionCount(long descriptionCount) {
+		this.descriptionCount = descriptionCount;
+	}
+
+	public long getIndexedTimestamp() {
+		return indexedTimestamp;
+	}
+
+	public void setIndexedTimestamp(long indexedTimestamp) {
+		this.indexedTimestamp = indexedTimestamp;
+	}
+}
@@ -17,6 +17,7 @@ public class Classification {
 		String PATH = "path";
 		String STATUS = "status";
 		String CREATION_DATE = "creationDate";
+		String REASONER_ID = "reasonerId";
 	}
 
 	@Id
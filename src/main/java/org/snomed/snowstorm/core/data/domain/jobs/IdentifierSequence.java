@@ -0,0 +1,83 @@
+package org.snomed.snowstorm.core.data.domain.jobs;
+
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
+
+/**
+ * High-water mark of the item identifiers reserved for one namespace and partition
+ * by the local sequence identifier source.
+ * Updates use optimistic concurrency so that Snowstorm instances sharing a store never reserve the same block.
+ */
+@Document(indexName = "identifier-sequence")
+public class IdentifierSequence {
+
+	private String id;
+
+	@Field(type = FieldType.Integer)
+	private int namespace;
+
+	@Field(type = FieldType.Keyword)
+	private String partitionId;
+
+	// All item identifiers below this value have been reserved
+	@Field(type = FieldType.Long)
+	private long highWaterMark;
+
+	private SeqNoPrimaryTerm seqNoPrimaryTerm;
+
+	public IdentifierSequence() {
+	}
+
+	public IdentifierSequence(int namespace, String partitionId, long highWaterMark) {
+		this.id = getId(namespace, partitionId);
+		this.namespace = namespace;
+		this.partitionId = partitionId;
+		this.highWaterMark = highWaterMark;
+	}
+
+	public static String getId(int namespace, String partitionId) {
+		return namespace + "_" + partitionId;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public int getNamespace() {
+		return namespace;
+	}
+
+	public void setNamespace(int namespace) {
+		this.namespace = namespace;
+	}
+
+	public String getPartitionId() {
+		return partitionId;
+	}
+
+	public void setPartitionId(String partitionId) {
+		this.partitionId = partitionId;
+	}
+
+	public long getHighWaterMark() {
+		return highWaterMark;
+	}
+
+	public void setHighWaterMark(long highWaterMark) {
+		this.highWaterMark = highWaterMark;
+	}
+
+	public SeqNoPrimaryTerm getSeqNoPrimaryTerm() {
+		return seqNoPrimaryTerm;
+	}
+
+	public void setSeqNoPrimaryTerm(SeqNoPrimaryTerm seqNoPrimaryTerm) {
+		this.seqNoPrimaryTerm = seqNoPrimaryTerm;
+	}
+}
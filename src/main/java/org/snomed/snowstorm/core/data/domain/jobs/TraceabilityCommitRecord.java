@@ -0,0 +1,186 @@
+package org.snomed.snowstorm.core.data.domain.jobs;
+
+import io.kaicode.elasticvc.domain.Commit;
+import org.snomed.snowstorm.core.data.services.traceability.Activity;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact record of a commit which needs to be published to the traceability service.
+ * These documents are written during the commit and deleted once the traceability activity
+ * has been built from the committed content and sent.
+ */
+@Document(indexName = "traceability-commit")
+public class TraceabilityCommitRecord {
+
+	public interface Fields {
+		String BRANCH_PATH = "branchPath";
+		String TIMEPOINT = "timepoint";
+		String DEAD_LETTER = "deadLetter";
+	}
+
+	private String id;
+
+	@Field(type = FieldType.Keyword)
+	private String branchPath;
+
+	@Field(type = FieldType.Long)
+	private long timepoint;
+
+	@Field(type = FieldType.Keyword)
+	private String sourceBranchPath;
+
+	@Field(type = FieldType.Keyword)
+	private Commit.CommitType commitType;
+
+	@Field(type = FieldType.Keyword)
+	private Activity.ActivityType activityType;
+
+	@Field(type = FieldType.Keyword)
+	private String userId;
+
+	// Internal ids of component versions replaced in the commit, keyed by component class
+	@Field(type = FieldType.Object, enabled = false)
+	private Map<String, Set<String>> versionsReplaced;
+
+	@Field(type = FieldType.Object, enabled = false)
+	private Map<String, Set<String>> rebaseDuplicatesRemoved;
+
+	@Field(type = FieldType.Integer)
+	private int failedAttempts;
+
+	// Publishing is not attempted again before this time
+	@Field(type = FieldType.Long)
+	private long retryAfter;
+
+	// Set when the record can not be published, it is kept for investigation and no longer holds back later commits of the branch
+	@Field(type = FieldType.Boolean)
+	private boolean deadLetter;
+
+	@Field(type = FieldType.Keyword, index = false)
+	private String deadLetterReason;
+
+	public TraceabilityCommitRecord() {
+	}
+
+	public TraceabilityCommitRecord(String branchPath, long timepoint, String sourceBranchPath, Commit.CommitType commitType, Activity.ActivityType activityType,
+			String userId, Map<String, Set<String>> versionsReplaced, Map<String, Set<String>> rebaseDuplicatesRemoved) {
+		this.id = branchPath + "_" + timepoint;
+		this.branchPath = branchPath;
+		this.timepoint = timepoint;
+		this.sourceBranchPath = sourceBranchPath;
+		this.commitType = commitType;
+		this.activityType = activityType;
+		this.userId = userId;
+		this.versionsReplaced = versionsReplaced;
+		this.rebaseDuplicatesRemoved = rebaseDuplicatesRemoved;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getBranchPath() {
+		return branchPath;
+	}
+
+	public void setBranchPath(String branchPath) {
+		this.branchPath = branchPath;
+	}
+
+	public long getTimepoint() {
+		return timepoint;
+	}
+
+	public void setTimepoint(long timepoint) {
+		this.timepoint = timepoint;
+	}
+
+	public String getSourceBranchPath() {
+		return sourceBranchPath;
+	}
+
+	public void setSourceBranchPath(String sourceBranchPath) {
+		this.sourceBranchPath = sourceBranchPath;
+	}
+
+	public Commit.CommitType getCommitType() {
+		return commitType;
+	}
+
+	public void setCommitType(Commit.CommitType commitType) {
+		this.commitType = commitType;
+	}
+
+	public Activity.ActivityType getActivityType() {
+		return activityType;
+	}
+
+	public void setActivityType(Activity.ActivityType activityType) {
+		this.activityType = activityType;
+	}
+
+	public String getUserId() {
+		return userId;
+	}
+
+	public void setUserId(String userId) {
+		this.userId = userId;
+	}
+
+	public Map<String, Set<String>> getVersionsReplaced() {
+		return versionsReplaced;
+	}
+
+	public void setVersionsReplaced(Map<String, Set<String>> versionsReplaced) {
+		this.versionsReplaced = versionsReplaced;
+	}
+
+	public Map<String, Set<String>> getRebaseDuplicatesRemoved() {
+		return rebaseDuplicatesRemoved;
+	}
+
+	public void setRebaseDuplicatesRemoved(Map<String, Set<String>> rebaseDuplicatesRemoved) {
+		this.rebaseDuplicatesRemoved = rebaseDuplicatesRemoved;
+	}
+
+	public int getFailedAttempts() {
+		return failedAttempts;
+	}
+
+	public void setFailedAttempts(int failedAttempts) {
+		this.failedAttempts = failedAttempts;
+	}
+
+	public long getRetryAfter() {
+		return retryAfter;
+	}
+
+	public void setRetryAfter(long retryAfter) {
+		this.retryAfter = retryAfter;
+	}
+
+	public boolean isDeadLetter() {
+		return deadLetter;
+	}
+
+	public void setDeadLetter(boolean deadLetter) {
+		this.deadLetter = deadLetter;
+	}
+
+	public String getDeadLetterReason() {
+		return deadLetterReason;
+	}
+
+	public void setDeadLetterReason(String deadLetterReason) {
+		this.deadLetterReason = deadLetterReason;
+	}
+}
@@ -0,0 +1,7 @@
+package org.snomed.snowstorm.core.data.repositories;
+
+import org.snomed.snowstorm.core.data.domain.PublishedDescriptionIndexLock;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+
+public interface PublishedDescriptionIndexLockRepository extends ElasticsearchRepository<PublishedDescriptionIndexLock, String> {
+}
@@ -0,0 +1,7 @@
+package org.snomed.snowstorm.core.data.repositories;
+
+import org.snomed.snowstorm.core.data.domain.PublishedDescription;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+
+public interface PublishedDescriptionRepository extends ElasticsearchRepository<PublishedDescription, String> {
+}
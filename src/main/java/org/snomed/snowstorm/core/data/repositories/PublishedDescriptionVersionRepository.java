@@ -0,0 +1,7 @@
+package org.snomed.snowstorm.core.data.repositories;
+
+import org.snomed.snowstorm.core.data.domain.PublishedDescriptionVersion;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+
+public interface PublishedDescriptionVersionRepository extends ElasticsearchRepository<PublishedDescriptionVersion, String> {
+}
@@ -0,0 +1,8 @@
+package org.snomed.snowstorm.core.data.repositories.jobs;
+
+import org.snomed.snowstorm.core.data.domain.jobs.TraceabilityCommitRecord;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+
+public interface TraceabilityCommitRecordRepository extends ElasticsearchRepository<TraceabilityCommitRecord, String> {
+
+}
@@ -5,13 +5,10 @@ import io.kaicode.elasticvc.api.BranchCriteria;
 import io.kaicode.elasticvc.api.VersionControlHelper;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
-import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
 import org.snomed.snowstorm.core.data.domain.*;
 import org.snomed.snowstorm.core.data.services.pojo.AuthoringStatsSummary;
-import org.snomed.snowstorm.core.data.services.pojo.PageWithBucketAggregations;
-import org.snomed.snowstorm.core.data.services.pojo.PageWithBucketAggregationsFactory;
 import org.snomed.snowstorm.core.pojo.LanguageDialect;
 import org.snomed.snowstorm.core.util.TimerUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,7 +17,6 @@ import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.data.elasticsearch.core.SearchHitsIterator;
-import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.stereotype.Service;
@@ -51,6 +47,9 @@ public class AuthoringStatsService {
 
 	@Autowired
 	private ConceptService conceptService;
+
+	@Autowired
+	private ComponentCountCacheService componentCountCacheService;
 	
 	public AuthoringStatsSummary getStats(String branch) {
 		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branch);
@@ -322,26 +321,6 @@ public class AuthoringStatsService {
 	}
 	
 	public Map<String, Map<String, Long>> getComponentCountsPerModule(String branchPath) {
-		Map<String, Map<String, Long>> componentCountsPerModule = new HashMap<>();
-		componentCountsPerModule.put("Concept", getModuleCounts(branchPath, Concept.class));
-		componentCountsPerModule.put("Description", getModuleCounts(branchPath, Description.class));
-		componentCountsPerModule.put("RefsetMember", getModuleCounts(branchPath, ReferenceSetMember.class));
-		return componentCountsPerModule;
-	}
-
-	private Map<String, Long> getModuleCounts(String branchPath, Class<? extends SnomedComponent<?>> componentClass) {
-		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branchPath);
-		BoolQueryBuilder query = boolQuery()
-				.must(branchCriteria.getEntityBranchCriteria(componentClass)
-				.mustNot(existsQuery("end")));
-		NativeSearchQuery searchQuery = new NativeSearchQueryBuilder()
-				.withQuery(query)
-				.withPageable(NULL_PAGE)
-				.addAggregation(MODULE_AGGREGATION)
-				.build();
-
-		SearchHits<? extends SnomedComponent<?>> pageResults = elasticsearchOperations.search(searchQuery, componentClass);
-		PageWithBucketAggregations<? extends SnomedComponent<?>> aggPage = PageWithBucketAggregationsFactory.createPage(pageResults, pageResults.getAggregations(), NULL_PAGE);
-		return aggPage.getBuckets().get(AGGREGATION_COUNTS_BY_MODULE);
+		return componentCountCacheService.getComponentCountsPerModule(branchPath);
 	}
 }
@@ -7,6 +7,7 @@ import io.kaicode.elasticvc.domain.Commit;
 import io.kaicode.elasticvc.domain.DomainEntity;
 import io.kaicode.elasticvc.domain.Entity;
 import io.kaicode.elasticvc.repositories.BranchRepository;
+import io.micrometer.core.instrument.Timer;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.sort.FieldSortBuilder;
@@ -77,6 +78,9 @@ public class BranchMergeService {
 	@Autowired
 	private ConceptRepository conceptRepository;
 
+	@Autowired
+	private OperationMetricsService operationMetricsService;
+
 	@Autowired
 	private DescriptionRepository descriptionRepository;
 
@@ -198,6 +202,19 @@ public class BranchMergeService {
 			}
 		}
 
+		Timer.Sample timerSample = operationMetricsService.start();
+		boolean success = false;
+		try {
+			performMerge(source, target, sourceBranch, targetBranch, rebase, manuallyMergedConcepts);
+			success = true;
+		} finally {
+			operationMetricsService.stop(timerSample, OperationMetricsService.MERGE, success, "type", rebase ? "rebase" : "promotion");
+		}
+	}
+
+	private void performMerge(String source, String target, Branch sourceBranch, Branch targetBranch, boolean rebase,
+			Collection<Concept> manuallyMergedConcepts) throws ServiceException {
+
 		if (rebase) {
 			// Rebase
 			logger.info("Performing rebase {} -> {}", source, target);
@@ -11,6 +11,7 @@ import org.springframework.stereotype.Service;
 
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -69,6 +70,15 @@ public class BranchMetadataHelper {
 		return (Map<String, Set<String>>) commit.getBranch().getMetadata().getAsMap().computeIfAbsent(key, k -> new HashMap<String, Set<String>>());
 	}
 
+	/**
+	 * @return the duration in milliseconds of each commit listener which has completed for this commit, by listener name.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Map<String, Long> getCommitListenerDurations(Commit commit) {
+		final String key = transientKey("commitListenerDurations");
+		return (Map<String, Long>) commit.getBranch().getMetadata().getAsMap().computeIfAbsent(key, k -> new ConcurrentHashMap<String, Long>());
+	}
+
 	private static boolean isTrue(String value) {
 		return "true".equals(value);
 	}
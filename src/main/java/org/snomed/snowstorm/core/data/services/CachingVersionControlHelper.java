@@ -0,0 +1,135 @@
+package org.snomed.snowstorm.core.data.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.CommitListener;
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
+import io.kaicode.elasticvc.domain.Commit;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.snomed.snowstorm.core.util.CacheStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the BranchCriteria of the latest version of each branch so that the branch and its ancestors are not loaded
+ * and the criteria rebuilt on every request.
+ * Criteria are keyed by branch path and head timestamp. A branch version never changes once its commit is complete so an entry is
+ * only used while the branch head is unchanged, entries are also dropped when a commit completes on the branch.
+ * Branches that are locked are not cached when passed in directly because an open commit updates the versions replaced of its branch.
+ * When enabled, the criteria of code system version branches, like MAIN/2022-01-31, are kept outside of the size bound so that
+ * they are not pushed out by busy authoring branches. They are checked against the branch head like any other entry.
+ */
+public class CachingVersionControlHelper extends VersionControlHelper implements CommitListener {
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	private final Cache<String, CachedBranchCriteria> cache;
+
+	private final boolean keepVersionBranches;
+
+	private final Map<String, CachedBranchCriteria> versionBranchCache = new ConcurrentHashMap<>();
+
+	private final CacheStatistics cacheStatistics = new CacheStatistics();
+
+	private Timer buildTimer;
+
+	public CachingVersionControlHelper(int maxSize, boolean keepVersionBranches) {
+		cache = Caffeine.newBuilder().maximumSize(maxSize).build();
+		this.keepVersionBranches = keepVersionBranches;
+	}
+
+	@PostConstruct
+	public void init() {
+		if (meterRegistry != null) {
+			cacheStatistics.registerMetrics("branch-criteria", () -> cache.estimatedSize() + versionBranchCache.size(), meterRegistry);
+			// Time saved by the cache is the hit count multiplied by the mean build time
+			buildTimer = Timer.builder("snowstorm.branch-criteria.build")
+					.description("Time taken to load a branch and its ancestors and build the branch criteria.")
+					.register(meterRegistry);
+		}
+	}
+
+	@Override
+	public BranchCriteria getBranchCriteria(String path) {
+		Branch branch = branchService.findLatest(path);
+		if (branch == null) {
+			versionBranchCache.remove(path);
+			// Let the superclass report the missing branch
+			return super.getBranchCriteria(path);
+		}
+		// The stored version of a branch is complete even while it is locked
+		return getCachedBranchCriteria(branch);
+	}
+
+	@Override
+	public BranchCriteria getBranchCriteria(Branch branch) {
+		if (branch.isLocked()) {
+			return super.getBranchCriteria(branch);
+		}
+		return getCachedBranchCriteria(branch);
+	}
+
+	private BranchCriteria getCachedBranchCriteria(Branch branch) {
+		String path = branch.getPath();
+		boolean versionBranch = keepVersionBranches && CodeSystemService.isVersionBranch(path);
+		CachedBranchCriteria cached = versionBranch ? versionBranchCache.get(path) : cache.getIfPresent(path);
+		if (cached != null && cached.headTimestamp == branch.getHeadTimestamp()) {
+			cacheStatistics.recordHit();
+			return cached.branchCriteria;
+		}
+		cacheStatistics.recordMiss();
+		BranchCriteria branchCriteria = buildBranchCriteria(branch);
+		CachedBranchCriteria entry = new CachedBranchCriteria(branch.getHeadTimestamp(), branchCriteria);
+		if (versionBranch) {
+			versionBranchCache.put(path, entry);
+		} else {
+			cache.put(path, entry);
+		}
+		return branchCriteria;
+	}
+
+	private BranchCriteria buildBranchCriteria(Branch branch) {
+		return buildTimer != null ? buildTimer.record(() -> super.getBranchCriteria(branch)) : super.getBranchCriteria(branch);
+	}
+
+	@Override
+	public void preCommitCompletion(Commit commit) throws IllegalStateException {
+		evict(commit.getBranch().getPath());
+	}
+
+	public CacheStatistics getCacheStatistics() {
+		return cacheStatistics;
+	}
+
+	public void evict(String path) {
+		cache.invalidate(path);
+		versionBranchCache.remove(path);
+	}
+
+	public void clearCache() {
+		cache.invalidateAll();
+		versionBranchCache.clear();
+	}
+
+	private static final class CachedBranchCriteria {
+
+		private final long headTimestamp;
+		private final BranchCriteria branchCriteria;
+
+		private CachedBranchCriteria(long headTimestamp, BranchCriteria branchCriteria) {
+			this.headTimestamp = headTimestamp;
+			this.branchCriteria = branchCriteria;
+		}
+	}
+}
@@ -29,6 +29,7 @@ import org.snomed.snowstorm.rest.pojo.CodeSystemUpdateRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
@@ -99,6 +100,13 @@ public class CodeSystemService {
 	@Autowired
 	private ModelMapper modelMapper;
 
+	@Autowired
+	private PublishedDescriptionIndexService publishedDescriptionIndexService;
+
+	@Autowired
+	@Lazy
+	private MultiSearchService multiSearchService;
+
 	@Value("${codesystem.all.latest-version.allow-future}")
 	private boolean latestVersionCanBeFuture;
 
@@ -244,6 +252,9 @@ public class CodeSystemService {
 		logger.info("Persisting Code System Version...");
 		versionRepository.save(new CodeSystemVersion(codeSystem.getShortName(), branch.getHead(), branchPath, effectiveDate, version, description, internalRelease));
 
+		// Multi-search uses the version branches until the new version is in the published description index
+		publishedVersionsChanged();
+
 		logger.info("Versioning complete.");
 
 		return version;
@@ -272,6 +283,7 @@ public class CodeSystemService {
 
 		versionRepository.save(new CodeSystemVersion(SNOMEDCT, new Date(), MAIN, effectiveDate, getHyphenatedVersionString(effectiveDate),
 				"Empty version.", true));
+		publishedVersionsChanged();
 
 		return String.format("Version %s of the root code system created.", effectiveDate);
 	}
@@ -294,6 +306,13 @@ public class CodeSystemService {
 		return effectiveDateString.substring(0, 4) + "-" + effectiveDateString.substring(4, 6) + "-" + effectiveDateString.substring(6, 8);
 	}
 
+	/**
+	 * @return true if the last part of the branch path is a code system version name, like MAIN/2022-07-31.
+	 */
+	public static boolean isVersionBranch(String branchPath) {
+		return VERSION_BRANCH_NAME_PATTERN.matcher(branchPath.substring(branchPath.lastIndexOf('/') + 1)).matches();
+	}
+
 	private Integer getVersionEffectiveDateFromBranchName(String branchName) {
 		if (branchName != null && VERSION_BRANCH_NAME_PATTERN.matcher(branchName).matches()) {
 			final String dateString = branchName.substring(0, 4) + branchName.substring(5, 7) + branchName.substring(8, 10);
@@ -562,6 +581,8 @@ public class CodeSystemService {
 	public void deleteAll() {
 		repository.deleteAll();
 		versionRepository.deleteAll();
+		publishedDescriptionIndexService.deleteAll();
+		multiSearchService.clearPublishedVersionsCache();
 	}
 
 	CodeSystem findOneByBranchPath(String path) {
@@ -587,6 +608,7 @@ public class CodeSystemService {
 			throw new IllegalArgumentException("The given code system and version do not match.");
 		}
 		versionRepository.delete(version);
+		publishedVersionsChanged();
 	}
 
 	@PreAuthorize("hasPermission('ADMIN', #codeSystem.branchPath)")
@@ -599,9 +621,16 @@ public class CodeSystemService {
 		List<CodeSystemVersion> allVersions = findAllVersions(codeSystem.getShortName(), true, false);
 		versionRepository.deleteAll(allVersions);
 		repository.delete(codeSystem);
+		publishedDescriptionIndexService.deleteCodeSystem(codeSystem.getShortName());
+		multiSearchService.clearPublishedVersionsCache();
 		logger.info("Deleted Code System '{}' and versions.", codeSystem.getShortName());
 	}
 
+	private void publishedVersionsChanged() {
+		publishedDescriptionIndexService.versionsChanged(this::findAll);
+		multiSearchService.clearPublishedVersionsCache();
+	}
+
 	protected void setLatestVersionCanBeFuture(boolean latestVersionCanBeFuture) {
 		this.latestVersionCanBeFuture = latestVersionCanBeFuture;
 	}
@@ -196,7 +196,7 @@ public class CodeSystemUpgradeService {
 			IntegrityIssueReport integrityReport = integrityService.findChangedComponentsWithBadIntegrityNotFixed(extensionBranch);
 			logger.info("Completed integrity check on {}", branchPath);
 
-			updateBranchMetaData(branchPath, newParentVersion, extensionBranch, integrityReport.isEmpty());
+			updateBranchMetaData(branchPath, newParentVersion, extensionBranch, integrityReport);
 			logger.info("Upgrade completed on {}", branchPath);
 			if (job != null) {
 				job.setStatus(CodeSystemUpgradeJob.UpgradeStatus.COMPLETED);
@@ -217,7 +217,7 @@ public class CodeSystemUpgradeService {
 		}
 	}
 
-	private void updateBranchMetaData(String branchPath, CodeSystemVersion newParentVersion, Branch extensionBranch, boolean isReportEmpty) {
+	private void updateBranchMetaData(String branchPath, CodeSystemVersion newParentVersion, Branch extensionBranch, IntegrityIssueReport integrityReport) {
 		final Metadata metadata = extensionBranch.getMetadata();
 		
 		//Store the current dependency package, to move to the previous one once updated.
@@ -230,9 +230,10 @@ public class CodeSystemUpgradeService {
 			logger.error("No release package is set for version {}", newParentVersion);
 		}
 		metadata.putString(DEPENDENCY_RELEASE, String.valueOf(newParentVersion.getEffectiveDate()));
-		if (!isReportEmpty) {
+		if (!integrityReport.isEmpty()) {
 			logger.warn("Bad integrity found on {}", branchPath);
 			metadata.getMapOrCreate(INTERNAL_METADATA_KEY).put(IntegrityService.INTEGRITY_ISSUE_METADATA_KEY, "true");
+			IntegrityService.setOutstandingIssues(metadata, integrityReport);
 		} else {
 			logger.info("No issues found in the integrity issue report.");
 		}
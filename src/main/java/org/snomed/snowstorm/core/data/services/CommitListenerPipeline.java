@@ -0,0 +1,263 @@
+package org.snomed.snowstorm.core.data.services;
+
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.CommitListener;
+import io.kaicode.elasticvc.domain.Branch;
+import io.kaicode.elasticvc.domain.Commit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the commit listeners of the application as a single elasticvc CommitListener.
+ * Each listener is registered with a name and the names of the listeners it must run after. While the branch is locked each listener starts as soon
+ * as the listeners it depends on have completed, so listeners which do not depend on each other run concurrently.
+ * If a listener fails no further listeners are started and the first failure is thrown so that the commit is rolled back.
+ * Listeners registered to run after release are called once the commit is complete and the branch lock released, they can not fail the commit.
+ * The duration of each listener is recorded on the commit as transient metadata, see {@link BranchMetadataHelper#getCommitListenerDurations(Commit)},
+ * logged with the commit and recorded as a metric.
+ */
+@Service
+public class CommitListenerPipeline implements CommitListener {
+
+	// Completing a commit after its listeners only saves the branch, so the lock is normally released within milliseconds
+	private static final long RELEASE_WAIT_MAX_MILLIS = TimeUnit.SECONDS.toMillis(30);
+	private static final long RELEASE_CHECK_MAX_PAUSE_MILLIS = 500;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private OperationMetricsService operationMetricsService;
+
+	private final Map<String, Stage> stages = new LinkedHashMap<>();
+	private final Map<String, CommitListener> afterReleaseListeners = new LinkedHashMap<>();
+
+	// Tasks to run after release of each commit currently going through the pipeline
+	private final Map<Commit, Queue<NamedTask>> afterReleaseTasks = Collections.synchronizedMap(new IdentityHashMap<>());
+
+	private final ExecutorService stageExecutorService;
+	private final ExecutorService afterReleaseExecutorService;
+	private final ScheduledExecutorService releaseCheckExecutorService;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public CommitListenerPipeline(@Value("${commit-listeners.threads}") int threads) {
+		stageExecutorService = Executors.newFixedThreadPool(threads);
+		afterReleaseExecutorService = Executors.newCachedThreadPool();
+		releaseCheckExecutorService = Executors.newSingleThreadScheduledExecutor();
+	}
+
+	/**
+	 * Adds a listener which runs while the branch is locked, after the named listeners have completed.
+	 */
+	public CommitListenerPipeline add(String name, CommitListener listener, String... runAfter) {
+		if (stages.containsKey(name) || afterReleaseListeners.containsKey(name)) {
+			throw new IllegalArgumentException("Commit listener '" + name + "' already added.");
+		}
+		for (String dependency : runAfter) {
+			if (!stages.containsKey(dependency)) {
+				throw new IllegalArgumentException("Commit listener '" + name + "' depends on '" + dependency + "' which must be added first.");
+			}
+		}
+		stages.put(name, new Stage(name, listener, Set.of(runAfter)));
+		return this;
+	}
+
+	/**
+	 * Adds a listener which runs after the commit is complete and the branch lock has been released.
+	 * Only suitable for listeners which do not change the commit, like cache invalidation and notifications.
+	 */
+	public CommitListenerPipeline addAfterRelease(String name, CommitListener listener) {
+		if (stages.containsKey(name) || afterReleaseListeners.containsKey(name)) {
+			throw new IllegalArgumentException("Commit listener '" + name + "' already added.");
+		}
+		afterReleaseListeners.put(name, listener);
+		return this;
+	}
+
+	/**
+	 * Runs the task once the commit is complete and the branch lock has been released.
+	 * The task is dropped if the commit is rolled back. Outside of the pipeline the task is run straight away.
+	 */
+	public void runAfterRelease(Commit commit, String name, Runnable task) {
+		Queue<NamedTask> tasks = afterReleaseTasks.get(commit);
+		if (tasks == null) {
+			task.run();
+			return;
+		}
+		tasks.add(new NamedTask(name, task));
+	}
+
+	public List<String> getListenerNames() {
+		return new ArrayList<>(stages.keySet());
+	}
+
+	public Set<String> getDependencies(String name) {
+		Stage stage = stages.get(name);
+		return stage != null ? stage.runAfter : Collections.emptySet();
+	}
+
+	public List<String> getAfterReleaseListenerNames() {
+		return new ArrayList<>(afterReleaseListeners.keySet());
+	}
+
+	@Override
+	public void preCommitCompletion(Commit commit) throws IllegalStateException {
+		Queue<NamedTask> tasks = new ConcurrentLinkedQueue<>();
+		afterReleaseTasks.put(commit, tasks);
+		Map<String, Long> durations = BranchMetadataHelper.getCommitListenerDurations(commit);
+		long start = System.currentTimeMillis();
+		try {
+			runStages(commit, durations);
+		} finally {
+			afterReleaseTasks.remove(commit);
+		}
+		logger.info("Commit listeners on {} completed in {}ms: {}", commit.getBranch().getPath(), System.currentTimeMillis() - start,
+				stages.keySet().stream().filter(durations::containsKey).map(name -> name + " " + durations.get(name) + "ms").collect(Collectors.joining(", ")));
+
+		afterReleaseListeners.forEach((name, listener) -> tasks.add(new NamedTask(name, () -> listener.preCommitCompletion(commit))));
+		if (!tasks.isEmpty()) {
+			SecurityContext securityContext = SecurityContextHolder.getContext();
+			scheduleReleaseCheck(commit, tasks, securityContext, System.currentTimeMillis(), 10);
+		}
+	}
+
+	private void runStages(Commit commit, Map<String, Long> durations) {
+		SecurityContext securityContext = SecurityContextHolder.getContext();
+		Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+		Map<String, Throwable> failures = new ConcurrentHashMap<>();
+		for (Stage stage : stages.values()) {
+			CompletableFuture<?>[] dependencies = stage.runAfter.stream().map(futures::get).toArray(CompletableFuture[]::new);
+			futures.put(stage.name, CompletableFuture.allOf(dependencies).thenRunAsync(() -> {
+				if (!failures.isEmpty()) {
+					// Commit will be rolled back, don't start any more listeners
+					return;
+				}
+				try {
+					runStage(stage, commit, securityContext, durations);
+				} catch (RuntimeException e) {
+					failures.putIfAbsent(stage.name, e);
+					throw e;
+				}
+			}, stageExecutorService));
+		}
+		try {
+			CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).join();
+		} catch (CompletionException e) {
+			// Throw the failure of the first listener in pipeline order
+			Throwable failure = stages.keySet().stream().filter(failures::containsKey).map(failures::get).findFirst().orElse(e.getCause());
+			if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			}
+			throw new IllegalStateException("Commit listener failed.", failure);
+		}
+	}
+
+	private void runStage(Stage stage, Commit commit, SecurityContext securityContext, Map<String, Long> durations) {
+		SecurityContextHolder.setContext(securityContext);
+		long start = System.currentTimeMillis();
+		boolean success = false;
+		try {
+			stage.listener.preCommitCompletion(commit);
+			success = true;
+		} finally {
+			long duration = System.currentTimeMillis() - start;
+			durations.put(stage.name, duration);
+			operationMetricsService.record(OperationMetricsService.COMMIT_LISTENER, duration, success,
+					"listener", stage.name, "type", commit.getCommitType().name());
+			SecurityContextHolder.clearContext();
+		}
+	}
+
+	/**
+	 * Checks whether the commit is complete and the branch unlocked after the given pause, checking again with a longer pause while the branch is still locked.
+	 * The tasks run once the commit is complete. They are dropped if the commit was rolled back or the branch is still locked after the maximum wait.
+	 */
+	private void scheduleReleaseCheck(Commit commit, Queue<NamedTask> tasks, SecurityContext securityContext, long waitStart, long pause) {
+		releaseCheckExecutorService.schedule(() -> {
+			String path = commit.getBranch().getPath();
+			long commitTime = commit.getTimepoint().getTime();
+			try {
+				Branch latest = branchService.findLatest(path);
+				if (latest.getHeadTimestamp() >= commitTime) {
+					// Head has reached or passed the commit, check that the commit created a branch version
+					if (latest.getHeadTimestamp() == commitTime || branchService.findAtTimepointOrThrow(path, commit.getTimepoint()).getHeadTimestamp() == commitTime) {
+						afterReleaseExecutorService.submit(() -> runAfterRelease(commit, tasks, securityContext));
+					}
+				} else if (!latest.isLocked()) {
+					logger.info("Commit {} on {} was rolled back, skipping after commit listeners.", commitTime, path);
+				} else if (System.currentTimeMillis() - waitStart >= RELEASE_WAIT_MAX_MILLIS) {
+					logger.warn("Branch {} still locked after {} seconds, skipping after commit listeners for commit {}.",
+							path, TimeUnit.MILLISECONDS.toSeconds(RELEASE_WAIT_MAX_MILLIS), commitTime);
+				} else {
+					scheduleReleaseCheck(commit, tasks, securityContext, waitStart, Math.min(pause * 2, RELEASE_CHECK_MAX_PAUSE_MILLIS));
+				}
+			} catch (RuntimeException e) {
+				logger.error("Failed to check release of commit {} on {}, skipping after commit listeners.", commitTime, path, e);
+			}
+		}, pause, TimeUnit.MILLISECONDS);
+	}
+
+	private void runAfterRelease(Commit commit, Queue<NamedTask> tasks, SecurityContext securityContext) {
+		String path = commit.getBranch().getPath();
+		try {
+			SecurityContextHolder.setContext(securityContext);
+			for (NamedTask task : tasks) {
+				long start = System.currentTimeMillis();
+				boolean success = false;
+				try {
+					task.task.run();
+					success = true;
+				} catch (RuntimeException e) {
+					logger.error("Commit listener {} failed after commit on {}.", task.name, path, e);
+				} finally {
+					operationMetricsService.record(OperationMetricsService.COMMIT_LISTENER, System.currentTimeMillis() - start, success,
+							"listener", task.name, "type", commit.getCommitType().name());
+				}
+			}
+		} finally {
+			SecurityContextHolder.clearContext();
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		stageExecutorService.shutdown();
+		releaseCheckExecutorService.shutdown();
+		afterReleaseExecutorService.shutdown();
+	}
+
+	private static final class Stage {
+
+		private final String name;
+		private final CommitListener listener;
+		private final Set<String> runAfter;
+
+		private Stage(String name, CommitListener listener, Set<String> runAfter) {
+			this.name = name;
+			this.listener = listener;
+			this.runAfter = runAfter;
+		}
+	}
+
+	private static final class NamedTask {
+
+		private final String name;
+		private final Runnable task;
+
+		private NamedTask(String name, Runnable task) {
+			this.name = name;
+			this.task = task;
+		}
+	}
+}
@@ -0,0 +1,350 @@
+package org.snomed.snowstorm.core.data.services;
+
+import ch.qos.logback.classic.Level;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.Iterables;
+import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.CommitListener;
+import io.kaicode.elasticvc.api.PathUtil;
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
+import io.kaicode.elasticvc.domain.Commit;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.core.data.domain.*;
+import org.snomed.snowstorm.core.util.CacheStatistics;
+import org.snomed.snowstorm.core.util.TimerUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static io.kaicode.elasticvc.api.ComponentService.CLAUSE_LIMIT;
+import static io.kaicode.elasticvc.api.VersionControlHelper.LARGE_PAGE;
+import static org.elasticsearch.index.query.QueryBuilders.*;
+import static org.snomed.snowstorm.config.Config.AGGREGATION_SEARCH_SIZE;
+import static org.snomed.snowstorm.core.data.services.AuthoringStatsService.MODULE_AGGREGATION;
+import static org.snomed.snowstorm.core.data.services.AuthoringStatsService.NULL_PAGE;
+
+/**
+ * Maintains the active concept count per semantic tag and the component counts per module of each branch.
+ * Counts are cached against the branch head and kept up to date by applying the changes of each content commit.
+ * Counts for a branch without an up to date entry are derived from the parent branch counts at the branch base plus the changes made on the branch,
+ * a full count is only made when that is not possible.
+ */
+@Service
+public class ComponentCountCacheService implements CommitListener {
+
+	public static final String CONCEPT = "Concept";
+	public static final String DESCRIPTION = "Description";
+	public static final String REFSET_MEMBER = "RefsetMember";
+
+	// Above this number of changed components a full count is cheaper than counting the before and after state of each component
+	private static final int MAX_DELTA_COMPONENTS = 100_000;
+
+	private static final String SEMANTIC_TAGS_AGGREGATION = "semanticTags";
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Autowired
+	private ElasticsearchOperations elasticsearchOperations;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	@Value("${cache.component-counts.max-size}")
+	private int countsCacheMaxSize;
+
+	// Least recently used branches are evicted, their counts are derived or recalculated on the next request
+	private Cache<String, ComponentCounts> countsCache;
+
+	private final CacheStatistics cacheStatistics = new CacheStatistics();
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@PostConstruct
+	public void init() {
+		countsCache = Caffeine.newBuilder().maximumSize(countsCacheMaxSize).build();
+		if (meterRegistry != null) {
+			cacheStatistics.registerMetrics("semantic-tag-counts", countsCache::estimatedSize, meterRegistry);
+		}
+	}
+
+	public Map<String, Long> getActiveConceptsPerSemanticTag(String branchPath) {
+		return new TreeMap<>(getCounts(branchPath).getSemanticTagCounts());
+	}
+
+	public Map<String, Map<String, Long>> getComponentCountsPerModule(String branchPath) {
+		Map<String, Map<String, Long>> componentCountsPerModule = new HashMap<>();
+		getCounts(branchPath).getModuleCounts().forEach((componentType, moduleCounts) -> componentCountsPerModule.put(componentType, new HashMap<>(moduleCounts)));
+		return componentCountsPerModule;
+	}
+
+	public long getCacheSize() {
+		return countsCache.estimatedSize();
+	}
+
+	public CacheStatistics getCacheStatistics() {
+		return cacheStatistics;
+	}
+
+	@Override
+	public void preCommitCompletion(Commit commit) throws IllegalStateException {
+		Branch branch = commit.getBranch();
+		String path = branch.getPath();
+		ComponentCounts existingCounts = countsCache.asMap().remove(path);
+		try {
+			if (commit.getCommitType() == Commit.CommitType.CONTENT) {
+				if (existingCounts != null && existingCounts.getHeadTime() == branch.getHeadTimestamp()) {
+					ComponentCounts newCounts = applyChanges(existingCounts, commit.getTimepoint().getTime(),
+							versionControlHelper.getBranchCriteriaChangesAndDeletionsWithinOpenCommitOnly(commit), Collections.emptyMap(),
+							versionControlHelper.getBranchCriteriaBeforeOpenCommit(commit), versionControlHelper.getBranchCriteriaIncludingOpenCommit(commit));
+					if (newCounts != null) {
+						countsCache.put(path, newCounts);
+					}
+				}
+			} else if (commit.getCommitType() == Commit.CommitType.PROMOTION) {
+				// After promotion the parent branch has exactly the content of the source branch
+				Branch sourceBranch = branchService.findLatest(commit.getSourceBranchPath());
+				ComponentCounts sourceCounts = countsCache.getIfPresent(commit.getSourceBranchPath());
+				if (sourceCounts != null && sourceCounts.getHeadTime() == sourceBranch.getHeadTimestamp()
+						&& sourceBranch.getBaseTimestamp() == branch.getHeadTimestamp()) {
+					countsCache.put(path, sourceCounts.withHeadTime(commit.getTimepoint().getTime()));
+				}
+			}
+			// After a rebase counts are derived from the parent branch on the next request
+		} catch (RuntimeException e) {
+			// Counts will be recalculated on the next request, no need to fail the commit
+			countsCache.invalidate(path);
+			logger.warn("Failed to update component counts for branch {}.", path, e);
+		}
+	}
+
+	private ComponentCounts getCounts(String branchPath) {
+		Branch branch = branchService.findBranchOrThrow(branchPath);
+		ComponentCounts counts = countsCache.getIfPresent(branchPath);
+		if (counts != null && counts.getHeadTime() == branch.getHeadTimestamp()) {
+			cacheStatistics.recordHit();
+			return counts;
+		}
+		cacheStatistics.recordMiss();
+
+		counts = null;
+		String parentPath = PathUtil.getParentPath(branchPath);
+		if (parentPath != null) {
+			ComponentCounts parentCounts = countsCache.getIfPresent(parentPath);
+			if (parentCounts == null || parentCounts.getHeadTime() != branch.getBaseTimestamp()) {
+				Branch parentBranch = branchService.findLatest(parentPath);
+				parentCounts = parentBranch.getHeadTimestamp() == branch.getBaseTimestamp() ? getCounts(parentPath) : null;
+			}
+			if (parentCounts != null) {
+				Map<String, Set<String>> versionsReplaced = branch.getVersionsReplaced();
+				counts = applyChanges(parentCounts, branch.getHeadTimestamp(), versionControlHelper.getChangesOnBranchCriteria(branch),
+						versionsReplaced != null ? versionsReplaced : Collections.emptyMap(),
+						versionControlHelper.getBranchCriteriaAtTimepoint(parentPath, branch.getBase()), versionControlHelper.getBranchCriteria(branch));
+			}
+		}
+		if (counts == null) {
+			counts = countAll(branch);
+		}
+		countsCache.put(branchPath, counts);
+		return counts;
+	}
+
+	private ComponentCounts countAll(Branch branch) {
+		TimerUtil timer = new TimerUtil("Component counts " + branch.getPath(), Level.INFO, 5);
+		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branch);
+		Map<String, Long> semanticTagCounts = countSemanticTags(branchCriteria, null);
+		timer.checkpoint("semantic tags");
+		Map<String, Map<String, Long>> moduleCounts = new HashMap<>();
+		moduleCounts.put(CONCEPT, countModules(branchCriteria, Concept.class, Concept.Fields.CONCEPT_ID, null));
+		moduleCounts.put(DESCRIPTION, countModules(branchCriteria, Description.class, Description.Fields.DESCRIPTION_ID, null));
+		moduleCounts.put(REFSET_MEMBER, countModules(branchCriteria, ReferenceSetMember.class, ReferenceSetMember.Fields.MEMBER_ID, null));
+		timer.finish();
+		return new ComponentCounts(branch.getHeadTimestamp(), semanticTagCounts, moduleCounts);
+	}
+
+	/**
+	 * Applies the difference between the before and after state of the changed components to the given counts.
+	 * Returns null if there are too many changes to make this worthwhile.
+	 */
+	private ComponentCounts applyChanges(ComponentCounts counts, long newHeadTime, BranchCriteria changesCriteria, Map<String, Set<String>> versionsReplaced,
+			BranchCriteria beforeCriteria, BranchCriteria afterCriteria) {
+
+		Set<Long> changedConceptIds = new LongOpenHashSet();
+		Set<String> changedDescriptionIds = new HashSet<>();
+		Set<String> changedMemberIds = new HashSet<>();
+		collectChanges(Concept.class, changesCriteria, versionsReplaced, new String[] {Concept.Fields.CONCEPT_ID},
+				concept -> changedConceptIds.add(concept.getConceptIdAsLong()));
+		collectChanges(Description.class, changesCriteria, versionsReplaced, new String[] {Description.Fields.DESCRIPTION_ID, Description.Fields.CONCEPT_ID},
+				description -> {
+					changedDescriptionIds.add(description.getDescriptionId());
+					changedConceptIds.add(Long.parseLong(description.getConceptId()));
+				});
+		collectChanges(ReferenceSetMember.class, changesCriteria, versionsReplaced, new String[] {ReferenceSetMember.Fields.MEMBER_ID},
+				member -> changedMemberIds.add(member.getMemberId()));
+
+		if (changedConceptIds.size() + changedDescriptionIds.size() + changedMemberIds.size() > MAX_DELTA_COMPONENTS) {
+			return null;
+		}
+
+		Map<String, Long> semanticTagCounts = new HashMap<>(counts.getSemanticTagCounts());
+		if (!changedConceptIds.isEmpty()) {
+			applyDelta(semanticTagCounts, countSemanticTags(beforeCriteria, changedConceptIds), countSemanticTags(afterCriteria, changedConceptIds));
+		}
+
+		Map<String, Map<String, Long>> moduleCounts = new HashMap<>();
+		Set<String> changedConceptIdStrings = new HashSet<>();
+		changedConceptIds.forEach(id -> changedConceptIdStrings.add(id.toString()));
+		moduleCounts.put(CONCEPT, applyModuleDelta(counts, CONCEPT, Concept.class, Concept.Fields.CONCEPT_ID, changedConceptIdStrings, beforeCriteria, afterCriteria));
+		moduleCounts.put(DESCRIPTION, applyModuleDelta(counts, DESCRIPTION, Description.class, Description.Fields.DESCRIPTION_ID, changedDescriptionIds,
+				beforeCriteria, afterCriteria));
+		moduleCounts.put(REFSET_MEMBER, applyModuleDelta(counts, REFSET_MEMBER, ReferenceSetMember.class, ReferenceSetMember.Fields.MEMBER_ID, changedMemberIds,
+				beforeCriteria, afterCriteria));
+
+		return new ComponentCounts(newHeadTime, semanticTagCounts, moduleCounts);
+	}
+
+	private Map<String, Long> applyModuleDelta(ComponentCounts counts, String componentType, Class<? extends SnomedComponent<?>> componentClass, String idField,
+			Set<String> changedIds, BranchCriteria beforeCriteria, BranchCriteria afterCriteria) {
+
+		Map<String, Long> moduleCounts = new HashMap<>(counts.getModuleCounts().getOrDefault(componentType, Collections.emptyMap()));
+		if (!changedIds.isEmpty()) {
+			applyDelta(moduleCounts, countModules(beforeCriteria, componentClass, idField, changedIds), countModules(afterCriteria, componentClass, idField, changedIds));
+		}
+		return moduleCounts;
+	}
+
+	private static void applyDelta(Map<String, Long> counts, Map<String, Long> before, Map<String, Long> after) {
+		before.forEach((key, count) -> counts.merge(key, -count, Long::sum));
+		after.forEach((key, count) -> counts.merge(key, count, Long::sum));
+		counts.values().removeIf(count -> count <= 0);
+	}
+
+	private <T extends SnomedComponent<?>> void collectChanges(Class<T> componentClass, BranchCriteria changesCriteria, Map<String, Set<String>> versionsReplaced,
+			String[] fields, Consumer<T> consumer) {
+
+		try (SearchHitsIterator<T> stream = elasticsearchOperations.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(changesCriteria.getEntityBranchCriteria(componentClass))
+				.withFields(fields)
+				.withPageable(LARGE_PAGE).build(), componentClass)) {
+			stream.forEachRemaining(hit -> consumer.accept(hit.getContent()));
+		}
+
+		// Versions from the parent branch which have been replaced or deleted on this branch
+		Set<String> replacedInternalIds = versionsReplaced.getOrDefault(componentClass.getSimpleName(), Collections.emptySet());
+		for (List<String> batch : Iterables.partition(replacedInternalIds, CLAUSE_LIMIT)) {
+			try (SearchHitsIterator<T> stream = elasticsearchOperations.searchForStream(new NativeSearchQueryBuilder()
+					.withQuery(termsQuery("_id", batch))
+					.withFields(fields)
+					.withPageable(LARGE_PAGE).build(), componentClass)) {
+				stream.forEachRemaining(hit -> consumer.accept(hit.getContent()));
+			}
+		}
+	}
+
+	private Map<String, Long> countSemanticTags(BranchCriteria branchCriteria, Collection<Long> conceptIdFilter) {
+		BoolQueryBuilder conceptQuery = boolQuery()
+				.must(branchCriteria.getEntityBranchCriteria(Concept.class))
+				.must(termQuery(Concept.Fields.ACTIVE, true));
+		if (conceptIdFilter != null) {
+			conceptQuery.filter(termsQuery(Concept.Fields.CONCEPT_ID, conceptIdFilter));
+		}
+		List<Long> activeConcepts = new LongArrayList();
+		try (SearchHitsIterator<Concept> stream = elasticsearchOperations.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(conceptQuery)
+				.withFields(Concept.Fields.CONCEPT_ID)
+				.withPageable(LARGE_PAGE).build(), Concept.class)) {
+			stream.forEachRemaining(hit -> activeConcepts.add(hit.getContent().getConceptIdAsLong()));
+		}
+		if (activeConcepts.isEmpty()) {
+			return new HashMap<>();
+		}
+
+		SearchHits<Description> page = elasticsearchOperations.search(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(Description.class))
+						.must(termQuery(Description.Fields.ACTIVE, true))
+						.must(termQuery(Description.Fields.TYPE_ID, Concepts.FSN))
+						.filter(termsQuery(Description.Fields.CONCEPT_ID, activeConcepts))
+				)
+				.withPageable(NULL_PAGE)
+				.addAggregation(AggregationBuilders.terms(SEMANTIC_TAGS_AGGREGATION).field(Description.Fields.TAG).size(AGGREGATION_SEARCH_SIZE))
+				.build(), Description.class);
+		return getBucketCounts(page, SEMANTIC_TAGS_AGGREGATION);
+	}
+
+	private Map<String, Long> countModules(BranchCriteria branchCriteria, Class<? extends SnomedComponent<?>> componentClass, String idField, Collection<String> idFilter) {
+		BoolQueryBuilder query = boolQuery()
+				.must(branchCriteria.getEntityBranchCriteria(componentClass))
+				.mustNot(existsQuery("end"));
+		if (idFilter != null) {
+			query.filter(termsQuery(idField, idFilter));
+		}
+		SearchHits<? extends SnomedComponent<?>> page = elasticsearchOperations.search(new NativeSearchQueryBuilder()
+				.withQuery(query)
+				.withPageable(NULL_PAGE)
+				.addAggregation(MODULE_AGGREGATION)
+				.build(), componentClass);
+		return getBucketCounts(page, AuthoringStatsService.AGGREGATION_COUNTS_BY_MODULE);
+	}
+
+	private static Map<String, Long> getBucketCounts(SearchHits<?> page, String aggregationName) {
+		Map<String, Long> counts = new HashMap<>();
+		if (page.hasAggregations()) {
+			Terms terms = page.getAggregations().get(aggregationName);
+			for (Terms.Bucket bucket : terms.getBuckets()) {
+				counts.put(bucket.getKeyAsString(), bucket.getDocCount());
+			}
+		}
+		return counts;
+	}
+
+	private static final class ComponentCounts {
+
+		private final long headTime;
+		private final Map<String, Long> semanticTagCounts;
+		private final Map<String, Map<String, Long>> moduleCounts;
+
+		private ComponentCounts(long headTime, Map<String, Long> semanticTagCounts, Map<String, Map<String, Long>> moduleCounts) {
+			this.headTime = headTime;
+			this.semanticTagCounts = Collections.unmodifiableMap(semanticTagCounts);
+			this.moduleCounts = Collections.unmodifiableMap(moduleCounts);
+		}
+
+		private ComponentCounts withHeadTime(long headTime) {
+			return new ComponentCounts(headTime, semanticTagCounts, moduleCounts);
+		}
+
+		private long getHeadTime() {
+			return headTime;
+		}
+
+		private Map<String, Long> getSemanticTagCounts() {
+			return semanticTagCounts;
+		}
+
+		private Map<String, Map<String, Long>> getModuleCounts() {
+			return moduleCounts;
+		}
+	}
+}
@@ -9,6 +9,7 @@ import io.kaicode.elasticvc.api.VersionControlHelper;
 import io.kaicode.elasticvc.domain.Commit;
 import io.kaicode.elasticvc.domain.DomainEntity;
 import io.kaicode.elasticvc.domain.Metadata;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.otf.owltoolkit.conversion.ConversionException;
@@ -23,6 +24,7 @@ import org.snomed.snowstorm.core.data.services.pojo.PersistedComponents;
 import org.snomed.snowstorm.core.util.DescriptionHelper;
 import org.snomed.snowstorm.core.util.TimerUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
@@ -32,8 +34,14 @@ import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilde
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -85,8 +93,29 @@ public class ConceptUpdateHelper extends ComponentService {
 	@Autowired
 	private BranchService branchService;
 
+	@Autowired
+	private OperationMetricsService operationMetricsService;
+
+	@Value("${commit.parallel-save.threads}")
+	private int saveThreads;
+
+	// Saves smaller than this are not worth handing to other threads
+	static final int PARALLEL_SAVE_MIN_COMPONENTS = 1_000;
+
+	private ExecutorService saveExecutorService;
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
+	@PostConstruct
+	public void init() {
+		saveExecutorService = Executors.newFixedThreadPool(saveThreads);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		saveExecutorService.shutdown();
+	}
+
 	/**
 	 * Creates, updates or deletes a collection of concepts and their components in batch within an open commit. This method does not close the commit.
 	 * @param newVersionConcepts	The set of concepts to persist.
@@ -281,12 +310,7 @@ public class ConceptUpdateHelper extends ComponentService {
 			newVersionConcept.getGciAxioms().clear();
 		}
 
-		// TODO: Try saving all core component types at once - Elasticsearch likes multi-threaded writes.
-		doSaveBatchConcepts(newVersionConcepts, commit);
-		doSaveBatchDescriptions(descriptionsToPersist, commit);
-		doSaveBatchRelationships(relationshipsToPersist, commit);
-
-		memberService.doSaveBatchMembers(refsetMembersToPersist, commit);
+		saveComponents(newVersionConcepts, descriptionsToPersist, relationshipsToPersist, refsetMembersToPersist, commit);
 		refsetMembersToPersist.addAll(doDeleteMembersWhereReferencedComponentDeleted(commit.getEntitiesDeleted(), commit));
 
 		// Store assigned identifiers for registration with CIS
@@ -295,6 +319,91 @@ public class ConceptUpdateHelper extends ComponentService {
 		return new PersistedComponents(newVersionConcepts, descriptionsToPersist, relationshipsToPersist, refsetMembersToPersist);
 	}
 
+	/**
+	 * Saves concepts, descriptions and relationships at the same time, then refset members, because Elasticsearch handles concurrent bulk requests well.
+	 * Members are saved last because the conceptId of description members is looked up through the open commit.
+	 * <p>
+	 * The commit records the versions replaced and the entities deleted by each save. To keep that bookkeeping safe:
+	 * <ul>
+	 *     <li>Deleted components are saved first by the calling thread, so only the calling thread adds to the entities deleted.</li>
+	 *     <li>The versions replaced set of each type is created before the concurrent saves start, so each save only adds to its own set.</li>
+	 * </ul>
+	 * Saves under {@link #PARALLEL_SAVE_MIN_COMPONENTS} components run one after another on the calling thread.
+	 */
+	void saveComponents(Collection<Concept> concepts, Collection<Description> descriptions, Collection<Relationship> relationships,
+			Collection<ReferenceSetMember> members, Commit commit) throws ServiceException {
+
+		int componentCount = concepts.size() + descriptions.size() + relationships.size() + members.size();
+		boolean parallel = componentCount >= PARALLEL_SAVE_MIN_COMPONENTS;
+		Timer.Sample timerSample = operationMetricsService.start();
+		long start = System.currentTimeMillis();
+		boolean success = false;
+		try {
+			if (parallel) {
+				saveComponentsConcurrently(concepts, descriptions, relationships, commit);
+			} else {
+				doSaveBatchConcepts(concepts, commit);
+				doSaveBatchDescriptions(descriptions, commit);
+				doSaveBatchRelationships(relationships, commit);
+			}
+			memberService.doSaveBatchMembers(members, commit);
+			success = true;
+		} finally {
+			operationMetricsService.stop(timerSample, OperationMetricsService.COMPONENT_SAVE, success, "mode", parallel ? "parallel" : "sequential");
+		}
+
+		if (parallel) {
+			long millis = Math.max(System.currentTimeMillis() - start, 1);
+			logger.info("Saved {} concepts, {} descriptions, {} relationships and {} refset members on {} in {} seconds, {} components per second.",
+					concepts.size(), descriptions.size(), relationships.size(), members.size(), commit.getBranch().getPath(),
+					String.format("%.1f", millis / 1_000f), componentCount * 1_000L / millis);
+		}
+	}
+
+	private void saveComponentsConcurrently(Collection<Concept> concepts, Collection<Description> descriptions, Collection<Relationship> relationships,
+			Commit commit) throws ServiceException {
+
+		// Calling thread: deletions and the versions replaced set of each type
+		doSaveBatchConcepts(getDeleted(concepts, true), commit);
+		doSaveBatchDescriptions(getDeleted(descriptions, true), commit);
+		doSaveBatchRelationships(getDeleted(relationships, true), commit);
+		commit.addVersionsReplaced(Collections.emptySet(), Concept.class);
+		commit.addVersionsReplaced(Collections.emptySet(), Description.class);
+		commit.addVersionsReplaced(Collections.emptySet(), Relationship.class);
+
+		List<Future<?>> saves = new ArrayList<>();
+		saves.add(saveExecutorService.submit(() -> doSaveBatchConcepts(getDeleted(concepts, false), commit)));
+		saves.add(saveExecutorService.submit(() -> doSaveBatchRelationships(getDeleted(relationships, false), commit)));
+		Throwable failure = null;
+		try {
+			doSaveBatchDescriptions(getDeleted(descriptions, false), commit);
+		} catch (RuntimeException e) {
+			failure = e;
+		}
+		// Wait for all saves, even after a failure, so that nothing is written after the commit is rolled back
+		for (Future<?> save : saves) {
+			try {
+				save.get();
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		if (failure != null) {
+			throw new ServiceException("Failed to save components.", failure);
+		}
+	}
+
+	private <T extends SnomedComponent<?>> List<T> getDeleted(Collection<T> components, boolean deleted) {
+		return components.stream().filter(component -> component.isDeleted() == deleted).collect(Collectors.toList());
+	}
+
 	private <C extends SnomedComponent<?>, T extends SnomedComponent<?>> Collection<C> getExistingComponents(T existingConcept, Function<T, Collection<C>> getter) {
 		if (existingConcept != null) {
 			final Collection<C> collection = getter.apply(existingConcept);
@@ -25,8 +25,6 @@ import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.aggregations.Aggregation;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.Aggregations;
-import org.elasticsearch.search.aggregations.bucket.terms.ParsedStringTerms;
-import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +38,7 @@ import org.snomed.snowstorm.core.data.services.pojo.DescriptionCriteria;
 import org.snomed.snowstorm.core.data.services.pojo.PageWithBucketAggregations;
 import org.snomed.snowstorm.core.data.services.pojo.PageWithBucketAggregationsFactory;
 import org.snomed.snowstorm.core.data.services.pojo.SimpleAggregation;
+import org.snomed.snowstorm.core.pojo.LanguageDialect;
 import org.snomed.snowstorm.core.util.DescriptionHelper;
 import org.snomed.snowstorm.core.util.TimerUtil;
 import org.snomed.snowstorm.ecl.ECLQueryService;
@@ -61,7 +60,6 @@ import org.springframework.util.CollectionUtils;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -96,7 +94,16 @@ public class DescriptionService extends ComponentService {
 	@Autowired
 	private DialectConfigurationService dialectConfigurationService;
 
-	private final Map<String, SemanticTagCacheEntry> semanticTagAggregationCache = new ConcurrentHashMap<>();
+	@Autowired
+	private ComponentCountCacheService componentCountCacheService;
+
+
+	private static final int AUTOCOMPLETE_CANDIDATE_FACTOR = 5;
+	private static final int AUTOCOMPLETE_MAX_CANDIDATES = 500;
+	// Longest edge ngram indexed by the search_as_you_type field type
+	private static final int AUTOCOMPLETE_MAX_NGRAM = 20;
+	// Larger concept sets are filtered in memory
+	private static final int AUTOCOMPLETE_MAX_CONCEPT_ID_FILTER = 10_000;
 
 	@Value("${search.description.aggregation.maxProcessableResultsSize}")
 	private int aggregationMaxProcessableResultsSize;
@@ -290,6 +297,168 @@ public class DescriptionService extends ComponentService {
 		return PageWithBucketAggregationsFactory.createPage(descriptions, new Aggregations(allAggregations), pageRequest);
 	}
 
+	/**
+	 * Typeahead search returning the best matching description of up to {@code limit} active concepts.
+	 * Uses a single bounded query against the edge ngrams of the termFolded.prefix field, without collecting all matching ids or running aggregations.
+	 * The small candidate list is then filtered by concept active status and ranked by acceptability in the given dialects, then term length.
+	 */
+	public List<Description> findAutocompleteDescriptions(String path, String term, Collection<String> languageCodes, Collection<Long> descriptionTypes,
+			List<LanguageDialect> languageDialects, int limit) {
+
+		TimerUtil timer = new TimerUtil("Autocomplete", Level.INFO, 0.5f);
+		final BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(path);
+
+		BoolQueryBuilder descriptionQuery = boolQuery()
+				.filter(branchCriteria.getEntityBranchCriteria(Description.class))
+				.filter(termQuery(Description.Fields.ACTIVE, true));
+		if (IdentifierService.isConceptId(term)) {
+			descriptionQuery.filter(termQuery(Description.Fields.CONCEPT_ID, term));
+		} else {
+			descriptionQuery.filter(getAutocompleteTermQuery(term, languageCodes));
+		}
+		if (!CollectionUtils.isEmpty(languageCodes)) {
+			descriptionQuery.filter(termsQuery(Description.Fields.LANGUAGE_CODE, languageCodes));
+		}
+		if (!CollectionUtils.isEmpty(descriptionTypes)) {
+			descriptionQuery.filter(termsQuery(Description.Fields.TYPE_ID, descriptionTypes));
+		}
+
+		NativeSearchQuery searchQuery = new NativeSearchQueryBuilder()
+				.withQuery(descriptionQuery)
+				.withPageable(PageRequest.of(0, Math.min(limit * AUTOCOMPLETE_CANDIDATE_FACTOR, AUTOCOMPLETE_MAX_CANDIDATES)))
+				.build();
+		List<Description> candidates = elasticsearchTemplate.search(addTermSort(searchQuery), Description.class).stream()
+				.map(SearchHit::getContent)
+				.collect(Collectors.toList());
+		timer.checkpoint("Description prefix search");
+		if (candidates.isEmpty()) {
+			timer.finish();
+			return Collections.emptyList();
+		}
+
+		// Candidates are already in term length order, stable sort by acceptability
+		Map<String, Integer> acceptabilityRanks = getAcceptabilityRanks(candidates, languageDialects, branchCriteria);
+		if (!acceptabilityRanks.isEmpty()) {
+			candidates.sort(Comparator.comparing(description -> acceptabilityRanks.getOrDefault(description.getDescriptionId(), 2)));
+			timer.checkpoint("Acceptability ranking");
+		}
+
+		// Keep the best description of each concept
+		Map<String, Description> conceptDescriptions = new LinkedHashMap<>();
+		for (Description candidate : candidates) {
+			conceptDescriptions.putIfAbsent(candidate.getConceptId(), candidate);
+		}
+
+		Set<String> activeConceptIds = new HashSet<>();
+		elasticsearchTemplate.search(new NativeSearchQueryBuilder()
+						.withQuery(boolQuery()
+								.filter(branchCriteria.getEntityBranchCriteria(Concept.class))
+								.filter(termQuery(Concept.Fields.ACTIVE, true))
+								.filter(termsQuery(Concept.Fields.CONCEPT_ID, conceptDescriptions.keySet())))
+						.withFields(Concept.Fields.CONCEPT_ID)
+						.withPageable(PageRequest.of(0, conceptDescriptions.size()))
+						.build(), Concept.class)
+				.forEach(hit -> activeConceptIds.add(hit.getContent().getConceptId()));
+		timer.checkpoint("Concept active filtering");
+		timer.finish();
+
+		return conceptDescriptions.values().stream()
+				.filter(description -> activeConceptIds.contains(description.getConceptId()))
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Typeahead search for concepts within a known set, for example the concepts of an attribute range.
+	 * Uses the same prefix query as {@link #findAutocompleteDescriptions}, reading descriptions in term length order only until the limit is reached.
+	 * Large sets are checked in memory rather than sent as a terms filter.
+	 * @return Ids of up to {@code limit} concepts from the set with an active matching description, in term order.
+	 */
+	public List<Long> findAutocompleteConceptIdsWithinSet(BranchCriteria branchCriteria, String term, Set<Long> conceptIds, int limit) {
+		if (conceptIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		BoolQueryBuilder descriptionQuery = boolQuery()
+				.filter(branchCriteria.getEntityBranchCriteria(Description.class))
+				.filter(termQuery(Description.Fields.ACTIVE, true))
+				.filter(getAutocompleteTermQuery(term, DEFAULT_LANGUAGE_CODES))
+				.filter(termsQuery(Description.Fields.LANGUAGE_CODE, DEFAULT_LANGUAGE_CODES));
+		boolean filterInMemory = conceptIds.size() > AUTOCOMPLETE_MAX_CONCEPT_ID_FILTER;
+		if (!filterInMemory) {
+			descriptionQuery.filter(termsQuery(Description.Fields.CONCEPT_ID, conceptIds));
+		}
+
+		NativeSearchQuery searchQuery = new NativeSearchQueryBuilder()
+				.withQuery(descriptionQuery)
+				.withFields(Description.Fields.CONCEPT_ID)
+				.withPageable(PageRequest.of(0, AUTOCOMPLETE_MAX_CANDIDATES))
+				.build();
+		Set<Long> matches = new LongLinkedOpenHashSet();
+		try (SearchHitsIterator<Description> stream = elasticsearchTemplate.searchForStream(addTermSort(searchQuery), Description.class)) {
+			while (stream.hasNext() && matches.size() < limit) {
+				long conceptId = parseLong(stream.next().getContent().getConceptId());
+				if (!filterInMemory || conceptIds.contains(conceptId)) {
+					matches.add(conceptId);
+				}
+			}
+		}
+		return new LongArrayList(matches);
+	}
+
+	private QueryBuilder getAutocompleteTermQuery(String term, Collection<String> languageCodes) {
+		// Fold the term for each requested language strategy, like the standard search
+		Map<String, Set<Character>> charactersNotFoldedSets = searchLanguagesConfiguration.getCharactersNotFoldedSets();
+		Set<String> foldedTerms = new HashSet<>();
+		foldedTerms.add(DescriptionHelper.foldTerm(term, Collections.emptySet()));
+		for (Map.Entry<String, Set<Character>> languageCharactersNotFolded : charactersNotFoldedSets.entrySet()) {
+			if (CollectionUtils.isEmpty(languageCodes) || languageCodes.contains(languageCharactersNotFolded.getKey())) {
+				foldedTerms.add(DescriptionHelper.foldTerm(term, languageCharactersNotFolded.getValue()));
+			}
+		}
+
+		// Every word is a prefix. The edge ngrams of the _index_prefix field allow each word to be matched with a term query.
+		BoolQueryBuilder foldedTermsQuery = boolQuery();
+		for (String foldedTerm : foldedTerms) {
+			BoolQueryBuilder wordsQuery = boolQuery();
+			for (String word : analyze(foldedTerm, new StandardAnalyzer(CharArraySet.EMPTY_SET))) {
+				if (word.length() <= AUTOCOMPLETE_MAX_NGRAM) {
+					wordsQuery.filter(termQuery(Description.Fields.TERM_FOLDED_PREFIX + "._index_prefix", word));
+				} else {
+					wordsQuery.filter(prefixQuery(Description.Fields.TERM_FOLDED_PREFIX, word));
+				}
+			}
+			foldedTermsQuery.should(wordsQuery);// Logical OR
+		}
+		return foldedTermsQuery;
+	}
+
+	// Rank 0 for preferred and 1 for acceptable in any of the dialect language refsets, in dialect order
+	private Map<String, Integer> getAcceptabilityRanks(List<Description> descriptions, List<LanguageDialect> languageDialects, BranchCriteria branchCriteria) {
+		Set<Long> languageRefsets = orEmpty(languageDialects).stream()
+				.map(LanguageDialect::getLanguageReferenceSet)
+				.filter(Objects::nonNull)
+				.collect(Collectors.toSet());
+		if (languageRefsets.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Map<String, Integer> ranks = new HashMap<>();
+		elasticsearchTemplate.search(new NativeSearchQueryBuilder()
+						.withQuery(boolQuery()
+								.filter(branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class))
+								.filter(termQuery(ReferenceSetMember.Fields.ACTIVE, true))
+								.filter(termsQuery(REFSET_ID, languageRefsets))
+								.filter(termsQuery(ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID,
+										descriptions.stream().map(Description::getDescriptionId).collect(Collectors.toList()))))
+						.withPageable(PageRequest.of(0, descriptions.size() * languageRefsets.size()))
+						.build(), ReferenceSetMember.class)
+				.forEach(hit -> {
+					ReferenceSetMember member = hit.getContent();
+					int rank = Concepts.PREFERRED.equals(member.getAdditionalField(ReferenceSetMember.LanguageFields.ACCEPTABILITY_ID)) ? 0 : 1;
+					ranks.merge(member.getReferencedComponentId(), rank, Math::min);
+				});
+		return ranks;
+	}
+
 	void joinDescriptions(BranchCriteria branchCriteria, Map<String, Concept> conceptIdMap, Map<String, ConceptMini> conceptMiniMap,
 			TimerUtil timer, boolean fetchLangRefsetMembers, boolean fetchInactivationInfo) {
 
@@ -352,51 +521,7 @@ public class DescriptionService extends ComponentService {
 	}
 
 	public Map<String, Long> countActiveConceptsPerSemanticTag(String branch) {
-
-		Branch branchObject = branchService.findLatest(branch);
-
-		SemanticTagCacheEntry semanticTagCacheEntry = semanticTagAggregationCache.get(branch);
-		if (semanticTagCacheEntry != null) {
-			if (semanticTagCacheEntry.getBranchHeadTime() == branchObject.getHead().getTime()) {
-				return semanticTagCacheEntry.getTagCounts();
-			}
-		}
-
-		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branch);
-
-		List<Long> activeConcepts = new LongArrayList();
-
-		try (SearchHitsIterator<Concept> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
-				.withQuery(boolQuery()
-						.must(branchCriteria.getEntityBranchCriteria(Concept.class))
-						.must(termQuery(Concept.Fields.ACTIVE, true)))
-				.withFields(Concept.Fields.CONCEPT_ID)
-				.withPageable(LARGE_PAGE).build(), Concept.class)) {
-			stream.forEachRemaining(hit -> activeConcepts.add(hit.getContent().getConceptIdAsLong()));
-		}
-
-		SearchHits<Description> page = elasticsearchTemplate.search(new NativeSearchQueryBuilder()
-				.withQuery(boolQuery()
-						.must(branchCriteria.getEntityBranchCriteria(Description.class))
-						.must(termQuery(Description.Fields.ACTIVE, true))
-						.must(termQuery(Description.Fields.TYPE_ID, Concepts.FSN))
-						.filter(termsQuery(Description.Fields.CONCEPT_ID, activeConcepts))
-				)
-				.addAggregation(AggregationBuilders.terms("semanticTags").field(Description.Fields.TAG).size(AGGREGATION_SEARCH_SIZE))
-				.build(), Description.class);
-
-		Map<String, Long> tagCounts = new TreeMap<>();
-		if (page.hasAggregations()) {
-			ParsedStringTerms semanticTags = page.getAggregations().get("semanticTags");
-			List<? extends Terms.Bucket> buckets = semanticTags.getBuckets();
-			for (Terms.Bucket bucket : buckets) {
-				tagCounts.put(bucket.getKeyAsString(), bucket.getDocCount());
-			}
-		}
-		// Cache result
-		semanticTagAggregationCache.put(branch, new SemanticTagCacheEntry(branchObject.getHead().getTime(), tagCounts));
-
-		return tagCounts;
+		return componentCountCacheService.getActiveConceptsPerSemanticTag(branch);
 	}
 
 	private void joinInactivationIndicatorsAndAssociations(Map<String, Concept> conceptIdMap, Map<String, Description> descriptionIdMap,
@@ -1000,25 +1125,6 @@ public class DescriptionService extends ComponentService {
 		return query;
 	}
 
-	private static class SemanticTagCacheEntry {
-
-		private final long branchHeadTime;
-		private final Map<String, Long> tagCounts;
-
-		SemanticTagCacheEntry(long branchHeadTime, Map<String, Long> tagCounts) {
-			this.branchHeadTime = branchHeadTime;
-			this.tagCounts = tagCounts;
-		}
-
-		private long getBranchHeadTime() {
-			return branchHeadTime;
-		}
-
-		private Map<String, Long> getTagCounts() {
-			return tagCounts;
-		}
-	}
-
 	static class DescriptionMatches {
 
 		private final Set<Long> conceptIds;
@@ -1,28 +1,46 @@
 package org.snomed.snowstorm.core.data.services;
 
 import ch.qos.logback.classic.Level;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.collect.Sets;
 import io.kaicode.elasticvc.api.*;
 import io.kaicode.elasticvc.domain.Branch;
 import io.kaicode.elasticvc.domain.Commit;
+import io.kaicode.elasticvc.domain.Metadata;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.RangeQueryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.otf.owltoolkit.conversion.ConversionException;
 import org.snomed.snowstorm.config.Config;
 import org.snomed.snowstorm.core.data.domain.*;
+import org.snomed.snowstorm.core.data.services.pojo.IntegrityCheckJob;
 import org.snomed.snowstorm.core.data.services.pojo.IntegrityIssueReport;
 import org.snomed.snowstorm.core.util.TimerUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHitsIterator;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static java.lang.Long.parseLong;
 import static org.elasticsearch.index.query.QueryBuilders.*;
@@ -59,29 +77,59 @@ public class IntegrityService extends ComponentService implements CommitListener
 
 	public static final String INTEGRITY_ISSUE_METADATA_KEY = "integrityIssue";
 
+	// Ids of the components with outstanding integrity issues, kept in internal metadata so that commits only need to check what they change
+	public static final String INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY = "integrityIssueRelationships";
+	public static final String INTEGRITY_ISSUE_AXIOMS_METADATA_KEY = "integrityIssueAxioms";
+
+	// Branch metadata is loaded with every branch lookup so only small sets are kept.
+	// Branches with more issues than this check all changed components after each commit instead.
+	private static final int MAX_OUTSTANDING_ISSUES_IN_METADATA = 500;
+
+	@Autowired
+	private ExecutorService executorService;
+
+	@Value("${integrity-check.full.partitions}")
+	private int fullCheckPartitions;
+
+	@Value("${integrity-check.full.threads}")
+	private int fullCheckThreads;
+
+	// Runs the partitions of full integrity checks, shared by all checks so concurrent checks do not multiply the load on Elasticsearch
+	private ExecutorService fullCheckExecutorService;
+
+	private final Cache<String, IntegrityCheckJob> fullCheckJobs = Caffeine.newBuilder().expireAfterWrite(1, TimeUnit.DAYS).build();
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
+	@PostConstruct
+	public void startFullCheckExecutor() {
+		fullCheckExecutorService = Executors.newFixedThreadPool(fullCheckThreads);
+	}
+
+	@PreDestroy
+	public void stopFullCheckExecutor() {
+		fullCheckExecutorService.shutdownNow();
+	}
+
 	@Override
 	public void preCommitCompletion(Commit commit) throws IllegalStateException {
-		final String integrityIssueString = commit.getBranch().getMetadata().getMapOrCreate(INTERNAL_METADATA_KEY).get(INTEGRITY_ISSUE_METADATA_KEY);
-		if (Boolean.parseBoolean(integrityIssueString)) {
+		final Map<String, String> internalMetadata = commit.getBranch().getMetadata().getMapOrCreate(INTERNAL_METADATA_KEY);
+		if (Boolean.parseBoolean(internalMetadata.get(INTEGRITY_ISSUE_METADATA_KEY))) {
 			try {
-				CodeSystem codeSystem = codeSystemService.findClosestCodeSystemUsingAnyBranch(commit.getBranch().getPath(), false);
-				if (codeSystem == null) {
-					throw new IllegalStateException(String.format("No CodeSystem found for branch %s", commit.getBranch().getPath()));
-				}
 				IntegrityIssueReport integrityIssueReport;
-				if (codeSystem.getBranchPath().equals(commit.getBranch().getPath())) {
-					// Run integrity check for content changed only on the CodeSystem branch
-					BranchCriteria branchCriteriaIncludingOpenCommit = versionControlHelper.getBranchCriteriaIncludingOpenCommit(commit);
-					integrityIssueReport = findChangedComponentsWithBadIntegrityNotFixed(branchCriteriaIncludingOpenCommit, commit.getBranch());
+				if (commit.getCommitType() == Commit.CommitType.CONTENT && internalMetadata.containsKey(INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY)) {
+					// Content commits can only fix outstanding issues or break the components they change or reference
+					integrityIssueReport = findComponentsWithBadIntegrityAfterCommit(commit,
+							parseIds(internalMetadata.get(INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY), Long::parseLong),
+							parseIds(internalMetadata.get(INTEGRITY_ISSUE_AXIOMS_METADATA_KEY), id -> id));
 				} else {
-					// check with fix branch against code system branch
-					integrityIssueReport = findChangedComponentsWithBadIntegrityNotFixed(commit.getBranch(), codeSystem.getBranchPath());
+					integrityIssueReport = findChangedComponentsWithBadIntegrityNotFixed(commit);
 				}
 				if (integrityIssueReport.isEmpty()) {
-					commit.getBranch().getMetadata().getMapOrCreate(INTERNAL_METADATA_KEY).remove(INTEGRITY_ISSUE_METADATA_KEY);
+					clearIntegrityIssue(commit.getBranch().getMetadata());
 					logger.info("No integrity issue found on branch {} after commit {}", commit.getBranch().getPath(), commit.getTimepoint().getTime());
+				} else {
+					setOutstandingIssues(commit.getBranch().getMetadata(), integrityIssueReport);
 				}
 			} catch (ServiceException e) {
 				logger.error("Integrity check didn't complete successfully.", e);
@@ -89,6 +137,196 @@ public class IntegrityService extends ComponentService implements CommitListener
 		}
 	}
 
+	private IntegrityIssueReport findChangedComponentsWithBadIntegrityNotFixed(Commit commit) throws ServiceException {
+		CodeSystem codeSystem = codeSystemService.findClosestCodeSystemUsingAnyBranch(commit.getBranch().getPath(), false);
+		if (codeSystem == null) {
+			throw new IllegalStateException(String.format("No CodeSystem found for branch %s", commit.getBranch().getPath()));
+		}
+		if (codeSystem.getBranchPath().equals(commit.getBranch().getPath())) {
+			// Run integrity check for content changed only on the CodeSystem branch
+			BranchCriteria branchCriteriaIncludingOpenCommit = versionControlHelper.getBranchCriteriaIncludingOpenCommit(commit);
+			return findChangedComponentsWithBadIntegrityNotFixed(branchCriteriaIncludingOpenCommit, commit.getBranch());
+		} else {
+			// check with fix branch against code system branch
+			return findChangedComponentsWithBadIntegrityNotFixed(commit.getBranch(), codeSystem.getBranchPath());
+		}
+	}
+
+	/**
+	 * Checks the components with integrity issues before the commit together with the components the commit could have broken;
+	 * stated relationships and axioms changed in the commit and those referencing concepts deleted or inactivated in the commit.
+	 */
+	IntegrityIssueReport findComponentsWithBadIntegrityAfterCommit(Commit commit, Set<Long> outstandingRelationshipIds, Set<String> outstandingAxiomIds)
+			throws ServiceException {
+
+		Branch branch = commit.getBranch();
+		TimerUtil timer = new TimerUtil("Incremental integrity check on " + branch.getPath(), Level.INFO, 1);
+		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteriaIncludingOpenCommit(commit);
+		BranchCriteria commitChanges = versionControlHelper.getBranchCriteriaChangesAndDeletionsWithinOpenCommitOnly(commit);
+
+		// Concepts changed in the commit which are no longer present and active
+		Set<Long> deletedOrInactiveConcepts = new LongOpenHashSet();
+		try (SearchHitsIterator<Concept> changedConcepts = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery().must(commitChanges.getEntityBranchCriteria(Concept.class)))
+				.withFields(Concept.Fields.CONCEPT_ID)
+				.withPageable(LARGE_PAGE).build(), Concept.class)) {
+			changedConcepts.forEachRemaining(hit -> deletedOrInactiveConcepts.add(hit.getContent().getConceptIdAsLong()));
+		}
+		deletedOrInactiveConcepts.removeAll(findActiveConcepts(branchCriteria, deletedOrInactiveConcepts));
+		timer.checkpoint("Collect concepts deleted or inactivated in commit: " + deletedOrInactiveConcepts.size());
+
+		Map<Long, Relationship> relationships = new Long2ObjectOpenHashMap<>();
+		try (SearchHitsIterator<Relationship> relationshipStream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(Relationship.class))
+						.must(termQuery(ACTIVE, true))
+						.mustNot(termsQuery(CHARACTERISTIC_TYPE_ID, Concepts.INFERRED_RELATIONSHIP))
+						.must(boolQuery()
+								.should(termsQuery(Relationship.Fields.RELATIONSHIP_ID, outstandingRelationshipIds))
+								.should(commitChanges.getEntityBranchCriteria(Relationship.class))
+								.should(termsQuery(SOURCE_ID, deletedOrInactiveConcepts))
+								.should(termsQuery(TYPE_ID, deletedOrInactiveConcepts))
+								.should(termsQuery(DESTINATION_ID, deletedOrInactiveConcepts))
+						)
+				)
+				.withPageable(LARGE_PAGE).build(), Relationship.class)) {
+			relationshipStream.forEachRemaining(hit -> relationships.put(parseLong(hit.getContent().getRelationshipId()), hit.getContent()));
+		}
+
+		// Axioms referencing deleted or inactivated concepts are found using the stated semantic index
+		Set<Long> conceptIdsWithPossiblyBadAxioms = new LongOpenHashSet();
+		if (!deletedOrInactiveConcepts.isEmpty()) {
+			try (SearchHitsIterator<QueryConcept> statedIndexConcepts = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+					.withQuery(boolQuery()
+							.must(branchCriteria.getEntityBranchCriteria(QueryConcept.class))
+							.must(termQuery(QueryConcept.Fields.STATED, true))
+							.must(boolQuery()
+									.should(termsQuery(QueryConcept.Fields.PARENTS, deletedOrInactiveConcepts))
+									.should(termsQuery(QueryConcept.Fields.ATTR + "." + QueryConcept.ATTR_TYPE_WILDCARD, deletedOrInactiveConcepts))
+							)
+					)
+					.withFields(QueryConcept.Fields.CONCEPT_ID)
+					.withPageable(LARGE_PAGE).build(), QueryConcept.class)) {
+				statedIndexConcepts.forEachRemaining(hit -> conceptIdsWithPossiblyBadAxioms.add(hit.getContent().getConceptIdL()));
+			}
+		}
+
+		Map<String, String> axiomIdReferenceComponentMap = new HashMap<>();
+		Map<String, Set<Long>> axiomReferencedConcepts = new HashMap<>();
+		try (SearchHitsIterator<ReferenceSetMember> axiomStream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class))
+						.must(termQuery(ACTIVE, true))
+						.must(termQuery(ReferenceSetMember.Fields.REFSET_ID, Concepts.OWL_AXIOM_REFERENCE_SET))
+						.must(boolQuery()
+								.should(termsQuery(ReferenceSetMember.Fields.MEMBER_ID, outstandingAxiomIds))
+								.should(commitChanges.getEntityBranchCriteria(ReferenceSetMember.class))
+								.should(termsQuery(ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID, conceptIdsWithPossiblyBadAxioms))
+						)
+				)
+				.withPageable(LARGE_PAGE).build(), ReferenceSetMember.class)) {
+			while (axiomStream.hasNext()) {
+				ReferenceSetMember axiom = axiomStream.next().getContent();
+				axiomIdReferenceComponentMap.put(axiom.getMemberId(), axiom.getReferencedComponentId());
+				axiomReferencedConcepts.put(axiom.getMemberId(), axiomConversionService.getReferencedConcepts(axiom.getAdditionalField(OWL_EXPRESSION)));
+			}
+		} catch (ConversionException e) {
+			throw new ServiceException(FAILED_TO_DESERIALISE_AXIOM_DURING_REFERENCE_INTEGRITY_CHECK, e);
+		}
+		timer.checkpoint("Collect relationships and axioms to check: " + (relationships.size() + axiomReferencedConcepts.size()));
+
+		Set<Long> conceptsRequiredActive = new LongOpenHashSet();
+		for (Relationship relationship : relationships.values()) {
+			conceptsRequiredActive.add(parseLong(relationship.getSourceId()));
+			conceptsRequiredActive.add(parseLong(relationship.getTypeId()));
+			if (!relationship.isConcrete()) {
+				conceptsRequiredActive.add(parseLong(relationship.getDestinationId()));
+			}
+		}
+		axiomReferencedConcepts.values().forEach(conceptsRequiredActive::addAll);
+		Set<Long> activeConcepts = findActiveConcepts(branchCriteria, conceptsRequiredActive);
+		timer.checkpoint("Collect active concepts referenced: " + activeConcepts.size());
+
+		final Map<Long, Long> relationshipWithInactiveSource = new Long2LongOpenHashMap();
+		final Map<Long, Long> relationshipWithInactiveType = new Long2LongOpenHashMap();
+		final Map<Long, Long> relationshipWithInactiveDestination = new Long2LongOpenHashMap();
+		relationships.forEach((relationshipId, relationship) -> {
+			putIfInactive(relationship.getSourceId(), activeConcepts, relationshipId, relationshipWithInactiveSource);
+			putIfInactive(relationship.getTypeId(), activeConcepts, relationshipId, relationshipWithInactiveType);
+			if (!relationship.isConcrete()) {
+				putIfInactive(relationship.getDestinationId(), activeConcepts, relationshipId, relationshipWithInactiveDestination);
+			}
+		});
+
+		Map<String, ConceptMini> axiomsMinisAndInactiveConcepts = new HashMap<>();
+		Map<String, ConceptMini> conceptMiniMap = new HashMap<>();
+		axiomReferencedConcepts.forEach((axiomId, referencedConcepts) -> {
+			Set<Long> badReferences = Sets.difference(referencedConcepts, activeConcepts);
+			if (!badReferences.isEmpty()) {
+				addConceptMini(axiomsMinisAndInactiveConcepts, conceptMiniMap, axiomId, axiomIdReferenceComponentMap.get(axiomId), badReferences);
+			}
+		});
+		descriptionService.joinActiveDescriptions(branch.getPath(), conceptMiniMap);
+
+		timer.finish();
+		return getReport(axiomsMinisAndInactiveConcepts, relationshipWithInactiveSource, relationshipWithInactiveType, relationshipWithInactiveDestination);
+	}
+
+	private Set<Long> findActiveConcepts(BranchCriteria branchCriteria, Collection<Long> conceptIds) {
+		Set<Long> activeConcepts = new LongOpenHashSet();
+		if (conceptIds.isEmpty()) {
+			return activeConcepts;
+		}
+		try (SearchHitsIterator<Concept> activeConceptStream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(Concept.class))
+						.must(termQuery(ACTIVE, true))
+						.must(termsQuery(Concept.Fields.CONCEPT_ID, conceptIds))
+				)
+				.withFields(Concept.Fields.CONCEPT_ID)
+				.withPageable(LARGE_PAGE).build(), Concept.class)) {
+			activeConceptStream.forEachRemaining(hit -> activeConcepts.add(hit.getContent().getConceptIdAsLong()));
+		}
+		return activeConcepts;
+	}
+
+	/**
+	 * Records the components of the report as the outstanding integrity issues of the branch, unless there are too many to keep in metadata.
+	 */
+	public static void setOutstandingIssues(Metadata metadata, IntegrityIssueReport report) {
+		Map<String, String> internalMetadata = metadata.getMapOrCreate(INTERNAL_METADATA_KEY);
+		Set<Long> relationshipIds = new TreeSet<>();
+		for (Map<Long, Long> relationships : Arrays.asList(report.getRelationshipsWithMissingOrInactiveSource(),
+				report.getRelationshipsWithMissingOrInactiveType(), report.getRelationshipsWithMissingOrInactiveDestination())) {
+			if (relationships != null) {
+				relationshipIds.addAll(relationships.keySet());
+			}
+		}
+		Set<String> axiomIds = report.getAxiomsWithMissingOrInactiveReferencedConcept() != null ?
+				new TreeSet<>(report.getAxiomsWithMissingOrInactiveReferencedConcept().keySet()) : Collections.emptySet();
+		if (relationshipIds.size() + axiomIds.size() > MAX_OUTSTANDING_ISSUES_IN_METADATA) {
+			internalMetadata.remove(INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY);
+			internalMetadata.remove(INTEGRITY_ISSUE_AXIOMS_METADATA_KEY);
+			return;
+		}
+		internalMetadata.put(INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY, relationshipIds.stream().map(Object::toString).collect(Collectors.joining(",")));
+		internalMetadata.put(INTEGRITY_ISSUE_AXIOMS_METADATA_KEY, String.join(",", axiomIds));
+	}
+
+	private static void clearIntegrityIssue(Metadata metadata) {
+		Map<String, String> internalMetadata = metadata.getMapOrCreate(INTERNAL_METADATA_KEY);
+		internalMetadata.remove(INTEGRITY_ISSUE_METADATA_KEY);
+		internalMetadata.remove(INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY);
+		internalMetadata.remove(INTEGRITY_ISSUE_AXIOMS_METADATA_KEY);
+	}
+
+	private static <T> Set<T> parseIds(String ids, Function<String, T> parser) {
+		if (ids == null || ids.isEmpty()) {
+			return Collections.emptySet();
+		}
+		return Arrays.stream(ids.split(",")).map(parser).collect(Collectors.toSet());
+	}
+
 	public IntegrityIssueReport findChangedComponentsWithBadIntegrityNotFixed(Branch branch) throws ServiceException {
 		return  findChangedComponentsWithBadIntegrityNotFixed(versionControlHelper.getBranchCriteria(branch), branch);
 	}
@@ -441,7 +679,7 @@ public class IntegrityService extends ComponentService implements CommitListener
 		IntegrityIssueReport fixedReport = getReport(axiomsMinisAndInactiveConcepts, relationshipStillWithInactiveSource, relationshipStillWithInactiveType, relationshipStillWithInactiveDestination);
 		if (fixedReport.isEmpty()) {
 			// remove integrity issue flag when report is clean
-			fixBranch.getMetadata().getMapOrCreate(INTERNAL_METADATA_KEY).remove(INTEGRITY_ISSUE_METADATA_KEY);
+			clearIntegrityIssue(fixBranch.getMetadata());
 			branchService.updateMetadata(fixBranch.getPath(), fixBranch.getMetadata());
 			logger.info("Integrity issues have been fixed on branch {}", fixBranch.getPath());
 		}
@@ -449,12 +687,39 @@ public class IntegrityService extends ComponentService implements CommitListener
 	}
 
 
+	/**
+	 * Starts a full integrity check of the branch in the background.
+	 */
+	public IntegrityCheckJob findAllComponentsWithBadIntegrityAsync(Branch branch, boolean stated) {
+		IntegrityCheckJob job = new IntegrityCheckJob(branch.getPath());
+		fullCheckJobs.put(job.getId(), job);
+		final SecurityContext securityContext = SecurityContextHolder.getContext();
+		executorService.submit(() -> {
+			// Bring user security context into new thread
+			SecurityContextHolder.setContext(securityContext);
+			try {
+				job.completed(findAllComponentsWithBadIntegrity(branch, stated, job));
+			} catch (ServiceException | RuntimeException e) {
+				logger.error("Full integrity check on {} failed.", branch.getPath(), e);
+				job.failed(e.getMessage());
+			}
+		});
+		return job;
+	}
+
+	public IntegrityCheckJob getIntegrityCheckJobOrThrow(String jobId) {
+		IntegrityCheckJob job = fullCheckJobs.getIfPresent(jobId);
+		if (job == null) {
+			throw new NotFoundException("Integrity check job not found.");
+		}
+		return job;
+	}
+
 	public IntegrityIssueReport findAllComponentsWithBadIntegrity(Branch branch, boolean stated) throws ServiceException {
+		return findAllComponentsWithBadIntegrity(branch, stated, null);
+	}
 
-		final Map<Long, Long> relationshipWithInactiveSource = new Long2LongOpenHashMap();
-		final Map<Long, Long> relationshipWithInactiveType = new Long2LongOpenHashMap();
-		final Map<Long, Long> relationshipWithInactiveDestination = new Long2LongOpenHashMap();
-		final Map<String, ConceptMini> axiomWithInactiveReferencedConcept = new HashMap<>();
+	private IntegrityIssueReport findAllComponentsWithBadIntegrity(Branch branch, boolean stated, IntegrityCheckJob job) throws ServiceException {
 
 		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branch);
 		TimerUtil timer = new TimerUtil("Full integrity check on " + branch.getPath());
@@ -463,81 +728,152 @@ public class IntegrityService extends ComponentService implements CommitListener
 		Set<Long> activeConcepts = new LongOpenHashSet(conceptService.findAllActiveConcepts(branchCriteria));
 		timer.checkpoint("Fetch active concepts: " + activeConcepts.size());
 
-		// Find relationships pointing to something other than the active concepts
-		NativeSearchQueryBuilder queryBuilder = new NativeSearchQueryBuilder();
-		BoolQueryBuilder boolQueryBuilder = boolQuery();
-		queryBuilder
-				.withQuery(boolQueryBuilder
-						.must(branchCriteria.getEntityBranchCriteria(Relationship.class))
-						.must(termQuery(ACTIVE, true))
-						.must(boolQuery()
-							.should(boolQuery().mustNot(termsQuery(SOURCE_ID, activeConcepts)))
-							.should(boolQuery().mustNot(termsQuery(TYPE_ID, activeConcepts)))
-							.should(boolQuery().mustNot(termsQuery(Relationship.Fields.DESTINATION_ID, activeConcepts)))
-						)
-				)
-				.withPageable(LARGE_PAGE);
+		// Relationships and axioms are checked in parallel, partitioned by the id of the concept they belong to
+		List<String> boundaries = getPartitionBoundaries(activeConcepts, fullCheckPartitions);
+		if (job != null) {
+			job.setPartitions(boundaries.size() + 1);
+		}
+		List<Future<IntegrityIssues>> futures = new ArrayList<>();
+		for (int i = 0; i <= boundaries.size(); i++) {
+			String from = i > 0 ? boundaries.get(i - 1) : null;
+			String to = i < boundaries.size() ? boundaries.get(i) : null;
+			futures.add(fullCheckExecutorService.submit(() -> {
+				IntegrityIssues partitionIssues = findComponentsWithBadIntegrityInPartition(branchCriteria, stated, activeConcepts, from, to);
+				if (job != null) {
+					job.partitionCompleted();
+				}
+				return partitionIssues;
+			}));
+		}
+		IntegrityIssues issues = new IntegrityIssues();
+		try {
+			for (Future<IntegrityIssues> future : futures) {
+				issues.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceException("Full integrity check was interrupted.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ServiceException) {
+				throw (ServiceException) e.getCause();
+			}
+			throw new ServiceException("Full integrity check failed.", e.getCause());
+		} finally {
+			futures.forEach(future -> future.cancel(true));
+		}
+		timer.checkpoint("Check relationships and axioms in " + futures.size() + " partitions");
+
+		final Map<String, ConceptMini> axiomWithInactiveReferencedConcept = new HashMap<>();
+		Map<String, ConceptMini> conceptMiniMap = new HashMap<>();
+		issues.axiomBadReferences.forEach((axiomId, badReferences) ->
+				addConceptMini(axiomWithInactiveReferencedConcept, conceptMiniMap, axiomId, issues.axiomReferencedComponents.get(axiomId), badReferences));
+		if (!conceptMiniMap.isEmpty()) {
+			// Join descriptions so FSN and PT are returned
+			descriptionService.joinActiveDescriptions(branch.getPath(), conceptMiniMap);
+		}
+
+		timer.finish();
+
+		return getReport(axiomWithInactiveReferencedConcept, issues.relationshipWithInactiveSource, issues.relationshipWithInactiveType, issues.relationshipWithInactiveDestination);
+	}
+
+	private IntegrityIssues findComponentsWithBadIntegrityInPartition(BranchCriteria branchCriteria, boolean stated, Set<Long> activeConcepts,
+			String fromConceptId, String toConceptId) throws ServiceException {
+
+		IntegrityIssues issues = new IntegrityIssues();
+
+		BoolQueryBuilder relationshipQuery = boolQuery()
+				.must(branchCriteria.getEntityBranchCriteria(Relationship.class))
+				.must(termQuery(ACTIVE, true))
+				.must(getPartitionQuery(SOURCE_ID, fromConceptId, toConceptId));
 		if (stated) {
-			boolQueryBuilder.mustNot(termsQuery(CHARACTERISTIC_TYPE_ID, Concepts.INFERRED_RELATIONSHIP));
+			relationshipQuery.mustNot(termsQuery(CHARACTERISTIC_TYPE_ID, Concepts.INFERRED_RELATIONSHIP));
 		} else {
-			boolQueryBuilder.must(termsQuery(CHARACTERISTIC_TYPE_ID, Concepts.INFERRED_RELATIONSHIP));
+			relationshipQuery.must(termsQuery(CHARACTERISTIC_TYPE_ID, Concepts.INFERRED_RELATIONSHIP));
 		}
-		try (SearchHitsIterator<Relationship> relationshipStream = elasticsearchTemplate.searchForStream(queryBuilder.build(), Relationship.class)) {
+		try (SearchHitsIterator<Relationship> relationshipStream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(relationshipQuery)
+				.withFields(Relationship.Fields.RELATIONSHIP_ID, SOURCE_ID, TYPE_ID, DESTINATION_ID)
+				.withPageable(LARGE_PAGE).build(), Relationship.class)) {
 			relationshipStream.forEachRemaining(hit -> {
 				Relationship relationship = hit.getContent();
 				long relationshipId = parseLong(relationship.getRelationshipId());
-				putIfInactive(relationship.getSourceId(), activeConcepts, relationshipId, relationshipWithInactiveSource);
-				putIfInactive(relationship.getTypeId(), activeConcepts, relationshipId, relationshipWithInactiveType);
-				putIfInactive(relationship.getDestinationId(), activeConcepts, relationshipId, relationshipWithInactiveDestination);
+				putIfInactive(relationship.getSourceId(), activeConcepts, relationshipId, issues.relationshipWithInactiveSource);
+				putIfInactive(relationship.getTypeId(), activeConcepts, relationshipId, issues.relationshipWithInactiveType);
+				// Concrete relationships have no destination
+				if (relationship.getDestinationId() != null) {
+					putIfInactive(relationship.getDestinationId(), activeConcepts, relationshipId, issues.relationshipWithInactiveDestination);
+				}
 			});
 		}
 
-		// Find Axioms pointing to something other than the active concepts, use semantic index first.
-		Set<Long> conceptIdsWithBadAxioms = new LongOpenHashSet();
-		try (SearchHitsIterator<QueryConcept> badStatedIndexConcepts = elasticsearchTemplate.searchForStream(
-				new NativeSearchQueryBuilder()
-						.withQuery(boolQuery()
-								.must(branchCriteria.getEntityBranchCriteria(QueryConcept.class))
-								.must(termQuery(QueryConcept.Fields.STATED, true))
-								.mustNot(termsQuery(QueryConcept.Fields.ATTR + "." + QueryConcept.ATTR_TYPE_WILDCARD, activeConcepts))
-						)
-						.withPageable(LARGE_PAGE).build(),
-				QueryConcept.class)) {
-			badStatedIndexConcepts.forEachRemaining(hit -> conceptIdsWithBadAxioms.add(hit.getContent().getConceptIdL()));
-		}
-		if (!conceptIdsWithBadAxioms.isEmpty()) {
-			try (SearchHitsIterator<ReferenceSetMember> possiblyBadAxioms = elasticsearchTemplate.searchForStream(
-					new NativeSearchQueryBuilder()
-							.withQuery(boolQuery()
-									.must(branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class))
-									.must(termQuery(ACTIVE, true))
-									.must(termQuery(ReferenceSetMember.Fields.REFSET_ID, Concepts.OWL_AXIOM_REFERENCE_SET))
-									.must(termsQuery(ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID, conceptIdsWithBadAxioms))
-							)
-							.withPageable(LARGE_PAGE).build(),
-					ReferenceSetMember.class)) {
-				try {
-					Map<String, ConceptMini> conceptMiniMap = new HashMap<>();
-					while (possiblyBadAxioms.hasNext()) {
-						ReferenceSetMember axiomMember = possiblyBadAxioms.next().getContent();
-						String owlExpression = axiomMember.getAdditionalField(OWL_EXPRESSION);
-						Set<Long> referencedConcepts = axiomConversionService.getReferencedConcepts(owlExpression);
-						Sets.SetView<Long> badReferences = Sets.difference(referencedConcepts, activeConcepts);
-						if (!badReferences.isEmpty()) {
-							addConceptMini(axiomWithInactiveReferencedConcept, conceptMiniMap, axiomMember.getId(), axiomMember.getReferencedComponentId(), badReferences);
-						}
-					}
-					// Join descriptions so FSN and PT are returned
-					descriptionService.joinActiveDescriptions(branch.getPath(), conceptMiniMap);
-				} catch (ConversionException e) {
-					throw new ServiceException(FAILED_TO_DESERIALISE_AXIOM_DURING_REFERENCE_INTEGRITY_CHECK, e);
+		try (SearchHitsIterator<ReferenceSetMember> axioms = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class))
+						.must(termQuery(ACTIVE, true))
+						.must(termQuery(ReferenceSetMember.Fields.REFSET_ID, Concepts.OWL_AXIOM_REFERENCE_SET))
+						.must(getPartitionQuery(ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID, fromConceptId, toConceptId))
+				)
+				.withPageable(LARGE_PAGE).build(), ReferenceSetMember.class)) {
+			while (axioms.hasNext()) {
+				ReferenceSetMember axiomMember = axioms.next().getContent();
+				Set<Long> referencedConcepts = axiomConversionService.getReferencedConcepts(axiomMember.getAdditionalField(OWL_EXPRESSION));
+				Set<Long> badReferences = new HashSet<>(Sets.difference(referencedConcepts, activeConcepts));
+				if (!badReferences.isEmpty()) {
+					issues.axiomReferencedComponents.put(axiomMember.getId(), axiomMember.getReferencedComponentId());
+					issues.axiomBadReferences.put(axiomMember.getId(), badReferences);
 				}
 			}
+		} catch (ConversionException e) {
+			throw new ServiceException(FAILED_TO_DESERIALISE_AXIOM_DURING_REFERENCE_INTEGRITY_CHECK, e);
+		}
+		return issues;
+	}
+
+	/**
+	 * Splits the range of concept ids into partitions of roughly equal numbers of concepts.
+	 * Ids are compared as strings because concept id fields are keywords.
+	 * @return The lower bound of each partition except the first.
+	 */
+	static List<String> getPartitionBoundaries(Collection<Long> conceptIds, int partitions) {
+		List<String> sortedIds = conceptIds.stream().map(Object::toString).sorted().collect(Collectors.toList());
+		int partitionSize = sortedIds.size() / Math.max(partitions, 1);
+		List<String> boundaries = new ArrayList<>();
+		for (int i = 1; i < partitions && partitionSize > 0; i++) {
+			boundaries.add(sortedIds.get(i * partitionSize));
+		}
+		return boundaries;
+	}
+
+	private QueryBuilder getPartitionQuery(String field, String from, String to) {
+		if (from == null && to == null) {
+			return matchAllQuery();
+		}
+		RangeQueryBuilder rangeQuery = rangeQuery(field);
+		if (from != null) {
+			rangeQuery.gte(from);
 		}
+		if (to != null) {
+			rangeQuery.lt(to);
+		}
+		return rangeQuery;
+	}
 
-		timer.finish();
+	private static final class IntegrityIssues {
 
-		return getReport(axiomWithInactiveReferencedConcept, relationshipWithInactiveSource, relationshipWithInactiveType, relationshipWithInactiveDestination);
+		private final Map<Long, Long> relationshipWithInactiveSource = new Long2LongOpenHashMap();
+		private final Map<Long, Long> relationshipWithInactiveType = new Long2LongOpenHashMap();
+		private final Map<Long, Long> relationshipWithInactiveDestination = new Long2LongOpenHashMap();
+		private final Map<String, String> axiomReferencedComponents = new HashMap<>();
+		private final Map<String, Set<Long>> axiomBadReferences = new HashMap<>();
+
+		private void addAll(IntegrityIssues other) {
+			relationshipWithInactiveSource.putAll(other.relationshipWithInactiveSource);
+			relationshipWithInactiveType.putAll(other.relationshipWithInactiveType);
+			relationshipWithInactiveDestination.putAll(other.relationshipWithInactiveDestination);
+			axiomReferencedComponents.putAll(other.axiomReferencedComponents);
+			axiomBadReferences.putAll(other.axiomBadReferences);
+		}
 	}
 
 	private void addConceptMini(Map<String, ConceptMini> axiomsWithInactiveReferencedConcept, Map<String, ConceptMini> conceptMiniMap,
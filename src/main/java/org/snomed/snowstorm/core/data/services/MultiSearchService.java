@@ -26,6 +26,7 @@ import org.snomed.snowstorm.core.data.domain.CodeSystem;
 import org.snomed.snowstorm.core.data.domain.CodeSystemVersion;
 import org.snomed.snowstorm.core.data.domain.Concept;
 import org.snomed.snowstorm.core.data.domain.Description;
+import org.snomed.snowstorm.core.data.domain.PublishedDescription;
 import org.snomed.snowstorm.core.data.domain.ReferenceSetMember;
 import org.snomed.snowstorm.core.data.services.pojo.ConceptCriteria;
 import org.snomed.snowstorm.core.data.services.pojo.DescriptionCriteria;
@@ -44,19 +45,16 @@ import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilde
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
-import io.kaicode.elasticvc.api.CommitListener;
 import io.kaicode.elasticvc.api.PathUtil;
 import io.kaicode.elasticvc.api.VersionControlHelper;
 import io.kaicode.elasticvc.domain.Branch;
-import io.kaicode.elasticvc.domain.Commit;
-import io.kaicode.elasticvc.domain.Commit.CommitType;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 
 @Service
 /*
  * Service specifically for searching across multiple code systems or branches.
  */
-public class MultiSearchService implements CommitListener {
+public class MultiSearchService {
 
 	@Autowired
 	private DescriptionService descriptionService;
@@ -70,6 +68,9 @@ public class MultiSearchService implements CommitListener {
 	@Autowired
 	private VersionControlHelper versionControlHelper;
 
+	@Autowired
+	private PublishedDescriptionIndexService publishedDescriptionIndexService;
+
 	@Autowired
 	private ElasticsearchRestTemplate elasticsearchTemplate;
 	
@@ -78,25 +79,25 @@ public class MultiSearchService implements CommitListener {
 	Map<String, String> publishedBranches = new HashMap<>();
 	
 	BoolQueryBuilder cachedBranchesQuery = null;
+	Set<String> cachedPublishedVersionBranchPaths = null;
 	LocalDate cacheDate = null;
+	LocalDate publishedVersionsCheckDate = null;
 
 	public Page<Description> findDescriptions(DescriptionCriteria criteria, PageRequest pageRequest) {
-		
-		SearchHits<Description> searchHits = findDescriptionsHelper(criteria, pageRequest);
-		return new PageImpl<>(searchHits.get().map(SearchHit::getContent).collect(Collectors.toList()), pageRequest, searchHits.getTotalHits());
+		return findDescriptionsHelper(criteria, pageRequest);
 	}
 	
 	public PageWithBucketAggregations<Description> findDescriptionsReferenceSets(DescriptionCriteria criteria, PageRequest pageRequest) {
 
 		// all search results are required to determine total refset bucket membership
-		SearchHits<Description> allSearchHits = findDescriptionsHelper(criteria, null);
+		Page<Description> allDescriptions = findDescriptionsHelper(criteria, null);
 		// paged results are required for the list of descriptions returned
-		SearchHits<Description> searchHits = findDescriptionsHelper(criteria, pageRequest);
+		Page<Description> descriptions = findDescriptionsHelper(criteria, pageRequest);
 		
 		List<Aggregation> allAggregations = new ArrayList<>();
 		Set<Long> conceptIds = new HashSet<>();
-		for (SearchHit<Description> desc : allSearchHits) {
-			conceptIds.add(Long.parseLong(desc.getContent().getConceptId()));
+		for (Description desc : allDescriptions) {
+			conceptIds.add(Long.parseLong(desc.getConceptId()));
 		}
 		// Fetch concept refset membership aggregation
 		SearchHits<ReferenceSetMember> membershipResults = elasticsearchTemplate.search(new NativeSearchQueryBuilder()
@@ -113,10 +114,66 @@ public class MultiSearchService implements CommitListener {
 			allAggregations.add(aggregations.get("membership"));
 		}
 
-		return PageWithBucketAggregationsFactory.createPage(searchHits, new Aggregations(allAggregations), pageRequest);
+		return new PageWithBucketAggregations<>(descriptions.getContent(), pageRequest, descriptions.getTotalElements(),
+				PageWithBucketAggregationsFactory.createBuckets(new Aggregations(allAggregations)));
 	}
-	
-	private SearchHits<Description> findDescriptionsHelper(DescriptionCriteria criteria, PageRequest pageRequest) {
+
+	private Page<Description> findDescriptionsHelper(DescriptionCriteria criteria, PageRequest pageRequest) {
+		// The published description index only holds the latest published version of each code system
+		checkPublishedVersions();
+		Set<String> versionBranchPaths = getPublishedVersionBranchPaths();
+		if (publishedDescriptionIndexService.isIndexComplete(versionBranchPaths)) {
+			SearchHits<PublishedDescription> searchHits = findPublishedDescriptions(criteria, versionBranchPaths, pageRequest);
+			return toPage(searchHits.get().map(hit -> hit.getContent().toDescription()).collect(Collectors.toList()), pageRequest, searchHits.getTotalHits());
+		}
+		// Versions are still being indexed, search the version branches directly
+		SearchHits<Description> searchHits = findVersionDescriptions(criteria, pageRequest);
+		return toPage(searchHits.get().map(SearchHit::getContent).collect(Collectors.toList()), pageRequest, searchHits.getTotalHits());
+	}
+
+	private Page<Description> toPage(List<Description> descriptions, PageRequest pageRequest, long totalHits) {
+		return pageRequest != null ? new PageImpl<>(descriptions, pageRequest, totalHits) : new PageImpl<>(descriptions);
+	}
+
+	private SearchHits<PublishedDescription> findPublishedDescriptions(DescriptionCriteria criteria, Set<String> versionBranchPaths, PageRequest pageRequest) {
+		// Versions replaced since the last index update are excluded
+		final BoolQueryBuilder descriptionQuery = boolQuery()
+				.filter(termsQuery(PublishedDescription.Fields.VERSION_BRANCH_PATH, versionBranchPaths));
+
+		descriptionService.addTermClauses(criteria.getTerm(), criteria.getSearchMode(), criteria.getSearchLanguageCodes(), criteria.getType(), descriptionQuery);
+
+		Boolean active = criteria.getActive();
+		if (active != null) {
+			descriptionQuery.must(termQuery(PublishedDescription.Fields.ACTIVE, active));
+		}
+
+		Collection<String> modules = criteria.getModules();
+		if (!CollectionUtils.isEmpty(modules)) {
+			descriptionQuery.must(termsQuery(PublishedDescription.Fields.MODULE_ID, modules));
+		}
+
+		if (criteria.getConceptActive() != null) {
+			descriptionQuery.must(termQuery(PublishedDescription.Fields.CONCEPT_ACTIVE, criteria.getConceptActive()));
+		}
+
+		NativeSearchQueryBuilder queryBuilder;
+		// if pageRequest is null, get all (needed for bucket membership
+		if (pageRequest == null) {
+		  queryBuilder = new NativeSearchQueryBuilder()
+				.withQuery(descriptionQuery);
+		} else {
+		  queryBuilder = new NativeSearchQueryBuilder()
+						.withQuery(descriptionQuery)
+						.withPageable(pageRequest);
+		}
+		NativeSearchQuery query = queryBuilder.build();
+		query.setTrackTotalHits(true);
+		DescriptionService.addTermSort(query);
+
+		return elasticsearchTemplate.search(query, PublishedDescription.class);
+	}
+
+	private SearchHits<Description> findVersionDescriptions(DescriptionCriteria criteria, PageRequest pageRequest) {
 		final BoolQueryBuilder branchesQuery = getBranchesQuery();
 		final BoolQueryBuilder descriptionQuery = boolQuery()
 				.must(branchesQuery);
@@ -154,7 +211,6 @@ public class MultiSearchService implements CommitListener {
 		return elasticsearchTemplate.search(query, Description.class);
 	}
 
-
 	private Set<Long> getMatchedConcepts(Boolean conceptActiveFlag, BoolQueryBuilder branchesQuery, BoolQueryBuilder descriptionQuery) {
 		// return description and concept ids
 		Set<Long> conceptIdsMatched = new LongOpenHashSet();
@@ -164,7 +220,7 @@ public class MultiSearchService implements CommitListener {
 				.withPageable(ConceptService.LARGE_PAGE).build(), Description.class)) {
 			while (descriptions.hasNext()) {
 				conceptIdsMatched.add(Long.valueOf(descriptions.next().getContent().getConceptId()));
-		}
+			}
 		}
 		// filter description ids based on concept query results using active flag
 		Set<Long> result = new LongOpenHashSet();
@@ -185,17 +241,16 @@ public class MultiSearchService implements CommitListener {
 		return result;
 	}
 
-	private BoolQueryBuilder getBranchesQuery() {
+	private synchronized BoolQueryBuilder getBranchesQuery() {
 		LocalDate today = LocalDate.now();
 		if (cachedBranchesQuery == null || !cacheDate.equals(today)) {
 			long startTime = System.currentTimeMillis();
 			Set<String> branchPaths = getAllPublishedVersionBranchPaths();
-			//long endTime = System.currentTimeMillis();
-			//logger.info("Mutisearch finding published paths took " + (endTime - startTime) + "ms");
+			cachedPublishedVersionBranchPaths = branchPaths;
 			
-			cachedBranchesQuery = boolQuery();
+			BoolQueryBuilder branchesQuery = boolQuery();
 			if (branchPaths.isEmpty()) {
-				cachedBranchesQuery.must(termQuery("path", "this-will-match-nothing"));
+				branchesQuery.must(termQuery("path", "this-will-match-nothing"));
 			}
 			for (String branchPath : branchPaths) {
 				BoolQueryBuilder branchQuery = boolQuery();
@@ -204,15 +259,43 @@ public class MultiSearchService implements CommitListener {
 					branchQuery.mustNot(termQuery("path", Branch.MAIN));
 				}
 				branchQuery.must(versionControlHelper.getBranchCriteria(branchPath).getEntityBranchCriteria(Description.class));
-				cachedBranchesQuery.should(branchQuery);
+				branchesQuery.should(branchQuery);
 			}
+			cachedBranchesQuery = branchesQuery;
+			cacheDate = today;
 			long endTime = System.currentTimeMillis();
 			logger.info("Mutisearch branches query took " + (endTime - startTime) + "ms");
 		}
-		cacheDate = today;
 		return cachedBranchesQuery;
 	}
 
+	/**
+	 * Once a day checks in the background that the published description index holds the latest published version of each code system.
+	 * Versions can become visible by date so the version branches are searched until the check completes.
+	 * Code system version changes trigger the same check.
+	 */
+	private synchronized void checkPublishedVersions() {
+		LocalDate today = LocalDate.now();
+		if (!today.equals(publishedVersionsCheckDate)) {
+			publishedDescriptionIndexService.versionsChanged(codeSystemService::findAll);
+			publishedVersionsCheckDate = today;
+		}
+	}
+
+	/**
+	 * Clears the cached published versions. Called when a code system version is created or deleted.
+	 */
+	public synchronized void clearPublishedVersionsCache() {
+		cachedBranchesQuery = null;
+		cachedPublishedVersionBranchPaths = null;
+	}
+
+	private synchronized Set<String> getPublishedVersionBranchPaths() {
+		// Populated with the branches query
+		getBranchesQuery();
+		return cachedPublishedVersionBranchPaths;
+	}
+
 	public Set<String> getAllPublishedVersionBranchPaths() {
 		List<CodeSystem> codeSystems = codeSystemService.findAll();
 		Set<String> publishedVersionBranchPaths = new HashSet<>();
@@ -273,11 +356,4 @@ public class MultiSearchService implements CommitListener {
 				.collect(Collectors.toList());
 		return new PageImpl<>(concepts, pageRequest, searchHits.getTotalHits());
 	}
-
-	@Override
-	public void preCommitCompletion(Commit commit) throws IllegalStateException {
-		if (commit.getCommitType().equals(CommitType.CONTENT)) {
-			cachedBranchesQuery = null;
-		}
-	}
 }
@@ -0,0 +1,52 @@
+package org.snomed.snowstorm.core.data.services;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers for long running operations. Each timer is tagged with the outcome of the operation, success or failure.
+ */
+@Service
+public class OperationMetricsService {
+
+	public static final String IMPORT = "snowstorm.import";
+	public static final String EXPORT = "snowstorm.export";
+	public static final String CLASSIFICATION = "snowstorm.classification";
+	public static final String CLASSIFICATION_SAVE = "snowstorm.classification.save";
+	public static final String MERGE = "snowstorm.merge";
+	public static final String SEMANTIC_INDEX_UPDATE = "snowstorm.semantic-index.update";
+	public static final String COMMIT_LISTENER = "snowstorm.commit.listener";
+	public static final String COMPONENT_SAVE = "snowstorm.commit.component-save";
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	public Timer.Sample start() {
+		return meterRegistry != null ? Timer.start(meterRegistry) : Timer.start(Clock.SYSTEM);
+	}
+
+	public void stop(Timer.Sample sample, String timerName, boolean success, String... tags) {
+		if (meterRegistry != null) {
+			sample.stop(getTimer(timerName, success, tags));
+		}
+	}
+
+	public void record(String timerName, long durationMillis, boolean success, String... tags) {
+		if (meterRegistry != null) {
+			getTimer(timerName, success, tags).record(durationMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private Timer getTimer(String timerName, boolean success, String... tags) {
+		return Timer.builder(timerName)
+				.tags(tags)
+				.tag("outcome", success ? "success" : "failure")
+				.register(meterRegistry);
+	}
+
+}
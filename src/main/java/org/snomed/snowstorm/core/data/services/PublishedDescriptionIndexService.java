@@ -0,0 +1,301 @@
+package org.snomed.snowstorm.core.data.services;
+
+import com.google.common.collect.Iterables;
+import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.core.data.domain.CodeSystem;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.domain.Concepts;
+import org.snomed.snowstorm.core.data.domain.Description;
+import org.snomed.snowstorm.core.data.domain.PublishedDescription;
+import org.snomed.snowstorm.core.data.domain.PublishedDescriptionIndexLock;
+import org.snomed.snowstorm.core.data.domain.PublishedDescriptionVersion;
+import org.snomed.snowstorm.core.data.domain.ReferenceSetMember;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.elasticsearch.index.query.QueryBuilders.*;
+import static org.snomed.snowstorm.core.data.services.ConceptService.LARGE_PAGE;
+
+/**
+ * Maintains the published description index, a copy of the descriptions of the latest published version of each code system
+ * with the concept active flag and code system inline, so that descriptions can be searched across code systems with a single index query.
+ * Versions are indexed in the background when created. Versions missing from the index, for example after an upgrade, are also indexed in the background.
+ * A marker document is stored for each completely indexed version and the index is updated under a lock held in the store,
+ * so that Snowstorm instances sharing a store agree on the state of the index and do not update it at the same time.
+ * Until the index is known to be complete searches should use the version branches directly, see {@link #isIndexComplete(Set)}.
+ */
+@Service
+public class PublishedDescriptionIndexService {
+
+	private static final int SAVE_BATCH_SIZE = 5_000;
+	// The lock is renewed after each batch of descriptions is saved
+	private static final long LOCK_LEASE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+	private static final long LOCK_WAIT_PAUSE_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Autowired
+	private ElasticsearchRestTemplate elasticsearchTemplate;
+
+	private final ExecutorService backgroundIndexExecutorService = Executors.newSingleThreadExecutor();
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Indexes the descriptions of the version branch, replacing the published descriptions of any other version of the code system.
+	 * Only content of the code system itself is included. Content inherited from the code systems it depends on is found through their own versions.
+	 */
+	private void indexVersion(CodeSystem codeSystem, String versionBranchPath, PublishedDescriptionIndexLock lock) {
+		String codeSystemShortName = codeSystem.getShortName();
+		logger.info("Indexing published descriptions of {} version {}.", codeSystemShortName, versionBranchPath);
+		long start = System.currentTimeMillis();
+		deleteDescriptions(termQuery(PublishedDescription.Fields.VERSION_BRANCH_PATH, versionBranchPath));
+
+		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(versionBranchPath);
+		int saved = 0;
+		try (SearchHitsIterator<Description> descriptions = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(getVersionDescriptionQuery(codeSystem.getBranchPath(), branchCriteria))
+				.withPageable(LARGE_PAGE).build(), Description.class)) {
+
+			List<Description> batch = new ArrayList<>();
+			while (descriptions.hasNext()) {
+				batch.add(descriptions.next().getContent());
+				if (batch.size() == SAVE_BATCH_SIZE || !descriptions.hasNext()) {
+					saveBatch(batch, branchCriteria, codeSystemShortName, versionBranchPath);
+					saved += batch.size();
+					batch.clear();
+					renewLock(lock);
+				}
+			}
+		}
+		// Previous versions are removed once the new version is searchable
+		deleteDescriptions(boolQuery()
+				.must(termQuery(PublishedDescription.Fields.CODE_SYSTEM, codeSystemShortName))
+				.mustNot(termQuery(PublishedDescription.Fields.VERSION_BRANCH_PATH, versionBranchPath)));
+		deleteVersionMarkers(boolQuery()
+				.must(termQuery(PublishedDescriptionVersion.Fields.CODE_SYSTEM, codeSystemShortName))
+				.mustNot(idsQuery().addIds(versionBranchPath)));
+		elasticsearchTemplate.save(new PublishedDescriptionVersion(versionBranchPath, codeSystemShortName, saved));
+		elasticsearchTemplate.indexOps(PublishedDescriptionVersion.class).refresh();
+		logger.info("Indexed {} published descriptions of {} version {} in {} seconds.", saved, codeSystemShortName, versionBranchPath,
+				(System.currentTimeMillis() - start) / 1_000);
+	}
+
+	private void saveBatch(List<Description> descriptions, BranchCriteria branchCriteria, String codeSystemShortName, String versionBranchPath) {
+		Set<String> conceptIds = descriptions.stream().map(Description::getConceptId).collect(Collectors.toSet());
+		Set<String> activeConceptIds = new HashSet<>();
+		for (List<String> conceptIdsSegment : Iterables.partition(conceptIds, LARGE_PAGE.getPageSize())) {
+			try (SearchHitsIterator<Concept> concepts = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+					.withQuery(boolQuery()
+							.must(branchCriteria.getEntityBranchCriteria(Concept.class))
+							.must(termsQuery(Concept.Fields.CONCEPT_ID, conceptIdsSegment))
+							.must(termQuery(Concept.Fields.ACTIVE, true)))
+					.withFields(Concept.Fields.CONCEPT_ID)
+					.withPageable(LARGE_PAGE).build(), Concept.class)) {
+				concepts.forEachRemaining(hit -> activeConceptIds.add(hit.getContent().getConceptId()));
+			}
+		}
+		joinLangRefsetMembers(descriptions, branchCriteria);
+		elasticsearchTemplate.save(descriptions.stream()
+				.map(description -> new PublishedDescription(description, versionBranchPath, codeSystemShortName,
+						activeConceptIds.contains(description.getConceptId())))
+				.collect(Collectors.toList()));
+	}
+
+	private void joinLangRefsetMembers(List<Description> descriptions, BranchCriteria branchCriteria) {
+		Map<String, Description> descriptionIdMap = descriptions.stream().collect(Collectors.toMap(Description::getDescriptionId, description -> description));
+		for (List<String> descriptionIdsSegment : Iterables.partition(descriptionIdMap.keySet(), LARGE_PAGE.getPageSize())) {
+			try (SearchHitsIterator<ReferenceSetMember> members = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+					.withQuery(boolQuery()
+							.must(branchCriteria.getEntityBranchCriteria(ReferenceSetMember.class))
+							.must(termQuery(ReferenceSetMember.Fields.ACTIVE, true))
+							.must(termsQuery(ReferenceSetMember.LanguageFields.ACCEPTABILITY_ID_FIELD_PATH, Concepts.PREFERRED, Concepts.ACCEPTABLE))
+							.must(termsQuery(ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID, descriptionIdsSegment)))
+					.withPageable(LARGE_PAGE).build(), ReferenceSetMember.class)) {
+				members.forEachRemaining(hit -> {
+					ReferenceSetMember member = hit.getContent();
+					descriptionIdMap.get(member.getReferencedComponentId()).addLanguageRefsetMember(member);
+				});
+			}
+		}
+	}
+
+	/**
+	 * Removes all published descriptions of the code system.
+	 */
+	public synchronized void deleteCodeSystem(String codeSystemShortName) {
+		deleteVersionMarkers(termQuery(PublishedDescriptionVersion.Fields.CODE_SYSTEM, codeSystemShortName));
+		deleteDescriptions(termQuery(PublishedDescription.Fields.CODE_SYSTEM, codeSystemShortName));
+	}
+
+	public synchronized void deleteAll() {
+		deleteVersionMarkers(matchAllQuery());
+		deleteDescriptions(matchAllQuery());
+	}
+
+	private void deleteVersionMarkers(QueryBuilder query) {
+		elasticsearchTemplate.delete(new NativeSearchQueryBuilder().withQuery(query).build(), PublishedDescriptionVersion.class,
+				elasticsearchTemplate.getIndexCoordinatesFor(PublishedDescriptionVersion.class));
+		elasticsearchTemplate.indexOps(PublishedDescriptionVersion.class).refresh();
+	}
+
+	private void deleteDescriptions(QueryBuilder query) {
+		elasticsearchTemplate.delete(new NativeSearchQueryBuilder().withQuery(query).build(), PublishedDescription.class,
+				elasticsearchTemplate.getIndexCoordinatesFor(PublishedDescription.class));
+		elasticsearchTemplate.indexOps(PublishedDescription.class).refresh();
+	}
+
+	/**
+	 * @param versionBranchPaths	The branch paths of the latest published version of each code system.
+	 * @return true if every one of the versions has been completely indexed.
+	 */
+	public boolean isIndexComplete(Set<String> versionBranchPaths) {
+		if (versionBranchPaths.isEmpty()) {
+			return true;
+		}
+		return elasticsearchTemplate.count(new NativeSearchQueryBuilder()
+				.withQuery(idsQuery().addIds(versionBranchPaths.toArray(new String[]{}))).build(), PublishedDescriptionVersion.class) == versionBranchPaths.size();
+	}
+
+	/**
+	 * Brings the index in line with the published versions in the background.
+	 * Called when a code system version is created or deleted.
+	 */
+	public void versionsChanged(Supplier<List<CodeSystem>> codeSystemsSupplier) {
+		updateIndexInBackground(codeSystemsSupplier);
+	}
+
+	/**
+	 * Brings the index in line with the latest published version of each code system in the background.
+	 * Versions which are not completely indexed are indexed and versions which are no longer the latest are removed.
+	 * @param codeSystemsSupplier	Supplies the code systems with the latest version joined, called when the update runs.
+	 * @return Future which completes when the update, and any updates queued before it, have finished.
+	 */
+	public Future<?> updateIndexInBackground(Supplier<List<CodeSystem>> codeSystemsSupplier) {
+		return backgroundIndexExecutorService.submit(() -> {
+			try {
+				updateIndex(codeSystemsSupplier);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (RuntimeException e) {
+				logger.error("Failed to update the published description index.", e);
+			}
+		});
+	}
+
+	/**
+	 * Waits for any update by another instance to finish then updates the index while holding the lock.
+	 * Versions indexed by the other instance are not indexed again because their markers are found.
+	 */
+	synchronized void updateIndex(Supplier<List<CodeSystem>> codeSystemsSupplier) throws InterruptedException {
+		PublishedDescriptionIndexLock lock = acquireLock();
+		try {
+			Set<String> versionBranchPaths = new HashSet<>();
+			for (CodeSystem codeSystem : codeSystemsSupplier.get()) {
+				if (codeSystem.getLatestVersion() == null) {
+					continue;
+				}
+				String versionBranchPath = codeSystem.getLatestVersion().getBranchPath();
+				versionBranchPaths.add(versionBranchPath);
+				if (!elasticsearchTemplate.exists(versionBranchPath, PublishedDescriptionVersion.class)) {
+					indexVersion(codeSystem, versionBranchPath, lock);
+				}
+			}
+
+			deleteVersionMarkers(boolQuery().mustNot(idsQuery().addIds(versionBranchPaths.toArray(new String[]{}))));
+			deleteDescriptions(boolQuery().mustNot(termsQuery(PublishedDescription.Fields.VERSION_BRANCH_PATH, versionBranchPaths)));
+		} finally {
+			releaseLock(lock);
+		}
+	}
+
+	private PublishedDescriptionIndexLock acquireLock() throws InterruptedException {
+		String owner = UUID.randomUUID().toString();
+		while (true) {
+			PublishedDescriptionIndexLock lock = new PublishedDescriptionIndexLock(owner, System.currentTimeMillis() + LOCK_LEASE_MILLIS);
+			try {
+				// Create fails if another instance holds the lock
+				elasticsearchTemplate.index(new IndexQueryBuilder().withId(PublishedDescriptionIndexLock.ID).withObject(lock).withOpType(IndexQuery.OpType.CREATE).build(),
+						elasticsearchTemplate.getIndexCoordinatesFor(PublishedDescriptionIndexLock.class));
+				// Read back for the sequence number used when renewing
+				return elasticsearchTemplate.get(PublishedDescriptionIndexLock.ID, PublishedDescriptionIndexLock.class);
+			} catch (DataAccessException e) {
+				PublishedDescriptionIndexLock existing = elasticsearchTemplate.get(PublishedDescriptionIndexLock.ID, PublishedDescriptionIndexLock.class);
+				if (existing == null) {
+					// Released since the create was attempted
+					continue;
+				}
+				if (existing.getExpires() < System.currentTimeMillis()) {
+					logger.warn("Taking over expired published description index lock of {}.", existing.getOwner());
+					existing.setOwner(owner);
+					existing.setExpires(System.currentTimeMillis() + LOCK_LEASE_MILLIS);
+					try {
+						// Save fails if another instance took over the lock since it was read
+						elasticsearchTemplate.save(existing);
+						return existing;
+					} catch (OptimisticLockingFailureException e2) {
+						logger.debug("Published description index lock taken over by another instance.");
+					}
+				}
+			}
+			logger.info("Published description index is being updated by another instance, waiting.");
+			Thread.sleep(LOCK_WAIT_PAUSE_MILLIS);
+		}
+	}
+
+	private void renewLock(PublishedDescriptionIndexLock lock) {
+		lock.setExpires(System.currentTimeMillis() + LOCK_LEASE_MILLIS);
+		// Save fails if the lock expired and was taken over by another instance, which stops this update
+		elasticsearchTemplate.save(lock);
+	}
+
+	private void releaseLock(PublishedDescriptionIndexLock lock) {
+		try {
+			PublishedDescriptionIndexLock existing = elasticsearchTemplate.get(PublishedDescriptionIndexLock.ID, PublishedDescriptionIndexLock.class);
+			if (existing != null && existing.getOwner().equals(lock.getOwner())) {
+				elasticsearchTemplate.delete(PublishedDescriptionIndexLock.ID, PublishedDescriptionIndexLock.class);
+			}
+		} catch (DataAccessException e) {
+			logger.warn("Failed to release the published description index lock, it will expire.", e);
+		}
+	}
+
+	private BoolQueryBuilder getVersionDescriptionQuery(String codeSystemBranchPath, BranchCriteria branchCriteria) {
+		BoolQueryBuilder query = boolQuery().must(branchCriteria.getEntityBranchCriteria(Description.class));
+		if (!Branch.MAIN.equals(codeSystemBranchPath)) {
+			// Prevent content of the code systems this one depends on being found in every code system
+			query.must(boolQuery()
+					.should(termQuery("path", codeSystemBranchPath))
+					.should(prefixQuery("path", codeSystemBranchPath + "/")));
+		}
+		return query;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		backgroundIndexExecutorService.shutdown();
+	}
+}
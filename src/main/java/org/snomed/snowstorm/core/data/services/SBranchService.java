@@ -33,7 +33,9 @@ import static java.lang.String.format;
 import static org.elasticsearch.index.query.QueryBuilders.*;
 import static org.snomed.snowstorm.core.data.services.BranchMetadataHelper.AUTHOR_FLAGS_METADATA_KEY;
 import static org.snomed.snowstorm.core.data.services.BranchMetadataHelper.INTERNAL_METADATA_KEY;
+import static org.snomed.snowstorm.core.data.services.IntegrityService.INTEGRITY_ISSUE_AXIOMS_METADATA_KEY;
 import static org.snomed.snowstorm.core.data.services.IntegrityService.INTEGRITY_ISSUE_METADATA_KEY;
+import static org.snomed.snowstorm.core.data.services.IntegrityService.INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY;
 
 @Service
 // Snowstorm branch service has some methods in addition to the ElasticVC library service.
@@ -80,9 +82,17 @@ public class SBranchService {
 				final Boolean classificationStatus = BranchClassificationStatusService.getClassificationStatus(latest);
 				BranchClassificationStatusService.setClassificationStatus(metadata, classificationStatus != null && classificationStatus);
 
-				final String integrityFlag = latest.getMetadata().getMapOrCreate(INTERNAL_METADATA_KEY).get(INTEGRITY_ISSUE_METADATA_KEY);
+				final Map<String, String> parentInternalMetadata = latest.getMetadata().getMapOrCreate(INTERNAL_METADATA_KEY);
+				final String integrityFlag = parentInternalMetadata.get(INTEGRITY_ISSUE_METADATA_KEY);
 				if (Boolean.parseBoolean(integrityFlag)) {
-					metadata.getMapOrCreate(INTERNAL_METADATA_KEY).put(INTEGRITY_ISSUE_METADATA_KEY, integrityFlag);
+					final Map<String, String> internalMetadata = metadata.getMapOrCreate(INTERNAL_METADATA_KEY);
+					internalMetadata.put(INTEGRITY_ISSUE_METADATA_KEY, integrityFlag);
+					// The new branch starts with the same outstanding issues as its parent
+					for (String key : List.of(INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY, INTEGRITY_ISSUE_AXIOMS_METADATA_KEY)) {
+						if (parentInternalMetadata.containsKey(key)) {
+							internalMetadata.put(key, parentInternalMetadata.get(key));
+						}
+					}
 				}
 			}
 		}
@@ -7,6 +7,7 @@ import io.kaicode.elasticvc.api.*;
 import io.kaicode.elasticvc.domain.Branch;
 import io.kaicode.elasticvc.domain.Commit;
 import io.kaicode.elasticvc.domain.Entity;
+import io.micrometer.core.instrument.Timer;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.apache.commons.lang3.math.NumberUtils;
@@ -81,16 +82,24 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 	@Autowired
 	private MRCMLoader mrcmLoader;
 
+	@Autowired
+	private OperationMetricsService operationMetricsService;
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 
 	@Override
 	public void preCommitCompletion(Commit commit) throws IllegalStateException {
 		if (semanticIndexingEnabled) {
+			Timer.Sample timerSample = operationMetricsService.start();
+			boolean success = false;
 			try {
 				updateStatedAndInferredSemanticIndex(commit);
+				success = true;
 			} catch (ConversionException | GraphBuilderException | ServiceException e) {
 				throw new IllegalStateException("Failed to update semantic index. " + e.getMessage(), e);
+			} finally {
+				operationMetricsService.stop(timerSample, OperationMetricsService.SEMANTIC_INDEX_UPDATE, success, "type", commit.getCommitType().name());
 			}
 		} else {
 			logger.info("Semantic indexing is disabled.");
@@ -473,7 +482,7 @@ public class SemanticIndexUpdateService extends ComponentService implements Comm
 	}
 
 	private Map<String, ConcreteValue.DataType> getConcreteAttributeDataTypeMap(Commit commit) throws ServiceException {
-		MRCM mrcm = mrcmLoader.loadActiveMRCM(commit.getBranch().getPath(), versionControlHelper.getBranchCriteriaIncludingOpenCommit(commit));
+		MRCM mrcm = mrcmLoader.loadActiveMRCM(commit);
 		return mrcm.getAttributeRanges().stream().filter(r -> r.getDataType() != null)
 				.collect(Collectors.toMap(AttributeRange::getReferencedComponentId, AttributeRange::getDataType, (r1, r2) -> r2));
 	}
@@ -0,0 +1,65 @@
+package org.snomed.snowstorm.core.data.services;
+
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.core.data.domain.CodeSystem;
+import org.snomed.snowstorm.mrcm.MRCMService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import static org.snomed.snowstorm.config.Config.DEFAULT_LANGUAGE_DIALECTS;
+
+/**
+ * Loads the branch criteria, MRCM and concept model attribute hierarchy of the latest version of each code system on startup
+ * so that the first requests against published content do not pay for building them.
+ */
+@Service
+public class VersionBranchWarmUpService {
+
+	@Value("${cache.version-branches.warm-up.enabled}")
+	private boolean warmUpEnabled;
+
+	@Autowired
+	private CodeSystemService codeSystemService;
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Autowired
+	private MRCMService mrcmService;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void warmUpLatestVersions() {
+		if (!warmUpEnabled) {
+			return;
+		}
+		new Thread(() -> {
+			try {
+				for (CodeSystem codeSystem : codeSystemService.findAll()) {
+					if (codeSystem.getLatestVersion() != null) {
+						warmUp(codeSystem.getLatestVersion().getBranchPath());
+					}
+				}
+				logger.info("Caches warmed up for the latest code system versions.");
+			} catch (RuntimeException e) {
+				logger.warn("Failed to warm up caches for the latest code system versions.", e);
+			}
+		}, "version-branch-warm-up").start();
+	}
+
+	void warmUp(String versionBranchPath) {
+		try {
+			versionControlHelper.getBranchCriteria(versionBranchPath);
+			mrcmService.loadActiveMRCMFromCache(versionBranchPath);
+			mrcmService.retrieveConceptModelAttributeHierarchy(versionBranchPath, DEFAULT_LANGUAGE_DIALECTS);
+		} catch (ServiceException | RuntimeException e) {
+			logger.warn("Failed to warm up caches for version branch {}.", versionBranchPath, e);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package org.snomed.snowstorm.core.data.services;
+
+import com.google.common.collect.Iterables;
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
+import io.kaicode.elasticvc.domain.DomainEntity;
+import io.kaicode.elasticvc.repositories.BranchRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.core.data.domain.SnomedComponent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
+import static org.elasticsearch.index.query.QueryBuilders.termsQuery;
+
+/**
+ * Keeps the versionsReplaced sets of long-lived branches small. Every entry is added to the must-not clause of the branch criteria,
+ * so queries on a branch get slower as the sets grow.
+ * An entry is redundant when the document it hides can never be visible on the branch: the document no longer exists,
+ * is on a branch which is not the branch or one of its ancestors, or has been ended at or before the point the branch sees that path.
+ * Ended documents can not become visible again by rebasing because the branch base only moves forward.
+ * Redundant entries are removed from the latest branch version in place, while the branch is locked, without creating a new commit.
+ */
+@Service
+public class VersionsReplacedCompactionService {
+
+	private static final int BATCH_SIZE = 1_000;
+
+	@Value("${versions-replaced.compaction.enabled}")
+	private boolean compactionEnabled;
+
+	@Value("${versions-replaced.compaction.threshold}")
+	private int compactionThreshold;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private BranchRepository branchRepository;
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Autowired
+	private BranchMetadataHelper branchMetadataHelper;
+
+	@Autowired
+	private DomainEntityConfiguration domainEntityConfiguration;
+
+	@Autowired
+	private ElasticsearchOperations elasticsearchOperations;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@Scheduled(fixedDelayString = "${versions-replaced.compaction.schedule}", initialDelay = 300_000)
+	public synchronized void compactLargeVersionsReplaced() {
+		if (!compactionEnabled) {
+			return;
+		}
+		for (Branch branch : branchService.findAll()) {
+			if (getVersionsReplacedCount(branch) >= compactionThreshold && !branch.isLocked()) {
+				try {
+					compactVersionsReplaced(branch.getPath());
+				} catch (IllegalStateException e) {
+					logger.info("Skipping versionsReplaced compaction of {}. {}", branch.getPath(), e.getMessage());
+				} catch (Exception e) {
+					logger.error("Failed to compact versionsReplaced of {}.", branch.getPath(), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes redundant entries from the versionsReplaced sets of the latest version of the branch.
+	 * @return number of entries removed per entity type
+	 * @throws IllegalStateException if the branch is locked
+	 */
+	public Map<String, Integer> compactVersionsReplaced(String path) {
+		branchService.lockBranch(path, branchMetadataHelper.getBranchLockMetadata("Compacting versionsReplaced."));
+		try {
+			Branch latest = branchService.findBranchOrThrow(path);
+			List<Branch> timeSlice = versionControlHelper.getTimeSlice(path, latest.getHead());
+			Map<String, Set<String>> versionsReplaced = latest.getVersionsReplaced();
+			int sizeBefore = getVersionsReplacedCount(latest);
+
+			Map<String, Integer> removedCounts = new TreeMap<>();
+			for (Class<? extends DomainEntity<?>> type : domainEntityConfiguration.getAllDomainEntityTypes()) {
+				Set<String> versionsReplacedForType = versionsReplaced.get(type.getSimpleName());
+				if (versionsReplacedForType == null || versionsReplacedForType.isEmpty()) {
+					continue;
+				}
+				Set<String> redundant = findRedundantEntries(type, versionsReplacedForType, timeSlice);
+				if (!redundant.isEmpty()) {
+					versionsReplacedForType.removeAll(redundant);
+					removedCounts.put(type.getSimpleName(), redundant.size());
+				}
+			}
+
+			if (!removedCounts.isEmpty()) {
+				latest.setVersionsReplaced(versionsReplaced);
+				branchRepository.save(latest);
+				if (versionControlHelper instanceof CachingVersionControlHelper) {
+					((CachingVersionControlHelper) versionControlHelper).evict(path);
+				}
+			}
+			logger.info("Compacted versionsReplaced of {} from {} to {} entries. Removed {}", path, sizeBefore, getVersionsReplacedCount(latest), removedCounts);
+			return removedCounts;
+		} finally {
+			branchService.unlock(path);
+		}
+	}
+
+	private Set<String> findRedundantEntries(Class<? extends DomainEntity<?>> type, Set<String> versionsReplaced, List<Branch> timeSlice) {
+		Set<String> redundant = new HashSet<>();
+		for (List<String> batch : Iterables.partition(versionsReplaced, BATCH_SIZE)) {
+			Set<String> found = new HashSet<>();
+			try (SearchHitsIterator<? extends DomainEntity<?>> stream = elasticsearchOperations.searchForStream(new NativeSearchQueryBuilder()
+					.withQuery(termsQuery("_id", batch))
+					.withFields(SnomedComponent.Fields.PATH, "start", SnomedComponent.Fields.END)
+					.withPageable(LARGE_PAGE)
+					.build(), type)) {
+				stream.forEachRemaining(hit -> {
+					found.add(hit.getId());
+					if (canNeverBeVisible(hit, timeSlice)) {
+						redundant.add(hit.getId());
+					}
+				});
+			}
+			batch.stream().filter(id -> !found.contains(id)).forEach(redundant::add);
+		}
+		return redundant;
+	}
+
+	private boolean canNeverBeVisible(SearchHit<? extends DomainEntity<?>> hit, List<Branch> timeSlice) {
+		DomainEntity<?> entity = hit.getContent();
+		for (Branch branchVersion : timeSlice) {
+			if (branchVersion.getPath().equals(entity.getPath())) {
+				return entity.getEnd() != null && !entity.getEnd().after(branchVersion.getStart());
+			}
+		}
+		// Not on this branch or an ancestor
+		return true;
+	}
+
+	private static int getVersionsReplacedCount(Branch branch) {
+		Map<String, Set<String>> versionsReplaced = branch.getVersionsReplaced();
+		return versionsReplaced == null ? 0 : versionsReplaced.values().stream().mapToInt(Set::size).sum();
+	}
+
+}
@@ -7,6 +7,7 @@ import io.kaicode.elasticvc.api.VersionControlHelper;
 import io.kaicode.elasticvc.domain.Branch;
 import io.kaicode.elasticvc.domain.Commit;
 import io.kaicode.elasticvc.domain.Metadata;
+import io.micrometer.core.instrument.Timer;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.Strings;
@@ -75,6 +76,12 @@ public class ClassificationService {
 	@Value("${classification-service.job.abort-after-minutes}")
 	private int abortRemoteClassificationAfterMinutes;
 
+	@Value("${classification-service.export.streaming}")
+	private boolean streamingExport;
+
+	@Value("${classification-service.incremental.enabled}")
+	private boolean incrementalClassification;
+
 	@Autowired
 	private ElasticsearchOperations elasticsearchOperations;
 
@@ -113,6 +120,12 @@ public class ClassificationService {
 	@Autowired
 	private RelationshipService relationshipService;
 
+	@Autowired
+	private OperationMetricsService operationMetricsService;
+
+	@Autowired
+	private IncrementalClassificationService incrementalClassificationService;
+
 	private final List<Classification> classificationsInProgress;
 	private final Map<String, SecurityContext> classificationUserIdToUserContextMap;
 
@@ -249,6 +262,8 @@ public class ClassificationService {
 
 									classificationRepository.save(classification);
 									logger.info("Classification {} {} after {} seconds.", classification.getId(), classification.getStatus(), getSecondsSince(classification.getCreationDate()));
+									operationMetricsService.record(OperationMetricsService.CLASSIFICATION, new Date().getTime() - classification.getCreationDate().getTime(),
+											classification.getStatus() == COMPLETED, "mode", "remote");
 								});
 							}
 							if (shutdownRequested) {
@@ -336,9 +351,23 @@ public class ClassificationService {
 			throw new IllegalStateException("Missing branch metadata for " + BranchMetadataKeys.PREVIOUS_PACKAGE + " or " + BranchMetadataKeys.DEPENDENCY_PACKAGE);
 		}
 
+		if (incrementalClassification) {
+			Classification previous = incrementalClassificationService.findReusableClassification(path, reasonerId);
+			if (previous != null) {
+				return incrementalClassificationService.reuseResults(previous, classification);
+			}
+		}
+
 		try {
-			File deltaExport = exportService.exportRF2ArchiveFile(path, new SimpleDateFormat("yyyyMMdd").format(new Date()), RF2Type.DELTA, true);
-			String remoteClassificationId = serviceClient.createClassification(previousPackage, dependencyPackage, deltaExport, path, reasonerId);
+			String filenameEffectiveDate = new SimpleDateFormat("yyyyMMdd").format(new Date());
+			String remoteClassificationId;
+			if (streamingExport) {
+				remoteClassificationId = serviceClient.createClassification(previousPackage, dependencyPackage,
+						outputStream -> exportService.exportClassificationInput(path, filenameEffectiveDate, outputStream), path, reasonerId);
+			} else {
+				File deltaExport = exportService.exportRF2ArchiveFile(path, filenameEffectiveDate, RF2Type.DELTA, true);
+				remoteClassificationId = serviceClient.createClassification(previousPackage, dependencyPackage, deltaExport, path, reasonerId);
+			}
 			classification.setId(remoteClassificationId);
 			classification.setStatus(ClassificationStatus.SCHEDULED);
 			classificationRepository.save(classification);
@@ -357,6 +386,8 @@ public class ClassificationService {
 
 	@Async
 	public void saveClassificationResultsToBranch(String path, String classificationId, SecurityContext securityContext) {
+		Timer.Sample timerSample = operationMetricsService.start();
+		boolean success = false;
 		try {
 			SecurityContextHolder.setContext(securityContext);
 			Classification classification = classificationSaveStatusCheck(path, classificationId);
@@ -447,8 +478,10 @@ public class ClassificationService {
 			}
 
 			classificationRepository.save(classification);
+			success = classification.getStatus() == SAVED;
 		} finally {
 			SecurityContextHolder.clearContext();
+			operationMetricsService.stop(timerSample, OperationMetricsService.CLASSIFICATION_SAVE, success);
 		}
 	}
 
@@ -0,0 +1,214 @@
+package org.snomed.snowstorm.core.data.services.classification;
+
+import com.google.common.collect.Iterables;
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.core.data.domain.*;
+import org.snomed.snowstorm.core.data.domain.classification.Classification;
+import org.snomed.snowstorm.core.data.domain.classification.ClassificationStatus;
+import org.snomed.snowstorm.core.data.domain.classification.EquivalentConcepts;
+import org.snomed.snowstorm.core.data.domain.classification.RelationshipChange;
+import org.snomed.snowstorm.core.data.repositories.ClassificationRepository;
+import org.snomed.snowstorm.core.data.repositories.classification.EquivalentConceptsRepository;
+import org.snomed.snowstorm.core.data.repositories.classification.RelationshipChangeRepository;
+import org.snomed.snowstorm.core.data.services.OperationMetricsService;
+import org.snomed.snowstorm.core.rf2.export.ExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
+import static org.elasticsearch.index.query.QueryBuilders.*;
+
+/**
+ * Avoids a remote classification when nothing the reasoner uses has changed on a branch since it was last classified.
+ * The classification input is the concepts, relationships and members of the reference sets exported for classification visible on the branch.
+ * If none of these have been added, changed or hidden on the branch since the latest completed classification, and the branch has not been
+ * rebased since, the results of that classification still apply and are copied to the new classification.
+ * This is common on task branches where only descriptions or refset members are edited between classifications.
+ */
+@Service
+public class IncrementalClassificationService {
+
+	private static final int BATCH_SIZE = 1_000;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private ClassificationRepository classificationRepository;
+
+	@Autowired
+	private RelationshipChangeRepository relationshipChangeRepository;
+
+	@Autowired
+	private EquivalentConceptsRepository equivalentConceptsRepository;
+
+	@Autowired
+	private ElasticsearchOperations elasticsearchOperations;
+
+	@Autowired
+	private OperationMetricsService operationMetricsService;
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Autowired
+	private ExportService exportService;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * @return the latest completed classification of the branch if its results still apply to the branch head, otherwise null.
+	 */
+	public Classification findReusableClassification(String path, String reasonerId) {
+		SearchHits<Classification> searchHits = elasticsearchOperations.search(new NativeSearchQueryBuilder()
+				.withQuery(boolQuery()
+						.must(termQuery(Classification.Fields.PATH, path))
+						.must(termQuery(Classification.Fields.STATUS, ClassificationStatus.COMPLETED.name()))
+						.must(termQuery(Classification.Fields.REASONER_ID, reasonerId)))
+				.withSort(SortBuilders.fieldSort(Classification.Fields.CREATION_DATE).order(SortOrder.DESC))
+				.withPageable(PageRequest.of(0, 1))
+				.build(), Classification.class);
+		if (searchHits.isEmpty()) {
+			return null;
+		}
+		Classification previous = searchHits.getSearchHit(0).getContent();
+		Date classifiedHead = previous.getLastCommitDate();
+		Branch latest = branchService.findLatest(path);
+		if (classifiedHead == null || latest == null || classifiedHead.after(latest.getHead())) {
+			return null;
+		}
+		if (classifiedHead.equals(latest.getHead())) {
+			return previous;
+		}
+
+		Branch classifiedVersion = branchService.findAtTimepointOrThrow(path, classifiedHead);
+		if (!classifiedVersion.getBase().equals(latest.getBase())) {
+			// Rebased, content from the parent may have changed
+			return null;
+		}
+		if (classificationInputChanged(latest, classifiedVersion)) {
+			return null;
+		}
+		return previous;
+	}
+
+	/**
+	 * Completes the new classification using the results of the previous classification.
+	 */
+	public Classification reuseResults(Classification previous, Classification classification) {
+		classification.setId(UUID.randomUUID().toString());
+		logger.info("Classification input of {} unchanged since classification {}, reusing results for classification {}.",
+				classification.getPath(), previous.getId(), classification.getId());
+
+		copyResults(RelationshipChange.class, previous.getId(), change -> {
+			change.setInternalId(null);
+			change.setClassificationId(classification.getId());
+		}, relationshipChangeRepository::saveAll);
+		copyResults(EquivalentConcepts.class, previous.getId(), equivalentConcepts -> {
+			equivalentConcepts.setInternalId(null);
+			equivalentConcepts.setClassificationId(classification.getId());
+		}, equivalentConceptsRepository::saveAll);
+
+		classification.setStatus(ClassificationStatus.COMPLETED);
+		classification.setInferredRelationshipChangesFound(previous.getInferredRelationshipChangesFound());
+		classification.setRedundantStatedRelationshipsFound(previous.getRedundantStatedRelationshipsFound());
+		classification.setEquivalentConceptsFound(previous.getEquivalentConceptsFound());
+		classification.setCompletionDate(new Date());
+		classificationRepository.save(classification);
+
+		Branch latest = branchService.findLatest(classification.getPath());
+		if (latest.getHead().equals(classification.getLastCommitDate())) {
+			boolean classified = !Boolean.TRUE.equals(classification.getInferredRelationshipChangesFound()) && !Boolean.TRUE.equals(classification.getEquivalentConceptsFound());
+			BranchClassificationStatusService.setClassificationStatus(latest, classified);
+			branchService.updateMetadata(latest.getPath(), latest.getMetadata());
+		}
+		operationMetricsService.record(OperationMetricsService.CLASSIFICATION, new Date().getTime() - classification.getCreationDate().getTime(), true,
+				"mode", "incremental");
+		return classification;
+	}
+
+	private boolean classificationInputChanged(Branch latest, Branch classifiedVersion) {
+		long classifiedHead = classifiedVersion.getHead().getTime();
+		QueryBuilder classificationMemberQuery = getClassificationMemberQuery(latest);
+
+		// Versions created or ended on the branch itself
+		BoolQueryBuilder changedOnBranch = boolQuery()
+				.must(termQuery(SnomedComponent.Fields.PATH, latest.getPath()))
+				.must(boolQuery()
+						.should(rangeQuery("start").gt(classifiedHead))
+						.should(rangeQuery(SnomedComponent.Fields.END).gt(classifiedHead)));
+		if (anyMatch(changedOnBranch, Concept.class)
+				|| anyMatch(changedOnBranch, Relationship.class)
+				|| anyMatch(boolQuery().must(changedOnBranch).must(classificationMemberQuery), ReferenceSetMember.class)) {
+			return true;
+		}
+
+		// Versions from ancestor branches hidden on the branch since
+		if (!getNewlyReplaced(latest, classifiedVersion, Concept.class).isEmpty()
+				|| !getNewlyReplaced(latest, classifiedVersion, Relationship.class).isEmpty()) {
+			return true;
+		}
+		for (List<String> batch : Iterables.partition(getNewlyReplaced(latest, classifiedVersion, ReferenceSetMember.class), BATCH_SIZE)) {
+			if (anyMatch(boolQuery().must(termsQuery("_id", batch)).must(classificationMemberQuery), ReferenceSetMember.class)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Members exported for classification, using the same reference sets as the classification export.
+	// Axiom members are always included in case the OWL reference sets are missing from the reference set hierarchy.
+	private QueryBuilder getClassificationMemberQuery(Branch branch) {
+		return boolQuery()
+				.should(existsQuery(ReferenceSetMember.OwlExpressionFields.OWL_EXPRESSION_FIELD_PATH))
+				.should(termsQuery(ReferenceSetMember.Fields.REFSET_ID, exportService.findRefsetIdsRequiredForClassification(versionControlHelper.getBranchCriteria(branch))));
+	}
+
+	private Set<String> getNewlyReplaced(Branch latest, Branch classifiedVersion, Class<?> type) {
+		Set<String> replaced = new HashSet<>(latest.getVersionsReplaced().getOrDefault(type.getSimpleName(), Collections.emptySet()));
+		replaced.removeAll(classifiedVersion.getVersionsReplaced().getOrDefault(type.getSimpleName(), Collections.emptySet()));
+		return replaced;
+	}
+
+	private boolean anyMatch(QueryBuilder query, Class<?> type) {
+		return elasticsearchOperations.count(new NativeSearchQueryBuilder().withQuery(query).build(), type) > 0;
+	}
+
+	private <T> void copyResults(Class<T> type, String classificationId, Consumer<T> update, Consumer<List<T>> save) {
+		List<T> batch = new ArrayList<>();
+		try (SearchHitsIterator<T> stream = elasticsearchOperations.searchForStream(new NativeSearchQueryBuilder()
+				.withQuery(termQuery("classificationId", classificationId))
+				.withPageable(LARGE_PAGE)
+				.build(), type)) {
+			stream.forEachRemaining(hit -> {
+				T result = hit.getContent();
+				update.accept(result);
+				batch.add(result);
+				if (batch.size() == BATCH_SIZE) {
+					save.accept(batch);
+					batch.clear();
+				}
+			});
+		}
+		if (!batch.isEmpty()) {
+			save.accept(batch);
+		}
+	}
+
+}
@@ -5,11 +5,15 @@ import org.elasticsearch.common.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.snowstorm.core.data.services.classification.pojo.ClassificationStatusResponse;
+import org.snomed.snowstorm.core.rf2.export.ExportException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
@@ -17,10 +21,17 @@ import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PreDestroy;
 import java.io.*;
 import java.nio.file.Files;
 import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 @Service
 class RemoteClassificationServiceClient {
@@ -28,6 +39,11 @@ class RemoteClassificationServiceClient {
 	private final RestTemplate restTemplate;
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 	private final String messageStatusDestination;
+	// Runs the export with the security context of the caller so that the branch lock records the user
+	private final ExecutorService deltaExportExecutor = new DelegatingSecurityContextExecutorService(Executors.newCachedThreadPool());
+
+	// Lets the export run ahead of the upload a little
+	private static final int PIPE_BUFFER_SIZE = 1024 * 1024;
 
 	private static final HttpHeaders MULTIPART_HEADERS = new HttpHeaders();
 	static {
@@ -45,9 +61,16 @@ class RemoteClassificationServiceClient {
 		restTemplate = new RestTemplateBuilder()
 				.rootUri(serviceUrl)
 				.basicAuthentication(serviceUsername, servicePassword)
+				// Stream request bodies rather than holding the whole RF2 delta in memory
+				.bufferRequestBody(false)
 				.build();
 	}
 
+	@PreDestroy
+	public void shutdown() {
+		deltaExportExecutor.shutdownNow();
+	}
+
 	/**
 	 *
 	 * @param previousPackage The name of the previous RF2 snapshot archive.
@@ -59,6 +82,95 @@ class RemoteClassificationServiceClient {
 	 * @throws RestClientException if something goes wrong when communicating with the remote service.
 	 */
 	String createClassification(String previousPackage, String dependencyPackage, File deltaFile, String branchPath, String reasonerId) throws RestClientException {
+		return createClassification(previousPackage, dependencyPackage, new FileSystemResource(deltaFile), branchPath, reasonerId);
+	}
+
+	/**
+	 * Creates a classification while the RF2 delta is still being written. The delta writer is run in another thread and its output
+	 * is piped into the body of the request to the remote service.
+	 *
+	 * @param deltaWriter Writes the RF2 delta archive of the content to be classified to the given stream and closes the stream.
+	 * @return remoteClassificationId The identifier of the classification run on the remote service.
+	 * @throws RestClientException if something goes wrong when communicating with the remote service.
+	 * @throws ExportException if the RF2 delta could not be written.
+	 */
+	String createClassification(String previousPackage, String dependencyPackage, Consumer<OutputStream> deltaWriter, String branchPath, String reasonerId)
+			throws RestClientException, ExportException {
+
+		PipedInputStream pipedInputStream = new PipedInputStream(PIPE_BUFFER_SIZE);
+		PipedOutputStream pipedOutputStream;
+		try {
+			pipedOutputStream = new PipedOutputStream(pipedInputStream);
+		} catch (IOException e) {
+			throw new ExportException("Failed to open stream for RF2 delta.", e);
+		}
+
+		AtomicReference<RuntimeException> writeFailure = new AtomicReference<>();
+		Future<?> writeFuture = deltaExportExecutor.submit(() -> {
+			try {
+				deltaWriter.accept(pipedOutputStream);
+			} catch (RuntimeException e) {
+				writeFailure.set(e);
+			} finally {
+				closeQuietly(pipedOutputStream);
+			}
+		});
+
+		// A failed export must fail the upload rather than end the archive early
+		InputStream deltaStream = new FilterInputStream(pipedInputStream) {
+			@Override
+			public int read() throws IOException {
+				return checkWriteFailure(super.read());
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return checkWriteFailure(super.read(b, off, len));
+			}
+
+			private int checkWriteFailure(int read) throws IOException {
+				if (read == -1 && writeFailure.get() != null) {
+					throw new IOException("Failed to write RF2 delta.", writeFailure.get());
+				}
+				return read;
+			}
+		};
+		Resource deltaResource = new InputStreamResource(deltaStream) {
+			@Override
+			public String getFilename() {
+				return "rf2-delta.zip";
+			}
+
+			@Override
+			public long contentLength() {
+				// Unknown, the request body is chunked
+				return -1;
+			}
+		};
+
+		try {
+			return createClassification(previousPackage, dependencyPackage, deltaResource, branchPath, reasonerId);
+		} catch (RestClientException e) {
+			RuntimeException exportException = writeFailure.get();
+			if (exportException != null) {
+				exportException.addSuppressed(e);
+				throw exportException;
+			}
+			throw e;
+		} finally {
+			// Stops the export if the request ended before reading all of it
+			closeQuietly(pipedInputStream);
+			try {
+				writeFuture.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				logger.error("RF2 delta export thread failed.", e);
+			}
+		}
+	}
+
+	private String createClassification(String previousPackage, String dependencyPackage, Resource rf2Delta, String branchPath, String reasonerId) throws RestClientException {
 		MultiValueMap<String, Object> params = new LinkedMultiValueMap<>();
 		if (Strings.hasLength(previousPackage)) {
 			params.put("previousPackage", Collections.singletonList(previousPackage));
@@ -66,7 +178,7 @@ class RemoteClassificationServiceClient {
 		if (Strings.hasLength(dependencyPackage)) {
 			params.put("dependencyPackage", Collections.singletonList(dependencyPackage));
 		}
-		params.put("rf2Delta", Collections.singletonList(new FileSystemResource(deltaFile)));
+		params.put("rf2Delta", Collections.singletonList(rf2Delta));
 		params.put("branch", Collections.singletonList(branchPath));
 		params.put("reasonerId", Collections.singletonList(reasonerId));
 
@@ -106,4 +218,12 @@ class RemoteClassificationServiceClient {
 			}
 		};
 	}
+
+	private void closeQuietly(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			logger.debug("Failed to close stream.", e);
+		}
+	}
 }
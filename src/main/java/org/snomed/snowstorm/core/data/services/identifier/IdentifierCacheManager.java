@@ -11,17 +11,20 @@ import org.springframework.beans.factory.annotation.Value;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public class IdentifierCacheManager implements Runnable {
-
-	// Time between successive polls in minutes
-	private int pollingIntervalMinutes = 10;
+/**
+ * Holds caches of identifiers reserved in advance for each namespace and partition.
+ * A cache is topped up in the background as soon as a request takes it below the top up level, rather than on a schedule.
+ */
+public class IdentifierCacheManager {
 
 	// Wait max to have access to cache
 	private int lockWaitLimitMilliseconds = 5 * 1000;
 	private int lockRetryMilliseconds = 200;
 
-	// Proportion below which cache will be topped up on next poll
+	// Proportion below which cache will be topped up in the background
 	final static double topUpLevel = 0.7;
 
 	// Proportion below which cache will be topped up during next bulk request
@@ -35,9 +38,7 @@ public class IdentifierCacheManager implements Runnable {
 
 	// Separate cache for each namespace/partition combination configured.
 	private Set<IdentifierCache> identifierCaches = Collections.synchronizedSet(new HashSet<>());
-	private Thread cacheDaemon;
-	private boolean stayAlive = true;
-	boolean isSleeping = false;
+	private ExecutorService topUpExecutorService;
 
 	private static final Logger logger = LoggerFactory.getLogger(IdentifierCacheManager.class);
 
@@ -46,12 +47,13 @@ public class IdentifierCacheManager implements Runnable {
 	}
 
 	@PostConstruct
-	public void startBackgroundTask() {
-		if (cacheDaemon != null) {
-			throw new IllegalStateException("Unable to start a second Identifier cache manager daemon");
+	public synchronized void startBackgroundTask() {
+		if (topUpExecutorService != null) {
+			throw new IllegalStateException("Unable to start a second Identifier cache manager top-up executor");
 		}
-		cacheDaemon = new Thread(this, "IdentifierCacheManagerDaemon");
-		cacheDaemon.start();
+		topUpExecutorService = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "IdentifierCacheManagerTopUp"));
+		// Fill the caches on startup, after that each cache is topped up when a request takes it below the top up level
+		topUpExecutorService.submit(this::checkTopUpRequired);
 	}
 
 	@PreDestroy
@@ -59,32 +61,6 @@ public class IdentifierCacheManager implements Runnable {
 		stopBackgroundTask();
 	}
 
-	public void run() {
-		logger.info("Identifier cache manager polling commencing with {} second period.", pollingIntervalMinutes);
-		long pollingIntervalMillis = pollingIntervalMinutes * (long)1000;
-		while (stayAlive) {
-			Date timePollStarted = new Date();
-			checkTopUpRequired();
-			Date timePollCompleted = new Date();
-			//Have we exceeded a polling interval?
-			long timeTaken = timePollCompleted.getTime() - timePollStarted.getTime();
-			if (timeTaken > pollingIntervalMillis) {
-				logger.warn("Identifier cache top ups took longer than polling interval: {}ms", timeTaken);
-			} else {
-				long timeRemaining = pollingIntervalMillis - timeTaken;
-				try {
-					isSleeping = true;
-					//Don't mind being interrupted while sleeping.
-					Thread.sleep(timeRemaining);
-					isSleeping = false;
-				} catch (InterruptedException e) {
-					logger.info("Identifier cache manager sleep interrupted.");
-				}
-			}
-		}
-		logger.info("Identifier cache manager polling stopped.");
-	}
-	
 	public boolean topUpInProgress() {
 		for (IdentifierCache thisCache : identifierCaches) {
 			if (thisCache.isTopUpInProgress()) {
@@ -98,7 +74,7 @@ public class IdentifierCacheManager implements Runnable {
 		try {
 			//Work through each cache and see if number of identifiers is below top up level
 			for (IdentifierCache thisCache : identifierCaches) {
-				if ((double)thisCache.identifiersAvailable() < (double)thisCache.getMaxCapacity() * topUpLevel) {
+				if (isBelowTopUpLevel(thisCache)) {
 					topUp(thisCache, 0);
 				}
 			}
@@ -107,6 +83,21 @@ public class IdentifierCacheManager implements Runnable {
 		}
 	}
 
+	private boolean isBelowTopUpLevel(IdentifierCache cache) {
+		return (double)cache.identifiersAvailable() < (double)cache.getMaxCapacity() * topUpLevel;
+	}
+
+	// Queues a top up of the cache unless it is already topped up by the time the queued task runs
+	private synchronized void requestTopUp(IdentifierCache cache) {
+		if (topUpExecutorService != null && !cache.isTopUpInProgress()) {
+			topUpExecutorService.submit(() -> {
+				if (isBelowTopUpLevel(cache)) {
+					topUp(cache, 0);
+				}
+			});
+		}
+	}
+
 	void topUp(IdentifierCache cache, int extraRequired) {
 		if (cache.isTopUpInProgress()) {
 			logger.warn("Top-up already in progress for {}", cache);
@@ -155,6 +146,9 @@ public class IdentifierCacheManager implements Runnable {
 				}
 				cache.unlock();
 				requestSatisfied = true;
+				if (isBelowTopUpLevel(cache)) {
+					requestTopUp(cache);
+				}
 			}
 		} else {
 			//If no cache available & not requesting for International (as already prefetched),
@@ -169,8 +163,9 @@ public class IdentifierCacheManager implements Runnable {
 		
 		if (setupNewCache) {
 			//Do this after the attempt to reserveIds because if that fails, we don't want
-			//to set up a cache that would then continue to fail every N seconds.
+			//to set up a cache that would then continue to fail on every top up.
 			addCache(namespaceId, partitionId, determinePrefetchQuantity(componentType));
+			requestTopUp(getCache(namespaceId, partitionId));
 		}
 	}
 	
@@ -215,10 +210,11 @@ public class IdentifierCacheManager implements Runnable {
 		return null;
 	}
 
-	public void stopBackgroundTask() {
-		stayAlive = false;
-		cacheDaemon.interrupt();
-		cacheDaemon = null;
+	public synchronized void stopBackgroundTask() {
+		if (topUpExecutorService != null) {
+			topUpExecutorService.shutdownNow();
+			topUpExecutorService = null;
+		}
 		identifierCaches.clear();
 	}
 
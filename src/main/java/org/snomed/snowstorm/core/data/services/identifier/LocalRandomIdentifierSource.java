@@ -46,30 +46,7 @@ public class LocalRandomIdentifierSource implements IdentifierSource {
 			if (newIdentifiers.size() == quantity) {
 				newIdentifierList = new LongArrayList(newIdentifiers);
 				// Bulk unique check
-				List<Long> alreadyExistingIdentifiers = new LongArrayList();
-				for (List<Long> newIdentifierBatch : Lists.partition(newIdentifierList, 10_000)) {
-					switch (partitionId) {
-						case "00":
-						case "10":
-							// Concept identifier
-							alreadyExistingIdentifiers.addAll(findExistingIdentifiersInAnyBranch(newIdentifierBatch, Concept.class, Concept.Fields.CONCEPT_ID));
-							break;
-						case "01":
-						case "11":
-							// Description identifier
-							alreadyExistingIdentifiers.addAll(findExistingIdentifiersInAnyBranch(newIdentifierBatch, Description.class, Description.Fields.DESCRIPTION_ID));
-							break;
-						case "02":
-						case "12":
-							// Relationship identifier
-							alreadyExistingIdentifiers.addAll(findExistingIdentifiersInAnyBranch(newIdentifierBatch, Relationship.class, Relationship.Fields.RELATIONSHIP_ID));
-							break;
-						case "06":
-							// Expression identifier
-							alreadyExistingIdentifiers.addAll(findExistingIdentifiersInAnyBranch(newIdentifierBatch, ReferenceSetMember.class, ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID));
-							break;
-					}
-				}
+				List<Long> alreadyExistingIdentifiers = findExistingIdentifiersInAnyBranch(elasticsearchTemplate, newIdentifierList, partitionId);
 				// Remove any identifiers which already exist in storage - more will be generated in the next loop.
 				newIdentifiers.removeAll(alreadyExistingIdentifiers);
 			}
@@ -78,13 +55,46 @@ public class LocalRandomIdentifierSource implements IdentifierSource {
 		return newIdentifierList;
 	}
 
-	// Finds and returns matching existing identifiers
-	private List<Long> findExistingIdentifiersInAnyBranch(List<Long> identifiers, Class<? extends SnomedComponent> snomedComponentClass, String idField) {
+	// Finds and returns the identifiers which are already used by a component of the type of the partition, on any branch.
+	static List<Long> findExistingIdentifiersInAnyBranch(ElasticsearchRestTemplate elasticsearchTemplate, List<Long> identifiers, String partitionId) {
+		List<Long> alreadyExistingIdentifiers = new LongArrayList();
+		for (List<Long> identifierBatch : Lists.partition(identifiers, 10_000)) {
+			switch (partitionId) {
+				case "00":
+				case "10":
+					// Concept identifier
+					alreadyExistingIdentifiers.addAll(findExistingIdentifiersInAnyBranch(elasticsearchTemplate, identifierBatch, Concept.class, Concept.Fields.CONCEPT_ID));
+					break;
+				case "01":
+				case "11":
+					// Description identifier
+					alreadyExistingIdentifiers.addAll(findExistingIdentifiersInAnyBranch(elasticsearchTemplate, identifierBatch, Description.class, Description.Fields.DESCRIPTION_ID));
+					break;
+				case "02":
+				case "12":
+					// Relationship identifier
+					alreadyExistingIdentifiers.addAll(findExistingIdentifiersInAnyBranch(elasticsearchTemplate, identifierBatch, Relationship.class, Relationship.Fields.RELATIONSHIP_ID));
+					break;
+				case POSTCOORDINATED_EXPRESSION_PARTITION_ID:
+					// Expression identifier
+					alreadyExistingIdentifiers.addAll(findExistingIdentifiersInAnyBranch(elasticsearchTemplate, identifierBatch, ReferenceSetMember.class, ReferenceSetMember.Fields.REFERENCED_COMPONENT_ID));
+					break;
+			}
+		}
+		return alreadyExistingIdentifiers;
+	}
+
+	private static List<Long> findExistingIdentifiersInAnyBranch(ElasticsearchRestTemplate elasticsearchTemplate, List<Long> identifiers,
+			Class<? extends SnomedComponent> snomedComponentClass, String idField) {
 		NativeSearchQueryBuilder queryBuilder = new NativeSearchQueryBuilder()
 				.withQuery(termsQuery(idField, identifiers))
 				.withPageable(PageRequest.of(0, identifiers.size()));
 		return elasticsearchTemplate.search(queryBuilder.build(), snomedComponentClass)
-				.stream().map(hit -> Long.parseLong(hit.getContent().getId())).collect(Collectors.toList());
+				.stream().map(hit -> {
+					Object component = hit.getContent();
+					// Expression identifiers are referenced by refset members rather than being the member identifier
+					return Long.parseLong(component instanceof ReferenceSetMember ? ((ReferenceSetMember) component).getReferencedComponentId() : hit.getContent().getId());
+				}).collect(Collectors.toList());
 	}
 
 	@Override
@@ -0,0 +1,178 @@
+package org.snomed.snowstorm.core.data.services.identifier;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.core.data.domain.jobs.IdentifierSequence;
+import org.snomed.snowstorm.core.data.services.ServiceException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generates SNOMED Component identifiers locally using sequential item identifiers.
+ * Contiguous blocks of item identifiers are reserved for each namespace and partition by moving a high-water mark persisted in the store.
+ * Threads take small ranges from the current block without locking and generate identifiers from their range.
+ * Each block is checked against the store once so that identifiers already used, for example by imported content, are skipped.
+ */
+public class LocalSequenceIdentifierSource implements IdentifierSource {
+
+	private static final int MAX_BLOCK_RESERVATION_ATTEMPTS = 20;
+
+	private final ElasticsearchRestTemplate elasticsearchTemplate;
+	private final int blockSize;
+	private final int threadRangeSize;
+
+	private final Map<String, AtomicReference<SequenceBlock>> currentBlocks = new ConcurrentHashMap<>();
+	private final ThreadLocal<Map<String, ItemIdRange>> threadRanges = ThreadLocal.withInitial(HashMap::new);
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public LocalSequenceIdentifierSource(ElasticsearchRestTemplate elasticsearchTemplate, int blockSize, int threadRangeSize) {
+		this.elasticsearchTemplate = elasticsearchTemplate;
+		this.blockSize = blockSize;
+		this.threadRangeSize = Math.min(threadRangeSize, blockSize);
+	}
+
+	@Override
+	public List<Long> reserveIds(int namespace, String partitionId, int quantity) throws ServiceException {
+		String key = IdentifierSequence.getId(namespace, partitionId);
+		String namespaceAndPartition = (namespace == 0 ? "" : Integer.toString(namespace)) + partitionId;
+		List<Long> identifiers = new LongArrayList(quantity);
+		while (identifiers.size() < quantity) {
+			ItemIdRange range = threadRanges.get().get(key);
+			if (range == null || range.isEmpty()) {
+				range = takeRange(key, namespace, partitionId, namespaceAndPartition);
+				threadRanges.get().put(key, range);
+			}
+			long sctid = range.nextIdentifier(namespaceAndPartition);
+			if (!range.isAlreadyUsed(sctid)) {
+				identifiers.add(sctid);
+			}
+		}
+		return identifiers;
+	}
+
+	private ItemIdRange takeRange(String key, int namespace, String partitionId, String namespaceAndPartition) throws ServiceException {
+		AtomicReference<SequenceBlock> blockReference = currentBlocks.computeIfAbsent(key, k -> new AtomicReference<>());
+		while (true) {
+			SequenceBlock block = blockReference.get();
+			if (block != null) {
+				long start = block.nextItemId.getAndAdd(threadRangeSize);
+				if (start < block.end) {
+					return new ItemIdRange(start, Math.min(start + threadRangeSize, block.end), block.alreadyUsed);
+				}
+			}
+			// Block used up, only one thread reserves the next block
+			synchronized (blockReference) {
+				if (blockReference.get() == block) {
+					blockReference.set(reserveBlock(namespace, partitionId, namespaceAndPartition));
+				}
+			}
+		}
+	}
+
+	private SequenceBlock reserveBlock(int namespace, String partitionId, String namespaceAndPartition) throws ServiceException {
+		String id = IdentifierSequence.getId(namespace, partitionId);
+		// Item identifier plus namespace, partition and check digit must fit in the 18 digit maximum length
+		long maxItemId = (long) Math.pow(10, 18 - namespaceAndPartition.length() - 1) - 1;
+		for (int attempt = 1; attempt <= MAX_BLOCK_RESERVATION_ATTEMPTS; attempt++) {
+			IdentifierSequence sequence = elasticsearchTemplate.get(id, IdentifierSequence.class);
+			boolean firstBlock = sequence == null;
+			if (firstBlock) {
+				sequence = new IdentifierSequence(namespace, partitionId, 1);
+			}
+			long start = sequence.getHighWaterMark();
+			long end = Math.min(start + blockSize, maxItemId + 1);
+			if (start > maxItemId) {
+				throw new ServiceException(String.format("All item identifiers have been used for namespace %s partition %s.", namespace, partitionId));
+			}
+			sequence.setHighWaterMark(end);
+			try {
+				if (firstBlock) {
+					// Create fails if another instance created the sequence since it was read
+					elasticsearchTemplate.index(new IndexQueryBuilder().withId(id).withObject(sequence).withOpType(IndexQuery.OpType.CREATE).build(),
+							elasticsearchTemplate.getIndexCoordinatesFor(IdentifierSequence.class));
+				} else {
+					// Save fails if another instance moved the high-water mark since it was read
+					elasticsearchTemplate.save(sequence);
+				}
+			} catch (DataAccessException e) {
+				if (e instanceof OptimisticLockingFailureException || (firstBlock && elasticsearchTemplate.exists(id, IdentifierSequence.class))) {
+					logger.debug("Identifier sequence {} changed during reservation, attempt {}.", id, attempt);
+					continue;
+				}
+				throw e;
+			}
+			logger.info("Reserved item identifiers {} to {} for namespace {} partition {}.", start, end - 1, namespace, partitionId);
+			return new SequenceBlock(start, end, findAlreadyUsed(start, end, namespaceAndPartition, partitionId));
+		}
+		throw new ServiceException(String.format("Failed to reserve a block of identifiers for namespace %s partition %s after %s attempts.",
+				namespace, partitionId, MAX_BLOCK_RESERVATION_ATTEMPTS));
+	}
+
+	private Set<Long> findAlreadyUsed(long start, long end, String namespaceAndPartition, String partitionId) {
+		List<Long> blockIdentifiers = new LongArrayList((int) (end - start));
+		for (long itemId = start; itemId < end; itemId++) {
+			blockIdentifiers.add(toSctid(itemId, namespaceAndPartition));
+		}
+		return new LongOpenHashSet(LocalRandomIdentifierSource.findExistingIdentifiersInAnyBranch(elasticsearchTemplate, blockIdentifiers, partitionId));
+	}
+
+	static long toSctid(long itemId, String namespaceAndPartition) {
+		String sctidWithoutCheck = itemId + namespaceAndPartition;
+		return Long.parseLong(sctidWithoutCheck + VerhoeffCheck.calculateChecksum(sctidWithoutCheck, 0, false));
+	}
+
+	@Override
+	public void registerIds(int namespace, Collection<Long> idsAssigned) {
+		// Not required for this implementation.
+	}
+
+	private static final class SequenceBlock {
+
+		private final AtomicLong nextItemId;
+		private final long end;
+		private final Set<Long> alreadyUsed;
+
+		private SequenceBlock(long start, long end, Set<Long> alreadyUsed) {
+			this.nextItemId = new AtomicLong(start);
+			this.end = end;
+			this.alreadyUsed = alreadyUsed;
+		}
+	}
+
+	// Only used by the thread which took it
+	private static final class ItemIdRange {
+
+		private long nextItemId;
+		private final long end;
+		private final Set<Long> alreadyUsed;
+
+		private ItemIdRange(long start, long end, Set<Long> alreadyUsed) {
+			this.nextItemId = start;
+			this.end = end;
+			this.alreadyUsed = alreadyUsed;
+		}
+
+		private boolean isEmpty() {
+			return nextItemId >= end;
+		}
+
+		private long nextIdentifier(String namespaceAndPartition) {
+			return toSctid(nextItemId++, namespaceAndPartition);
+		}
+
+		private boolean isAlreadyUsed(long sctid) {
+			return alreadyUsed.contains(sctid);
+		}
+	}
+}
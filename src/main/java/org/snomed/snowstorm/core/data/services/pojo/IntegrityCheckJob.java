@@ -0,0 +1,86 @@
+package org.snomed.snowstorm.core.data.services.pojo;
+
+import org.snomed.snowstorm.core.data.domain.JobStatus;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Full integrity check running in the background. Progress is reported as the number of concept id partitions checked.
+ */
+public class IntegrityCheckJob {
+
+	private final String id;
+	private final String branchPath;
+	private final Date startDate;
+	private volatile JobStatus status;
+	private volatile int partitions;
+	private final AtomicInteger partitionsCompleted = new AtomicInteger();
+	private volatile Date endDate;
+	private volatile String message;
+	private volatile IntegrityIssueReport report;
+
+	public IntegrityCheckJob(String branchPath) {
+		id = UUID.randomUUID().toString();
+		this.branchPath = branchPath;
+		startDate = new Date();
+		status = JobStatus.IN_PROGRESS;
+	}
+
+	public void partitionCompleted() {
+		partitionsCompleted.incrementAndGet();
+	}
+
+	public void completed(IntegrityIssueReport report) {
+		this.report = report;
+		endDate = new Date();
+		status = JobStatus.COMPLETED;
+	}
+
+	public void failed(String message) {
+		this.message = message;
+		endDate = new Date();
+		status = JobStatus.FAILED;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getBranchPath() {
+		return branchPath;
+	}
+
+	public Date getStartDate() {
+		return startDate;
+	}
+
+	public JobStatus getStatus() {
+		return status;
+	}
+
+	public int getPartitions() {
+		return partitions;
+	}
+
+	public void setPartitions(int partitions) {
+		this.partitions = partitions;
+	}
+
+	public int getPartitionsCompleted() {
+		return partitionsCompleted.get();
+	}
+
+	public Date getEndDate() {
+		return endDate;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public IntegrityIssueReport getReport() {
+		return report;
+	}
+}
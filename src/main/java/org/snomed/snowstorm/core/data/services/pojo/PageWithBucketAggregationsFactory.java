@@ -35,7 +35,7 @@ public class PageWithBucketAggregationsFactory {
 		return new PageWithBucketAggregations<>(searchHits.get().map(SearchHit::getContent).collect(Collectors.toList()), pageable, searchHits.getTotalHits(), buckets, searchAfter);
 	}
 
-	private static Map<String, Map<String, Long>> createBuckets(Aggregations aggregations) {
+	public static Map<String, Map<String, Long>> createBuckets(Aggregations aggregations) {
 		Map<String, Map<String, Long>> bucketAggregations = new HashMap<>();
 		if (aggregations == null) {
 			return bucketAggregations;
@@ -3,6 +3,7 @@ package org.snomed.snowstorm.core.data.services.servicehook;
 import io.kaicode.elasticvc.domain.Branch;
 import io.kaicode.elasticvc.domain.Commit;
 
+import java.util.HashMap;
 import java.util.Map;
 
 public class CommitInformation {
@@ -17,7 +18,8 @@ public class CommitInformation {
 		final Branch branch = commit.getBranch();
 		commitType = commit.getCommitType();
 		headTime = commit.getBranch().getHeadTimestamp();
-		metadata = branch.getMetadata().getAsMap();
+		// Copy because the commit metadata may change before the information is sent
+		metadata = copy(branch.getMetadata().getAsMap());
 
 		if (Commit.CommitType.CONTENT == commitType) {
 			this.sourceBranchPath = branch.getPath();
@@ -28,6 +30,13 @@ public class CommitInformation {
 		}
 	}
 
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> copy(Map<String, Object> map) {
+		Map<String, Object> copy = new HashMap<>();
+		map.forEach((key, value) -> copy.put(key, value instanceof Map ? copy((Map<String, Object>) value) : value));
+		return copy;
+	}
+
 	public String getSourceBranchPath() {
 		return sourceBranchPath;
 	}
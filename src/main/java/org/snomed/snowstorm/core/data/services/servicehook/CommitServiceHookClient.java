@@ -6,6 +6,8 @@ import io.kaicode.elasticvc.domain.Commit;
 import org.ihtsdo.sso.integration.SecurityUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.core.data.services.CommitListenerPipeline;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.boot.web.client.RestTemplateBuilder;
@@ -25,6 +27,9 @@ public class CommitServiceHookClient implements CommitListener {
 
 	private final RestTemplate restTemplate;
 
+	@Autowired
+	private CommitListenerPipeline commitListenerPipeline;
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 	private final String serviceUrl;
 	private final boolean failIfError;
@@ -75,12 +80,23 @@ public class CommitServiceHookClient implements CommitListener {
 			return;
 		}
 
+		String authenticationToken = SecurityUtil.getAuthenticationToken();
+		CommitInformation commitInformation = new CommitInformation(commit);
+		boolean promotion = commit.getCommitType().equals(Commit.CommitType.PROMOTION);
+		if (!failIfError && !(promotion && blockPromotion)) {
+			// The response can not fail the commit so notify the external system once the branch is unlocked
+			commitListenerPipeline.runAfterRelease(commit, "service-hook", () -> sendCommitInformation(commit, commitInformation, authenticationToken));
+		} else {
+			sendCommitInformation(commit, commitInformation, authenticationToken);
+		}
+	}
+
+	private void sendCommitInformation(Commit commit, CommitInformation commitInformation, String authenticationToken) {
 		try {
-			String authenticationToken = SecurityUtil.getAuthenticationToken();
 			HttpHeaders httpHeaders = buildHttpHeaders(authenticationToken);
 			logRequest(commit, authenticationToken, commit.getBranch());
 			ResponseEntity<?> responseEntity = restTemplate.postForEntity("/integration/snowstorm/commit",
-					new HttpEntity<>(new CommitInformation(commit), httpHeaders), Void.class);
+					new HttpEntity<>(commitInformation, httpHeaders), Void.class);
 			logger.info("External system returned HTTP status code {}.", responseEntity.getStatusCodeValue());
 		} catch (HttpClientErrorException.Conflict e) {
 			// External system indicates criteria has not been completed.
@@ -5,8 +5,10 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Iterables;
 import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.BranchService;
 import io.kaicode.elasticvc.api.CommitListener;
 import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
 import io.kaicode.elasticvc.domain.Commit;
 import it.unimi.dsi.fastutil.longs.Long2ObjectArrayMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
@@ -16,6 +18,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.snowstorm.config.Config;
 import org.snomed.snowstorm.core.data.domain.*;
+import org.snomed.snowstorm.core.data.domain.jobs.TraceabilityCommitRecord;
 import org.snomed.snowstorm.core.data.services.BranchMetadataHelper;
 import org.snomed.snowstorm.core.data.services.ServiceUtil;
 import org.snomed.snowstorm.core.data.services.identifier.IdentifierService;
@@ -28,13 +31,12 @@ import org.springframework.data.elasticsearch.core.SearchHitsIterator;
 import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static io.kaicode.elasticvc.api.ComponentService.CLAUSE_LIMIT;
@@ -57,6 +59,21 @@ public class TraceabilityLogService implements CommitListener {
 	@Value("${authoring.traceability.inferred-max}")
 	private int inferredMax;
 
+	@Value("${authoring.traceability.async}")
+	private boolean async;
+
+	@Value("${authoring.traceability.outbox.batch-size}")
+	private int outboxBatchSize;
+
+	@Value("${authoring.traceability.outbox.publishing-enabled}")
+	private boolean outboxPublishingEnabled;
+
+	@Autowired
+	private TraceabilityOutbox traceabilityOutbox;
+
+	@Autowired
+	private BranchService branchService;
+
 	@Autowired
 	private TraceabilityLogServiceHelper traceabilityLogServiceHelper;
 
@@ -103,6 +120,19 @@ public class TraceabilityLogService implements CommitListener {
 		}
 		ServiceUtil.assertNotNull("Traceability activity type", activityType);
 
+		if (!enabled) {
+			return;
+		}
+
+		if (async) {
+			// Record the commit and let the outbox worker build and send the activity after the commit completes
+			Branch branch = commit.getBranch();
+			traceabilityOutbox.add(new TraceabilityCommitRecord(branch.getPath(), commit.getTimepoint().getTime(), commit.getSourceBranchPath(),
+					commit.getCommitType(), activityType, SecurityUtil.getUsername(), copy(commit.getEntityVersionsReplaced()),
+					commit.isRebase() ? copy(BranchMetadataHelper.getRebaseDuplicatesRemoved(commit)) : null));
+			return;
+		}
+
 		PersistedComponents persistedComponents = activityType == Activity.ActivityType.PROMOTION || activityType == Activity.ActivityType.CREATE_CODE_SYSTEM_VERSION ?
 				new PersistedComponents() : buildPersistedComponents(commit);
 
@@ -124,7 +154,86 @@ public class TraceabilityLogService implements CommitListener {
 				.build();
 	}
 
+	/**
+	 * Builds and sends the traceability activity of each completed commit waiting in the outbox, in commit order per branch.
+	 * Records of a branch are not processed past one which fails or whose commit is still in progress, other branches carry on.
+	 * Only one instance sharing the store should publish, see authoring.traceability.outbox.publishing-enabled.
+	 */
+	@Scheduled(fixedDelayString = "${authoring.traceability.outbox.poll-interval-ms}")
+	public synchronized void publishOutbox() {
+		if (!enabled || !outboxPublishingEnabled) {
+			return;
+		}
+		for (String branchPath : traceabilityOutbox.findBranchesWithWaitingRecords(outboxBatchSize)) {
+			for (TraceabilityCommitRecord commitRecord : traceabilityOutbox.nextBatch(branchPath, outboxBatchSize)) {
+				if (!publishInOrder(commitRecord)) {
+					break;
+				}
+			}
+		}
+	}
+
+	// Returns false when later records of the branch must wait
+	private boolean publishInOrder(TraceabilityCommitRecord commitRecord) {
+		final String branchPath = commitRecord.getBranchPath();
+		if (commitRecord.getRetryAfter() > System.currentTimeMillis()) {
+			return false;
+		}
+		try {
+			final Branch latest = branchService.findLatest(branchPath);
+			if (latest == null) {
+				// Content can no longer be loaded, keep the record for investigation
+				traceabilityOutbox.deadLetter(commitRecord, "Branch has been deleted.");
+			} else if (latest.getHeadTimestamp() < commitRecord.getTimepoint()) {
+				if (latest.isLocked()) {
+					// Commit still in progress
+					return false;
+				}
+				logger.info("Discarding traceability for commit {} at {}, commit was rolled back.", branchPath, commitRecord.getTimepoint());
+				traceabilityOutbox.discard(commitRecord);
+			} else if (latest.getHeadTimestamp() != commitRecord.getTimepoint()
+					&& branchService.findAtTimepointOrThrow(branchPath, new Date(commitRecord.getTimepoint())).getHeadTimestamp() != commitRecord.getTimepoint()) {
+				logger.info("Discarding traceability for commit {} at {}, commit was rolled back.", branchPath, commitRecord.getTimepoint());
+				traceabilityOutbox.discard(commitRecord);
+			} else {
+				publish(commitRecord);
+				traceabilityOutbox.published(commitRecord);
+			}
+			return true;
+		} catch (RuntimeException e) {
+			logger.warn("Failed to publish traceability for commit {} at {}, attempt {}.",
+					branchPath, commitRecord.getTimepoint(), commitRecord.getFailedAttempts() + 1, e);
+			traceabilityOutbox.failed(commitRecord, e);
+			// A dead letter no longer holds back the branch
+			return commitRecord.isDeadLetter();
+		}
+	}
+
+	private void publish(TraceabilityCommitRecord commitRecord) {
+		final Activity.ActivityType activityType = commitRecord.getActivityType();
+		final PersistedComponents persistedComponents;
+		if (activityType == Activity.ActivityType.PROMOTION || activityType == Activity.ActivityType.CREATE_CODE_SYSTEM_VERSION) {
+			persistedComponents = new PersistedComponents();
+		} else {
+			persistedComponents = PersistedComponents.builder()
+					.withPersistedConcepts(traceabilityLogServiceHelper.loadChangesAndDeletionsOfCompletedCommit(Concept.class, commitRecord))
+					.withPersistedDescriptions(traceabilityLogServiceHelper.loadChangesAndDeletionsOfCompletedCommit(Description.class, commitRecord))
+					.withPersistedRelationships(traceabilityLogServiceHelper.loadChangesAndDeletionsOfCompletedCommit(Relationship.class, commitRecord))
+					.withPersistedReferenceSetMembers(traceabilityLogServiceHelper.loadChangesAndDeletionsOfCompletedCommit(ReferenceSetMember.class, commitRecord))
+					.build();
+		}
+		final Date timepoint = new Date(commitRecord.getTimepoint());
+		logActivity(commitRecord.getUserId(), commitRecord.getBranchPath(), timepoint, commitRecord.getSourceBranchPath(), commitRecord.getCommitType(),
+				persistedComponents, activityType, () -> versionControlHelper.getBranchCriteriaAtTimepoint(commitRecord.getBranchPath(), timepoint));
+	}
+
 	void logActivity(String userId, final Commit commit, final PersistedComponents persistedComponents, Activity.ActivityType activityType) {
+		logActivity(userId, commit.getBranch().getPath(), commit.getTimepoint(), commit.getSourceBranchPath(), commit.getCommitType(), persistedComponents, activityType,
+				() -> versionControlHelper.getBranchCriteria(commit.getBranch()));
+	}
+
+	private void logActivity(String userId, String branchPath, Date timepoint, String sourceBranchPath, Commit.CommitType commitType,
+			final PersistedComponents persistedComponents, Activity.ActivityType activityType, Supplier<BranchCriteria> branchCriteriaSupplier) {
 
 		ServiceUtil.assertNotNull("activityType", activityType);
 		ServiceUtil.assertNotNull("persistedComponents", persistedComponents);
@@ -137,7 +246,7 @@ public class TraceabilityLogService implements CommitListener {
 			userId = Config.SYSTEM_USERNAME;
 		}
 
-		Activity activity = new Activity(userId, commit.getBranch().getPath(), commit.getTimepoint().getTime(), commit.getSourceBranchPath(), activityType);
+		Activity activity = new Activity(userId, branchPath, timepoint.getTime(), sourceBranchPath, activityType);
 
 		Map<Long, Activity.ConceptActivity> activityMap = new Long2ObjectArrayMap<>();
 		Map<Long, Long> componentToConceptIdMap = new Long2ObjectArrayMap<>();
@@ -157,7 +266,7 @@ public class TraceabilityLogService implements CommitListener {
 
 		// Deal with members that refer to descriptions or relationships by looking up their concepts.
 		final Map<Long, List<ReferenceSetMember>> conceptMembersMap =
-				filterRefsetMembersAndLookupComponentConceptIds(persistedComponents.getPersistedReferenceSetMembers(), commit, componentToConceptIdMap);
+				filterRefsetMembersAndLookupComponentConceptIds(persistedComponents.getPersistedReferenceSetMembers(), branchPath, branchCriteriaSupplier, componentToConceptIdMap);
 
 		// Record all refset members against concept activities
 		for (Map.Entry<Long, List<ReferenceSetMember>> entry : conceptMembersMap.entrySet()) {
@@ -169,8 +278,8 @@ public class TraceabilityLogService implements CommitListener {
 
 		Map<String, Activity.ConceptActivity> changes = activity.getChangesMap();
 		boolean changeFound = changes.values().stream().anyMatch(conceptActivity -> !conceptActivity.getComponentChanges().isEmpty());
-		if (commit.getCommitType() == CONTENT && !changeFound && activityType != CREATE_CODE_SYSTEM_VERSION) {
-			logger.info("Skipping traceability because there was no traceable change for commit {} at {}.", commit.getBranch().getPath(), commit.getTimepoint().getTime());
+		if (commitType == CONTENT && !changeFound && activityType != CREATE_CODE_SYSTEM_VERSION) {
+			logger.info("Skipping traceability because there was no traceable change for commit {} at {}.", branchPath, timepoint.getTime());
 			return;
 		}
 
@@ -211,7 +320,7 @@ public class TraceabilityLogService implements CommitListener {
 	}
 
 	private Map<Long, List<ReferenceSetMember>> filterRefsetMembersAndLookupComponentConceptIds(Iterable<ReferenceSetMember> persistedReferenceSetMembers,
-			Commit commit, Map<Long, Long> componentToConceptIdMap) {
+			String branchPath, Supplier<BranchCriteria> branchCriteriaSupplier, Map<Long, Long> componentToConceptIdMap) {
 
 		Map<Long, List<ReferenceSetMember>> conceptToMembersMap = new Long2ObjectArrayMap<>();
 
@@ -240,7 +349,7 @@ public class TraceabilityLogService implements CommitListener {
 		final Set<Long> relationshipIdsToLookup = referencedRelationships.stream().filter(Predicate.not(componentToConceptIdMap::containsKey)).collect(Collectors.toSet());
 		BranchCriteria branchCriteria = null;
 		if (!descriptionIdsToLookup.isEmpty()) {
-			branchCriteria = versionControlHelper.getBranchCriteria(commit.getBranch());
+			branchCriteria = branchCriteriaSupplier.get();
 			for (List<Long> descriptionIdsSegment : Iterables.partition(descriptionIdsToLookup, CLAUSE_LIMIT)) {
 				try (final SearchHitsIterator<Description> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
 						.withQuery(branchCriteria.getEntityBranchCriteria(Description.class)
@@ -257,7 +366,7 @@ public class TraceabilityLogService implements CommitListener {
 		}
 		if (!relationshipIdsToLookup.isEmpty()) {
 			if (branchCriteria == null) {
-				branchCriteria = versionControlHelper.getBranchCriteria(commit.getBranch());
+				branchCriteria = branchCriteriaSupplier.get();
 			}
 			for (List<Long> relationshipsIdsSegment : Iterables.partition(relationshipIdsToLookup, CLAUSE_LIMIT)) {
 				try (final SearchHitsIterator<Relationship> stream = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
@@ -280,7 +389,7 @@ public class TraceabilityLogService implements CommitListener {
 				conceptToMembersMap.computeIfAbsent(conceptId, id -> new ArrayList<>()).add(refsetMember);
 			} else {
 				logger.error("Refset member {} with referenced component {} can not be mapped to a concept id for traceability on branch {}",
-						refsetMember.getId(), refsetMember.getReferencedComponentId(), commit.getBranch().getPath());
+						refsetMember.getId(), refsetMember.getReferencedComponentId(), branchPath);
 			}
 		});
 		return conceptToMembersMap;
@@ -332,6 +441,12 @@ public class TraceabilityLogService implements CommitListener {
 		return null;
 	}
 
+	private static Map<String, Set<String>> copy(Map<String, Set<String>> map) {
+		Map<String, Set<String>> copy = new HashMap<>();
+		map.forEach((key, value) -> copy.put(key, new HashSet<>(value)));
+		return copy;
+	}
+
 	public void setEnabled(boolean enabled) {
 		this.enabled = enabled;
 	}
@@ -340,6 +455,14 @@ public class TraceabilityLogService implements CommitListener {
 		return enabled;
 	}
 
+	public void setAsync(boolean async) {
+		this.async = async;
+	}
+
+	public boolean isAsync() {
+		return async;
+	}
+
 	public void setTraceabilityConsumer(TraceabilityConsumer traceabilityConsumer) {
 		this.traceabilityConsumer = traceabilityConsumer;
 	}
@@ -5,6 +5,7 @@ import io.kaicode.elasticvc.domain.Commit;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.snomed.snowstorm.core.data.domain.SnomedComponent;
+import org.snomed.snowstorm.core.data.domain.jobs.TraceabilityCommitRecord;
 import org.snomed.snowstorm.core.data.services.BranchMetadataHelper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
@@ -14,6 +15,7 @@ import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilde
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.function.Predicate;
 
 import static io.kaicode.elasticvc.api.VersionControlHelper.LARGE_PAGE;
 import static org.elasticsearch.index.query.QueryBuilders.*;
@@ -43,6 +45,40 @@ public class TraceabilityLogServiceHelper {
 			}
 		}
 
+		final Map<String, Set<String>> rebaseDuplicatesRemoved = commit.isRebase() ? BranchMetadataHelper.getRebaseDuplicatesRemoved(commit) : Collections.emptyMap();
+
+		return loadChanges(clazz, branchCriteria, branchPath, component -> component.getEnd() == null, rebaseDuplicatesRemoved);
+	}
+
+	/**
+	 * Loads the components changed and deleted by a commit which has already completed, using the details recorded during the commit.
+	 * Versions created in the commit may have been ended by later commits so the commit timepoint is used to tell new versions from ended ones.
+	 */
+	public <T extends SnomedComponent<T>> Iterable<T> loadChangesAndDeletionsOfCompletedCommit(Class<T> clazz, TraceabilityCommitRecord commitRecord) {
+		final String branchPath = commitRecord.getBranchPath();
+		final long timepoint = commitRecord.getTimepoint();
+
+		final BoolQueryBuilder branchCriteria = boolQuery()
+				// Versions created or ended on the branch in the commit
+				.should(boolQuery()
+						.must(termQuery(SnomedComponent.Fields.PATH, branchPath))
+						.must(boolQuery()
+								.should(termQuery("start", timepoint))
+								.should(termQuery("end", timepoint))));
+		final Set<String> versionsReplaced = getOrEmpty(commitRecord.getVersionsReplaced()).getOrDefault(clazz.getSimpleName(), Collections.emptySet());
+		if (!versionsReplaced.isEmpty()) {
+			// Versions replaced in the commit (update or delete), may be on an ancestor branch
+			branchCriteria.should(termsQuery("_id", versionsReplaced));
+		}
+
+		return loadChanges(clazz, branchCriteria, branchPath,
+				component -> component.getStart().getTime() == timepoint && (component.getEnd() == null || component.getEnd().getTime() != timepoint),
+				commitRecord.getCommitType() == Commit.CommitType.REBASE ? getOrEmpty(commitRecord.getRebaseDuplicatesRemoved()) : Collections.emptyMap());
+	}
+
+	private <T extends SnomedComponent<T>> Collection<T> loadChanges(Class<T> clazz, BoolQueryBuilder branchCriteria, String branchPath,
+			Predicate<T> isNewVersionOnBranch, Map<String, Set<String>> rebaseDuplicatesRemoved) {
+
 		final NativeSearchQuery searchQuery = new NativeSearchQueryBuilder()
 				.withQuery(branchCriteria)
 				.withSort(SortBuilders.fieldSort("start"))
@@ -61,7 +97,7 @@ public class TraceabilityLogServiceHelper {
 					// A version on ancestor branch was replaced (may be update or delete)
 					componentsWithEndedVersion.add(componentId);
 				} else {
-					if (component.getEnd() == null) {
+					if (isNewVersionOnBranch.test(component)) {
 						// A version on this branch was created (may be update or create)
 						componentsWithNewVersion.add(componentId);
 					} else {
@@ -74,8 +110,6 @@ public class TraceabilityLogServiceHelper {
 
 		final Collection<T> components = componentResult.values();
 
-		final Map<String, Set<String>> rebaseDuplicatesRemoved = commit.isRebase() ? BranchMetadataHelper.getRebaseDuplicatesRemoved(commit) : Collections.emptyMap();
-
 		// Use new and ended sets to work out if components was created, updated or deleted
 		components.forEach(component -> {
 			final String componentId = component.getId();
@@ -86,7 +120,7 @@ public class TraceabilityLogServiceHelper {
 					component.setCreating(true);
 				}
 			} else {
-				if (commit.isRebase() && rebaseDuplicatesRemoved.computeIfAbsent(clazz.getSimpleName(), key -> Collections.emptySet()).contains(componentId)) {
+				if (rebaseDuplicatesRemoved.getOrDefault(clazz.getSimpleName(), Collections.emptySet()).contains(componentId)) {
 					// Component in child branch is replaced by newer version in parent branch. Log as change, not deletion.
 					component.markChanged();
 				} else {
@@ -96,4 +130,8 @@ public class TraceabilityLogServiceHelper {
 		});
 		return components;
 	}
+
+	private static Map<String, Set<String>> getOrEmpty(Map<String, Set<String>> map) {
+		return map != null ? map : Collections.emptyMap();
+	}
 }
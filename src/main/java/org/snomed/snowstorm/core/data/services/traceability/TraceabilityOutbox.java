@@ -0,0 +1,208 @@
+package org.snomed.snowstorm.core.data.services.traceability;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.core.data.domain.jobs.TraceabilityCommitRecord;
+import org.snomed.snowstorm.core.data.repositories.jobs.TraceabilityCommitRecordRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+
+/**
+ * Persistent queue of commits waiting to be published to the traceability service.
+ * Records are added within the commit and taken in commit order, per branch, by the publishing worker in {@link TraceabilityLogService}.
+ * When too many records are waiting, write requests wait for a limited time before they start to let the worker catch up.
+ * Records which fail repeatedly, or whose branch has been deleted, become dead letters which are kept but no longer published.
+ */
+@Service
+public class TraceabilityOutbox {
+
+	private static final long MAX_RETRY_DELAY_MILLIS = 5 * 60 * 1_000L;
+
+	@Value("${authoring.traceability.outbox.max-pending}")
+	private int maxPending;
+
+	@Value("${authoring.traceability.outbox.max-wait-seconds}")
+	private int maxWaitSeconds;
+
+	@Value("${authoring.traceability.outbox.max-attempts}")
+	private int maxAttempts;
+
+	@Autowired
+	private ElasticsearchOperations elasticsearchOperations;
+
+	@Autowired
+	private TraceabilityCommitRecordRepository commitRecordRepository;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	private final AtomicLong pendingCount = new AtomicLong();
+	private final AtomicLong oldestPendingTimepoint = new AtomicLong();
+	private Counter publishedCounter;
+	private Counter failureCounter;
+	private Counter deadLetterCounter;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@PostConstruct
+	public void init() {
+		if (meterRegistry != null) {
+			Gauge.builder("snowstorm.traceability.outbox.pending", pendingCount, AtomicLong::get)
+					.description("Commits waiting to be published to the traceability service.")
+					.register(meterRegistry);
+			Gauge.builder("snowstorm.traceability.outbox.lag", this, TraceabilityOutbox::getLagSeconds)
+					.description("Age in seconds of the oldest commit waiting to be published to the traceability service.")
+					.baseUnit("seconds")
+					.register(meterRegistry);
+			publishedCounter = meterRegistry.counter("snowstorm.traceability.outbox.published");
+			failureCounter = meterRegistry.counter("snowstorm.traceability.outbox.failures");
+			deadLetterCounter = meterRegistry.counter("snowstorm.traceability.outbox.dead-letters");
+		}
+	}
+
+	/**
+	 * Waits, for a limited time, while too many records are waiting to be published.
+	 * Called before a write request starts so that no branch is locked while waiting.
+	 */
+	public void awaitCapacity() {
+		if (pendingCount.get() < maxPending) {
+			return;
+		}
+		// Records may have been published by another instance
+		pendingCount.set(countWaiting());
+		if (pendingCount.get() < maxPending) {
+			return;
+		}
+		logger.info("{} traceability commits waiting to be published, delaying write request for up to {} seconds.", pendingCount.get(), maxWaitSeconds);
+		long giveUpTime = System.currentTimeMillis() + maxWaitSeconds * 1_000L;
+		try {
+			while (System.currentTimeMillis() < giveUpTime) {
+				Thread.sleep(1_000);
+				pendingCount.set(countWaiting());
+				if (pendingCount.get() < maxPending) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	void add(TraceabilityCommitRecord commitRecord) {
+		commitRecordRepository.save(commitRecord);
+		if (pendingCount.getAndIncrement() == 0) {
+			oldestPendingTimepoint.compareAndSet(0, commitRecord.getTimepoint());
+		}
+	}
+
+	/**
+	 * Returns the paths of branches with records waiting to be published, the branch with the oldest record first.
+	 * Dead letters are left out so that they do not hold back later commits of their branch.
+	 */
+	List<String> findBranchesWithWaitingRecords(int maxBranches) {
+		// Collapsing on the branch gives the oldest waiting record of each branch
+		List<TraceabilityCommitRecord> oldestPerBranch = elasticsearchOperations.search(new NativeSearchQueryBuilder()
+				.withQuery(getWaitingQuery())
+				.withSort(SortBuilders.fieldSort(TraceabilityCommitRecord.Fields.TIMEPOINT))
+				.withCollapseField(TraceabilityCommitRecord.Fields.BRANCH_PATH)
+				.withPageable(PageRequest.of(0, maxBranches))
+				.build(), TraceabilityCommitRecord.class)
+				.stream().map(SearchHit::getContent).collect(Collectors.toList());
+		pendingCount.set(countWaiting());
+		oldestPendingTimepoint.set(oldestPerBranch.isEmpty() ? 0 : oldestPerBranch.get(0).getTimepoint());
+		return oldestPerBranch.stream().map(TraceabilityCommitRecord::getBranchPath).collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns the oldest waiting records of the branch, in commit order.
+	 */
+	List<TraceabilityCommitRecord> nextBatch(String branchPath, int size) {
+		return elasticsearchOperations.search(new NativeSearchQueryBuilder()
+				.withQuery(getWaitingQuery().must(termQuery(TraceabilityCommitRecord.Fields.BRANCH_PATH, branchPath)))
+				.withSort(SortBuilders.fieldSort(TraceabilityCommitRecord.Fields.TIMEPOINT))
+				.withPageable(PageRequest.of(0, size))
+				.build(), TraceabilityCommitRecord.class)
+				.stream().map(SearchHit::getContent).collect(Collectors.toList());
+	}
+
+	private BoolQueryBuilder getWaitingQuery() {
+		return boolQuery().mustNot(termQuery(TraceabilityCommitRecord.Fields.DEAD_LETTER, true));
+	}
+
+	private long countWaiting() {
+		return elasticsearchOperations.count(new NativeSearchQueryBuilder().withQuery(getWaitingQuery()).build(), TraceabilityCommitRecord.class);
+	}
+
+	void published(TraceabilityCommitRecord commitRecord) {
+		commitRecordRepository.delete(commitRecord);
+		pendingCount.decrementAndGet();
+		if (publishedCounter != null) {
+			publishedCounter.increment();
+		}
+	}
+
+	void discard(TraceabilityCommitRecord commitRecord) {
+		commitRecordRepository.delete(commitRecord);
+		pendingCount.decrementAndGet();
+	}
+
+	/**
+	 * Records a failed attempt. Publishing is retried after a delay which doubles with each attempt, up to max-attempts
+	 * after which the record becomes a dead letter.
+	 */
+	void failed(TraceabilityCommitRecord commitRecord, Exception e) {
+		if (failureCounter != null) {
+			failureCounter.increment();
+		}
+		int failedAttempts = commitRecord.getFailedAttempts() + 1;
+		commitRecord.setFailedAttempts(failedAttempts);
+		if (failedAttempts >= maxAttempts) {
+			deadLetter(commitRecord, String.format("Publishing failed %s times, last error: %s", failedAttempts, e.getMessage()));
+			return;
+		}
+		long retryDelayMillis = Math.min(1_000L << Math.min(failedAttempts, 20), MAX_RETRY_DELAY_MILLIS);
+		commitRecord.setRetryAfter(System.currentTimeMillis() + retryDelayMillis);
+		commitRecordRepository.save(commitRecord);
+	}
+
+	/**
+	 * Keeps the record for investigation without publishing it. Later commits of the branch are published.
+	 */
+	void deadLetter(TraceabilityCommitRecord commitRecord, String reason) {
+		logger.error("Traceability for commit {} at {} will not be published: {}", commitRecord.getBranchPath(), commitRecord.getTimepoint(), reason);
+		commitRecord.setDeadLetter(true);
+		commitRecord.setDeadLetterReason(reason != null && reason.length() > 1_000 ? reason.substring(0, 1_000) : reason);
+		commitRecordRepository.save(commitRecord);
+		pendingCount.decrementAndGet();
+		if (deadLetterCounter != null) {
+			deadLetterCounter.increment();
+		}
+	}
+
+	public long getPendingCount() {
+		return pendingCount.get();
+	}
+
+	public double getLagSeconds() {
+		long oldest = oldestPendingTimepoint.get();
+		return oldest == 0 ? 0 : (System.currentTimeMillis() - oldest) / 1_000d;
+	}
+}
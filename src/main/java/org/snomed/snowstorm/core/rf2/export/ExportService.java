@@ -5,6 +5,7 @@ import io.kaicode.elasticvc.api.BranchCriteria;
 import io.kaicode.elasticvc.api.BranchService;
 import io.kaicode.elasticvc.api.VersionControlHelper;
 import io.kaicode.elasticvc.domain.Branch;
+import io.micrometer.core.instrument.Timer;
 
 import org.apache.tomcat.util.http.fileupload.util.Streams;
 import org.drools.core.util.StringUtils;
@@ -22,6 +23,7 @@ import org.snomed.snowstorm.core.data.services.BranchMetadataKeys;
 import org.snomed.snowstorm.core.data.services.CodeSystemService;
 import org.snomed.snowstorm.core.data.services.ModuleDependencyService;
 import org.snomed.snowstorm.core.data.services.NotFoundException;
+import org.snomed.snowstorm.core.data.services.OperationMetricsService;
 import org.snomed.snowstorm.core.data.services.QueryService;
 import org.snomed.snowstorm.core.rf2.RF2Type;
 import org.snomed.snowstorm.core.util.DateUtil;
@@ -35,12 +37,13 @@ import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilde
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import javax.annotation.PreDestroy;
 import java.io.*;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
 import static java.lang.String.format;
@@ -73,10 +76,35 @@ public class ExportService {
 	@Autowired
 	private CodeSystemService codeSystemService;
 
+	@Autowired
+	private OperationMetricsService operationMetricsService;
+
 	private final Set<String> refsetTypesRequiredForClassification = Sets.newHashSet(Concepts.REFSET_MRCM_ATTRIBUTE_DOMAIN, Concepts.OWL_EXPRESSION_TYPE_REFERENCE_SET);
 
+	// Enough for the concept, stated relationship, inferred relationship and OWL axiom entries of a classification export to run together
+	public static final int CLASSIFICATION_EXPORT_THREADS = 4;
+	private final ExecutorService classificationExportExecutor = Executors.newFixedThreadPool(CLASSIFICATION_EXPORT_THREADS);
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
+	@PreDestroy
+	public void shutdown() {
+		classificationExportExecutor.shutdownNow();
+	}
+
+	/**
+	 * Reference sets whose members are exported for classification; the reference set types required for classification and their descendants.
+	 */
+	public Set<Long> findRefsetIdsRequiredForClassification(BranchCriteria branchCriteria) {
+		Set<Long> refsetIds = new HashSet<>();
+		for (String refsetType : refsetTypesRequiredForClassification) {
+			Long refsetTypeId = Long.parseLong(refsetType);
+			refsetIds.add(refsetTypeId);
+			refsetIds.addAll(queryService.findDescendantIdsAsUnion(branchCriteria, true, Collections.singleton(refsetTypeId)));
+		}
+		return refsetIds;
+	}
+
 	public String createJob(ExportConfiguration exportConfiguration) {
 		if (exportConfiguration.getType() == RF2Type.FULL) {
 			throw new IllegalArgumentException("FULL RF2 export is not implemented.");
@@ -131,10 +159,44 @@ public class ExportService {
 		return exportRF2ArchiveFile(branchPath, filenameEffectiveDate, exportType, forClassification, false, null, null, null, true, new HashSet<>(), null);
 	}
 
+	/**
+	 * Writes the RF2 delta used as classification input straight to the output stream, for example the body of the request to the classification service.
+	 * The entries are produced in parallel. The output stream is closed when the archive is complete.
+	 */
+	public void exportClassificationInput(String branchPath, String filenameEffectiveDate, OutputStream outputStream) throws ExportException {
+		exportRF2Archive(branchPath, filenameEffectiveDate, RF2Type.DELTA, true, false, null, null, null, true, new HashSet<>(), null,
+				outputStream, classificationExportExecutor);
+	}
+
 	private File exportRF2ArchiveFile(String branchPath, String filenameEffectiveDate, RF2Type exportType, boolean forClassification,
 			boolean unpromotedChangesOnly, String transientEffectiveTime, String startEffectiveTime, Set<String> moduleIds,
 			boolean legacyZipNaming, Set<String> refsetIds, String exportId) throws ExportException {
 
+		File exportFile;
+		try {
+			exportFile = File.createTempFile("export-" + new Date().getTime(), ".zip");
+		} catch (IOException e) {
+			throw new ExportException("Failed to create RF2 zip file.", e);
+		}
+		boolean complete = false;
+		try (FileOutputStream outputStream = new FileOutputStream(exportFile)) {
+			exportRF2Archive(branchPath, filenameEffectiveDate, exportType, forClassification, unpromotedChangesOnly, transientEffectiveTime, startEffectiveTime,
+					moduleIds, legacyZipNaming, refsetIds, exportId, outputStream, null);
+			complete = true;
+			return exportFile;
+		} catch (IOException e) {
+			throw new ExportException("Failed to write RF2 zip file.", e);
+		} finally {
+			if (!complete) {
+				exportFile.delete();
+			}
+		}
+	}
+
+	private void exportRF2Archive(String branchPath, String filenameEffectiveDate, RF2Type exportType, boolean forClassification,
+			boolean unpromotedChangesOnly, String transientEffectiveTime, String startEffectiveTime, Set<String> moduleIds,
+			boolean legacyZipNaming, Set<String> refsetIds, String exportId, OutputStream outputStream, ExecutorService entryExecutor) throws ExportException {
+
 		if (exportType == RF2Type.FULL) {
 			throw new IllegalArgumentException("FULL RF2 export is not implemented.");
 		}
@@ -147,6 +209,8 @@ public class ExportService {
 		String exportStr = exportId == null ? "" : (" - " + exportId);
 		logger.info("Starting {} export of {}{}", exportType, branchPath, exportStr);
 		Date startTime = new Date();
+		Timer.Sample timerSample = operationMetricsService.start();
+		boolean success = false;
 
 		BranchCriteria allContentBranchCriteria = versionControlHelper.getBranchCriteria(branchPath);
 		BranchCriteria selectionBranchCriteria = unpromotedChangesOnly ? versionControlHelper.getChangesOnBranchCriteria(branchPath) : allContentBranchCriteria;
@@ -169,59 +233,52 @@ public class ExportService {
 
 		try {
 			branchService.lockBranch(branchPath, branchMetadataHelper.getBranchLockMetadata("Exporting RF2 " + exportType.getName()));
-			File exportFile = File.createTempFile("export-" + new Date().getTime(), ".zip");
-			try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(exportFile))) {
+			try (RF2ZipWriter zipWriter = new RF2ZipWriter(outputStream, entryExecutor)) {
 
 				boolean refsetOnlyExport = refsetIds != null && !refsetIds.isEmpty();
 
 				if (!refsetOnlyExport) {
 					// Write Concepts
-					int conceptLines = exportComponents(Concept.class, entryDirectoryPrefix, "Terminology/", "sct2_Concept_", filenameEffectiveDate, exportType, zipOutputStream,
+					exportComponents(Concept.class, entryDirectoryPrefix, "Terminology/", "sct2_Concept_", filenameEffectiveDate, exportType, zipWriter,
 							getContentQuery(exportType, moduleIds, startEffectiveTime, selectionBranchCriteria.getEntityBranchCriteria(Concept.class)), transientEffectiveTime, null, codeSystemRF2Name, null);
-					logger.info("{} concept states exported", conceptLines);
 
 					if (!forClassification) {
 						// Write Descriptions
 						BoolQueryBuilder descriptionBranchCriteria = selectionBranchCriteria.getEntityBranchCriteria(Description.class);
 						BoolQueryBuilder descriptionContentQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, descriptionBranchCriteria);
 						descriptionContentQuery.mustNot(termQuery(Description.Fields.TYPE_ID, Concepts.TEXT_DEFINITION));
-						int descriptionLines = exportComponents(Description.class, entryDirectoryPrefix, "Terminology/", "sct2_Description_", filenameEffectiveDate, exportType, zipOutputStream,
+						exportComponents(Description.class, entryDirectoryPrefix, "Terminology/", "sct2_Description_", filenameEffectiveDate, exportType, zipWriter,
 								descriptionContentQuery, transientEffectiveTime, null, codeSystemRF2Name, null);
-						logger.info("{} description states exported", descriptionLines);
 
 						// Write Text Definitions
 						BoolQueryBuilder textDefinitionContentQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, descriptionBranchCriteria);
 						textDefinitionContentQuery.must(termQuery(Description.Fields.TYPE_ID, Concepts.TEXT_DEFINITION));
-						int textDefinitionLines = exportComponents(Description.class, entryDirectoryPrefix, "Terminology/", "sct2_TextDefinition_", filenameEffectiveDate, exportType, zipOutputStream,
+						exportComponents(Description.class, entryDirectoryPrefix, "Terminology/", "sct2_TextDefinition_", filenameEffectiveDate, exportType, zipWriter,
 								textDefinitionContentQuery, transientEffectiveTime, null, codeSystemRF2Name, null);
-						logger.info("{} text defintion states exported", textDefinitionLines);
 					}
 
 					// Write Stated Relationships
 					BoolQueryBuilder relationshipBranchCritera = selectionBranchCriteria.getEntityBranchCriteria(Relationship.class);
 					BoolQueryBuilder relationshipQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, relationshipBranchCritera);
 					relationshipQuery.must(termQuery(Relationship.Fields.CHARACTERISTIC_TYPE_ID, Concepts.STATED_RELATIONSHIP));
-					int statedRelationshipLines = exportComponents(Relationship.class, entryDirectoryPrefix, "Terminology/", "sct2_StatedRelationship_", filenameEffectiveDate, exportType, zipOutputStream,
+					exportComponents(Relationship.class, entryDirectoryPrefix, "Terminology/", "sct2_StatedRelationship_", filenameEffectiveDate, exportType, zipWriter,
 							relationshipQuery, transientEffectiveTime, null, codeSystemRF2Name, null);
-					logger.info("{} stated relationship states exported", statedRelationshipLines);
 
 					// Write Inferred non-concrete Relationships
 					relationshipQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, relationshipBranchCritera);
 					// Not 'stated' will include inferred and additional
 					relationshipQuery.mustNot(termQuery(Relationship.Fields.CHARACTERISTIC_TYPE_ID, Concepts.STATED_RELATIONSHIP));
 					relationshipQuery.must(existsQuery(Relationship.Fields.DESTINATION_ID));
-					int inferredRelationshipLines = exportComponents(Relationship.class, entryDirectoryPrefix, "Terminology/", "sct2_Relationship_", filenameEffectiveDate, exportType, zipOutputStream,
+					exportComponents(Relationship.class, entryDirectoryPrefix, "Terminology/", "sct2_Relationship_", filenameEffectiveDate, exportType, zipWriter,
 							relationshipQuery, transientEffectiveTime, null, codeSystemRF2Name, null);
-					logger.info("{} inferred (non-concrete) and additional relationship states exported", inferredRelationshipLines);
 
 					// Write Concrete Inferred Relationships
 					relationshipQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, relationshipBranchCritera);
 					relationshipQuery.must(termQuery(Relationship.Fields.CHARACTERISTIC_TYPE_ID, Concepts.INFERRED_RELATIONSHIP));
 					relationshipQuery.must(existsQuery(Relationship.Fields.VALUE));
-					int inferredConcreteRelationshipLines = exportComponents(Relationship.class, entryDirectoryPrefix, "Terminology/", "sct2_RelationshipConcreteValues_", filenameEffectiveDate, exportType,
-							zipOutputStream,
+					exportComponents(Relationship.class, entryDirectoryPrefix, "Terminology/", "sct2_RelationshipConcreteValues_", filenameEffectiveDate, exportType,
+							zipWriter,
 							relationshipQuery, transientEffectiveTime, null, codeSystemRF2Name, null);
-					logger.info("{} concrete inferred relationship states exported", inferredConcreteRelationshipLines);
 				}
 
 				// Write Reference Sets
@@ -252,19 +309,18 @@ public class ExportService {
 							String exportDir = referenceSetType.getExportDir();
 							String entryDirectory = !exportDir.startsWith("/") ? "Refset/" + exportDir + "/" : exportDir.substring(1) + "/";
 							String entryFilenamePrefix = (!entryDirectory.startsWith("Terminology/") ? "der2_" : "sct2_") + referenceSetType.getFieldTypes() + "Refset_" + referenceSetType.getName() + (refsetsOfThisType.size() > 1 ? refsetToExport : "");
-							int rowCount = exportComponents(
+							exportComponents(
 									ReferenceSetMember.class,
 									entryDirectoryPrefix, entryDirectory,
 									entryFilenamePrefix,
 									filenameEffectiveDate,
 									exportType,
-									zipOutputStream,
+									zipWriter,
 									mdrService.generateModuleDependencies(branchPath, transientEffectiveTime, moduleIds, exportType.equals(RF2Type.DELTA), null),
 									transientEffectiveTime,
 									referenceSetType.getFieldNameList(),
 									codeSystemRF2Name,
 									exportFilter);
-							logger.info("Exported Reference Set {} {} with {} members", refsetToExport, referenceSetType.getName(), rowCount);
 						} else if (!refsetOnlyExport || refsetIds.contains(refsetToExport.toString())) {
 							BoolQueryBuilder memberQuery = getContentQuery(exportType, moduleIds, startEffectiveTime, memberBranchCriteria);
 							memberQuery.must(QueryBuilders.termQuery(ReferenceSetMember.Fields.REFSET_ID, refsetToExport));
@@ -280,7 +336,7 @@ public class ExportService {
 										entryFilenamePrefix,
 										filenameEffectiveDate,
 										exportType,
-										zipOutputStream,
+										zipWriter,
 										memberQuery,
 										transientEffectiveTime,
 										referenceSetType.getFieldNameList(),
@@ -290,14 +346,16 @@ public class ExportService {
 						}
 					}
 				}
+				zipWriter.finish();
 			}
 
 			logger.info("{} export of {}{} complete in {} seconds.", exportType, branchPath, exportStr, TimerUtil.secondsSince(startTime));
-			return exportFile;
+			success = true;
 		} catch (IOException e) {
 			throw new ExportException("Failed to write RF2 zip file.", e);
 		} finally {
 			branchService.unlock(branchPath);
+			operationMetricsService.stop(timerSample, OperationMetricsService.EXPORT, success, "type", exportType.name(), "classification", Boolean.toString(forClassification));
 		}
 	}
 
@@ -326,27 +384,23 @@ public class ExportService {
 		return contentQuery;
 	}
 
-	private <T> int exportComponents(Class<T> componentClass, String entryDirectoryPrefix, String entryDirectory, String entryFilenamePrefix, String filenameEffectiveDate,
-			RF2Type exportType, ZipOutputStream zipOutputStream, BoolQueryBuilder contentQuery, String transientEffectiveTime, List<String> extraFieldNames, String codeSystemRF2Name, ExportFilter<T> exportFilter) {
+	private <T> void exportComponents(Class<T> componentClass, String entryDirectoryPrefix, String entryDirectory, String entryFilenamePrefix, String filenameEffectiveDate,
+			RF2Type exportType, RF2ZipWriter zipWriter, BoolQueryBuilder contentQuery, String transientEffectiveTime, List<String> extraFieldNames, String codeSystemRF2Name, ExportFilter<T> exportFilter) {
 
 		String componentFilePath = entryDirectoryPrefix + entryDirectory + entryFilenamePrefix + format("%s_%s_%s.txt", exportType.getName(), codeSystemRF2Name, filenameEffectiveDate);
 		logger.info("Exporting file {}", componentFilePath);
 		logger.info("Export filter is " + (exportFilter==null?"null" : "present"));
 		try {
-			// Open zip entry
-			zipOutputStream.putNextEntry(new ZipEntry(componentFilePath));
-
-			// Stream components into zip
-			try (ExportWriter<T> writer = getExportWriter(componentClass, zipOutputStream, extraFieldNames, entryFilenamePrefix.contains("Concrete"));
-					SearchHitsIterator<T> componentStream = elasticsearchTemplate.searchForStream(getNativeSearchQuery(contentQuery), componentClass)) {
-				writer.setTransientEffectiveTime(transientEffectiveTime);
-				writer.writeHeader();
-				componentStream.forEachRemaining(hit -> doFilteredWrite(exportFilter, writer, hit.getContent()));
-				return writer.getContentLinesWritten();
-			} finally {
-				// Close zip entry
-				zipOutputStream.closeEntry();
-			}
+			zipWriter.addEntry(componentFilePath, entryStream -> {
+				// Stream components into zip entry
+				try (ExportWriter<T> writer = getExportWriter(componentClass, entryStream, extraFieldNames, entryFilenamePrefix.contains("Concrete"));
+						SearchHitsIterator<T> componentStream = elasticsearchTemplate.searchForStream(getNativeSearchQuery(contentQuery), componentClass)) {
+					writer.setTransientEffectiveTime(transientEffectiveTime);
+					writer.writeHeader();
+					componentStream.forEachRemaining(hit -> doFilteredWrite(exportFilter, writer, hit.getContent()));
+					logger.info("{} rows exported to {}", writer.getContentLinesWritten(), componentFilePath);
+				}
+			});
 		} catch (IOException e) {
 			throw new ExportException("Failed to write export zip entry '" + componentFilePath + "'", e);
 		}
@@ -358,26 +412,22 @@ public class ExportService {
 		}
 	}
 
-	private <T> int exportComponents(Class<T> componentClass, String entryDirectoryPrefix, String entryDirectory, String entryFilenamePrefix, String filenameEffectiveDate,
-			RF2Type exportType, ZipOutputStream zipOutputStream, Set<T> components, String transientEffectiveTime, List<String> extraFieldNames, String codeSystemRF2Name,
+	private <T> void exportComponents(Class<T> componentClass, String entryDirectoryPrefix, String entryDirectory, String entryFilenamePrefix, String filenameEffectiveDate,
+			RF2Type exportType, RF2ZipWriter zipWriter, Set<T> components, String transientEffectiveTime, List<String> extraFieldNames, String codeSystemRF2Name,
 			ExportFilter<T> exportFilter) {
 
 		String componentFilePath = entryDirectoryPrefix + entryDirectory + entryFilenamePrefix + format("%s_%s_%s.txt", exportType.getName(), codeSystemRF2Name, filenameEffectiveDate);
 		logger.info("Exporting file {}", componentFilePath);
 		try {
-			// Open zip entry
-			zipOutputStream.putNextEntry(new ZipEntry(componentFilePath));
-
-			// Stream components into zip
-			try (ExportWriter<T> writer = getExportWriter(componentClass, zipOutputStream, extraFieldNames, entryFilenamePrefix.contains("Concrete"))) {
-				writer.setTransientEffectiveTime(transientEffectiveTime);
-				writer.writeHeader();
-				components.forEach(c -> doFilteredWrite(exportFilter, writer, c));
-				return writer.getContentLinesWritten();
-			} finally {
-				// Close zip entry
-				zipOutputStream.closeEntry();
-			}
+			zipWriter.addEntry(componentFilePath, entryStream -> {
+				// Stream components into zip entry
+				try (ExportWriter<T> writer = getExportWriter(componentClass, entryStream, extraFieldNames, entryFilenamePrefix.contains("Concrete"))) {
+					writer.setTransientEffectiveTime(transientEffectiveTime);
+					writer.writeHeader();
+					components.forEach(c -> doFilteredWrite(exportFilter, writer, c));
+					logger.info("{} rows exported to {}", writer.getContentLinesWritten(), componentFilePath);
+				}
+			});
 		} catch (IOException e) {
 			throw new ExportException("Failed to write export zip entry '" + componentFilePath + "'", e);
 		}
@@ -0,0 +1,108 @@
+package org.snomed.snowstorm.core.rf2.export;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the entries of an RF2 archive.
+ * Without an executor each entry is written straight into the zip. With an executor each entry is written to a temp file by the executor
+ * so that entries are produced in parallel, the files are then copied into the zip in the order the entries were added.
+ * In that mode entries are parallelised rather than streamed; nothing reaches the output stream until the first entry is complete.
+ */
+class RF2ZipWriter implements Closeable {
+
+	private final ZipOutputStream zipOutputStream;
+	private final ExecutorService executorService;
+	private final List<PendingEntry> pendingEntries = new ArrayList<>();
+
+	RF2ZipWriter(OutputStream outputStream, ExecutorService executorService) {
+		this.zipOutputStream = new ZipOutputStream(outputStream);
+		this.executorService = executorService;
+	}
+
+	void addEntry(String entryPath, EntryContentWriter contentWriter) throws IOException {
+		if (executorService == null) {
+			zipOutputStream.putNextEntry(new ZipEntry(entryPath));
+			try {
+				contentWriter.write(zipOutputStream);
+			} finally {
+				zipOutputStream.closeEntry();
+			}
+		} else {
+			File entryFile = Files.createTempFile("export-entry", ".txt").toFile();
+			Future<?> future = executorService.submit(() -> {
+				try (OutputStream entryStream = new BufferedOutputStream(new FileOutputStream(entryFile))) {
+					contentWriter.write(entryStream);
+				}
+				return null;
+			});
+			pendingEntries.add(new PendingEntry(entryPath, entryFile, future));
+		}
+	}
+
+	/**
+	 * Waits for any entries still being produced, copies them into the zip and writes the end of the zip.
+	 */
+	void finish() throws IOException {
+		for (PendingEntry pendingEntry : pendingEntries) {
+			try {
+				pendingEntry.future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for export entry " + pendingEntry.entryPath);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new ExportException("Failed to write export zip entry '" + pendingEntry.entryPath + "'", cause);
+			}
+			zipOutputStream.putNextEntry(new ZipEntry(pendingEntry.entryPath));
+			Files.copy(pendingEntry.entryFile.toPath(), zipOutputStream);
+			zipOutputStream.closeEntry();
+			pendingEntry.entryFile.delete();
+		}
+		pendingEntries.clear();
+		zipOutputStream.finish();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			// Only entries left after a failure
+			for (PendingEntry pendingEntry : pendingEntries) {
+				pendingEntry.future.cancel(true);
+				pendingEntry.entryFile.delete();
+			}
+		} finally {
+			zipOutputStream.close();
+		}
+	}
+
+	interface EntryContentWriter {
+		void write(OutputStream outputStream) throws IOException;
+	}
+
+	private static final class PendingEntry {
+
+		private final String entryPath;
+		private final File entryFile;
+		private final Future<?> future;
+
+		private PendingEntry(String entryPath, File entryFile, Future<?> future) {
+			this.entryPath = entryPath;
+			this.entryFile = entryFile;
+			this.future = future;
+		}
+	}
+}
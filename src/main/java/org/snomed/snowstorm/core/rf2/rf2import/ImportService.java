@@ -4,6 +4,7 @@ import io.kaicode.elasticvc.api.BranchService;
 import io.kaicode.elasticvc.domain.Branch;
 import io.kaicode.elasticvc.domain.Commit;
 import io.kaicode.elasticvc.domain.Metadata;
+import io.micrometer.core.instrument.Timer;
 import org.ihtsdo.otf.snomedboot.ReleaseImportException;
 import org.ihtsdo.otf.snomedboot.ReleaseImporter;
 import org.ihtsdo.otf.snomedboot.factory.LoadingProfile;
@@ -58,6 +59,9 @@ public class ImportService {
 	@Autowired
 	private CodeSystemService codeSystemService;
 
+	@Autowired
+	private OperationMetricsService operationMetricsService;
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	public ImportService() {
@@ -100,6 +104,8 @@ public class ImportService {
 		String branchPath = job.getBranchPath();
 		Integer patchReleaseVersion = job.getPatchReleaseVersion();
 		setImportMetadata(importType, branchPath, job.isCreateCodeSystemVersion());
+		Timer.Sample timerSample = operationMetricsService.start();
+		boolean success = false;
 		try {
 			Date start = new Date();
 			logger.info("Starting RF2 {}{} import on branch {}. ID {}", importType, patchReleaseVersion != null ? " RELEASE PATCH on effectiveTime " + patchReleaseVersion : "", branchPath, importId);
@@ -116,6 +122,7 @@ public class ImportService {
 			}
 
 			job.setStatus(ImportJob.ImportStatus.COMPLETED);
+			success = true;
 			long seconds = (new Date().getTime() - start.getTime()) / 1_000;
 			logger.info("Completed RF2 {} import on branch {} in {} seconds. ID {}", importType, branchPath, seconds, importId);
 		} catch (Exception e) {
@@ -124,6 +131,7 @@ public class ImportService {
 			throw e;
 		} finally {
 			clearImportMetadata(branchPath);
+			operationMetricsService.stop(timerSample, OperationMetricsService.IMPORT, success, "type", importType.name());
 		}
 	}
 
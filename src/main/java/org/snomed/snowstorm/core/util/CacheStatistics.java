@@ -0,0 +1,60 @@
+package org.snomed.snowstorm.core.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hit and miss counts of an in-memory cache.
+ */
+public class CacheStatistics {
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public void recordHit() {
+		hits.incrementAndGet();
+	}
+
+	public void recordMiss() {
+		misses.incrementAndGet();
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public double getHitRatio() {
+		long hitCount = hits.get();
+		long requestCount = hitCount + misses.get();
+		return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+	}
+
+	/**
+	 * Publishes the size, hit and miss counts and hit ratio of the cache, tagged with the cache name.
+	 */
+	public void registerMetrics(String cacheName, Supplier<Number> size, MeterRegistry meterRegistry) {
+		Gauge.builder("snowstorm.cache.size", size)
+				.description("Number of entries in the cache.")
+				.tag("cache", cacheName)
+				.register(meterRegistry);
+		FunctionCounter.builder("snowstorm.cache.gets", this, CacheStatistics::getHitCount)
+				.tags("cache", cacheName, "result", "hit")
+				.register(meterRegistry);
+		FunctionCounter.builder("snowstorm.cache.gets", this, CacheStatistics::getMissCount)
+				.tags("cache", cacheName, "result", "miss")
+				.register(meterRegistry);
+		Gauge.builder("snowstorm.cache.hit.ratio", this, CacheStatistics::getHitRatio)
+				.description("Proportion of cache lookups which were hits since startup.")
+				.tag("cache", cacheName)
+				.register(meterRegistry);
+	}
+
+}
@@ -2,6 +2,8 @@ package org.snomed.snowstorm.ecl;
 
 import ch.qos.logback.classic.Level;
 import io.kaicode.elasticvc.api.BranchCriteria;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.slf4j.Logger;
@@ -13,6 +15,7 @@ import org.snomed.langauges.ecl.domain.refinement.Operator;
 import org.snomed.snowstorm.core.data.domain.QueryConcept;
 import org.snomed.snowstorm.core.data.domain.ReferenceSetMember;
 import org.snomed.snowstorm.core.data.services.RuntimeServiceException;
+import org.snomed.snowstorm.core.util.CacheStatistics;
 import org.snomed.snowstorm.core.util.SearchAfterPage;
 import org.snomed.snowstorm.core.util.TimerUtil;
 import org.snomed.snowstorm.ecl.domain.expressionconstraint.SExpressionConstraint;
@@ -24,6 +27,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -54,14 +58,33 @@ public class ECLQueryService {
 	@Value("${cache.ecl.enabled}")
 	private boolean eclCacheEnabled;
 
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
 	private final ECLResultsCache resultsCache;
 
+	private final CacheStatistics cacheStatistics = new CacheStatistics();
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	public ECLQueryService() {
 		resultsCache = new ECLResultsCache();
 	}
 
+	@PostConstruct
+	public void init() {
+		if (meterRegistry != null) {
+			cacheStatistics.registerMetrics("ecl", () -> resultsCache.getTotalStat("size"), meterRegistry);
+			// Published from the stats the branch version caches already keep, as shown by the admin ECL cache stats endpoint
+			for (String hitsStat : List.of("hits-today", "hits-last7days", "hits-last30days")) {
+				Gauge.builder("snowstorm.cache.ecl.hits", () -> resultsCache.getTotalStat(hitsStat))
+						.description("ECL cache hits of the current branch versions over the period.")
+						.tag("period", hitsStat.substring("hits-".length()))
+						.register(meterRegistry);
+			}
+		}
+	}
+
 	public Page<Long> selectConceptIds(String ecl, BranchCriteria branchCriteria, boolean stated, PageRequest pageRequest) throws ECLException {
 		return selectConceptIds(ecl, branchCriteria, stated, null, pageRequest);
 	}
@@ -158,9 +181,11 @@ public class ECLQueryService {
 				final int pageSize = pageRequest != null ? pageRequest.getPageSize() : -1;
 				logger.info("ECL cache hit {}@{} \"{}\" {}:{}", path, branchCriteria.getTimepoint().getTime(), ecl, pageNumber, pageSize);
 				branchVersionCache.recordHit();
+				cacheStatistics.recordHit();
 
 				pageOptional = Optional.of(cachedPage);
 			} else {
+				cacheStatistics.recordMiss();
 				// Select 1
 				// When is pageRequest null?
 				pageOptional = expressionConstraint.select(branchCriteria, stated, null, queryPageRequest, eclContentService, true);
@@ -214,6 +239,10 @@ public class ECLQueryService {
 		return resultsCache;
 	}
 
+	public CacheStatistics getCacheStatistics() {
+		return cacheStatistics;
+	}
+
 	public void clearCache() {
 		resultsCache.clearCache();
 	}
@@ -38,6 +38,13 @@ public class ECLResultsCache {
 		return new HashMap<>(cacheMap);
 	}
 
+	/**
+	 * Sum of one of the stats of the branch version caches, for example "size" or "hits-today".
+	 */
+	public long getTotalStat(String statName) {
+		return cacheMap.values().stream().mapToLong(branchVersionCache -> branchVersionCache.getStats().getOrDefault(statName, 0L)).sum();
+	}
+
 	public void clearCache() {
 		cacheMap.clear();
 		logger.info("ECL cache cleared.");
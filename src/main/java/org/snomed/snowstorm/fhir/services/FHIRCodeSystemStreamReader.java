@@ -0,0 +1,185 @@
+package org.snomed.snowstorm.fhir.services;
+
+import ca.uhn.fhir.parser.IParser;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.hl7.fhir.r4.model.CodeSystem;
+import org.snomed.snowstorm.fhir.domain.FHIRConcept;
+import org.snomed.snowstorm.fhir.domain.FHIRDesignation;
+import org.snomed.snowstorm.fhir.domain.FHIRProperty;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+import static org.snomed.snowstorm.fhir.services.FHIRConceptService.CHILD;
+import static org.snomed.snowstorm.fhir.services.FHIRConceptService.PARENT;
+
+/**
+ * Reads a FHIR CodeSystem JSON resource using a streaming parser.
+ * The CodeSystem fields before the concept array are parsed by HAPI when the resource is opened. The concepts are then converted to FHIRConcept
+ * documents one top level concept at a time as they are iterated, so that neither the HAPI object tree nor the full list of concepts is held in memory.
+ * The concept array must be the last field of the resource, as it is in the FHIR JSON element order.
+ */
+class FHIRCodeSystemStreamReader {
+
+	private static final String CONCEPT = "concept";
+
+	private final ObjectMapper mapper;
+	private final IParser fhirJsonParser;
+
+	FHIRCodeSystemStreamReader(ObjectMapper mapper, IParser fhirJsonParser) {
+		this.mapper = mapper;
+		this.fhirJsonParser = fhirJsonParser;
+	}
+
+	/**
+	 * Reads the CodeSystem from the stream, leaving the concepts to be read by iterating the returned CodeSystemStream.
+	 * The input stream is not closed. The codeSystemVersion field of the concepts is not set.
+	 */
+	CodeSystemStream read(InputStream inputStream) throws IOException {
+		JsonParser parser = mapper.getFactory().createParser(inputStream);
+		parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+		try {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Expected a JSON object at the start of the CodeSystem resource.");
+			}
+			ObjectNode codeSystemHeader = mapper.createObjectNode();
+			boolean conceptArray = false;
+			while (!conceptArray && parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				JsonToken valueToken = parser.nextToken();
+				if (CONCEPT.equals(fieldName) && valueToken == JsonToken.START_ARRAY) {
+					conceptArray = true;
+				} else {
+					codeSystemHeader.set(fieldName, mapper.readTree(parser));
+				}
+			}
+			CodeSystem codeSystem = fhirJsonParser.parseResource(CodeSystem.class, codeSystemHeader.toString());
+			return new CodeSystemStream(codeSystem, parser, conceptArray);
+		} catch (IOException | RuntimeException e) {
+			parser.close();
+			throw e;
+		}
+	}
+
+	private FHIRConcept collectConcepts(JsonNode conceptNode, FHIRConcept parent, Collection<FHIRConcept> concepts) {
+		FHIRConcept concept = toConcept(conceptNode);
+		concepts.add(concept);
+		if (parent != null) {
+			concept.getProperties().computeIfAbsent(PARENT, k -> new ArrayList<>()).add(new FHIRProperty(PARENT, null, parent.getCode(), FHIRProperty.CODE));
+			concept.getParents().add(parent.getCode());
+		}
+		for (JsonNode childNode : conceptNode.path(CONCEPT)) {
+			FHIRConcept child = collectConcepts(childNode, concept, concepts);
+			concept.getProperties().computeIfAbsent(CHILD, k -> new ArrayList<>()).add(new FHIRProperty(CHILD, null, child.getCode(), FHIRProperty.CODE));
+		}
+		return concept;
+	}
+
+	private FHIRConcept toConcept(JsonNode conceptNode) {
+		FHIRConcept concept = new FHIRConcept();
+		concept.setCode(conceptNode.path("code").asText(null));
+		concept.setDisplay(conceptNode.path("display").asText(null));
+
+		List<FHIRDesignation> designations = new ArrayList<>();
+		for (JsonNode designationNode : conceptNode.path("designation")) {
+			FHIRDesignation designation = new FHIRDesignation(designationNode.path("language").asText(null), designationNode.path("value").asText(null));
+			JsonNode use = designationNode.path("use");
+			if (!use.isMissingNode()) {
+				designation.setUse(use.path("system").asText(null), use.path("code").asText(null));
+			}
+			designations.add(designation);
+		}
+		concept.setDesignations(designations);
+
+		Map<String, List<FHIRProperty>> properties = new HashMap<>();
+		Set<String> parents = new HashSet<>();
+		for (JsonNode propertyNode : conceptNode.path("property")) {
+			String code = propertyNode.path("code").asText(null);
+			FHIRProperty property = toProperty(code, propertyNode);
+			properties.computeIfAbsent(code, k -> new ArrayList<>()).add(property);
+			if ((PARENT.equals(code) || "subsumedBy".equals(code)) && property.getValue() != null) {
+				parents.add(property.getValue());
+			}
+		}
+		concept.setProperties(properties);
+		concept.setParents(parents);
+		return concept;
+	}
+
+	private static FHIRProperty toProperty(String code, JsonNode propertyNode) {
+		if (propertyNode.has("valueCoding")) {
+			JsonNode coding = propertyNode.get("valueCoding");
+			return new FHIRProperty(code, coding.path("display").asText(null), coding.path("code").asText(null), FHIRProperty.CODING);
+		} else if (propertyNode.has("valueCode")) {
+			return new FHIRProperty(code, null, propertyNode.get("valueCode").asText(), FHIRProperty.CODE);
+		} else if (propertyNode.has("valueString")) {
+			return new FHIRProperty(code, null, propertyNode.get("valueString").asText(), FHIRProperty.STRING);
+		}
+		return new FHIRProperty(code, null, null, null);
+	}
+
+	/**
+	 * CodeSystem read from the start of the resource with an iterator over its concepts.
+	 * The iterator throws UncheckedIOException if the rest of the resource can not be read.
+	 */
+	final class CodeSystemStream implements Iterator<FHIRConcept>, Closeable {
+
+		private final CodeSystem codeSystem;
+		private final JsonParser parser;
+		private final Deque<FHIRConcept> pendingConcepts = new ArrayDeque<>();
+		private boolean conceptsRemaining;
+
+		private CodeSystemStream(CodeSystem codeSystem, JsonParser parser, boolean conceptsRemaining) {
+			this.codeSystem = codeSystem;
+			this.parser = parser;
+			this.conceptsRemaining = conceptsRemaining;
+		}
+
+		CodeSystem getCodeSystem() {
+			return codeSystem;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (pendingConcepts.isEmpty() && conceptsRemaining) {
+				readNextTopLevelConcept();
+			}
+			return !pendingConcepts.isEmpty();
+		}
+
+		@Override
+		public FHIRConcept next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return pendingConcepts.removeFirst();
+		}
+
+		private void readNextTopLevelConcept() {
+			try {
+				if (parser.nextToken() == JsonToken.START_OBJECT) {
+					collectConcepts(mapper.readTree(parser), null, pendingConcepts);
+				} else {
+					conceptsRemaining = false;
+					if (parser.nextToken() == JsonToken.FIELD_NAME) {
+						throw new IOException(String.format("CodeSystem field '%s' found after the concept array, this is not supported.", parser.getCurrentName()));
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			parser.close();
+		}
+	}
+}
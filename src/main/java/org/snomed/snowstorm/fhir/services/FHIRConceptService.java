@@ -2,10 +2,11 @@ package org.snomed.snowstorm.fhir.services;
 
 import ca.uhn.fhir.jpa.entity.TermCodeSystemVersion;
 import ca.uhn.fhir.jpa.entity.TermConcept;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.hl7.fhir.r4.model.CodeSystem;
 import org.hl7.fhir.r4.model.CodeType;
+import org.hl7.fhir.r4.model.OperationOutcome;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.snowstorm.core.data.domain.Concept;
@@ -16,18 +17,29 @@ import org.snomed.snowstorm.fhir.domain.FHIRConcept;
 import org.snomed.snowstorm.fhir.domain.FHIRProperty;
 import org.snomed.snowstorm.fhir.repositories.FHIRConceptRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
+import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
 import static org.snomed.snowstorm.core.util.CollectionUtils.orEmpty;
 import static org.snomed.snowstorm.fhir.utils.FHIRPageHelper.toPage;
 
@@ -36,6 +48,7 @@ public class FHIRConceptService {
 
 	private static final int SAVE_BATCH_SIZE = 500;
 	private static final int DELETE_BATCH_SIZE = 1_000;
+	private static final int PROGRESS_LOG_INTERVAL = 50_000;
 	public static final String PARENT = "parent";
 	public static final String CHILD = "child";
 
@@ -45,8 +58,24 @@ public class FHIRConceptService {
 	@Autowired
 	private ElasticsearchRestTemplate elasticsearchTemplate;
 
+	@Value("${fhir.import.concept-save-threads}")
+	private int saveThreads;
+
+	// Shared by all imports so that concurrent imports do not multiply the write load on Elasticsearch
+	private ExecutorService saveExecutor;
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
+	@PostConstruct
+	public void startSaveExecutor() {
+		saveExecutor = Executors.newFixedThreadPool(saveThreads);
+	}
+
+	@PreDestroy
+	public void stopSaveExecutor() {
+		saveExecutor.shutdownNow();
+	}
+
 	public void saveAllConceptsOfCodeSystemVersion(TermCodeSystemVersion termCodeSystemVersion, FHIRCodeSystemVersion codeSystemVersion) {
 
 		// Some code systems only return the top level concepts with getConcepts()
@@ -78,6 +107,47 @@ public class FHIRConceptService {
 		saveAllConceptsOfCodeSystemVersion(codeSystemVersion, codeSystemVersion.getId(), concepts);
 	}
 
+	/**
+	 * Saves concepts which have already been converted to FHIRConcept documents, in batches as they are read, for example from a streaming reader.
+	 * Only the hierarchy is held in memory. The ancestors and any missing parent and child properties of an "is-a" code system are only known
+	 * once all concepts have been read, so those concepts are read back from the index and saved again with them.
+	 */
+	public void saveAllConcepts(FHIRCodeSystemVersion codeSystemVersion, Iterator<FHIRConcept> concepts) {
+		String idWithVersion = codeSystemVersion.getId();
+		deleteExistingCodes(idWithVersion);
+
+		boolean isA = "is-a".equals(codeSystemVersion.getHierarchyMeaning());
+		FHIRGraphBuilder graphBuilder = new FHIRGraphBuilder();
+		Map<String, String> conceptDisplayMap = new HashMap<>();
+		Set<String> props = new HashSet<>();
+		long start = System.currentTimeMillis();
+		logger.info("Saving '{}' fhir concepts using {} threads.", idWithVersion, saveThreads);
+		int saved = saveInBatches(idWithVersion, concepts, concept -> {
+			concept.setCodeSystemVersion(idWithVersion);
+			if (concept.getProperties() != null) {
+				props.addAll(concept.getProperties().keySet());
+			}
+			if (isA) {
+				recordHierarchy(concept, graphBuilder, conceptDisplayMap);
+			}
+		});
+
+		if (isA && saved > 0) {
+			elasticsearchTemplate.indexOps(FHIRConcept.class).refresh();
+			logger.info("Adding hierarchy to {} '{}' fhir concepts.", saved, idWithVersion);
+			try (SearchHitsIterator<FHIRConcept> savedConcepts = elasticsearchTemplate.searchForStream(new NativeSearchQueryBuilder()
+					.withQuery(termQuery(FHIRConcept.Fields.CODE_SYSTEM_VERSION, idWithVersion))
+					.withPageable(PageRequest.of(0, SAVE_BATCH_SIZE))
+					.build(), FHIRConcept.class)) {
+				saveInBatches(idWithVersion, Iterators.transform(savedConcepts, SearchHit::getContent),
+						concept -> addHierarchy(concept, graphBuilder, conceptDisplayMap));
+			}
+		}
+		elasticsearchTemplate.indexOps(FHIRConcept.class).refresh();
+		logger.info("Saved {} '{}' fhir concepts in {} seconds, {} concepts per second. All properties: {}", saved, idWithVersion,
+				(System.currentTimeMillis() - start) / 1000, conceptsPerSecond(saved, start), props);
+	}
+
 	private void collectChildren(CodeSystem.ConceptDefinitionComponent parent, Set<CodeSystem.ConceptDefinitionComponent> allConcepts) {
 		allConcepts.add(parent);
 		for (CodeSystem.ConceptDefinitionComponent child : orEmpty(parent.getConcept())) {
@@ -95,29 +165,12 @@ public class FHIRConceptService {
 		}
 
 		FHIRGraphBuilder graphBuilder = new FHIRGraphBuilder();
-		if ("is-a".equals(codeSystemVersion.getHierarchyMeaning())) {
+		Map<String, String> conceptDisplayMap = new HashMap<>();
+		boolean isA = "is-a".equals(codeSystemVersion.getHierarchyMeaning());
+		if (isA) {
 			// Record transitive closure of concepts for subsumption testing
 			for (FHIRConcept concept : concepts) {
-				for (String parentCode : concept.getParents()) {
-					graphBuilder.addParent(concept.getCode(), parentCode);
-				}
-			}
-			// Add parent and child properties if missing
-			Map<String, String> conceptDisplayMap = concepts.stream()
-					.filter(concept -> concept.getDisplay() != null)
-					.collect(Collectors.toMap(FHIRConcept::getCode, FHIRConcept::getDisplay));
-			for (FHIRConcept concept : concepts) {
-				Map<String, List<FHIRProperty>> properties = concept.getProperties();
-				Collection<String> parents = graphBuilder.getNodeParents(concept.getCode());
-				if (!properties.containsKey(PARENT)) {
-					properties.put(PARENT, parents.stream().map(parent -> new FHIRProperty(PARENT, conceptDisplayMap.get(parent), parent, "CODING"))
-							.collect(Collectors.toList()));
-				}
-				Collection<String> children = graphBuilder.getNodeChildren(concept.getCode());
-				if (!properties.containsKey(CHILD)) {
-					properties.put(CHILD, children.stream().map(child -> new FHIRProperty(CHILD, conceptDisplayMap.get(child), child, "CODING"))
-							.collect(Collectors.toList()));
-				}
+				recordHierarchy(concept, graphBuilder, conceptDisplayMap);
 			}
 		}
 
@@ -126,31 +179,94 @@ public class FHIRConceptService {
 				.filter(concept -> concept.getProperties() != null)
 				.forEach(concept -> props.addAll(concept.getProperties().keySet()));
 
-		logger.info("Saving {} '{}' fhir concepts. All properties: {}", concepts.size(), idWithVersion, props);
-		float allSize = concepts.size();
-		int tenPercent = concepts.size() / 10;
-		if (tenPercent == 0) {
-			tenPercent = 1;
+		logger.info("Saving {} '{}' fhir concepts using {} threads. All properties: {}", concepts.size(), idWithVersion, saveThreads, props);
+		long start = System.currentTimeMillis();
+		saveInBatches(idWithVersion, concepts.iterator(), concept -> {
+			if (isA) {
+				addHierarchy(concept, graphBuilder, conceptDisplayMap);
+			}
+		});
+		elasticsearchTemplate.indexOps(FHIRConcept.class).refresh();
+		logger.info("Saved {} '{}' fhir concepts in {} seconds, {} concepts per second.", concepts.size(), idWithVersion,
+				(System.currentTimeMillis() - start) / 1000, conceptsPerSecond(concepts.size(), start));
+	}
+
+	private static void recordHierarchy(FHIRConcept concept, FHIRGraphBuilder graphBuilder, Map<String, String> conceptDisplayMap) {
+		for (String parentCode : concept.getParents()) {
+			graphBuilder.addParent(concept.getCode(), parentCode);
 		}
-		Float percentToLog = null;
-		int saved = 0;
+		if (concept.getDisplay() != null) {
+			conceptDisplayMap.put(concept.getCode(), concept.getDisplay());
+		}
+	}
 
-		for (List<FHIRConcept> conceptsBatch : Iterables.partition(concepts, SAVE_BATCH_SIZE)) {
-			List<FHIRConcept> batch = new ArrayList<>();
-			for (FHIRConcept concept : conceptsBatch) {
-				concept.setAncestors(graphBuilder.getTransitiveClosure(concept.getCode()));
-				batch.add(concept);
-				saved++;
-				if (saved % tenPercent == 0f) {
-					percentToLog = (saved / allSize) * 100;
+	/**
+	 * Sets the ancestors for subsumption testing and adds parent and child properties if missing.
+	 */
+	private static void addHierarchy(FHIRConcept concept, FHIRGraphBuilder graphBuilder, Map<String, String> conceptDisplayMap) {
+		concept.setAncestors(graphBuilder.getTransitiveClosure(concept.getCode()));
+		Map<String, List<FHIRProperty>> properties = concept.getProperties();
+		if (properties == null) {
+			properties = new HashMap<>();
+			concept.setProperties(properties);
+		}
+		if (!properties.containsKey(PARENT)) {
+			properties.put(PARENT, graphBuilder.getNodeParents(concept.getCode()).stream()
+					.map(parent -> new FHIRProperty(PARENT, conceptDisplayMap.get(parent), parent, "CODING"))
+					.collect(Collectors.toList()));
+		}
+		if (!properties.containsKey(CHILD)) {
+			properties.put(CHILD, graphBuilder.getNodeChildren(concept.getCode()).stream()
+					.map(child -> new FHIRProperty(CHILD, conceptDisplayMap.get(child), child, "CODING"))
+					.collect(Collectors.toList()));
+		}
+	}
+
+	/**
+	 * Saves the concepts in batches using the shared save executor, without an index refresh.
+	 * Elasticsearch likes multi-threaded writes. The number of batches waiting to be written is limited so that concepts are only read
+	 * from the source as fast as they can be saved.
+	 */
+	private int saveInBatches(String idWithVersion, Iterator<FHIRConcept> concepts, Consumer<FHIRConcept> beforeSave) {
+		Deque<Future<Integer>> batchesInFlight = new ArrayDeque<>();
+		long start = System.currentTimeMillis();
+		int saved = 0;
+		int nextLogThreshold = PROGRESS_LOG_INTERVAL;
+		try {
+			Iterator<List<FHIRConcept>> batches = Iterators.partition(concepts, SAVE_BATCH_SIZE);
+			while (batches.hasNext()) {
+				List<FHIRConcept> conceptsBatch = batches.next();
+				conceptsBatch.forEach(beforeSave);
+				if (batchesInFlight.size() >= saveThreads * 2) {
+					saved += batchesInFlight.removeFirst().get();
+				}
+				batchesInFlight.add(saveExecutor.submit(() -> {
+					elasticsearchTemplate.save(conceptsBatch);
+					return conceptsBatch.size();
+				}));
+				if (saved >= nextLogThreshold) {
+					logger.info("Saved {} '{}' fhir concepts, {} concepts per second.", saved, idWithVersion, conceptsPerSecond(saved, start));
+					nextLogThreshold = ((saved / PROGRESS_LOG_INTERVAL) + 1) * PROGRESS_LOG_INTERVAL;
 				}
 			}
-			conceptRepository.saveAll(batch);
-			if (concepts.size() > 1000 && percentToLog != null) {
-				logger.info("Saved {}% of '{}' fhir concepts.", Math.round(percentToLog), idWithVersion);
-				percentToLog = null;
+			while (!batchesInFlight.isEmpty()) {
+				saved += batchesInFlight.removeFirst().get();
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw FHIRHelper.exception(String.format("Interrupted while saving '%s' fhir concepts.", idWithVersion), OperationOutcome.IssueType.EXCEPTION, 500, e);
+		} catch (ExecutionException e) {
+			throw FHIRHelper.exception(String.format("Failed to save '%s' fhir concepts.", idWithVersion), OperationOutcome.IssueType.EXCEPTION, 500, e.getCause());
+		} finally {
+			// Only batches left after a failure
+			batchesInFlight.forEach(batchFuture -> batchFuture.cancel(true));
 		}
+		return saved;
+	}
+
+	private static long conceptsPerSecond(int saved, long start) {
+		long millis = Math.max(System.currentTimeMillis() - start, 1);
+		return (saved * 1000L) / millis;
 	}
 
 	public void deleteExistingCodes(String idWithVersion) {
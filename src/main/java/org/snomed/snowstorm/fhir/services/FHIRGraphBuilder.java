@@ -47,6 +47,7 @@ public class FHIRGraphBuilder {
 		private final String code;
 		private final Set<Node> parents;
 		private final Set<Node> children;
+		private Set<String> transitiveClosure;
 
 		public Node(String code) {
 			this.code = code;
@@ -67,17 +68,20 @@ public class FHIRGraphBuilder {
 			return code;
 		}
 
+		/**
+		 * The transitive closure is calculated once per node, reusing the closures of the parent nodes,
+		 * so all parents must be added before the first call.
+		 */
 		public Set<String> getTransitiveClosure() {
-			HashSet<String> tc = new HashSet<>();
-			collectParents(tc);
-			return tc;
-		}
-
-		private void collectParents(Set<String> tc) {
-			for (Node parent : parents) {
-				tc.add(parent.getCode());
-				parent.collectParents(tc);
+			if (transitiveClosure == null) {
+				Set<String> tc = new HashSet<>();
+				for (Node parent : parents) {
+					tc.add(parent.getCode());
+					tc.addAll(parent.getTransitiveClosure());
+				}
+				transitiveClosure = tc;
 			}
+			return transitiveClosure;
 		}
 
 		public Set<Node> getParents() {
@@ -23,9 +23,14 @@ import org.springframework.stereotype.Service;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
@@ -63,63 +68,91 @@ public class FHIRLoadPackageService {
 		logger.info("Importing {} resources, found within index of package {}.{}", filesToImport.size(), submittedFileName,
 				testValueSets ? " Each value set will be expanded and any issues logged as warning." : "");
 
-		// Import all code systems
-		for (FHIRPackageIndexFile indexFileToImport : filesToImport.stream().filter(file -> file.getResourceType().equals("CodeSystem")).collect(Collectors.toList())) {
-			String filename = indexFileToImport.getFilename();
-			String id = indexFileToImport.getId();
-			String url = indexFileToImport.getUrl();
-			if (id != null && url != null) {
-				CodeSystem codeSystem = extractObject(packageFile, filename, CodeSystem.class, jsonParser);
-				codeSystem.setId(id);
-				codeSystem.setUrl(url);
-				if (FHIRHelper.isSnomedUri(codeSystem.getUrl())) {
-					logger.info("Skipping import of SNOMED CT code system via package. Please use the native SNOMED-CT API RF2 import.");
-					continue;
-				}
-				String version = indexFileToImport.getVersion();
-				FHIRCodeSystemVersion existingCodeSystemVersion = codeSystemService.findCodeSystemVersion(new FHIRCodeSystemVersionParams(url).setVersion(version));
-				if (existingCodeSystemVersion != null) {
-					if (codeSystem.getContent() == CodeSystem.CodeSystemContentMode.NOTPRESENT) {
-						logger.info("Skipping import of CodeSystem %s with 'content:not-present' because a CodeSystem with the same url and version already exists.");
-					} else {
-						logger.info("Deleting existing CodeSystem and concepts for url:{}, version:{}", existingCodeSystemVersion.getUrl(), existingCodeSystemVersion.getVersion());
-						codeSystemService.deleteCodeSystemVersion(existingCodeSystemVersion.getId());
-					}
-				}
-				List<CodeSystem.ConceptDefinitionComponent> concepts = codeSystem.getConcept();
-				logger.info("Importing CodeSystem {} with {} concepts from package", codeSystem.getUrl(), concepts != null ? concepts.size() : 0);
-				FHIRCodeSystemVersion codeSystemVersion = codeSystemService.save(codeSystem);
-				if (concepts != null) {
-					fhirConceptService.saveAllConceptsOfCodeSystemVersion(concepts, codeSystemVersion);
-				}
+		// Import all code systems, streaming the concepts of each from the package archive
+		Map<String, FHIRPackageIndexFile> codeSystemFiles = filesToImport.stream()
+				.filter(file -> file.getResourceType().equals("CodeSystem") && file.getId() != null && file.getUrl() != null)
+				.collect(Collectors.toMap(FHIRPackageIndexFile::getFilename, Function.identity(), (a, b) -> a));
+		FHIRCodeSystemStreamReader codeSystemReader = new FHIRCodeSystemStreamReader(mapper, jsonParser);
+		readPackageEntries(packageFile, codeSystemFiles.keySet(), (filename, inputStream) -> {
+			try (FHIRCodeSystemStreamReader.CodeSystemStream codeSystemStream = codeSystemReader.read(inputStream)) {
+				importCodeSystem(codeSystemFiles.get(filename), codeSystemStream);
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
 			}
-		}
+		});
 
 		// Import all value sets
-		for (FHIRPackageIndexFile indexFileToImport : filesToImport.stream().filter(file -> file.getResourceType().equals("ValueSet")).collect(Collectors.toList())) {
-			String filename = indexFileToImport.getFilename();
-			String id = indexFileToImport.getId();
-			String url = indexFileToImport.getUrl();
-			if (id != null && url != null) {
-				ValueSet valueSet = extractObject(packageFile, filename, ValueSet.class, jsonParser);
-				valueSet.setId(id);
-				valueSet.setUrl(url);
-				valueSet.setVersion(indexFileToImport.getVersion());
-				logger.info("Importing ValueSet {} from package", valueSet.getUrl());
-				valueSetService.createOrUpdateValuesetWithoutExpandValidation(valueSet);
-				if (testValueSets) {
-					try {
-						valueSetService.expand(new ValueSetExpansionParameters(valueSet, true), null);
-					} catch (SnowstormFHIRServerResponseException e) {
-						logger.warn("Failed to expand ValueSet {}, {}", valueSet.getUrl(), e.getMessage());
-					}
+		Map<String, FHIRPackageIndexFile> valueSetFiles = filesToImport.stream()
+				.filter(file -> file.getResourceType().equals("ValueSet") && file.getId() != null && file.getUrl() != null)
+				.collect(Collectors.toMap(FHIRPackageIndexFile::getFilename, Function.identity(), (a, b) -> a));
+		readPackageEntries(packageFile, valueSetFiles.keySet(), (filename, inputStream) -> {
+			FHIRPackageIndexFile indexFileToImport = valueSetFiles.get(filename);
+			ValueSet valueSet = jsonParser.parseResource(ValueSet.class, new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+			valueSet.setId(indexFileToImport.getId());
+			valueSet.setUrl(indexFileToImport.getUrl());
+			valueSet.setVersion(indexFileToImport.getVersion());
+			logger.info("Importing ValueSet {} from package", valueSet.getUrl());
+			valueSetService.createOrUpdateValuesetWithoutExpandValidation(valueSet);
+			if (testValueSets) {
+				try {
+					valueSetService.expand(new ValueSetExpansionParameters(valueSet, true), null);
+				} catch (SnowstormFHIRServerResponseException e) {
+					logger.warn("Failed to expand ValueSet {}, {}", valueSet.getUrl(), e.getMessage());
 				}
 			}
-		}
+		});
 
 		logger.info("Completed import of package {}.", submittedFileName);
 	}
 
+	private void importCodeSystem(FHIRPackageIndexFile indexFileToImport, FHIRCodeSystemStreamReader.CodeSystemStream codeSystemStream) {
+		CodeSystem codeSystem = codeSystemStream.getCodeSystem();
+		codeSystem.setId(indexFileToImport.getId());
+		codeSystem.setUrl(indexFileToImport.getUrl());
+		if (FHIRHelper.isSnomedUri(codeSystem.getUrl())) {
+			logger.info("Skipping import of SNOMED CT code system via package. Please use the native SNOMED-CT API RF2 import.");
+			return;
+		}
+		String version = indexFileToImport.getVersion();
+		FHIRCodeSystemVersion existingCodeSystemVersion = codeSystemService.findCodeSystemVersion(new FHIRCodeSystemVersionParams(codeSystem.getUrl()).setVersion(version));
+		if (existingCodeSystemVersion != null) {
+			if (codeSystem.getContent() == CodeSystem.CodeSystemContentMode.NOTPRESENT) {
+				logger.info("Skipping import of CodeSystem %s with 'content:not-present' because a CodeSystem with the same url and version already exists.");
+			} else {
+				logger.info("Deleting existing CodeSystem and concepts for url:{}, version:{}", existingCodeSystemVersion.getUrl(), existingCodeSystemVersion.getVersion());
+				codeSystemService.deleteCodeSystemVersion(existingCodeSystemVersion.getId());
+			}
+		}
+		logger.info("Importing CodeSystem {} from package", codeSystem.getUrl());
+		FHIRCodeSystemVersion codeSystemVersion = codeSystemService.save(codeSystem);
+		fhirConceptService.saveAllConcepts(codeSystemVersion, codeSystemStream);
+	}
+
+	/**
+	 * Reads the package archive once, passing each requested entry to the consumer in archive order.
+	 */
+	private void readPackageEntries(File packageFile, Set<String> archiveEntryNames, PackageEntryConsumer consumer) throws IOException {
+		if (archiveEntryNames.isEmpty()) {
+			return;
+		}
+		Set<String> entriesNotFound = new HashSet<>(archiveEntryNames);
+		try (GzipCompressorInputStream gzipIn = new GzipCompressorInputStream(new FileInputStream(packageFile));
+			 TarArchiveInputStream tarIn = new TarArchiveInputStream(gzipIn)) {
+
+			ArchiveEntry entry;
+			while ((entry = tarIn.getNextEntry()) != null && !entriesNotFound.isEmpty()) {
+				String entryName = entry.getName().replace("package/", "");
+				if (entriesNotFound.remove(entryName)) {
+					logger.debug("Reading {}", entry.getName());
+					consumer.accept(entryName, tarIn);
+				}
+			}
+		}
+		if (!entriesNotFound.isEmpty()) {
+			throw FHIRHelper.exception(format("Files %s not found within package.", entriesNotFound), OperationOutcome.IssueType.NOTFOUND, 401);
+		}
+	}
+
 	private static void validateResources(List<FHIRPackageIndexFile> filesToImport, Set<String> resourceUrlsToImport, boolean importAll, Set<String> supportedResourceTypes) {
 		for (FHIRPackageIndexFile fhirPackageIndexFile : filesToImport) {
 			if (importAll && !supportedResourceTypes.contains(fhirPackageIndexFile.getResourceType())) {
@@ -159,4 +192,8 @@ public class FHIRLoadPackageService {
 		throw FHIRHelper.exception(format("File '%s' not found within package.", archiveEntryName), OperationOutcome.IssueType.NOTFOUND, 401);
 	}
 
+	private interface PackageEntryConsumer {
+		void accept(String archiveEntryName, InputStream inputStream) throws IOException;
+	}
+
 }
@@ -0,0 +1,94 @@
+package org.snomed.snowstorm.mrcm;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.snomed.snowstorm.core.util.CacheStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * The concepts within each MRCM attribute range, used to answer attribute value typeahead requests without running the range ECL each time.
+ * Entries are keyed by branch path, head timestamp and range constraint so are only used while the branch head is unchanged.
+ * The size of the cache is bounded by the total number of concept ids held.
+ */
+@Service
+public class AttributeValueCache {
+
+	@Value("${cache.mrcm.attribute-values.max-ids}")
+	private long maxIds;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	private Cache<CacheKey, Set<Long>> cache;
+
+	private final CacheStatistics cacheStatistics = new CacheStatistics();
+
+	@PostConstruct
+	public void init() {
+		cache = Caffeine.newBuilder()
+				.maximumWeight(maxIds)
+				.weigher((CacheKey key, Set<Long> conceptIds) -> conceptIds.size() + 1)
+				.build();
+		if (meterRegistry != null) {
+			cacheStatistics.registerMetrics("mrcm-attribute-values", this::getSize, meterRegistry);
+		}
+	}
+
+	Set<Long> getRangeConceptIds(String branchPath, long headTimestamp, String rangeConstraint, Supplier<Set<Long>> eclSearch) {
+		CacheKey key = new CacheKey(branchPath, headTimestamp, rangeConstraint);
+		Set<Long> conceptIds = cache.getIfPresent(key);
+		if (conceptIds != null) {
+			cacheStatistics.recordHit();
+			return conceptIds;
+		}
+		cacheStatistics.recordMiss();
+		// Concurrent requests for the same range wait for the first search rather than repeating it
+		return cache.get(key, k -> eclSearch.get());
+	}
+
+	public long getSize() {
+		return cache.estimatedSize();
+	}
+
+	public CacheStatistics getCacheStatistics() {
+		return cacheStatistics;
+	}
+
+	public void clearCache() {
+		cache.invalidateAll();
+	}
+
+	private static final class CacheKey {
+
+		private final String branchPath;
+		private final long headTimestamp;
+		private final String rangeConstraint;
+
+		private CacheKey(String branchPath, long headTimestamp, String rangeConstraint) {
+			this.branchPath = branchPath;
+			this.headTimestamp = headTimestamp;
+			this.rangeConstraint = rangeConstraint;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			CacheKey cacheKey = (CacheKey) o;
+			return headTimestamp == cacheKey.headTimestamp && branchPath.equals(cacheKey.branchPath) && rangeConstraint.equals(cacheKey.rangeConstraint);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(branchPath, headTimestamp, rangeConstraint);
+		}
+	}
+}
@@ -1,9 +1,16 @@
 package org.snomed.snowstorm.mrcm;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.Iterables;
 import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.BranchService;
 import io.kaicode.elasticvc.api.CommitListener;
+import io.kaicode.elasticvc.api.PathUtil;
 import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
 import io.kaicode.elasticvc.domain.Commit;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.langauges.ecl.ECLException;
@@ -11,32 +18,58 @@ import org.snomed.langauges.ecl.ECLQueryBuilder;
 import org.snomed.langauges.ecl.domain.expressionconstraint.ExpressionConstraint;
 import org.snomed.langauges.ecl.domain.expressionconstraint.RefinedExpressionConstraint;
 import org.snomed.langauges.ecl.domain.expressionconstraint.SubExpressionConstraint;
+import org.snomed.snowstorm.core.data.domain.CodeSystem;
 import org.snomed.snowstorm.core.data.domain.Concepts;
 import org.snomed.snowstorm.core.data.domain.ConcreteValue;
 import org.snomed.snowstorm.core.data.domain.ReferenceSetMember;
+import org.snomed.snowstorm.core.data.services.CodeSystemService;
 import org.snomed.snowstorm.core.data.services.ReferenceSetMemberService;
 import org.snomed.snowstorm.core.data.services.ServiceException;
 import org.snomed.snowstorm.core.data.services.pojo.MemberSearchRequest;
+import org.snomed.snowstorm.core.util.CacheStatistics;
 import org.snomed.snowstorm.core.util.TimerUtil;
 import org.snomed.snowstorm.mrcm.model.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import javax.annotation.PostConstruct;
+import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static io.kaicode.elasticvc.api.ComponentService.CLAUSE_LIMIT;
 import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termsQuery;
 
+/**
+ * Loads the MRCM of a branch from the MRCM reference sets.
+ * Loaded MRCMs are cached against the branch path and head timestamp, the content of a branch version never changes so entries do not need to be evicted
+ * on commit. A branch without MRCM changes of its own uses the MRCM of the parent branch at its base.
+ * The cache is warmed for code system branches on startup and for the target branch after each promotion.
+ */
 @Service
 public class MRCMLoader implements CommitListener {
     private static final Logger LOGGER = LoggerFactory.getLogger(MRCMLoader.class);
 
-    private final Map<String, MRCM> cache = new HashMap<>();
+    private static final Set<String> MRCM_REFSETS = Set.of(Concepts.REFSET_MRCM_DOMAIN_INTERNATIONAL,
+            Concepts.REFSET_MRCM_ATTRIBUTE_DOMAIN_INTERNATIONAL, Concepts.REFSET_MRCM_ATTRIBUTE_RANGE_INTERNATIONAL);
+
+    @Value("${cache.mrcm.max-size}")
+    private long maxSize;
+
+    @Value("${cache.mrcm.warm-up.enabled}")
+    private boolean warmUpEnabled;
+
+    private Cache<BranchVersion, MRCM> cache;
+
+    private final CacheStatistics cacheStatistics = new CacheStatistics();
 
     @Autowired
     private ECLQueryBuilder eclQueryBuilder;
@@ -45,12 +78,66 @@ public class MRCMLoader implements CommitListener {
 	@Lazy
     private ReferenceSetMemberService memberService;
 
+    @Autowired
+	@Lazy
+    private CodeSystemService codeSystemService;
+
+    @Autowired
+    private BranchService branchService;
+
     @Autowired
     private VersionControlHelper versionControlHelper;
 
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder().maximumSize(maxSize).build();
+        if (meterRegistry != null) {
+            cacheStatistics.registerMetrics("mrcm", cache::estimatedSize, meterRegistry);
+        }
+    }
+
+    /**
+     * Warms the cache for the target branch once a promotion has completed and the branch lock has been released.
+     */
     @Override
     public void preCommitCompletion(final Commit commit) throws IllegalStateException {
-        this.cache.remove(commit.getBranch().getPath());
+        if (commit.getCommitType() == Commit.CommitType.PROMOTION) {
+            warmUp(commit.getBranch().getPath());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpCodeSystemBranches() {
+        if (!warmUpEnabled) {
+            return;
+        }
+        new Thread(() -> {
+            try {
+                for (CodeSystem codeSystem : codeSystemService.findAll()) {
+                    warmUp(codeSystem.getBranchPath());
+                }
+                LOGGER.info("MRCM cache warmed up for code system branches.");
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to warm up MRCM cache.", e);
+            }
+        }, "mrcm-warm-up").start();
+    }
+
+    private void warmUp(String branchPath) {
+        try {
+            Branch branch = branchService.findLatest(branchPath);
+            if (branch != null) {
+                getMRCM(branch);
+            }
+        } catch (ServiceException | RuntimeException e) {
+            LOGGER.warn("Failed to warm up MRCM cache for branch {}.", branchPath, e);
+        }
     }
 
     /**
@@ -71,35 +158,101 @@ public class MRCMLoader implements CommitListener {
         return new MRCM(domains, attributeDomains, attributeRanges);
     }
 
+    /**
+     * Retrieve the MRCM including the changes of an open commit.
+     * The cached MRCM of the branch is used when the content commit does not change the MRCM reference sets.
+     *
+     * @param commit The open commit.
+     * @return The MRCM for the branch including the open commit.
+     * @throws ServiceException When there is an issue reading MRCM.
+     */
+    public MRCM loadActiveMRCM(Commit commit) throws ServiceException {
+        if (commit.getCommitType() == Commit.CommitType.CONTENT
+                && !hasMRCMChanges(versionControlHelper.getBranchCriteriaChangesAndDeletionsWithinOpenCommitOnly(commit), Collections.emptyMap())) {
+            return getMRCM(branchService.findLatest(commit.getBranch().getPath()));
+        }
+        return loadActiveMRCM(commit.getBranch().getPath(), versionControlHelper.getBranchCriteriaIncludingOpenCommit(commit));
+    }
+
     /**
      * Retrieve the latest MRCM for the given branch. If the MRCM has been read
-     * for the given branch, then the data is read from an internal cache. The cache will
-     * subsequently be cleared whenever the MRCM is updated.
+     * for the given branch version, then the data is read from an internal cache.
      *
      * @param branchPath The branch to read MRCM data from.
      * @return The MRCM for the given branch.
      * @throws ServiceException When there is an issue reading MRCM.
      */
     public MRCM loadActiveMRCMFromCache(String branchPath) throws ServiceException {
-        LOGGER.debug("Checking cache for MRCM.");
-        final MRCM cachedMRCM = cache.get(branchPath);
+        return getMRCM(branchService.findBranchOrThrow(branchPath));
+    }
+
+    /**
+     * Retrieve the MRCM visible through the given branch criteria.
+     * The cached MRCM is used when the criteria are at a version of the branch.
+     * Criteria at any other timepoint, for example including an open commit, are read directly.
+     *
+     * @param branchPath     The branch to read MRCM data from.
+     * @param branchCriteria The branch criteria to use for querying the target branch.
+     * @return The MRCM for the given branch criteria.
+     * @throws ServiceException When there is an issue reading MRCM.
+     */
+    public MRCM loadActiveMRCMFromCache(String branchPath, BranchCriteria branchCriteria) throws ServiceException {
+        final Date timepoint = branchCriteria.getTimepoint();
+        if (timepoint != null) {
+            final Branch branch = branchService.findAtTimepointOrThrow(branchPath, timepoint);
+            if (branch.getHeadTimestamp() == timepoint.getTime()) {
+                return getMRCM(branch);
+            }
+        }
+        return loadActiveMRCM(branchPath, branchCriteria);
+    }
+
+    private MRCM getMRCM(Branch branch) throws ServiceException {
+        final BranchVersion key = new BranchVersion(branch.getPath(), branch.getHeadTimestamp());
+        final MRCM cachedMRCM = cache.getIfPresent(key);
         if (cachedMRCM != null) {
-            LOGGER.debug("MRCM present in cache.");
+            cacheStatistics.recordHit();
             return cachedMRCM;
         }
-        LOGGER.debug("MRCM not present in cache; loading MRCM.");
+        cacheStatistics.recordMiss();
 
-        final BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branchPath);
-        final TimerUtil timer = new TimerUtil("MRCM");
-        final List<Domain> domains = getDomains(branchPath, branchCriteria, timer);
-        final List<AttributeDomain> attributeDomains = getAttributeDomains(branchPath, branchCriteria, timer);
-        final List<AttributeRange> attributeRanges = getAttributeRanges(branchPath, branchCriteria, timer);
-        final MRCM mrcm = new MRCM(domains, attributeDomains, attributeRanges);
-
-        cache.putIfAbsent(branchPath, mrcm);
+        final MRCM mrcm;
+        final String parentPath = PathUtil.getParentPath(branch.getPath());
+        final Map<String, Set<String>> versionsReplaced = branch.getVersionsReplaced();
+        if (parentPath != null && !hasMRCMChanges(versionControlHelper.getChangesOnBranchCriteria(branch),
+                versionsReplaced != null ? versionsReplaced : Collections.emptyMap())) {
+            // The branch sees the same MRCM as the parent branch at the base
+            LOGGER.debug("No MRCM changes on {}, using MRCM of {} at base.", branch.getPath(), parentPath);
+            mrcm = getMRCM(branchService.findAtTimepointOrThrow(parentPath, branch.getBase()));
+        } else {
+            mrcm = loadActiveMRCM(branch.getPath(), versionControlHelper.getBranchCriteria(branch));
+        }
+        cache.put(key, mrcm);
         return mrcm;
     }
 
+    private boolean hasMRCMChanges(BranchCriteria changesCriteria, Map<String, Set<String>> versionsReplaced) {
+        if (elasticsearchOperations.count(new NativeSearchQueryBuilder()
+                .withQuery(boolQuery()
+                        .must(changesCriteria.getEntityBranchCriteria(ReferenceSetMember.class))
+                        .must(termsQuery(ReferenceSetMember.Fields.REFSET_ID, MRCM_REFSETS)))
+                .build(), ReferenceSetMember.class) > 0) {
+            return true;
+        }
+        // Members from the parent branch which have been replaced or deleted on this branch
+        Set<String> replacedInternalIds = versionsReplaced.getOrDefault(ReferenceSetMember.class.getSimpleName(), Collections.emptySet());
+        for (List<String> batch : Iterables.partition(replacedInternalIds, CLAUSE_LIMIT)) {
+            if (elasticsearchOperations.count(new NativeSearchQueryBuilder()
+                    .withQuery(boolQuery()
+                            .must(termsQuery("_id", batch))
+                            .must(termsQuery(ReferenceSetMember.Fields.REFSET_ID, MRCM_REFSETS)))
+                    .build(), ReferenceSetMember.class) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private List<Domain> getDomains(final String branchPath,
                                     final BranchCriteria branchCriteria,
                                     final TimerUtil timer) throws ServiceException {
@@ -237,4 +390,39 @@ public class MRCMLoader implements CommitListener {
         return null;
     }
 
+    public long getCacheSize() {
+        return cache.estimatedSize();
+    }
+
+    public void clearCache() {
+        cache.invalidateAll();
+    }
+
+    private static final class BranchVersion {
+
+        private final String path;
+        private final long headTimestamp;
+
+        private BranchVersion(String path, long headTimestamp) {
+            this.path = path;
+            this.headTimestamp = headTimestamp;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            BranchVersion that = (BranchVersion) o;
+            return headTimestamp == that.headTimestamp && path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, headTimestamp);
+        }
+    }
+
+    public CacheStatistics getCacheStatistics() {
+        return cacheStatistics;
+    }
 }
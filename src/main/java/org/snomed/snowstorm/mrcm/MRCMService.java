@@ -1,23 +1,32 @@
 package org.snomed.snowstorm.mrcm;
 
 import ch.qos.logback.classic.Level;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.PathUtil;
 import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
+import io.kaicode.elasticvc.domain.DomainEntity;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.langauges.ecl.domain.refinement.Operator;
-import org.snomed.snowstorm.core.data.domain.ConceptMini;
-import org.snomed.snowstorm.core.data.domain.Concepts;
-import org.snomed.snowstorm.core.data.domain.QueryConcept;
-import org.snomed.snowstorm.core.data.domain.Relationship;
+import org.snomed.snowstorm.core.data.domain.*;
 import org.snomed.snowstorm.core.data.services.ConceptService;
+import org.snomed.snowstorm.core.data.services.DescriptionService;
 import org.snomed.snowstorm.core.data.services.QueryService;
 import org.snomed.snowstorm.core.data.services.ServiceException;
 import org.snomed.snowstorm.core.data.services.identifier.IdentifierService;
 import org.snomed.snowstorm.core.pojo.LanguageDialect;
+import org.snomed.snowstorm.core.util.CacheStatistics;
 import org.snomed.snowstorm.core.util.TimerUtil;
+import org.snomed.snowstorm.ecl.ECLQueryService;
 import org.snomed.snowstorm.mrcm.model.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
 import org.springframework.data.elasticsearch.core.SearchHitsIterator;
@@ -25,6 +34,7 @@ import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilde
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -40,6 +50,18 @@ public class MRCMService {
 
 	private static final PageRequest RESPONSE_PAGE_SIZE = PageRequest.of(0, 50);
 	private static final String CHILDREN = "children";
+	// Content which the concept model attribute hierarchy is built from
+	private static final List<Class<? extends DomainEntity>> ATTRIBUTE_HIERARCHY_CONTENT_TYPES =
+			List.of(Concept.class, Description.class, ReferenceSetMember.class, QueryConcept.class);
+
+	@Value("${cache.mrcm.attribute-hierarchy.max-size}")
+	private int attributeHierarchyCacheMaxSize;
+
+	@Value("${mrcm.attribute-values.prefix-search.enabled}")
+	private boolean attributeValuesPrefixSearch;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
 
 	@Autowired
 	private MRCMLoader mrcmLoader;
@@ -56,8 +78,32 @@ public class MRCMService {
 	@Autowired
 	private ElasticsearchRestTemplate elasticsearchTemplate;
 
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private DescriptionService descriptionService;
+
+	@Autowired
+	private ECLQueryService eclQueryService;
+
+	@Autowired
+	private AttributeValueCache attributeValueCache;
+
+	private Cache<AttributeHierarchyKey, ConceptMini> attributeHierarchyCache;
+
+	private final CacheStatistics attributeHierarchyCacheStatistics = new CacheStatistics();
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
+	@PostConstruct
+	public void init() {
+		attributeHierarchyCache = Caffeine.newBuilder().maximumSize(attributeHierarchyCacheMaxSize).build();
+		if (meterRegistry != null) {
+			attributeHierarchyCacheStatistics.registerMetrics("mrcm-attribute-hierarchy", attributeHierarchyCache::estimatedSize, meterRegistry);
+		}
+	}
+
 	public MRCM loadActiveMRCMFromCache(String branchPath) throws ServiceException {
 		return mrcmLoader.loadActiveMRCMFromCache(branchPath);
 	}
@@ -66,7 +112,7 @@ public class MRCMService {
 			String branchPath, List<LanguageDialect> languageDialects) throws ServiceException {
 
 		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branchPath);
-		final MRCM branchMRCM = mrcmLoader.loadActiveMRCM(branchPath, branchCriteria);
+		final MRCM branchMRCM = mrcmLoader.loadActiveMRCMFromCache(branchPath);
 
 		final List<AttributeDomain> attributeDomains = doRetrieveDomainAttributes(contentType, proximalPrimitiveModeling, parentIds, branchCriteria, branchMRCM);
 		Set<String> attributeIds = attributeDomains.stream().map(AttributeDomain::getReferencedComponentId).collect(Collectors.toSet());
@@ -88,8 +134,8 @@ public class MRCMService {
 	public Collection<ConceptMini> retrieveDomainAttributes(ContentType contentType, boolean proximalPrimitiveModeling, Set<Long> parentIds,
 			String branchPath, BranchCriteria branchCriteria) throws ServiceException {
 
-		// Load MRCM using active records applicable to this branch
-		final MRCM branchMRCM = mrcmLoader.loadActiveMRCM(branchPath, branchCriteria);
+		// Load MRCM using active records visible through the branch criteria
+		final MRCM branchMRCM = mrcmLoader.loadActiveMRCMFromCache(branchPath, branchCriteria);
 		final List<AttributeDomain> attributeDomains = doRetrieveDomainAttributes(contentType, proximalPrimitiveModeling, parentIds, branchCriteria, branchMRCM);
 
 		Set<String> attributeIds = attributeDomains.stream().map(AttributeDomain::getReferencedComponentId).collect(Collectors.toSet());
@@ -162,16 +208,44 @@ public class MRCMService {
 	}
 
 	public Collection<ConceptMini> retrieveAttributeValues(ContentType contentType, String attributeId, String termPrefix, String branchPath, List<LanguageDialect> languageDialects) throws ServiceException {
-		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branchPath);
-		MRCM branchMRCM = mrcmLoader.loadActiveMRCM(branchPath, branchCriteria);
+		MRCM branchMRCM = mrcmLoader.loadActiveMRCMFromCache(branchPath);
 		return retrieveAttributeValues(contentType, attributeId, termPrefix, branchPath, languageDialects, branchMRCM);
 	}
 
+	/**
+	 * Typeahead for the values of an attribute.
+	 * With prefix search enabled the concepts within the attribute range are selected once per branch version and cached,
+	 * each request is then a single description prefix search limited to those concepts. This needs the termFolded.prefix field
+	 * which is only populated in descriptions indexed or reindexed since it was added.
+	 * Otherwise the range ECL and a description search are run on each request.
+	 */
 	public Collection<ConceptMini> retrieveAttributeValues(ContentType contentType, String attributeId, String termPrefix, String branchPath,
 			List<LanguageDialect> languageDialects, MRCM branchMRCM) {
 
-		QueryService.ConceptQueryBuilder conceptQuery = createAttributeValuesQuery(contentType, attributeId, termPrefix, languageDialects, branchMRCM);
-		return queryService.search(conceptQuery, branchPath, RESPONSE_PAGE_SIZE).getContent();
+		if (!attributeValuesPrefixSearch) {
+			QueryService.ConceptQueryBuilder conceptQuery = createAttributeValuesQuery(contentType, attributeId, termPrefix, languageDialects, branchMRCM);
+			return queryService.search(conceptQuery, branchPath, RESPONSE_PAGE_SIZE).getContent();
+		}
+
+		AttributeRange attributeRange = getMandatoryAttributeRange(contentType, attributeId, branchMRCM);
+		String rangeConstraint = attributeRange.getRangeConstraint();
+		Branch branch = branchService.findBranchOrThrow(branchPath);
+		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branch);
+		Set<Long> rangeConceptIds = attributeValueCache.getRangeConceptIds(branchPath, branch.getHeadTimestamp(), rangeConstraint,
+				() -> new LongOpenHashSet(eclQueryService.selectConceptIds(rangeConstraint, branchCriteria, false, null).getContent()));
+
+		List<Long> conceptIds;
+		if (IdentifierService.isConceptId(termPrefix)) {
+			Long conceptId = parseLong(termPrefix);
+			conceptIds = rangeConceptIds.contains(conceptId) ? Collections.singletonList(conceptId) : Collections.emptyList();
+		} else {
+			conceptIds = descriptionService.findAutocompleteConceptIdsWithinSet(branchCriteria, termPrefix, rangeConceptIds, RESPONSE_PAGE_SIZE.getPageSize());
+		}
+		if (conceptIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Map<String, ConceptMini> conceptMinis = conceptService.findConceptMinis(branchCriteria, conceptIds, languageDialects).getResultsMap();
+		return conceptIds.stream().map(conceptId -> conceptMinis.get(conceptId.toString())).filter(Objects::nonNull).collect(Collectors.toList());
 	}
 
 	public Collection<Long> retrieveAttributeValueIds(ContentType contentType, String attributeId, String termPrefix, String branchPath,
@@ -182,6 +256,21 @@ public class MRCMService {
 	}
 
 	private QueryService.ConceptQueryBuilder createAttributeValuesQuery(ContentType contentType, String attributeId, String termPrefix, List<LanguageDialect> languageDialects, MRCM branchMRCM) {
+		AttributeRange attributeRange = getMandatoryAttributeRange(contentType, attributeId, branchMRCM);
+
+		QueryService.ConceptQueryBuilder conceptQuery = queryService.createQueryBuilder(Relationship.CharacteristicType.inferred)
+				.ecl(attributeRange.getRangeConstraint())
+				.resultLanguageDialects(languageDialects);
+
+		if (IdentifierService.isConceptId(termPrefix)) {
+			conceptQuery.conceptIds(Collections.singleton(termPrefix));
+		} else {
+			conceptQuery.descriptionCriteria(d -> d.term(termPrefix).active(true));
+		}
+		return conceptQuery;
+	}
+
+	private AttributeRange getMandatoryAttributeRange(ContentType contentType, String attributeId, MRCM branchMRCM) {
 		Set<AttributeRange> attributeRanges = branchMRCM.getMandatoryAttributeRanges(attributeId, contentType);
 
 		if (attributeRanges.isEmpty()) {
@@ -191,21 +280,51 @@ public class MRCMService {
 					contentType, attributeId, attributeRanges.stream().map(AttributeRange::getId).collect(Collectors.toSet()));
 		}
 
-		AttributeRange attributeRange = attributeRanges.iterator().next();
+		return attributeRanges.iterator().next();
+	}
 
-		QueryService.ConceptQueryBuilder conceptQuery = queryService.createQueryBuilder(Relationship.CharacteristicType.inferred)
-				.ecl(attributeRange.getRangeConstraint())
-				.resultLanguageDialects(languageDialects);
+	/**
+	 * The concept model attribute hierarchy of the branch, cached per branch version and language dialects.
+	 * A branch without content changes of its own uses the hierarchy of the parent branch at the base, when that is cached.
+	 */
+	public ConceptMini retrieveConceptModelAttributeHierarchy(String branchPath, List<LanguageDialect> languageDialects) {
+		Branch branch = branchService.findBranchOrThrow(branchPath);
+		AttributeHierarchyKey key = new AttributeHierarchyKey(branch.getPath(), branch.getHeadTimestamp(), languageDialects);
+		ConceptMini hierarchy = attributeHierarchyCache.getIfPresent(key);
+		if (hierarchy != null) {
+			attributeHierarchyCacheStatistics.recordHit();
+			return hierarchy;
+		}
+		attributeHierarchyCacheStatistics.recordMiss();
 
-		if (IdentifierService.isConceptId(termPrefix)) {
-			conceptQuery.conceptIds(Collections.singleton(termPrefix));
-		} else {
-			conceptQuery.descriptionCriteria(d -> d.term(termPrefix).active(true));
+		String parentPath = PathUtil.getParentPath(branchPath);
+		if (parentPath != null && !hasContentChanges(branch)) {
+			Branch parentAtBase = branchService.findAtTimepointOrThrow(parentPath, branch.getBase());
+			hierarchy = attributeHierarchyCache.getIfPresent(new AttributeHierarchyKey(parentPath, parentAtBase.getHeadTimestamp(), languageDialects));
 		}
-		return conceptQuery;
+		if (hierarchy == null) {
+			hierarchy = loadConceptModelAttributeHierarchy(branchPath, languageDialects);
+		}
+		attributeHierarchyCache.put(key, hierarchy);
+		return hierarchy;
 	}
 
-	public ConceptMini retrieveConceptModelAttributeHierarchy(String branch, List<LanguageDialect> languageDialects) {
+	private boolean hasContentChanges(Branch branch) {
+		Map<String, Set<String>> versionsReplaced = branch.getVersionsReplaced();
+		BranchCriteria changesCriteria = versionControlHelper.getChangesOnBranchCriteria(branch);
+		for (Class<? extends DomainEntity> type : ATTRIBUTE_HIERARCHY_CONTENT_TYPES) {
+			if (versionsReplaced != null && !versionsReplaced.getOrDefault(type.getSimpleName(), Collections.emptySet()).isEmpty()) {
+				return true;
+			}
+			if (elasticsearchTemplate.count(new NativeSearchQueryBuilder()
+					.withQuery(changesCriteria.getEntityBranchCriteria(type)).build(), type) > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private ConceptMini loadConceptModelAttributeHierarchy(String branch, List<LanguageDialect> languageDialects) {
 		logger.info("Loading concept model attribute hierarchy.");
 		TimerUtil timer = new TimerUtil("attribute-tree", Level.INFO);
 		String topId = Concepts.CONCEPT_MODEL_ATTRIBUTE;
@@ -253,4 +372,42 @@ public class MRCMService {
 	private List<ConceptMini> ecl(String ecl, String branch, List<LanguageDialect> languageDialects) {
 		return queryService.search(queryService.createQueryBuilder(false).resultLanguageDialects(languageDialects).ecl(ecl), branch, PageRequest.of(0, 1_000)).getContent();
 	}
+
+	public CacheStatistics getAttributeHierarchyCacheStatistics() {
+		return attributeHierarchyCacheStatistics;
+	}
+
+	public void clearAttributeHierarchyCache() {
+		attributeHierarchyCache.invalidateAll();
+	}
+
+	public void setAttributeValuesPrefixSearch(boolean attributeValuesPrefixSearch) {
+		this.attributeValuesPrefixSearch = attributeValuesPrefixSearch;
+	}
+
+	private static final class AttributeHierarchyKey {
+
+		private final String path;
+		private final long headTimestamp;
+		private final List<LanguageDialect> languageDialects;
+
+		private AttributeHierarchyKey(String path, long headTimestamp, List<LanguageDialect> languageDialects) {
+			this.path = path;
+			this.headTimestamp = headTimestamp;
+			this.languageDialects = languageDialects != null ? languageDialects : Collections.emptyList();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			AttributeHierarchyKey that = (AttributeHierarchyKey) o;
+			return headTimestamp == that.headTimestamp && path.equals(that.path) && languageDialects.equals(that.languageDialects);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(path, headTimestamp, languageDialects);
+		}
+	}
 }
@@ -18,6 +18,7 @@ import org.snomed.snowstorm.core.data.domain.review.ReviewStatus;
 import org.snomed.snowstorm.core.data.domain.security.UserBranchRoles;
 import org.snomed.snowstorm.core.data.services.*;
 import org.snomed.snowstorm.core.data.services.classification.BranchClassificationStatusService;
+import org.snomed.snowstorm.core.data.services.pojo.IntegrityCheckJob;
 import org.snomed.snowstorm.core.data.services.pojo.IntegrityIssueReport;
 import org.snomed.snowstorm.rest.pojo.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -276,6 +277,21 @@ public class BranchController {
 		return integrityService.findAllComponentsWithBadIntegrity(branch, true);
 	}
 
+	@PostMapping(value = "/integrity-check-full-jobs")
+	@Operation(summary = "Start an integrity check against all components on a branch in the background.",
+			description = "Returns the location of the job in the response header. " +
+					"The job reports the number of concept id partitions checked so far and includes the report once completed.")
+	public ResponseEntity<Void> fullIntegrityCheckAsync(@Parameter(description = "The branch path") @RequestParam @NotNull String branch) {
+		IntegrityCheckJob job = integrityService.findAllComponentsWithBadIntegrityAsync(branchService.findBranchOrThrow(BranchPathUriUtil.decodePath(branch)), true);
+		return ControllerHelper.getCreatedResponse(job.getId());
+	}
+
+	@GetMapping(value = "/integrity-check-full-jobs/{jobId}")
+	@Operation(summary = "Retrieve a full integrity check job.")
+	public IntegrityCheckJob getFullIntegrityCheckJob(@PathVariable String jobId) {
+		return integrityService.getIntegrityCheckJobOrThrow(jobId);
+	}
+
 	private List<Branch> clearMetadata(List<Branch> allBranches) {
 		for (Branch branch : allBranches) {
 			branch.setMetadata(null);
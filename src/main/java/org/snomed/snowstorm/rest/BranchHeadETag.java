@@ -0,0 +1,13 @@
+package org.snomed.snowstorm.rest;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a read endpoint whose response depends only on the content of the {branch} path variable and the request itself.
+ * These endpoints support conditional requests using an ETag and Last-Modified based on the branch head.
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface BranchHeadETag {
+}
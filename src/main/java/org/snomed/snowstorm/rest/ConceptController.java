@@ -96,6 +96,7 @@ public class ConceptController {
 	@Value("${snowstorm.rest-api.allowUnlimitedConceptPagination:false}")
 	private boolean allowUnlimitedConceptPagination;
 
+	@BranchHeadETag
 	@GetMapping(value = "/{branch}/concepts", produces = {"application/json", "text/csv"})
 	public HttpEntity<ItemsPage<?>> findConcepts(
 			@PathVariable String branch,
@@ -203,6 +204,7 @@ public class ConceptController {
 		}
 	}
 
+	@BranchHeadETag
 	@GetMapping(value = "/{branch}/concepts/{conceptId}", produces = {"application/json", "text/csv"})
 	public ConceptMini findConcept(
 			@PathVariable String branch,
@@ -250,6 +252,7 @@ public class ConceptController {
 			description = "When enabled 'searchAfter' can be used for unlimited pagination. " +
 					"Load the first page then take the 'searchAfter' value from the response and use that " +
 					"as a parameter in the next page request instead of 'number'.")
+	@BranchHeadETag
 	@GetMapping(value = "/browser/{branch}/concepts")
 	@JsonView(value = View.Component.class)
 	public ItemsPage<Concept> getBrowserConcepts(
@@ -297,6 +300,7 @@ public class ConceptController {
 			description = "During content authoring previous versions of the concept can be loaded from version control.\n" +
 					"To do this use the branch path format {branch@" + BranchTimepoint.DATE_FORMAT_STRING + "} or {branch@epoch_milliseconds}.\n" +
 					"The version of the concept when the branch was created can be loaded using {branch@" + BRANCH_CREATION_TIMEPOINT + "}.")
+	@BranchHeadETag
 	@GetMapping(value = "/browser/{branch}/concepts/{conceptId}")
 	@JsonView(value = View.Component.class)
 	public ConceptView findBrowserConcept(
@@ -333,6 +337,7 @@ public class ConceptController {
 		return ControllerHelper.throwIfNotFound("conceptHistory", conceptHistory);
 	}
 
+	@BranchHeadETag
 	@GetMapping(value = "/{branch}/concepts/{conceptId}/descriptions")
 	@JsonView(value = View.Component.class)
 	public ConceptDescriptionsResult findConceptDescriptions(
@@ -344,6 +349,7 @@ public class ConceptController {
 		return new ConceptDescriptionsResult(concept.getDescriptions());
 	}
 
+	@BranchHeadETag
 	@GetMapping(value = "/{branch}/concepts/{conceptId}/descendants")
 	@JsonView(value = View.Component.class)
 	public ItemsPage<?> findConceptDescendants(@PathVariable String branch,
@@ -368,6 +374,7 @@ public class ConceptController {
 		return search(branch, searchRequest, acceptLanguageHeader).getBody();
 	}
 
+	@BranchHeadETag
 	@GetMapping(value = "/{branch}/concepts/{conceptId}/inbound-relationships")
 	@JsonView(value = View.Component.class)
 	public InboundRelationshipsResult findConceptInboundRelationships(@PathVariable String branch, @PathVariable String conceptId) {
@@ -377,6 +384,7 @@ public class ConceptController {
 
 	@Operation(summary = "Find concepts which reference this concept in the inferred or stated form (including stated axioms).",
 			description = "Pagination works on the referencing concepts. A referencing concept may have one or more references of different types.")
+	@BranchHeadETag
 	@GetMapping(value = "/{branch}/concepts/{conceptId}/references")
 	public ConceptReferencesResult findConceptReferences(
 			@PathVariable String branch,
@@ -509,6 +517,7 @@ public class ConceptController {
 		return ControllerHelper.throwIfNotFound("Bulk Change", conceptService.getBatchConceptChange(bulkChangeId));
 	}
 
+	@BranchHeadETag
 	@GetMapping(value = "/browser/{branch}/concepts/{conceptId}/children")
 	@JsonView(value = View.Component.class)
 	public Collection<ConceptMini> findConceptChildren(@PathVariable String branch,
@@ -536,6 +545,7 @@ public class ConceptController {
 		return children;
 	}
 
+	@BranchHeadETag
 	@GetMapping(value = "/browser/{branch}/concepts/{conceptId}/parents")
 	@JsonView(value = View.Component.class)
 	public Collection<ConceptMini> findConceptParents(@PathVariable String branch,
@@ -556,6 +566,7 @@ public class ConceptController {
 		return parents;
 	}
 
+	@BranchHeadETag
 	@GetMapping(value = "/browser/{branch}/concepts/{conceptId}/ancestors")
 	@JsonView(value = View.Component.class)
 	public Collection<?> findConceptAncestors(@PathVariable String branch,
@@ -567,6 +578,7 @@ public class ConceptController {
 		return findConceptsWithECL(">" + conceptId, form == Relationship.CharacteristicType.stated, branch, acceptLanguageHeader, 0, LARGE_PAGE.getPageSize()).getItems();
 	}
 
+	@BranchHeadETag
 	@GetMapping(value = "/{branch}/concepts/{conceptId}/authoring-form")
 	public Expression getConceptAuthoringForm(
 			@PathVariable String branch,
@@ -576,6 +588,7 @@ public class ConceptController {
 		return expressionService.getConceptAuthoringForm(conceptId, ControllerHelper.parseAcceptLanguageHeaderWithDefaultFallback(acceptLanguageHeader), BranchPathUriUtil.decodePath(branch));
 	}
 	
+	@BranchHeadETag
 	@GetMapping(value = "/{branch}/concepts/{conceptId}/normal-form")
 	public ExpressionStringPojo getConceptNormalForm(
 			@PathVariable String branch,
@@ -9,8 +9,11 @@ import org.ihtsdo.drools.response.InvalidContent;
 import org.snomed.snowstorm.core.data.domain.Concept;
 import org.snomed.snowstorm.core.data.services.ContentReportService;
 import org.snomed.snowstorm.core.data.services.ServiceException;
+import org.snomed.snowstorm.rest.pojo.ItemsPage;
 import org.snomed.snowstorm.validation.DroolsValidationService;
+import org.snomed.snowstorm.validation.domain.BatchValidationJob;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
@@ -47,6 +50,36 @@ public class ConceptValidationController {
 		return validationService.validateConcepts(branchPath, concepts);
 	}
 
+	@PostMapping(value = "/browser/{branch}/validate/batch")
+	@Operation(description = "Start validation of all concepts matching an ECL query using the Snomed-Drools project. " +
+			"Concepts are validated in parallel in the background, use the location header to check progress and fetch results.")
+	@PreAuthorize("hasPermission('AUTHOR', #branch)")
+	public ResponseEntity<Void> validateBatch(@Parameter(description = "The branch path") @PathVariable String branch,
+			@Parameter(description = "ECL query selecting the concepts to validate") @RequestParam String ecl,
+			@Parameter(description = "Validate inferred relationships, use after classification") @RequestParam(defaultValue = "false") boolean afterClassification) throws ServiceException {
+
+		branch = BranchPathUriUtil.decodePath(branch);
+		String jobId = validationService.validateBatch(branch, ecl, afterClassification);
+		return ControllerHelper.getCreatedResponse(jobId);
+	}
+
+	@GetMapping(value = "/browser/{branch}/validate/batch/{jobId}")
+	@Operation(description = "Retrieve the status and progress of a batch validation.")
+	public BatchValidationJob getBatchValidation(@PathVariable(value = "branch") String branchPath, @PathVariable String jobId) {
+		branchPath = BranchPathUriUtil.decodePath(branchPath);
+		return validationService.getBatchValidationJobOrThrow(branchPath, jobId);
+	}
+
+	@GetMapping(value = "/browser/{branch}/validate/batch/{jobId}/results")
+	@Operation(description = "Retrieve the invalid content found by a batch validation so far.")
+	public ItemsPage<InvalidContent> getBatchValidationResults(@PathVariable(value = "branch") String branchPath, @PathVariable String jobId,
+			@RequestParam(defaultValue = "0") int offset,
+			@RequestParam(defaultValue = "1000") int limit) {
+
+		branchPath = BranchPathUriUtil.decodePath(branchPath);
+		return new ItemsPage<>(validationService.getBatchValidationResults(branchPath, jobId, ControllerHelper.getPageRequest(offset, limit)));
+	}
+
 	@PostMapping(value = "/validation-maintenance/reload-validation-rules")
 	@Operation(description = "Reload SNOMED Drools assertions and test resources.")
 	@PreAuthorize("hasPermission('ADMIN', 'global')")
@@ -46,6 +46,7 @@ public class DescriptionController {
 			description = "The Accept-Language header is used to specify the user's preferred language, 'en' is always added as a fallback if not already included in the list. " +
 					"Each language is used as an optional clause for matching and will include the correct character folding behaviour for that language. " +
 					"The Accept-Language header list is also used to chose the best translated FSN and PT values in the response.")
+	@BranchHeadETag
 	@GetMapping(value = "browser/{branch}/descriptions")
 	@JsonView(value = View.Component.class)
 	public Page<BrowserDescriptionSearchResult> findBrowserDescriptions(
@@ -127,6 +128,37 @@ public class DescriptionController {
 		return pageWithBucketAggregations;
 	}
 
+	@Operation(summary = "Typeahead search for active concepts by description term prefix.",
+			description = "Optimised for keystroke level autocomplete. Each word of the term is matched as a prefix. " +
+					"Returns the best matching active description of each matching active concept, ranked by acceptability in the Accept-Language dialects then term length. " +
+					"The concept in each result only has the conceptId populated. No aggregations or total count are calculated.")
+	@BranchHeadETag
+	@GetMapping(value = "browser/{branch}/descriptions/autocomplete")
+	@JsonView(value = View.Component.class)
+	public List<BrowserDescriptionSearchResult> autocomplete(
+			@PathVariable String branch,
+			@RequestParam String term,
+
+			@Parameter(description = "Set of two character language codes to match.")
+			@RequestParam(required = false) Set<String> language,
+
+			@Parameter(description = "Set of description type ids to include. Defaults to any.")
+			@RequestParam(required = false) Set<Long> type,
+
+			@RequestParam(defaultValue = "10") int limit,
+			@RequestHeader(value = "Accept-Language", defaultValue = Config.DEFAULT_ACCEPT_LANG_HEADER) String acceptLanguageHeader) {
+
+		branch = BranchPathUriUtil.decodePath(branch);
+		if (limit < 1 || limit > 100) {
+			throw new IllegalArgumentException("Limit must be between 1 and 100.");
+		}
+		List<LanguageDialect> languageDialects = ControllerHelper.parseAcceptLanguageHeaderWithDefaultFallback(acceptLanguageHeader);
+
+		return descriptionService.findAutocompleteDescriptions(branch, term, language, type, languageDialects, limit).stream()
+				.map(d -> new BrowserDescriptionSearchResult(d.getTerm(), d.isActive(), d.getLanguageCode(), d.getModuleId(), new ConceptMini(d.getConceptId(), languageDialects)))
+				.collect(Collectors.toList());
+	}
+
 	private void addBucketConcepts(@PathVariable String branch, List<LanguageDialect> LanguageDialect, PageWithBucketAggregations<BrowserDescriptionSearchResult> pageWithBucketAggregations) {
 		Map<String, Map<String, Long>> buckets = pageWithBucketAggregations.getBuckets();
 		Set<String> bucketConceptIds = new HashSet<>();
@@ -152,6 +184,7 @@ public class DescriptionController {
 		}
 	}
 
+	@BranchHeadETag
 	@GetMapping(value = "{branch}/descriptions")
 	@JsonView(value = View.Component.class)
 	public ItemsPage<Description> findDescriptions(@PathVariable String branch,
@@ -168,6 +201,7 @@ public class DescriptionController {
 		return new ItemsPage<>(descriptionService.findDescriptions(branch, null, descriptionIds, unmodifiableSet(conceptIds), ControllerHelper.getPageRequest(offset, limit)));
 	}
 
+	@BranchHeadETag
 	@GetMapping(value = "{branch}/descriptions/{descriptionId}")
 	@JsonView(value = View.Component.class)
 	public Description fetchDescription(@PathVariable String branch, @PathVariable String descriptionId) {
@@ -189,6 +223,7 @@ public class DescriptionController {
 	}
 
 	@Operation(summary = "List semantic tags of all active concepts together with a count of concepts using each.")
+	@BranchHeadETag
 	@GetMapping(value = "{branch}/descriptions/semantictags")
 	@JsonView(value = View.Component.class)
 	public Map<String, Long> countSemanticTags(@PathVariable String branch) {
@@ -26,6 +26,7 @@ public class MRCMController {
 
 	@Operation(summary = "Retrieve MRCM domain attributes applicable for the given stated parents.",
 			description = "The parentIds must be the set ids of stated parents. If creating post-coordinated expressions be sure to set the content type to POSTCOORDINATED.")
+	@BranchHeadETag
 	@GetMapping(value = "/mrcm/{branch}/domain-attributes")
 	public ItemsPage<ConceptMini> retrieveDomainAttributes(
 			@PathVariable String branch,
@@ -39,6 +40,7 @@ public class MRCMController {
 	}
 
 	@Operation(summary = "Retrieve valid values for the given attribute and term prefix.")
+	@BranchHeadETag
 	@GetMapping(value = "/mrcm/{branch}/attribute-values/{attributeId}")
 	public ItemsPage<ConceptMini> retrieveAttributeValues(
 			@PathVariable String branch,
@@ -52,6 +54,7 @@ public class MRCMController {
 	}
 
 	@Operation(summary = "Retrieve all active concept model attributes in a hierarchical structure.")
+	@BranchHeadETag
 	@GetMapping(value = "/mrcm/{branch}/concept-model-attribute-hierarchy")
 	public ConceptMini retrieveConceptModelAttributeHierarchy(
 			@PathVariable String branch,
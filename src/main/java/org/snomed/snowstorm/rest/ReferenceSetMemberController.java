@@ -60,6 +60,7 @@ public class ReferenceSetMemberController {
 	private VersionControlHelper versionControlHelper;
 
 	@Operation(description = "Search for reference set ids.")
+	@BranchHeadETag
 	@GetMapping(value = "/browser/{branch}/members")
 	public RefSetMemberPageWithBucketAggregations<ReferenceSetMember> findBrowserReferenceSetMembersWithAggregations(
 			@PathVariable String branch,
@@ -124,6 +125,7 @@ public class ReferenceSetMemberController {
 	}
 
 	@Operation(summary = "Search for reference set members.")
+	@BranchHeadETag
 	@GetMapping(value = "/{branch}/members")
 	@JsonView(value = View.Component.class)
 	public ItemsPage<ReferenceSetMember> findRefsetMembers(@PathVariable String branch,
@@ -217,6 +219,7 @@ public class ReferenceSetMemberController {
 	}
 
 
+	@BranchHeadETag
 	@GetMapping(value = "/{branch}/members/{uuid}")
 	@JsonView(value = View.Component.class)
 	public ReferenceSetMember fetchMember(@PathVariable String branch,
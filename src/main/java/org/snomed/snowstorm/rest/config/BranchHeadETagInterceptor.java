@@ -0,0 +1,86 @@
+package org.snomed.snowstorm.rest.config;
+
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.domain.Branch;
+import io.kaicode.rest.util.branchpathrewrite.BranchPathUriUtil;
+import org.snomed.snowstorm.rest.BranchHeadETag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Conditional request support for endpoints marked with {@link BranchHeadETag}.
+ * The ETag is built from the branch path and head timestamp with the request URI, query string and content negotiation headers.
+ * A request with a matching If-None-Match, or an If-Modified-Since not before the branch head, is answered with 304 Not Modified
+ * after loading only the branch. Requests for a branch timepoint are left to the controller.
+ */
+@Component
+public class BranchHeadETagInterceptor implements HandlerInterceptor {
+
+	private static final String BRANCH_PATH_VARIABLE = "branch";
+
+	@Value("${snowstorm.rest-api.conditional-requests.enabled}")
+	private boolean enabled;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private VersionResponseCache versionResponseCache;
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+		if (!enabled || !HttpMethod.GET.matches(request.getMethod())
+				|| !(handler instanceof HandlerMethod) || !((HandlerMethod) handler).hasMethodAnnotation(BranchHeadETag.class)) {
+			return true;
+		}
+
+		@SuppressWarnings("unchecked")
+		Map<String, String> pathVariables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		String branchPath = pathVariables != null ? pathVariables.get(BRANCH_PATH_VARIABLE) : null;
+		if (branchPath == null) {
+			return true;
+		}
+		branchPath = BranchPathUriUtil.decodePath(branchPath);
+		if (branchPath.contains("@")) {
+			return true;
+		}
+		Branch branch = branchService.findLatest(branchPath);
+		if (branch == null) {
+			// Let the controller report the missing branch
+			return true;
+		}
+
+		String eTag = getETag(branch, request);
+		// The ETag and cached responses depend on both content negotiation headers
+		response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+		response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_LANGUAGE);
+		if (new ServletWebRequest(request, response).checkNotModified(eTag, branch.getHeadTimestamp())) {
+			return false;
+		}
+		return !versionResponseCache.writeCachedResponse(branch, eTag, request, response);
+	}
+
+	private String getETag(Branch branch, HttpServletRequest request) {
+		String requestKey = String.join("|", request.getRequestURI(), orEmpty(request.getQueryString()),
+				orEmpty(request.getHeader(HttpHeaders.ACCEPT)), orEmpty(request.getHeader(HttpHeaders.ACCEPT_LANGUAGE)));
+		return branch.getHeadTimestamp() + "-" + DigestUtils.md5DigestAsHex((branch.getPath() + "|" + requestKey).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String orEmpty(String value) {
+		return value != null ? value : "";
+	}
+}
@@ -0,0 +1,57 @@
+package org.snomed.snowstorm.rest.config;
+
+import org.snomed.snowstorm.core.data.services.traceability.TraceabilityLogService;
+import org.snomed.snowstorm.core.data.services.traceability.TraceabilityOutbox;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Set;
+
+/**
+ * Delays write requests while too many commits are waiting to be published to the traceability service.
+ * Waiting here, before the request starts, means no branch is locked while publishing catches up.
+ * POST endpoints which only read content, such as searches, are not delayed.
+ */
+@Component
+public class TraceabilityOutboxInterceptor implements HandlerInterceptor {
+
+	// Mapping patterns of POST endpoints which do not commit content
+	private static final Set<String> READ_ONLY_POST_PATTERNS = Set.of(
+			"/{branch}/concepts/search",
+			"/{branch}/members/search",
+			"/browser/{branch}/validate/concept",
+			"/browser/{branch}/validate/concepts",
+			"/{branch}/integrity-check",
+			"/{branch}/upgrade-integrity-check",
+			"/{branch}/expressions/transform",
+			"/util/ecl-string-to-model",
+			"/util/ecl-model-to-string");
+
+	@Autowired
+	private TraceabilityLogService traceabilityLogService;
+
+	@Autowired
+	private TraceabilityOutbox traceabilityOutbox;
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (traceabilityLogService.isEnabled() && traceabilityLogService.isAsync() && isMutatingRequest(request)) {
+			traceabilityOutbox.awaitCapacity();
+		}
+		return true;
+	}
+
+	private static boolean isMutatingRequest(HttpServletRequest request) {
+		String method = request.getMethod();
+		if (HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method)) {
+			return false;
+		}
+		return !HttpMethod.POST.matches(method)
+				|| !READ_ONLY_POST_PATTERNS.contains(String.valueOf(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE)));
+	}
+}
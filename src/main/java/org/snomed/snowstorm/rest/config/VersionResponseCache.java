@@ -0,0 +1,140 @@
+package org.snomed.snowstorm.rest.config;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.kaicode.elasticvc.domain.Branch;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.core.data.services.CodeSystemService;
+import org.snomed.snowstorm.core.util.CacheStatistics;
+import org.snomed.snowstorm.rest.BranchHeadETag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Server side cache of the JSON responses of {@link BranchHeadETag} endpoints on code system version branches,
+ * which are requested many times and rarely change.
+ * Responses are keyed by the ETag, which includes the branch head, so an entry is never used once the branch has changed.
+ * The size of the cache is bounded by the total size of the response bodies held.
+ */
+@ControllerAdvice
+public class VersionResponseCache implements ResponseBodyAdvice<Object> {
+
+	private static final String CACHE_KEY_ATTRIBUTE = VersionResponseCache.class.getName() + ".key";
+
+	@Value("${snowstorm.rest-api.version-response-cache.max-mb}")
+	private int maxMegabytes;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	private Cache<String, CachedResponse> cache;
+
+	private final CacheStatistics cacheStatistics = new CacheStatistics();
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@PostConstruct
+	public void init() {
+		cache = Caffeine.newBuilder()
+				.maximumWeight(maxMegabytes * 1024L * 1024L)
+				.weigher((String key, CachedResponse cachedResponse) -> cachedResponse.body.length)
+				.build();
+		if (meterRegistry != null) {
+			cacheStatistics.registerMetrics("version-responses", cache::estimatedSize, meterRegistry);
+		}
+	}
+
+	/**
+	 * Writes the cached response of the request if there is one, otherwise marks the request so that the response is cached.
+	 * Only requests on version branches are cached.
+	 * @return true if the cached response was written.
+	 */
+	boolean writeCachedResponse(Branch branch, String eTag, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		if (maxMegabytes <= 0 || !CodeSystemService.isVersionBranch(branch.getPath())) {
+			return false;
+		}
+		CachedResponse cachedResponse = cache.getIfPresent(eTag);
+		if (cachedResponse == null) {
+			cacheStatistics.recordMiss();
+			request.setAttribute(CACHE_KEY_ATTRIBUTE, eTag);
+			return false;
+		}
+		cacheStatistics.recordHit();
+		response.setContentType(cachedResponse.contentType);
+		response.setContentLength(cachedResponse.body.length);
+		response.getOutputStream().write(cachedResponse.body);
+		return true;
+	}
+
+	@Override
+	public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+		return MappingJackson2HttpMessageConverter.class.isAssignableFrom(converterType);
+	}
+
+	@Override
+	public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType, Class<? extends HttpMessageConverter<?>> selectedConverterType,
+			ServerHttpRequest request, ServerHttpResponse response) {
+
+		if (body == null || !(request instanceof ServletServerHttpRequest) || !(response instanceof ServletServerHttpResponse)) {
+			return body;
+		}
+		HttpServletRequest servletRequest = ((ServletServerHttpRequest) request).getServletRequest();
+		String key = (String) servletRequest.getAttribute(CACHE_KEY_ATTRIBUTE);
+		if (key == null || ((ServletServerHttpResponse) response).getServletResponse().getStatus() != HttpStatus.OK.value()) {
+			return body;
+		}
+		try {
+			// Serialise as the message converter will, this advice runs before the JsonView is applied
+			JsonView jsonView = returnType.getMethodAnnotation(JsonView.class);
+			ObjectWriter writer = jsonView != null && jsonView.value().length == 1 ? objectMapper.writerWithView(jsonView.value()[0]) : objectMapper.writer();
+			cache.put(key, new CachedResponse(selectedContentType.toString(), writer.writeValueAsBytes(body)));
+		} catch (JsonProcessingException e) {
+			logger.warn("Failed to cache response of {}.", servletRequest.getRequestURI(), e);
+		}
+		return body;
+	}
+
+	public CacheStatistics getCacheStatistics() {
+		return cacheStatistics;
+	}
+
+	public void clearCache() {
+		cache.invalidateAll();
+	}
+
+	private static final class CachedResponse {
+
+		private final String contentType;
+		private final byte[] body;
+
+		private CachedResponse(String contentType, byte[] body) {
+			this.contentType = contentType;
+			this.body = body;
+		}
+	}
+}
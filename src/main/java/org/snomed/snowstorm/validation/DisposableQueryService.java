@@ -6,10 +6,9 @@ import org.snomed.snowstorm.core.util.SearchAfterPage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
@@ -19,14 +18,28 @@ public class DisposableQueryService {
     private final QueryService queryService;
     private final String branchPath;
 
-    private final Map<QueryService.ConceptQueryBuilder, Page<Long>> searchCache = Collections.synchronizedMap(new HashMap<>());
-    private final Map<QueryService.ConceptQueryBuilder, Boolean> anyResultsCache = Collections.synchronizedMap(new HashMap<>());
+    private final Map<QueryService.ConceptQueryBuilder, Page<Long>> searchCache = new ConcurrentHashMap<>();
+    private final Map<QueryService.ConceptQueryBuilder, Boolean> anyResultsCache = new ConcurrentHashMap<>();
     private final BranchCriteria branchCriteria;
 
+    // Optional cache shared with other validation requests on the same branch version
+    private final ValidationQueryCache sharedCache;
+    private final long headTimestamp;
+
     public DisposableQueryService(QueryService queryService, String branchPath, BranchCriteria branchCriteria) {
+        this(queryService, branchPath, branchCriteria, null, 0);
+    }
+
+    /**
+     * @param sharedCache cache used instead of the local cache when enabled
+     * @param headTimestamp head timestamp of the branch version the branch criteria belong to
+     */
+    public DisposableQueryService(QueryService queryService, String branchPath, BranchCriteria branchCriteria, ValidationQueryCache sharedCache, long headTimestamp) {
         this.queryService = queryService;
         this.branchPath = branchPath;
         this.branchCriteria = branchCriteria;
+        this.sharedCache = sharedCache != null && sharedCache.isEnabled() ? sharedCache : null;
+        this.headTimestamp = headTimestamp;
     }
 
     public QueryService.ConceptQueryBuilder createQueryBuilder(boolean stated) {
@@ -38,11 +51,15 @@ public class DisposableQueryService {
     }
 
     public Page<Long> searchForIds(QueryService.ConceptQueryBuilder queryBuilder) {
-        if (!searchCache.containsKey(queryBuilder)) {
-            SearchAfterPage<Long> ids = queryService.searchForIds(queryBuilder, branchCriteria, LARGE_PAGE);
+        if (sharedCache != null) {
+            return sharedCache.getSearchResults(branchPath, headTimestamp, queryBuilder, () -> queryService.searchForIds(queryBuilder, branchCriteria, LARGE_PAGE));
+        }
+        Page<Long> ids = searchCache.get(queryBuilder);
+        if (ids == null) {
+            ids = queryService.searchForIds(queryBuilder, branchCriteria, LARGE_PAGE);
             searchCache.put(queryBuilder, ids);
         }
-        return searchCache.get(queryBuilder);
+        return ids;
     }
 
     public Set<String> findAncestorIds(boolean stated, String conceptId) {
@@ -50,10 +67,15 @@ public class DisposableQueryService {
     }
 
     public boolean isAnyResults(QueryService.ConceptQueryBuilder queryBuilder) {
-        if (!anyResultsCache.containsKey(queryBuilder)) {
+        if (sharedCache != null) {
+            return sharedCache.isAnyResults(branchPath, headTimestamp, queryBuilder, () -> !queryService.searchForIds(queryBuilder, branchCriteria, PageRequest.of(0, 1)).isEmpty());
+        }
+        Boolean anyResults = anyResultsCache.get(queryBuilder);
+        if (anyResults == null) {
             SearchAfterPage<Long> page = queryService.searchForIds(queryBuilder, branchCriteria, PageRequest.of(0, 1));
-            anyResultsCache.put(queryBuilder, !page.isEmpty());
+            anyResults = !page.isEmpty();
+            anyResultsCache.put(queryBuilder, anyResults);
         }
-        return anyResultsCache.get(queryBuilder);
+        return anyResults;
     }
 }
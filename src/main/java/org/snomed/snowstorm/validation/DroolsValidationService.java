@@ -1,5 +1,7 @@
 package org.snomed.snowstorm.validation;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Iterables;
 import io.kaicode.elasticvc.api.BranchCriteria;
 import io.kaicode.elasticvc.api.BranchService;
@@ -17,24 +19,24 @@ import org.snomed.snowstorm.config.Config;
 import org.snomed.snowstorm.core.data.domain.*;
 import org.snomed.snowstorm.core.data.services.*;
 import org.snomed.snowstorm.core.util.SearchAfterPage;
+import org.snomed.snowstorm.validation.domain.BatchValidationJob;
 import org.snomed.snowstorm.validation.domain.DroolsConcept;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchAfterPageRequest;
 import org.springframework.data.elasticsearch.core.SearchHitsIterator;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 import static io.kaicode.elasticvc.api.VersionControlHelper.LARGE_PAGE;
@@ -62,12 +64,19 @@ public class DroolsValidationService {
 	@Autowired
 	private ConceptService conceptService;
 
+	@Autowired
+	private ValidationQueryCache validationQueryCache;
+
 	private final String droolsRulesPath;
 	private final ResourceManager testResourceManager;
 
 	private RuleExecutor ruleExecutor;
 	private TestResourceProvider testResourceProvider;
 	private final ExecutorService batchExecutorService;
+	private final ExecutorService batchWorkerService;
+	private final int batchThreads;
+	private final int batchChunkSize;
+	private final Cache<String, BatchValidationJob> batchValidationJobs = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.DAYS).build();
 
 	private Set<String> semanticTags;
 
@@ -75,6 +84,8 @@ public class DroolsValidationService {
 
 	public DroolsValidationService(
 			@Value("${validation.drools.rules.path}") String droolsRulesPath,
+			@Value("${validation.batch.threads}") int batchThreads,
+			@Value("${validation.batch.chunk-size}") int batchChunkSize,
 			@Autowired TestResourcesResourceManagerConfiguration resourceManagerConfiguration,
 			@Autowired ResourceLoader cloudResourceLoader) {
 
@@ -82,6 +93,9 @@ public class DroolsValidationService {
 		testResourceManager = new ResourceManager(resourceManagerConfiguration, cloudResourceLoader);
 		newRuleExecutorAndResources();
 		batchExecutorService = Executors.newFixedThreadPool(1);
+		this.batchThreads = batchThreads;
+		this.batchChunkSize = batchChunkSize;
+		batchWorkerService = Executors.newFixedThreadPool(batchThreads);
 	}
 
 	public Set<String> getSemanticTags() {
@@ -95,12 +109,7 @@ public class DroolsValidationService {
 	public List<InvalidContent> validateConcepts(String branchPath, Set<Concept> concepts) throws ServiceException {
 		// Get drools assertion groups to run
 		Branch branchWithInheritedMetadata = branchService.findBranchOrThrow(branchPath, true);
-		String assertionGroupNamesMetaString = branchWithInheritedMetadata.getMetadata().getString(BranchMetadataKeys.ASSERTION_GROUP_NAMES);
-		if (assertionGroupNamesMetaString == null) {
-			throw new ServiceException("'" + BranchMetadataKeys.ASSERTION_GROUP_NAMES + "' not set on branch metadata for Snomed-Drools validation configuration.");
-		}
-		String[] names = assertionGroupNamesMetaString.split(",");
-		Set<String> ruleSetNames = new HashSet<>(Arrays.asList(names));
+		Set<String> ruleSetNames = getRuleSetNames(branchWithInheritedMetadata);
 		if (ruleSetNames.isEmpty()) {
 			logger.info("Branch metadata item '{}' set as empty for {}, skipping Snomed-Drools validation.", BranchMetadataKeys.ASSERTION_GROUP_NAMES, branchPath);
 			return Collections.emptyList();
@@ -115,7 +124,7 @@ public class DroolsValidationService {
 		// Look-up release hashes from the store to set/update the component effectiveTimes
 		setReleaseHashAndEffectiveTime(concepts, branchCriteria);
 		Set<String> inferredTopLevelHierarchies = getTopLevelHierarchies();
-		DisposableQueryService disposableQueryService = new DisposableQueryService(queryService, branchPath, branchCriteria);
+		DisposableQueryService disposableQueryService = newDisposableQueryService(branchWithInheritedMetadata, branchCriteria);
 		ConceptDroolsValidationService droolsConceptService = new ConceptDroolsValidationService(branchCriteria, elasticsearchOperations, disposableQueryService, inferredTopLevelHierarchies);
 		DescriptionDroolsValidationService droolsDescriptionService = new DescriptionDroolsValidationService(branchPath, branchCriteria, elasticsearchOperations,
 				this.descriptionService, disposableQueryService, testResourceProvider, inferredTopLevelHierarchies);
@@ -125,41 +134,137 @@ public class DroolsValidationService {
 		return invalidContents;
 	}
 
-	public void validateBatch(String branch, String ecl, boolean afterClassification) {
-		batchExecutorService.submit(() -> {
-			try {
-				final PageRequest page = PageRequest.of(0, 2_000);
-				long startTime = new Date().getTime();
-				final SearchAfterPage<Long> conceptIds = queryService.searchForIds(queryService.createQueryBuilder(false).ecl(ecl), branch, page);
-				final int total = conceptIds.getNumberOfElements();
-				long doneCount = 0;
-				final String fileName = "validation-bulk-" + new Date().getTime() + ".tsv";
-				logger.info("Validating batch of {} concepts using ECL {} on branch {}, writing to {}", total, ecl, branch, fileName);
-
-				try (PrintWriter writer = new PrintWriter(fileName)) {
-					writer.println("conceptId\tfsn\terrorCount\tmessages\ttsv-duration\ttotal-duration");
-					writer.printf("-\t-\t-\tValidating batch of %s concepts using ECL %s on branch %s\t0\t0%n", total, ecl, branch);
-					for (List<Long> partition : Iterables.partition(conceptIds, 100)) {
-						final Page<Concept> concepts = conceptService.find(partition, Config.DEFAULT_LANGUAGE_DIALECTS, branch, page);
-						for (Concept concept : concepts) {
-							doneCount++;
-							if (doneCount % 10 == 0) {
-								logger.info("Validating concept {} of {}.", doneCount, total);
-							}
-						}
+	/**
+	 * Starts validation of all concepts matching the ECL on the branch. Concepts are loaded and validated in chunks by a pool of worker threads,
+	 * all workers share one query cache. Progress and results are available from the job.
+	 * @return the id of the batch validation job.
+	 */
+	public String validateBatch(String branchPath, String ecl, boolean afterClassification) throws ServiceException {
+		Set<String> ruleSetNames = getRuleSetNames(branchService.findBranchOrThrow(branchPath, true));
+		BatchValidationJob job = new BatchValidationJob(UUID.randomUUID().toString(), branchPath, ecl, afterClassification);
+		batchValidationJobs.put(job.getId(), job);
+		batchExecutorService.submit(() -> runBatchValidation(job, ruleSetNames));
+		return job.getId();
+	}
+
+	public BatchValidationJob getBatchValidationJobOrThrow(String branchPath, String jobId) {
+		BatchValidationJob job = batchValidationJobs.getIfPresent(jobId);
+		if (job == null || !job.getBranchPath().equals(branchPath)) {
+			throw new NotFoundException("Batch validation job not found.");
+		}
+		return job;
+	}
+
+	public Page<InvalidContent> getBatchValidationResults(String branchPath, String jobId, PageRequest pageRequest) {
+		List<InvalidContent> invalidContent = getBatchValidationJobOrThrow(branchPath, jobId).getInvalidContent();
+		synchronized (invalidContent) {
+			int size = invalidContent.size();
+			int from = (int) Math.min(pageRequest.getOffset(), size);
+			int to = (int) Math.min(pageRequest.getOffset() + pageRequest.getPageSize(), size);
+			return new PageImpl<>(new ArrayList<>(invalidContent.subList(from, to)), pageRequest, size);
+		}
+	}
+
+	private void runBatchValidation(BatchValidationJob job, Set<String> ruleSetNames) {
+		String branchPath = job.getBranchPath();
+		logger.info("Starting batch validation {} of concepts matching ECL {} on branch {}.", job.getId(), job.getEcl(), branchPath);
+		Deque<Future<?>> chunksInFlight = new ArrayDeque<>();
+		try {
+			Branch branch = branchService.findBranchOrThrow(branchPath);
+			BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(branch);
+			Set<String> inferredTopLevelHierarchies = getTopLevelHierarchies();
+			DisposableQueryService disposableQueryService = newDisposableQueryService(branch, branchCriteria);
+			ConceptDroolsValidationService droolsConceptService = new ConceptDroolsValidationService(branchCriteria, elasticsearchOperations, disposableQueryService, inferredTopLevelHierarchies);
+			DescriptionDroolsValidationService droolsDescriptionService = new DescriptionDroolsValidationService(branchPath, branchCriteria, elasticsearchOperations,
+					this.descriptionService, disposableQueryService, testResourceProvider, inferredTopLevelHierarchies);
+			RelationshipDroolsValidationService relationshipService = new RelationshipDroolsValidationService(disposableQueryService);
+			RuleExecutor jobRuleExecutor = ruleExecutor;
+
+			QueryService.ConceptQueryBuilder queryBuilder = queryService.createQueryBuilder(false).ecl(job.getEcl());
+			SearchAfterPage<Long> previousPage = null;
+			boolean loadedAll = false;
+			while (!loadedAll) {
+				// Use search-after to page through all results because of the Elasticsearch 10k limit
+				PageRequest pageRequest = previousPage == null ? PageRequest.of(0, LARGE_PAGE.getPageSize()) :
+						SearchAfterPageRequest.of(previousPage.getSearchAfter(), LARGE_PAGE.getPageSize(), previousPage.getSort());
+				SearchAfterPage<Long> page = queryService.searchForIds(queryBuilder, branchCriteria, pageRequest);
+				if (previousPage == null) {
+					job.setTotal(page.getTotalElements());
+				}
+				for (List<Long> chunk : Iterables.partition(page.getContent(), batchChunkSize)) {
+					// Stop at the first failed chunk and limit the number of chunks in flight so that concepts are not loaded faster than they can be validated
+					checkFinishedChunks(chunksInFlight);
+					if (chunksInFlight.size() >= batchThreads * 2) {
+						chunksInFlight.removeFirst().get();
 					}
-					long end = new Date().getTime() - startTime;
-					writer.printf("-\t-\t-\tValidated batch of %s concepts using ECL %s on branch %s\t0\t%s%n", total, ecl, branch, end);
-				} catch (FileNotFoundException e) {
-					e.printStackTrace();
+					chunksInFlight.add(batchWorkerService.submit(() -> {
+						Collection<Concept> concepts = conceptService.find(branchCriteria, branchPath, chunk, Config.DEFAULT_LANGUAGE_DIALECTS);
+						Set<DroolsConcept> droolsConcepts = concepts.stream().map(DroolsConcept::new).collect(Collectors.toSet());
+						List<InvalidContent> invalidContent = jobRuleExecutor.execute(ruleSetNames, droolsConcepts, droolsConceptService, droolsDescriptionService,
+								relationshipService, true, job.isAfterClassification());
+						long invalidConcepts = invalidContent.stream().map(InvalidContent::getConceptId).distinct().count();
+						job.addResults(concepts.size(), invalidContent, invalidConcepts);
+						return null;
+					}));
 				}
+				loadedAll = page.getNumberOfElements() < pageRequest.getPageSize();
+				previousPage = page;
+				logger.info("Batch validation {}: {} of {} concepts validated, {} concepts per second.",
+						job.getId(), job.getValidatedCount(), job.getTotal(), String.format("%.1f", job.getConceptsPerSecond()));
+			}
+			while (!chunksInFlight.isEmpty()) {
+				chunksInFlight.removeFirst().get();
+			}
+			job.setEndDate(new Date());
+			job.setStatus(BatchValidationJob.Status.COMPLETED);
+			logger.info("Completed batch validation {} of {} concepts on branch {}, {} concepts with invalid content, {} concepts per second.",
+					job.getId(), job.getValidatedCount(), branchPath, job.getInvalidConceptCount(), String.format("%.1f", job.getConceptsPerSecond()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failBatchValidation(job, e);
+		} catch (ExecutionException e) {
+			failBatchValidation(job, e.getCause());
+		} catch (RuntimeException e) {
+			failBatchValidation(job, e);
+		} finally {
+			// Only chunks left after a failure
+			chunksInFlight.forEach(chunkFuture -> chunkFuture.cancel(true));
+		}
+	}
 
-				logger.info("Validated batch of {} concepts using ECL {} on branch {}, written to {}", total, ecl, branch, fileName);
-			} catch (Exception e) {
-				logger.error("Failed to validate batch using ECL {} on branch {}", ecl, branch, e);
-				throw e;
+	private static void checkFinishedChunks(Collection<Future<?>> chunksInFlight) throws InterruptedException, ExecutionException {
+		Iterator<Future<?>> iterator = chunksInFlight.iterator();
+		while (iterator.hasNext()) {
+			Future<?> chunkFuture = iterator.next();
+			if (chunkFuture.isDone()) {
+				chunkFuture.get();
+				iterator.remove();
 			}
-		});
+		}
+	}
+
+	private void failBatchValidation(BatchValidationJob job, Throwable e) {
+		job.setEndDate(new Date());
+		job.setErrorMessage(e.getMessage());
+		job.setStatus(BatchValidationJob.Status.FAILED);
+		logger.error("Failed batch validation {} using ECL {} on branch {}", job.getId(), job.getEcl(), job.getBranchPath(), e);
+	}
+
+	private DisposableQueryService newDisposableQueryService(Branch branch, BranchCriteria branchCriteria) {
+		if (branch.isLocked()) {
+			// Content of a branch with a commit in progress may change without a new head timestamp
+			return new DisposableQueryService(queryService, branch.getPath(), branchCriteria);
+		}
+		return new DisposableQueryService(queryService, branch.getPath(), branchCriteria, validationQueryCache, branch.getHeadTimestamp());
+	}
+
+	private Set<String> getRuleSetNames(Branch branchWithInheritedMetadata) throws ServiceException {
+		String assertionGroupNamesMetaString = branchWithInheritedMetadata.getMetadata().getString(BranchMetadataKeys.ASSERTION_GROUP_NAMES);
+		if (assertionGroupNamesMetaString == null) {
+			throw new ServiceException("'" + BranchMetadataKeys.ASSERTION_GROUP_NAMES + "' not set on branch metadata for Snomed-Drools validation configuration.");
+		}
+		String[] names = assertionGroupNamesMetaString.split(",");
+		return new HashSet<>(Arrays.asList(names));
 	}
 
 	private void setReleaseHashAndEffectiveTime(Set<Concept> concepts, BranchCriteria branchCriteria) {
@@ -0,0 +1,116 @@
+package org.snomed.snowstorm.validation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.snomed.snowstorm.core.data.services.QueryService;
+import org.snomed.snowstorm.core.util.CacheStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Results of the concept queries made by the Drools validation services, shared by all validation requests.
+ * Entries are keyed by branch path and head timestamp. The content of a branch version never changes, so an entry is only used
+ * while the branch head is unchanged and older entries are evicted as the cache fills.
+ * The size of the cache is bounded by the total number of concept ids held.
+ */
+@Service
+public class ValidationQueryCache {
+
+	@Value("${cache.validation-queries.enabled}")
+	private boolean enabled;
+
+	@Value("${cache.validation-queries.max-ids}")
+	private long maxIds;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	private Cache<CacheKey, Page<Long>> searchCache;
+
+	private Cache<CacheKey, Boolean> anyResultsCache;
+
+	private final CacheStatistics cacheStatistics = new CacheStatistics();
+
+	@PostConstruct
+	public void init() {
+		searchCache = Caffeine.newBuilder()
+				.maximumWeight(maxIds)
+				.weigher((CacheKey key, Page<Long> page) -> page.getNumberOfElements() + 1)
+				.build();
+		anyResultsCache = Caffeine.newBuilder()
+				.maximumSize(maxIds / 10)
+				.build();
+		if (meterRegistry != null) {
+			cacheStatistics.registerMetrics("validation-queries", this::getSize, meterRegistry);
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	Page<Long> getSearchResults(String branchPath, long headTimestamp, QueryService.ConceptQueryBuilder queryBuilder, Supplier<Page<Long>> search) {
+		return get(searchCache, new CacheKey(branchPath, headTimestamp, queryBuilder), search);
+	}
+
+	boolean isAnyResults(String branchPath, long headTimestamp, QueryService.ConceptQueryBuilder queryBuilder, Supplier<Boolean> search) {
+		return get(anyResultsCache, new CacheKey(branchPath, headTimestamp, queryBuilder), search);
+	}
+
+	private <T> T get(Cache<CacheKey, T> cache, CacheKey key, Supplier<T> search) {
+		T value = cache.getIfPresent(key);
+		if (value != null) {
+			cacheStatistics.recordHit();
+			return value;
+		}
+		cacheStatistics.recordMiss();
+		// Concurrent requests for the same query wait for the first search rather than repeating it
+		return cache.get(key, k -> search.get());
+	}
+
+	public long getSize() {
+		return searchCache.estimatedSize() + anyResultsCache.estimatedSize();
+	}
+
+	public CacheStatistics getCacheStatistics() {
+		return cacheStatistics;
+	}
+
+	public void clearCache() {
+		searchCache.invalidateAll();
+		anyResultsCache.invalidateAll();
+	}
+
+	private static final class CacheKey {
+
+		private final String branchPath;
+		private final long headTimestamp;
+		private final QueryService.ConceptQueryBuilder queryBuilder;
+
+		private CacheKey(String branchPath, long headTimestamp, QueryService.ConceptQueryBuilder queryBuilder) {
+			this.branchPath = branchPath;
+			this.headTimestamp = headTimestamp;
+			this.queryBuilder = queryBuilder;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			CacheKey cacheKey = (CacheKey) o;
+			return headTimestamp == cacheKey.headTimestamp && branchPath.equals(cacheKey.branchPath) && queryBuilder.equals(cacheKey.queryBuilder);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(branchPath, headTimestamp, queryBuilder);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package org.snomed.snowstorm.validation.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.ihtsdo.drools.response.InvalidContent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BatchValidationJob {
+
+	public enum Status {
+		RUNNING, COMPLETED, FAILED
+	}
+
+	private final String id;
+	private final String branchPath;
+	private final String ecl;
+	private final boolean afterClassification;
+	private final Date startDate;
+	private volatile Date endDate;
+	private volatile Status status;
+	private volatile String errorMessage;
+	private volatile long total;
+	private final AtomicLong validatedCount = new AtomicLong();
+	private final AtomicLong invalidConceptCount = new AtomicLong();
+	private final List<InvalidContent> invalidContent = Collections.synchronizedList(new ArrayList<>());
+	private final CountDownLatch finished = new CountDownLatch(1);
+
+	public BatchValidationJob(String id, String branchPath, String ecl, boolean afterClassification) {
+		this.id = id;
+		this.branchPath = branchPath;
+		this.ecl = ecl;
+		this.afterClassification = afterClassification;
+		this.startDate = new Date();
+		this.status = Status.RUNNING;
+	}
+
+	public void addResults(int conceptCount, Collection<InvalidContent> conceptsInvalidContent, long conceptsWithInvalidContent) {
+		invalidContent.addAll(conceptsInvalidContent);
+		invalidConceptCount.addAndGet(conceptsWithInvalidContent);
+		validatedCount.addAndGet(conceptCount);
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getBranchPath() {
+		return branchPath;
+	}
+
+	public String getEcl() {
+		return ecl;
+	}
+
+	public boolean isAfterClassification() {
+		return afterClassification;
+	}
+
+	public Date getStartDate() {
+		return startDate;
+	}
+
+	public Date getEndDate() {
+		return endDate;
+	}
+
+	public void setEndDate(Date endDate) {
+		this.endDate = endDate;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public void setStatus(Status status) {
+		this.status = status;
+		if (status != Status.RUNNING) {
+			finished.countDown();
+		}
+	}
+
+	/**
+	 * Waits for the job to complete or fail.
+	 * @return false if the job is still running after the timeout.
+	 */
+	public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+		return finished.await(timeout, unit);
+	}
+
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	public void setErrorMessage(String errorMessage) {
+		this.errorMessage = errorMessage;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public void setTotal(long total) {
+		this.total = total;
+	}
+
+	public long getValidatedCount() {
+		return validatedCount.get();
+	}
+
+	public long getInvalidConceptCount() {
+		return invalidConceptCount.get();
+	}
+
+	public int getInvalidContentCount() {
+		return invalidContent.size();
+	}
+
+	public float getConceptsPerSecond() {
+		long millis = (endDate != null ? endDate.getTime() : System.currentTimeMillis()) - startDate.getTime();
+		return millis > 0 ? validatedCount.get() * 1_000f / millis : 0;
+	}
+
+	@JsonIgnore
+	public List<InvalidContent> getInvalidContent() {
+		return invalidContent;
+	}
+}
@@ -0,0 +1,75 @@
+package org.snomed.snowstorm.config.elasticsearch;
+
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.domain.Concepts;
+import org.snomed.snowstorm.core.data.domain.Relationship;
+import org.snomed.snowstorm.core.data.services.ConceptService;
+import org.snomed.snowstorm.core.data.services.ServiceException;
+import org.snomed.snowstorm.ecl.ECLQueryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeteredElasticsearchRestTemplateTest extends AbstractTest {
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	@Autowired
+	private ECLQueryService eclQueryService;
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Test
+	void testRequestsMeteredByEntityAndCaller() throws ServiceException {
+		conceptService.create(new Concept(Concepts.SNOMEDCT_ROOT), MAIN);
+		conceptService.create(new Concept("100001").addRelationship(new Relationship(Concepts.ISA, Concepts.SNOMEDCT_ROOT)), MAIN);
+		assertNotNull(conceptService.find("100001", MAIN));
+
+		Collection<Timer> bulkTimers = meterRegistry.find(MeteredElasticsearchRestTemplate.REQUEST_TIMER).tags("operation", "bulk", "entity", "Concept").timers();
+		assertFalse(bulkTimers.isEmpty());
+		Collection<Timer> searchTimers = meterRegistry.find(MeteredElasticsearchRestTemplate.REQUEST_TIMER).tags("operation", "search", "entity", "Concept").timers();
+		assertTrue(searchTimers.stream().anyMatch(timer -> timer.count() > 0));
+		// Every request sampled in tests
+		Collection<Counter> sampledSearches = meterRegistry.find(MeteredElasticsearchRestTemplate.SAMPLED_CALLER_COUNTER).tags("operation", "search", "entity", "Concept").counters();
+		assertFalse(sampledSearches.isEmpty());
+		assertTrue(sampledSearches.stream().noneMatch(counter -> counter.getId().getTag("caller").equals("other")), "Caller found for all searches.");
+	}
+
+	@Test
+	void testEclCacheMetrics() throws ServiceException {
+		conceptService.create(new Concept(Concepts.SNOMEDCT_ROOT), MAIN);
+		conceptService.create(new Concept("100001").addRelationship(new Relationship(Concepts.ISA, Concepts.SNOMEDCT_ROOT)), MAIN);
+		double hitsBefore = getEclCacheGets("hit");
+		double missesBefore = getEclCacheGets("miss");
+
+		for (int i = 0; i < 2; i++) {
+			eclQueryService.selectConceptIds("<< " + Concepts.SNOMEDCT_ROOT, versionControlHelper.getBranchCriteria(MAIN), false, PageRequest.of(0, 10));
+		}
+
+		assertEquals(1, getEclCacheGets("miss") - missesBefore);
+		assertEquals(1, getEclCacheGets("hit") - hitsBefore);
+		assertTrue(meterRegistry.get("snowstorm.cache.size").tag("cache", "ecl").gauge().value() > 0);
+		assertTrue(meterRegistry.get("snowstorm.cache.hit.ratio").tag("cache", "ecl").gauge().value() > 0);
+	}
+
+	private double getEclCacheGets(String result) {
+		FunctionCounter counter = meterRegistry.get("snowstorm.cache.gets").tags("cache", "ecl", "result", result).functionCounter();
+		return counter.count();
+	}
+
+}
@@ -0,0 +1,74 @@
+package org.snomed.snowstorm.core.data.services;
+
+import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.BranchNotFoundException;
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Commit;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.domain.Concepts;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingVersionControlHelperTest extends AbstractTest {
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	@Test
+	void testCriteriaCachedUntilBranchHeadChanges() throws ServiceException {
+		assertTrue(versionControlHelper instanceof CachingVersionControlHelper);
+		branchService.create("MAIN/A");
+
+		BranchCriteria criteria = versionControlHelper.getBranchCriteria("MAIN/A");
+		assertSame(criteria, versionControlHelper.getBranchCriteria("MAIN/A"));
+		assertSame(criteria, versionControlHelper.getBranchCriteria(branchService.findLatest("MAIN/A")));
+
+		conceptService.create(new Concept(Concepts.SNOMEDCT_ROOT), "MAIN/A");
+
+		BranchCriteria criteriaAfterCommit = versionControlHelper.getBranchCriteria("MAIN/A");
+		assertNotSame(criteria, criteriaAfterCommit);
+		assertEquals(branchService.findLatest("MAIN/A").getHead(), criteriaAfterCommit.getTimepoint());
+		assertNotNull(conceptService.find(Concepts.SNOMEDCT_ROOT, "MAIN/A"));
+	}
+
+	@Test
+	void testVersionBranchCriteriaCheckedAgainstHead() throws ServiceException, InterruptedException {
+		branchService.create("MAIN/2022-01-31");
+
+		BranchCriteria criteria = versionControlHelper.getBranchCriteria("MAIN/2022-01-31");
+		assertSame(criteria, versionControlHelper.getBranchCriteria("MAIN/2022-01-31"));
+
+		conceptService.create(new Concept(Concepts.SNOMEDCT_ROOT), "MAIN/2022-01-31");
+
+		BranchCriteria criteriaAfterCommit = versionControlHelper.getBranchCriteria("MAIN/2022-01-31");
+		assertEquals(branchService.findLatest("MAIN/2022-01-31").getHead(), criteriaAfterCommit.getTimepoint());
+
+		// Deleted branch is reported as missing
+		branchService.deleteAll();
+		assertThrows(BranchNotFoundException.class, () -> versionControlHelper.getBranchCriteria("MAIN/2022-01-31"));
+
+		// Recreated branch with the same path gets new criteria
+		branchService.create(MAIN);
+		branchService.create("MAIN/2022-01-31");
+		BranchCriteria criteriaAfterRecreate = versionControlHelper.getBranchCriteria("MAIN/2022-01-31");
+		assertEquals(branchService.findLatest("MAIN/2022-01-31").getHead(), criteriaAfterRecreate.getTimepoint());
+	}
+
+	@Test
+	void testOpenCommitBranchNotCached() {
+		try (Commit commit = branchService.openCommit(MAIN)) {
+			assertNotSame(versionControlHelper.getBranchCriteria(commit.getBranch()), versionControlHelper.getBranchCriteria(commit.getBranch()));
+		}
+	}
+
+}
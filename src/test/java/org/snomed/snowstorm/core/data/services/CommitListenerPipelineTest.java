@@ -0,0 +1,137 @@
+package org.snomed.snowstorm.core.data.services;
+
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.domain.Commit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommitListenerPipelineTest extends AbstractTest {
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private OperationMetricsService operationMetricsService;
+
+	private CommitListenerPipeline pipeline;
+
+	@BeforeEach
+	void setup() {
+		pipeline = new CommitListenerPipeline(4);
+		ReflectionTestUtils.setField(pipeline, "branchService", branchService);
+		ReflectionTestUtils.setField(pipeline, "operationMetricsService", operationMetricsService);
+	}
+
+	@AfterEach
+	void tearDown() {
+		pipeline.shutdown();
+	}
+
+	@Test
+	void testIndependentListenersRunConcurrently() {
+		CountDownLatch bothStarted = new CountDownLatch(2);
+		List<String> completed = new CopyOnWriteArrayList<>();
+		Set<String> durationsRecordedBeforeC = new HashSet<>();
+		pipeline.add("a", commit -> awaitOther(bothStarted, completed, "a"))
+				.add("b", commit -> awaitOther(bothStarted, completed, "b"))
+				.add("c", commit -> {
+					durationsRecordedBeforeC.addAll(BranchMetadataHelper.getCommitListenerDurations(commit).keySet());
+					completed.add("c");
+				}, "a", "b");
+
+		try (Commit commit = branchService.openCommit(MAIN)) {
+			pipeline.preCommitCompletion(commit);
+			assertEquals(Set.of("a", "b", "c"), BranchMetadataHelper.getCommitListenerDurations(commit).keySet());
+			commit.markSuccessful();
+		}
+		assertEquals(3, completed.size());
+		assertEquals("c", completed.get(2));
+		assertEquals(Set.of("a", "b"), durationsRecordedBeforeC);
+	}
+
+	@Test
+	void testFailureStopsDependentListeners() {
+		List<String> completed = new CopyOnWriteArrayList<>();
+		pipeline.add("a", commit -> {
+					throw new IllegalStateException("Listener a failed.");
+				})
+				.add("b", commit -> completed.add("b"), "a");
+
+		try (Commit commit = branchService.openCommit(MAIN)) {
+			IllegalStateException exception = assertThrows(IllegalStateException.class, () -> pipeline.preCommitCompletion(commit));
+			assertEquals("Listener a failed.", exception.getMessage());
+		}
+		assertTrue(completed.isEmpty());
+		assertFalse(branchService.findLatest(MAIN).isLocked());
+	}
+
+	@Test
+	void testAfterReleaseListenersRunOnceBranchUnlocked() throws Exception {
+		CompletableFuture<Boolean> lockedDuringListener = new CompletableFuture<>();
+		CompletableFuture<Boolean> lockedDuringTask = new CompletableFuture<>();
+		pipeline.add("a", commit -> pipeline.runAfterRelease(commit, "task", () -> lockedDuringTask.complete(branchService.findLatest(MAIN).isLocked())))
+				.addAfterRelease("b", commit -> lockedDuringListener.complete(branchService.findLatest(MAIN).isLocked()));
+
+		try (Commit commit = branchService.openCommit(MAIN)) {
+			pipeline.preCommitCompletion(commit);
+			assertFalse(lockedDuringListener.isDone());
+			commit.markSuccessful();
+		}
+		assertFalse(lockedDuringListener.get(10, TimeUnit.SECONDS));
+		assertFalse(lockedDuringTask.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testAfterReleaseSkippedOnRollback() throws Exception {
+		List<Long> afterReleaseCommits = new CopyOnWriteArrayList<>();
+		CountDownLatch successfulCommitReleased = new CountDownLatch(1);
+		pipeline.addAfterRelease("a", commit -> {
+			afterReleaseCommits.add(commit.getTimepoint().getTime());
+			successfulCommitReleased.countDown();
+		});
+
+		long rolledBackCommitTime;
+		try (Commit commit = branchService.openCommit(MAIN)) {
+			rolledBackCommitTime = commit.getTimepoint().getTime();
+			pipeline.preCommitCompletion(commit);
+			// Not marked successful so rolled back
+		}
+		// Release checks run in order so once the following commit is released the rolled back commit has been checked
+		long successfulCommitTime;
+		try (Commit commit = branchService.openCommit(MAIN)) {
+			successfulCommitTime = commit.getTimepoint().getTime();
+			pipeline.preCommitCompletion(commit);
+			commit.markSuccessful();
+		}
+		assertTrue(successfulCommitReleased.await(10, TimeUnit.SECONDS));
+		assertEquals(List.of(successfulCommitTime), afterReleaseCommits);
+		assertNotEquals(rolledBackCommitTime, successfulCommitTime);
+	}
+
+	private void awaitOther(CountDownLatch bothStarted, List<String> completed, String name) {
+		bothStarted.countDown();
+		try {
+			if (!bothStarted.await(10, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("Listeners did not run concurrently.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		completed.add(name);
+	}
+
+}
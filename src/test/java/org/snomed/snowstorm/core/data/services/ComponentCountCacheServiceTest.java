@@ -0,0 +1,78 @@
+package org.snomed.snowstorm.core.data.services;
+
+import io.kaicode.elasticvc.api.BranchService;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.domain.Description;
+import org.snomed.snowstorm.core.data.domain.Relationship;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Map;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.snomed.snowstorm.core.data.domain.Concepts.*;
+
+class ComponentCountCacheServiceTest extends AbstractTest {
+
+	@Autowired
+	private ComponentCountCacheService componentCountCacheService;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private BranchMergeService branchMergeService;
+
+	@Test
+	void testCountsMaintainedAcrossCommits() throws ServiceException {
+		conceptService.batchCreate(newArrayList(
+				new Concept(SNOMEDCT_ROOT),
+				new Concept("100002").addRelationship(new Relationship(ISA, SNOMEDCT_ROOT)).addFSN("Food (food)"),
+				new Concept("100003").addRelationship(new Relationship(ISA, "100002")).addFSN("Cheese Pizza (pizza)").addDescription(new Description("Cheese"))
+		), "MAIN");
+
+		assertEquals("{food=1, pizza=1}", componentCountCacheService.getActiveConceptsPerSemanticTag("MAIN").toString());
+		assertModuleCounts("MAIN", 3, 3);
+
+		// Counts updated from the commit changes
+		conceptService.create(new Concept("100004").addRelationship(new Relationship(ISA, "100003")).addFSN("Really Cheesy Pizza (pizza)"), "MAIN");
+		assertEquals("{food=1, pizza=2}", componentCountCacheService.getActiveConceptsPerSemanticTag("MAIN").toString());
+		assertModuleCounts("MAIN", 4, 4);
+
+		// Child branch counts derived from parent
+		branchService.create("MAIN/A");
+		assertEquals("{food=1, pizza=2}", componentCountCacheService.getActiveConceptsPerSemanticTag("MAIN/A").toString());
+
+		conceptService.create(new Concept("100005").addRelationship(new Relationship(ISA, "100004")).addFSN("So Cheesy Pizza (pizza)"), "MAIN/A");
+		Concept food = conceptService.find("100002", "MAIN/A");
+		food.setActive(false);
+		conceptService.update(food, "MAIN/A");
+		assertEquals("{pizza=3}", componentCountCacheService.getActiveConceptsPerSemanticTag("MAIN/A").toString());
+		assertModuleCounts("MAIN/A", 5, 5);
+		assertEquals("{food=1, pizza=2}", componentCountCacheService.getActiveConceptsPerSemanticTag("MAIN").toString());
+
+		// Parent counts taken from the promoted branch
+		branchMergeService.mergeBranchSync("MAIN/A", "MAIN", null);
+		assertEquals("{pizza=3}", componentCountCacheService.getActiveConceptsPerSemanticTag("MAIN").toString());
+		assertModuleCounts("MAIN", 5, 5);
+
+		// Child branch created before further changes on the parent, counted in full
+		branchService.create("MAIN/B");
+		conceptService.create(new Concept("100006").addRelationship(new Relationship(ISA, "100004")).addFSN("Pizza Slice (pizza)"), "MAIN");
+		conceptService.create(new Concept("100007").addRelationship(new Relationship(ISA, "100004")).addFSN("Pizza Base (food)"), "MAIN/B");
+		assertEquals("{food=1, pizza=3}", componentCountCacheService.getActiveConceptsPerSemanticTag("MAIN/B").toString());
+		assertEquals("{pizza=4}", componentCountCacheService.getActiveConceptsPerSemanticTag("MAIN").toString());
+	}
+
+	private void assertModuleCounts(String branchPath, long concepts, long descriptions) {
+		Map<String, Map<String, Long>> countsPerModule = componentCountCacheService.getComponentCountsPerModule(branchPath);
+		assertEquals(concepts, countsPerModule.get(ComponentCountCacheService.CONCEPT).get(CORE_MODULE));
+		assertEquals(descriptions, countsPerModule.get(ComponentCountCacheService.DESCRIPTION).get(CORE_MODULE));
+	}
+
+}
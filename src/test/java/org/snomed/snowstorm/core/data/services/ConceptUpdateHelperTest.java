@@ -1,6 +1,8 @@
 package org.snomed.snowstorm.core.data.services;
 
+import io.kaicode.elasticvc.api.BranchCriteria;
 import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.VersionControlHelper;
 import io.kaicode.elasticvc.domain.Branch;
 import org.junit.jupiter.api.Test;
 import org.snomed.snowstorm.AbstractTest;
@@ -8,10 +10,16 @@ import org.snomed.snowstorm.core.data.domain.*;
 import org.snomed.snowstorm.core.data.services.pojo.MemberSearchRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
+import static org.elasticsearch.index.query.QueryBuilders.termsQuery;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.snomed.snowstorm.config.Config.DEFAULT_LANGUAGE_DIALECTS;
 
 class ConceptUpdateHelperTest extends AbstractTest {
 	private static final String BRANCH_A = "MAIN/AAA";
@@ -48,6 +56,12 @@ class ConceptUpdateHelperTest extends AbstractTest {
 	@Autowired
 	private ReferenceSetMemberService referenceSetMemberService;
 
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Autowired
+	private ElasticsearchOperations elasticsearchOperations;
+
 	@Test
 	void saveNewOrUpdatedConcepts_ShouldRestoreDetailsFromParentCodeSystem() throws ServiceException {
 		//Need to start with a versioned MAIN so that children can inherit the dependentVersionEffectiveTime
@@ -123,6 +137,46 @@ class ConceptUpdateHelperTest extends AbstractTest {
 		assertTrue(referenceSetMembersAfter.isEmpty());
 	}
 
+	@Test
+	void saveNewOrUpdatedConcepts_ShouldLeaveOneVisibleVersion_WhenInheritedConceptsAndRelationshipsChanged() throws ServiceException {
+		List<Concept> concepts = new ArrayList<>();
+		// Enough components to be saved concurrently
+		int conceptCount = 600;
+		for (int i = 1; i <= conceptCount; i++) {
+			concepts.add(new Concept(String.valueOf(200000 + i), MODULE_A)
+					.addRelationship(new Relationship(String.valueOf(300000 + i), Concepts.ISA, Concepts.SNOMEDCT_ROOT).setModuleId(MODULE_A)));
+		}
+		conceptService.batchCreate(concepts, MAIN);
+		branchService.create(BRANCH_A);
+
+		// Change concepts and relationships inherited from MAIN in one commit
+		List<Concept> updates = new ArrayList<>();
+		for (Concept concept : conceptService.find(MAIN, concepts.stream().map(Concept::getConceptId).collect(Collectors.toList()), DEFAULT_LANGUAGE_DIALECTS)) {
+			concept.setModuleId(MODULE_AB);
+			concept.getRelationships().forEach(relationship -> relationship.setModuleId(MODULE_AB));
+			updates.add(concept);
+		}
+		assertTrue(updates.size() * 2 >= ConceptUpdateHelper.PARALLEL_SAVE_MIN_COMPONENTS);
+		conceptService.createUpdate(updates, BRANCH_A);
+
+		BranchCriteria branchCriteria = versionControlHelper.getBranchCriteria(BRANCH_A);
+		List<Concept> conceptVersions = elasticsearchOperations.search(new NativeSearchQueryBuilder()
+				.withQuery(branchCriteria.getEntityBranchCriteria(Concept.class)
+						.must(termsQuery(Concept.Fields.CONCEPT_ID, concepts.stream().map(Concept::getConceptId).collect(Collectors.toList()))))
+				.withPageable(PageRequest.of(0, 1_000))
+				.build(), Concept.class).stream().map(SearchHit::getContent).collect(Collectors.toList());
+		assertEquals(conceptCount, conceptVersions.size());
+		assertTrue(conceptVersions.stream().allMatch(concept -> MODULE_AB.equals(concept.getModuleId())));
+
+		List<Relationship> relationshipVersions = elasticsearchOperations.search(new NativeSearchQueryBuilder()
+				.withQuery(branchCriteria.getEntityBranchCriteria(Relationship.class)
+						.must(termsQuery(Relationship.Fields.SOURCE_ID, concepts.stream().map(Concept::getConceptId).collect(Collectors.toList()))))
+				.withPageable(PageRequest.of(0, 1_000))
+				.build(), Relationship.class).stream().map(SearchHit::getContent).collect(Collectors.toList());
+		assertEquals(conceptCount, relationshipVersions.size());
+		assertTrue(relationshipVersions.stream().allMatch(relationship -> MODULE_AB.equals(relationship.getModuleId())));
+	}
+
 	private void givenRefSetAncestorsExist() throws ServiceException {
 		// Create root components
 		conceptService.create(new Concept(Concepts.SNOMEDCT_ROOT), MAIN);
@@ -354,6 +354,33 @@ class DescriptionServiceTest extends AbstractTest {
 
 	}
 
+	@Test
+	void testAutocomplete() throws ServiceException {
+		testUtil.createConceptWithPathIdAndTerm("MAIN", "100001", "Heart");
+		testUtil.createConceptWithPathIdAndTerms("MAIN", "100006", "Foot cramps", "Foot cramp");
+		testUtil.createConceptWithPathIdAndTerm("MAIN", "100003", "Foot bone");
+		testUtil.createConceptWithPathIdAndTerm("MAIN", "100004", "Foot");
+		Concept footwear = testUtil.createConceptWithPathIdAndTerm("MAIN", "100005", "Footwear");
+
+		List<String> actualTerms = descriptionService.findAutocompleteDescriptions("MAIN", "Foo cr", null, null, null, 10).stream()
+				.map(Description::getTerm).collect(Collectors.toList());
+		assertEquals("One description per concept, shortest first.", newArrayList("Foot cramp"), actualTerms);
+
+		actualTerms = descriptionService.findAutocompleteDescriptions("MAIN", "foo", null, null, null, 10).stream()
+				.map(Description::getTerm).collect(Collectors.toList());
+		assertEquals(newArrayList("Foot", "Footwear", "Foot bone", "Foot cramp"), actualTerms);
+
+		actualTerms = descriptionService.findAutocompleteDescriptions("MAIN", "foo", null, null, null, 2).stream()
+				.map(Description::getTerm).collect(Collectors.toList());
+		assertEquals(newArrayList("Foot", "Footwear"), actualTerms);
+
+		footwear.setActive(false);
+		conceptService.update(footwear, "MAIN");
+		actualTerms = descriptionService.findAutocompleteDescriptions("MAIN", "foo", null, null, null, 10).stream()
+				.map(Description::getTerm).collect(Collectors.toList());
+		assertEquals("Descriptions of inactive concepts are not returned.", newArrayList("Foot", "Foot bone", "Foot cramp"), actualTerms);
+	}
+
 	@Test
 	void testDescriptionSearchAggregationsActiveConcept() throws ServiceException {
 		String path = "MAIN";
@@ -11,8 +11,10 @@ import org.snomed.snowstorm.TestConfig;
 import org.snomed.snowstorm.core.data.domain.CodeSystem;
 import org.snomed.snowstorm.core.data.domain.Concept;
 import org.snomed.snowstorm.core.data.domain.ConcreteValue;
+import org.snomed.snowstorm.core.data.domain.JobStatus;
 import org.snomed.snowstorm.core.data.domain.Relationship;
 import org.snomed.snowstorm.core.data.services.classification.BranchClassificationStatusService;
+import org.snomed.snowstorm.core.data.services.pojo.IntegrityCheckJob;
 import org.snomed.snowstorm.core.data.services.pojo.IntegrityIssueReport;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
@@ -25,6 +27,7 @@ import static org.junit.Assert.*;
 import static org.snomed.snowstorm.core.data.domain.Concepts.ISA;
 import static org.snomed.snowstorm.core.data.services.BranchMetadataHelper.INTERNAL_METADATA_KEY;
 import static org.snomed.snowstorm.core.data.services.IntegrityService.INTEGRITY_ISSUE_METADATA_KEY;
+import static org.snomed.snowstorm.core.data.services.IntegrityService.INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY;
 
 @ExtendWith(SpringExtension.class)
 @ContextConfiguration(classes = TestConfig.class)
@@ -132,6 +135,34 @@ class IntegrityServiceTest extends AbstractTest {
 		assertNull(reportProjectTest2Run3.getRelationshipsWithMissingOrInactiveDestination());
 	}
 
+	@Test
+	void testFullIntegrityCheckJob() throws Exception {
+		sBranchService.create("MAIN/PROJECT");
+		conceptService.create(new Concept("100001"), "MAIN/PROJECT");
+		conceptService.create(new Concept("10000101").addRelationship(new Relationship("10000101", "100001").setInferred(false)), "MAIN/PROJECT");
+		// Missing Destination on MAIN/project
+		conceptService.create(new Concept("100004").addRelationship(new Relationship("10000101", "100001000").setInferred(false)), "MAIN/PROJECT");
+
+		Branch branch = branchService.findLatest("MAIN/PROJECT");
+		IntegrityCheckJob job = integrityService.findAllComponentsWithBadIntegrityAsync(branch, true);
+		assertSame(job, integrityService.getIntegrityCheckJobOrThrow(job.getId()));
+		for (int i = 0; i < 300 && job.getStatus() == JobStatus.IN_PROGRESS; i++) {
+			Thread.sleep(100);
+		}
+		assertEquals(JobStatus.COMPLETED, job.getStatus());
+		assertEquals(job.getPartitions(), job.getPartitionsCompleted());
+		assertEquals(1, job.getReport().getRelationshipsWithMissingOrInactiveDestination().size());
+		assertEquals(integrityService.findAllComponentsWithBadIntegrity(branch, true), job.getReport());
+	}
+
+	@Test
+	void testFullIntegrityCheckPartitionBoundaries() {
+		assertEquals(List.of("300"), IntegrityService.getPartitionBoundaries(List.of(400L, 100L, 300L, 200L), 2));
+		// Keyword order rather than numeric order
+		assertEquals(List.of("200", "8"), IntegrityService.getPartitionBoundaries(List.of(9L, 100L, 200L, 8L, 7L, 1000L), 3));
+		assertEquals(Collections.emptyList(), IntegrityService.getPartitionBoundaries(List.of(100L), 4));
+	}
+
 	private void makeRelationshipInactive(Collection<Long> relationshipIds, String branchPath) {
 		try (Commit commit = branchService.openCommit(branchPath)) {
 			Set<Relationship> relationships = relationshipIds.stream().map(id -> {
@@ -363,6 +394,100 @@ class IntegrityServiceTest extends AbstractTest {
 		assertNull("The integrityIssue flag should be removed after all issues are fixed", integrityIssueFound);
 	}
 
+	@Test
+	void testIncrementalIntegrityCheckUsingOutstandingIssues() throws Exception {
+		CodeSystem codeSystem = new CodeSystem("SNOMEDCT-US", "MAIN/SNOMEDCT-US");
+		codeSystemService.createCodeSystem(codeSystem);
+		String path = codeSystem.getBranchPath();
+		conceptService.create(new Concept(ISA), path);
+
+		// Relationship with missing type and destination
+		conceptService.create(new Concept("10000101").addRelationship(new Relationship("100002", "100001").setInferred(false)), path);
+		IntegrityIssueReport report = integrityService.findChangedComponentsWithBadIntegrityNotFixed(branchService.findLatest(path));
+		Long badRelationshipId = report.getRelationshipsWithMissingOrInactiveType().keySet().iterator().next();
+
+		Metadata metadata = branchService.findLatest(path).getMetadata();
+		metadata.getMapOrCreate(INTERNAL_METADATA_KEY).put(INTEGRITY_ISSUE_METADATA_KEY, "true");
+		IntegrityService.setOutstandingIssues(metadata, report);
+		branchService.updateMetadata(path, metadata);
+		assertEquals(badRelationshipId.toString(), getInternalMetadata(path).get(INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY));
+
+		// Commit adding a new issue is recorded along with the outstanding issue
+		conceptService.create(new Concept("10000201").addRelationship(new Relationship(ISA, "100003").setInferred(false)), path);
+		Set<String> outstandingRelationshipIds = new HashSet<>(Arrays.asList(getInternalMetadata(path).get(INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY).split(",")));
+		assertEquals(2, outstandingRelationshipIds.size());
+		assertTrue(outstandingRelationshipIds.contains(badRelationshipId.toString()));
+		assertTrue(Boolean.parseBoolean(getInternalMetadata(path).get(INTEGRITY_ISSUE_METADATA_KEY)));
+
+		// Partial fix keeps the flag
+		conceptService.create(new Concept("100001"), path);
+		conceptService.create(new Concept("100003"), path);
+		assertEquals(badRelationshipId.toString(), getInternalMetadata(path).get(INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY));
+		assertTrue(Boolean.parseBoolean(getInternalMetadata(path).get(INTEGRITY_ISSUE_METADATA_KEY)));
+
+		// Complete fix clears the flag and the outstanding issues
+		conceptService.create(new Concept("100002"), path);
+		assertNull(getInternalMetadata(path).get(INTEGRITY_ISSUE_METADATA_KEY));
+		assertNull(getInternalMetadata(path).get(INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY));
+	}
+
+	@Test
+	void testTaskBranchInheritsOutstandingIssues() throws Exception {
+		CodeSystem codeSystem = new CodeSystem("SNOMEDCT-US", "MAIN/SNOMEDCT-US");
+		codeSystemService.createCodeSystem(codeSystem);
+		String path = codeSystem.getBranchPath();
+		conceptService.create(new Concept(ISA), path);
+
+		// Relationship with missing destination
+		conceptService.create(new Concept("10000101").addRelationship(new Relationship(ISA, "100001").setInferred(false)), path);
+		Long badRelationshipId = flagOutstandingIssues(path);
+
+		String taskPath = path + "/TASK";
+		sBranchService.create(taskPath);
+		assertTrue(Boolean.parseBoolean(getInternalMetadata(taskPath).get(INTEGRITY_ISSUE_METADATA_KEY)));
+		assertEquals(badRelationshipId.toString(), getInternalMetadata(taskPath).get(INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY));
+
+		// Fixing the issue on the task clears the task flag only
+		conceptService.create(new Concept("100001"), taskPath);
+		assertNull(getInternalMetadata(taskPath).get(INTEGRITY_ISSUE_METADATA_KEY));
+		assertNull(getInternalMetadata(taskPath).get(INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY));
+		assertEquals(badRelationshipId.toString(), getInternalMetadata(path).get(INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY));
+	}
+
+	@Test
+	void testIncrementalIntegrityCheckFindsRelationshipsToInactivatedConcept() throws Exception {
+		CodeSystem codeSystem = new CodeSystem("SNOMEDCT-US", "MAIN/SNOMEDCT-US");
+		codeSystemService.createCodeSystem(codeSystem);
+		String path = codeSystem.getBranchPath();
+		conceptService.create(new Concept(ISA), path);
+		conceptService.create(new Concept("100010"), path);
+
+		// Relationship with missing destination, and a valid relationship to a concept inactivated later
+		conceptService.create(new Concept("10000101").addRelationship(new Relationship(ISA, "100001").setInferred(false)), path);
+		conceptService.create(new Concept("10000201").addRelationship(new Relationship(ISA, "100010").setInferred(false)), path);
+		Long badRelationshipId = flagOutstandingIssues(path);
+
+		// The commit does not change the relationship but breaks it by inactivating its destination
+		conceptService.update((Concept) new Concept("100010").setActive(false), path);
+		Set<String> outstandingRelationshipIds = new HashSet<>(Arrays.asList(getInternalMetadata(path).get(INTEGRITY_ISSUE_RELATIONSHIPS_METADATA_KEY).split(",")));
+		assertEquals(2, outstandingRelationshipIds.size());
+		assertTrue(outstandingRelationshipIds.contains(badRelationshipId.toString()));
+		assertTrue(Boolean.parseBoolean(getInternalMetadata(path).get(INTEGRITY_ISSUE_METADATA_KEY)));
+	}
+
+	private Long flagOutstandingIssues(String path) throws ServiceException {
+		IntegrityIssueReport report = integrityService.findChangedComponentsWithBadIntegrityNotFixed(branchService.findLatest(path));
+		Metadata metadata = branchService.findLatest(path).getMetadata();
+		metadata.getMapOrCreate(INTERNAL_METADATA_KEY).put(INTEGRITY_ISSUE_METADATA_KEY, "true");
+		IntegrityService.setOutstandingIssues(metadata, report);
+		branchService.updateMetadata(path, metadata);
+		return report.getRelationshipsWithMissingOrInactiveDestination().keySet().iterator().next();
+	}
+
+	private Map<String, String> getInternalMetadata(String path) {
+		return branchService.findLatest(path).getMetadata().getMapOrCreate(INTERNAL_METADATA_KEY);
+	}
+
 	@Test
 	void testDeepBranchStructure() {
 		sBranchService.create("MAIN/SNOMEDCT-NO");
@@ -1,6 +1,7 @@
 package org.snomed.snowstorm.core.data.services;
 
 import com.google.common.collect.Sets;
+import io.kaicode.elasticvc.api.BranchService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -23,6 +24,9 @@ import static io.kaicode.elasticvc.api.ComponentService.LARGE_PAGE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.snomed.snowstorm.config.Config.DEFAULT_LANGUAGE_DIALECTS;
 import static org.snomed.snowstorm.core.data.domain.Concepts.ISA;
 
 @ExtendWith(SpringExtension.class)
@@ -38,6 +42,9 @@ class MRCMServiceTest extends AbstractTest {
 	@Autowired
 	private QueryService queryService;
 
+	@Autowired
+	private BranchService branchService;
+
 	@BeforeEach
 	void setup() throws ServiceException {
 		conceptService.create(new Concept(Concepts.SNOMEDCT_ROOT).addFSN("SNOMED CT"), "MAIN");
@@ -62,6 +69,53 @@ class MRCMServiceTest extends AbstractTest {
 		assertEquals(ISA, result.iterator().next().getConceptId());
 	}
 
+	@Test
+	void testRetrieveAttributeValuesByTermPrefix() throws ServiceException {
+		mrcmService.setAttributeValuesPrefixSearch(true);
+		try {
+			assertAttributeValuesByTermPrefix();
+		} finally {
+			mrcmService.setAttributeValuesPrefixSearch(false);
+		}
+	}
+
+	@Test
+	void testRetrieveAttributeValuesByTermPrefixWithoutPrefixSearch() throws ServiceException {
+		assertAttributeValuesByTermPrefix();
+	}
+
+	private void assertAttributeValuesByTermPrefix() throws ServiceException {
+		Collection<ConceptMini> result = mrcmService.retrieveAttributeValues(ContentType.NEW_PRECOORDINATED, ISA, "sno", "MAIN", null);
+		assertEquals(1, result.size());
+		assertEquals(Concepts.SNOMEDCT_ROOT, result.iterator().next().getConceptId());
+
+		// Only concepts within the attribute range are returned
+		createRangeConstraint("123005000", "<< " + ISA);
+		assertEquals(0, mrcmService.retrieveAttributeValues(ContentType.NEW_PRECOORDINATED, "123005000", "sno", "MAIN", null).size());
+		result = mrcmService.retrieveAttributeValues(ContentType.NEW_PRECOORDINATED, "123005000", "ter", "MAIN", null);
+		assertEquals(1, result.size());
+		assertEquals(ISA, result.iterator().next().getConceptId());
+	}
+
+	@Test
+	void testConceptModelAttributeHierarchyCachedPerBranchVersion() throws ServiceException {
+		conceptService.create(new Concept(Concepts.CONCEPT_MODEL_ATTRIBUTE).addFSN("Concept model attribute (attribute)")
+				.addRelationship(new Relationship(ISA, Concepts.SNOMEDCT_ROOT).setInferred(true)), "MAIN");
+		ConceptMini hierarchy = mrcmService.retrieveConceptModelAttributeHierarchy("MAIN", DEFAULT_LANGUAGE_DIALECTS);
+		assertEquals(Concepts.CONCEPT_MODEL_ATTRIBUTE, hierarchy.getConceptId());
+		assertSame(hierarchy, mrcmService.retrieveConceptModelAttributeHierarchy("MAIN", DEFAULT_LANGUAGE_DIALECTS));
+
+		// Branch without changes uses the hierarchy of the parent
+		branchService.create("MAIN/A");
+		assertSame(hierarchy, mrcmService.retrieveConceptModelAttributeHierarchy("MAIN/A", DEFAULT_LANGUAGE_DIALECTS));
+
+		conceptService.create(new Concept("123005000").addFSN("Part of (attribute)")
+				.addRelationship(new Relationship(ISA, Concepts.CONCEPT_MODEL_ATTRIBUTE).setInferred(true)), "MAIN/A");
+		ConceptMini branchHierarchy = mrcmService.retrieveConceptModelAttributeHierarchy("MAIN/A", DEFAULT_LANGUAGE_DIALECTS);
+		assertNotSame(hierarchy, branchHierarchy);
+		assertEquals(1, ((List<?>) branchHierarchy.getExtraFields().get("children")).size());
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	void testExtraConceptMiniFields() throws ServiceException {
@@ -16,8 +16,13 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 @ExtendWith(SpringExtension.class)
 @ContextConfiguration(classes = TestConfig.class)
@@ -32,6 +37,9 @@ class MultiSearchServiceTest extends AbstractTest {
 	@Autowired
 	private CodeSystemUpgradeService codeSystemUpgradeService;
 
+	@Autowired
+	private PublishedDescriptionIndexService publishedDescriptionIndexService;
+
 	@Autowired
 	private ConceptService conceptService;
 
@@ -92,6 +100,50 @@ class MultiSearchServiceTest extends AbstractTest {
 
 	}
 
+	@Test
+	void testMissingVersionsIndexed() throws ServiceException, InterruptedException, ExecutionException {
+		CodeSystem codeSystemInternational = new CodeSystem("SNOMEDCT", "MAIN");
+		codeSystemService.createCodeSystem(codeSystemInternational);
+		conceptService.create(new Concept(Concepts.CLINICAL_FINDING)
+				.addDescription(new Description("Clinical finding").addAcceptability(Concepts.US_EN_LANG_REFSET, Concepts.PREFERRED_CONSTANT)), "MAIN");
+		codeSystemService.createVersion(codeSystemInternational, 20190731, "");
+		// Found straight away, before or after the version is indexed
+		assertEquals(1, runSearch("fin").getTotalElements());
+
+		// Wait for the new version to be indexed in the background
+		publishedDescriptionIndexService.updateIndexInBackground(codeSystemService::findAll).get();
+		assertTrue(publishedDescriptionIndexService.isIndexComplete(multiSearchService.getAllPublishedVersionBranchPaths()));
+		Page<Description> descriptions = runSearch("fin");
+		assertEquals(1, descriptions.getTotalElements());
+		assertReleasedDescription(descriptions.getContent().get(0));
+		assertEquals(Map.of(Concepts.US_EN_LANG_REFSET, Concepts.PREFERRED_CONSTANT), descriptions.getContent().get(0).getAcceptabilityMap());
+
+		assertEquals(Set.of("MAIN/2019-07-31"), multiSearchService.getAllPublishedVersionBranchPaths());
+
+		// Index emptied, for example on upgrade
+		publishedDescriptionIndexService.deleteAll();
+		assertFalse(publishedDescriptionIndexService.isIndexComplete(multiSearchService.getAllPublishedVersionBranchPaths()));
+
+		// Version branches searched until the index is complete
+		descriptions = runSearch("fin", true);
+		assertEquals(1, descriptions.getTotalElements());
+		assertReleasedDescription(descriptions.getContent().get(0));
+
+		publishedDescriptionIndexService.updateIndex(codeSystemService::findAll);
+		assertTrue(publishedDescriptionIndexService.isIndexComplete(multiSearchService.getAllPublishedVersionBranchPaths()));
+		descriptions = runSearch("fin", true);
+		assertEquals(1, descriptions.getTotalElements());
+		assertReleasedDescription(descriptions.getContent().get(0));
+		assertEquals(Map.of(Concepts.US_EN_LANG_REFSET, Concepts.PREFERRED_CONSTANT), descriptions.getContent().get(0).getAcceptabilityMap());
+	}
+
+	private void assertReleasedDescription(Description description) {
+		assertEquals("MAIN", description.getPath());
+		assertEquals("20190731", description.getEffectiveTime());
+		assertTrue(description.isReleased());
+		assertEquals(Integer.valueOf(20190731), description.getReleasedEffectiveTime());
+	}
+
 	private Page<Description> runSearch(String term) {
 		DescriptionCriteria criteria = new DescriptionCriteria().term(term);
 		return multiSearchService.findDescriptions(criteria, PageRequest.of(0, 10));
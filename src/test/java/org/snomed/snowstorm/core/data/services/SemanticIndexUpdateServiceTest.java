@@ -13,12 +13,7 @@ import org.snomed.snowstorm.TestConfig;
 import org.snomed.snowstorm.config.Config;
 import org.snomed.snowstorm.core.data.domain.*;
 import org.snomed.snowstorm.core.data.repositories.QueryConceptRepository;
-import org.snomed.snowstorm.core.data.services.classification.BranchClassificationStatusService;
-import org.snomed.snowstorm.core.data.services.traceability.TraceabilityLogService;
 import org.snomed.snowstorm.core.data.services.transitiveclosure.GraphBuilderException;
-import org.snomed.snowstorm.ecl.validation.ECLPreprocessingService;
-import org.snomed.snowstorm.mrcm.MRCMLoader;
-import org.snomed.snowstorm.mrcm.MRCMUpdateService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -52,6 +47,9 @@ class SemanticIndexUpdateServiceTest extends AbstractTest {
 	@Autowired
 	private BranchService branchService;
 
+	@Autowired
+	private CommitListenerPipeline commitListenerPipeline;
+
 	@Autowired
 	private BranchMergeService branchMergeService;
 
@@ -81,17 +79,16 @@ class SemanticIndexUpdateServiceTest extends AbstractTest {
 	@Test
 	void testCommitListenerOrderingConfig() {
 		List<CommitListener> commitListeners = branchService.getCommitListeners();
-		assertEquals(13, commitListeners.size());
-		assertEquals(MRCMLoader.class, commitListeners.get(0).getClass());
-		assertEquals(ConceptDefinitionStatusUpdateService.class, commitListeners.get(1).getClass());
-		assertEquals(SemanticIndexUpdateService.class, commitListeners.get(2).getClass());
-		assertEquals(MRCMUpdateService.class, commitListeners.get(3).getClass());
-		assertEquals(BranchClassificationStatusService.class, commitListeners.get(4).getClass());
-		assertEquals(RefsetDescriptorUpdaterService.class, commitListeners.get(5).getClass());
-		assertEquals(TraceabilityLogService.class, commitListeners.get(6).getClass());
-		assertEquals(IntegrityService.class, commitListeners.get(7).getClass());
-		assertEquals(MultiSearchService.class, commitListeners.get(8).getClass());
-		assertEquals(ECLPreprocessingService.class, commitListeners.get(9).getClass());
+		assertEquals(1, commitListeners.size());
+		assertSame(commitListenerPipeline, commitListeners.get(0));
+
+		assertEquals(List.of("ecl-concrete-attribute-cache", "concept-definition-status", "semantic-index", "mrcm-update",
+				"refset-descriptor", "classification-status", "component-counts", "traceability", "integrity", "service-hook", "clear-transient-metadata"),
+				commitListenerPipeline.getListenerNames());
+		assertEquals(Set.of("concept-definition-status"), commitListenerPipeline.getDependencies("semantic-index"));
+		assertEquals(Set.of("semantic-index"), commitListenerPipeline.getDependencies("mrcm-update"));
+		assertEquals(Set.of("classification-status"), commitListenerPipeline.getDependencies("traceability"));
+		assertEquals(List.of("branch-criteria-cache", "mrcm-cache", "commit-log"), commitListenerPipeline.getAfterReleaseListenerNames());
 	}
 
 	@Test
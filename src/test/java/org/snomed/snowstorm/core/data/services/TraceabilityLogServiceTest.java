@@ -2,6 +2,7 @@ package org.snomed.snowstorm.core.data.services;
 
 import io.kaicode.elasticvc.api.BranchService;
 import io.kaicode.elasticvc.domain.Branch;
+import io.kaicode.elasticvc.domain.Commit;
 import org.ihtsdo.otf.snomedboot.ReleaseImportException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,6 +11,8 @@ import org.snomed.otf.snomedboot.testutil.ZipUtil;
 import org.snomed.snowstorm.AbstractTest;
 import org.snomed.snowstorm.config.Config;
 import org.snomed.snowstorm.core.data.domain.*;
+import org.snomed.snowstorm.core.data.domain.jobs.TraceabilityCommitRecord;
+import org.snomed.snowstorm.core.data.repositories.jobs.TraceabilityCommitRecordRepository;
 import org.snomed.snowstorm.core.data.services.traceability.Activity;
 import org.snomed.snowstorm.core.data.services.traceability.TraceabilityLogService;
 import org.snomed.snowstorm.core.rf2.RF2Type;
@@ -54,6 +57,9 @@ class TraceabilityLogServiceTest extends AbstractTest {
 	@Autowired
 	private RelationshipService relationshipService;
 
+	@Autowired
+	private TraceabilityCommitRecordRepository commitRecordRepository;
+
 	private boolean traceabilityOriginallyEnabled;
 
 	@BeforeEach
@@ -191,6 +197,71 @@ class TraceabilityLogServiceTest extends AbstractTest {
 		assertEquals(CREATE_CODE_SYSTEM_VERSION, activity.getActivityType());
 	}
 
+	@Test
+	void publishFromOutboxAfterCommit() throws ServiceException, InterruptedException {
+		traceabilityLogService.setAsync(true);
+		try {
+			Concept concept = conceptService.create(new Concept().addFSN("New concept"), MAIN);
+			final String conceptId = concept.getConceptId();
+			concept.addDescription(new Description("Another")
+					.addAcceptability(Concepts.US_EN_LANG_REFSET, Concepts.PREFERRED_CONSTANT)
+			);
+			conceptService.update(concept, MAIN);
+
+			// Nothing sent until the outbox is processed
+			assertNull(getTraceabilityActivityWithTimeout(2));
+
+			traceabilityLogService.publishOutbox();
+			int waited = 0;
+			while (getTraceabilityActivitiesLogged().size() < 2 && waited++ < 20) {
+				Thread.sleep(1_000);
+			}
+
+			// Activities are sent in commit order, the latest is on top of the stack
+			Activity activity = getTraceabilityActivity();
+			assertEquals("[ComponentChange{componentType=DESCRIPTION, componentSubType=900000000000013009, componentId='x', changeType=CREATE, effectiveTimeNull=true}, " +
+							"ComponentChange{componentType=REFERENCE_SET_MEMBER, componentSubType=900000000000509007, componentId='x', changeType=CREATE, effectiveTimeNull=true}]",
+					toString(activity.getChangesMap().get(conceptId).getComponentChanges()));
+
+			activity = getTraceabilityActivity();
+			assertEquals("[ComponentChange{componentType=CONCEPT, componentSubType=null, componentId='x', changeType=CREATE, effectiveTimeNull=true}, " +
+							"ComponentChange{componentType=DESCRIPTION, componentSubType=900000000000003001, componentId='x', changeType=CREATE, effectiveTimeNull=true}, " +
+							"ComponentChange{componentType=REFERENCE_SET_MEMBER, componentSubType=900000000000509007, componentId='x', changeType=CREATE, effectiveTimeNull=true}]",
+					toString(activity.getChangesMap().get(conceptId).getComponentChanges()));
+
+			// Outbox is empty
+			traceabilityLogService.publishOutbox();
+			assertNull(getTraceabilityActivityWithTimeout(2));
+		} finally {
+			traceabilityLogService.setAsync(false);
+		}
+	}
+
+	@Test
+	void publishFromOutboxPastRecordOfDeletedBranch() throws ServiceException, InterruptedException {
+		traceabilityLogService.setAsync(true);
+		try {
+			// Older record of a branch which no longer exists
+			TraceabilityCommitRecord deletedBranchRecord = new TraceabilityCommitRecord("MAIN/DELETED", 1L, null, Commit.CommitType.CONTENT, CONTENT_CHANGE,
+					"user", new HashMap<>(), null);
+			commitRecordRepository.save(deletedBranchRecord);
+
+			Concept concept = conceptService.create(new Concept().addFSN("New concept"), MAIN);
+			traceabilityLogService.publishOutbox();
+
+			Activity activity = getTraceabilityActivity();
+			assertNotNull(activity.getChangesMap().get(concept.getConceptId()));
+
+			// Record of the deleted branch is kept as a dead letter and no longer published
+			assertTrue(commitRecordRepository.findById(deletedBranchRecord.getId()).orElseThrow().isDeadLetter());
+			traceabilityLogService.publishOutbox();
+			assertNull(getTraceabilityActivityWithTimeout(2));
+		} finally {
+			traceabilityLogService.setAsync(false);
+			commitRecordRepository.deleteAll();
+		}
+	}
+
 	@Test
 	void createDeleteConceptOnChildBranch() throws ServiceException, InterruptedException {
 		Concept concept = conceptService.create(new Concept().addFSN("New concept"), MAIN);
@@ -0,0 +1,68 @@
+package org.snomed.snowstorm.core.data.services;
+
+import io.kaicode.elasticvc.api.BranchService;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.domain.Concepts;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionsReplacedCompactionServiceTest extends AbstractTest {
+
+	@Autowired
+	private VersionsReplacedCompactionService compactionService;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	@Autowired
+	private BranchMergeService branchMergeService;
+
+	@Test
+	void testEndedParentVersionsRemovedAfterRebase() throws ServiceException {
+		String conceptId = "100001";
+		conceptService.create(new Concept(conceptId), MAIN);
+		String firstVersionOnMain = conceptService.find(conceptId, MAIN).getInternalId();
+		branchService.create("MAIN/A");
+
+		Concept conceptOnA = conceptService.find(conceptId, "MAIN/A");
+		conceptOnA.setActive(false);
+		conceptService.update(conceptOnA, "MAIN/A");
+		assertEquals(Set.of(firstVersionOnMain), getConceptVersionsReplaced("MAIN/A"));
+
+		// The version on MAIN is ended by this change
+		Concept conceptOnMain = conceptService.find(conceptId, MAIN);
+		conceptOnMain.setModuleId(Concepts.MODEL_MODULE);
+		conceptService.update(conceptOnMain, MAIN);
+		String secondVersionOnMain = conceptService.find(conceptId, MAIN).getInternalId();
+
+		branchMergeService.rebaseSync("MAIN/A", Collections.singleton(conceptService.find(conceptId, "MAIN/A")));
+		assertEquals(Set.of(firstVersionOnMain, secondVersionOnMain), getConceptVersionsReplaced("MAIN/A"));
+
+		Map<String, Integer> removed = compactionService.compactVersionsReplaced("MAIN/A");
+		assertEquals(Map.of(Concept.class.getSimpleName(), 1), removed);
+		assertEquals(Set.of(secondVersionOnMain), getConceptVersionsReplaced("MAIN/A"));
+		assertFalse(branchService.findLatest("MAIN/A").isLocked());
+
+		Concept concept = conceptService.find(conceptId, "MAIN/A");
+		assertFalse(concept.isActive());
+		assertEquals("MAIN/A", concept.getPath());
+
+		// Nothing more to remove
+		assertTrue(compactionService.compactVersionsReplaced("MAIN/A").isEmpty());
+	}
+
+	private Set<String> getConceptVersionsReplaced(String path) {
+		return branchService.findLatest(path).getVersionsReplaced().getOrDefault(Concept.class.getSimpleName(), Collections.emptySet());
+	}
+
+}
@@ -0,0 +1,139 @@
+package org.snomed.snowstorm.core.data.services.classification;
+
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.domain.Metadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.domain.*;
+import org.snomed.snowstorm.core.data.domain.classification.Classification;
+import org.snomed.snowstorm.core.data.domain.classification.RelationshipChange;
+import org.snomed.snowstorm.core.data.repositories.ClassificationRepository;
+import org.snomed.snowstorm.core.data.repositories.classification.RelationshipChangeRepository;
+import org.snomed.snowstorm.core.data.services.*;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static io.kaicode.elasticvc.api.VersionControlHelper.LARGE_PAGE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.snomed.snowstorm.core.data.domain.classification.ClassificationStatus.COMPLETED;
+
+class IncrementalClassificationServiceTest extends AbstractTest {
+
+	private static final String TASK = "MAIN/TASK";
+	private static final String REASONER = "org.semanticweb.elk.owlapi.ElkReasonerFactory";
+
+	@Autowired
+	private IncrementalClassificationService incrementalClassificationService;
+
+	@Autowired
+	private ClassificationService classificationService;
+
+	@Autowired
+	private ClassificationRepository classificationRepository;
+
+	@Autowired
+	private RelationshipChangeRepository relationshipChangeRepository;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private BranchMergeService branchMergeService;
+
+	@Autowired
+	private ReferenceSetMemberService referenceSetMemberService;
+
+	private Classification previous;
+
+	@BeforeEach
+	void setup() throws ServiceException, IOException {
+		conceptService.create(new Concept("123123123001").addAxiom(new Relationship(Concepts.ISA, Concepts.SNOMEDCT_ROOT)), MAIN);
+		branchService.create(TASK);
+		Metadata metadata = branchService.findLatest(TASK).getMetadata();
+		metadata.putString(BranchMetadataKeys.PREVIOUS_PACKAGE, "SnomedCT_InternationalRF2_PRODUCTION_20220131T120000Z.zip");
+		branchService.updateMetadata(TASK, metadata);
+
+		// Results of an earlier remote classification of the task
+		previous = new Classification();
+		previous.setId(UUID.randomUUID().toString());
+		previous.setPath(TASK);
+		previous.setReasonerId(REASONER);
+		previous.setStatus(COMPLETED);
+		previous.setCreationDate(new Date());
+		previous.setLastCommitDate(branchService.findLatest(TASK).getHead());
+		previous.setInferredRelationshipChangesFound(true);
+		previous.setEquivalentConceptsFound(false);
+		classificationRepository.save(previous);
+		classificationService.saveRelationshipChanges(previous, new ByteArrayInputStream(("" +
+				"id\teffectiveTime\tactive\tmoduleId\tsourceId\tdestinationId\trelationshipGroup\ttypeId\tcharacteristicTypeId\tmodifierId\n" +
+				"\t\t1\t\t123123123001\t138875005\t0\t116680003\t900000000000011006\t900000000000451002\n" +
+				"").getBytes()), false);
+	}
+
+	@Test
+	void testResultsReusedAfterDescriptionChange() throws ServiceException {
+		Concept concept = conceptService.find("123123123001", TASK);
+		concept.addDescription(new Description("Some finding (finding)").setTypeId(Concepts.FSN));
+		conceptService.update(concept, TASK);
+
+		Classification classification = classificationService.createClassification(branchService.findLatest(TASK), REASONER);
+		assertNotEquals(previous.getId(), classification.getId());
+		assertEquals(COMPLETED, classification.getStatus());
+		assertEquals(branchService.findLatest(TASK).getHead(), classification.getLastCommitDate());
+		assertTrue(classification.getInferredRelationshipChangesFound());
+
+		List<RelationshipChange> changes = relationshipChangeRepository.findByClassificationId(classification.getId(), LARGE_PAGE).getContent();
+		assertEquals(1, changes.size());
+		assertEquals("138875005", changes.get(0).getDestinationId());
+		assertEquals(1, relationshipChangeRepository.findByClassificationId(previous.getId(), LARGE_PAGE).getTotalElements());
+		assertEquals(Boolean.FALSE, BranchClassificationStatusService.getClassificationStatus(branchService.findLatest(TASK)));
+	}
+
+	@Test
+	void testNotReusedAfterAxiomChange() throws ServiceException {
+		Concept concept = conceptService.find("123123123001", TASK);
+		concept.getClassAxioms().iterator().next().getRelationships().add(new Relationship("363698007", "84301002"));
+		conceptService.update(concept, TASK);
+
+		assertNull(incrementalClassificationService.findReusableClassification(TASK, REASONER));
+	}
+
+	@Test
+	void testNotReusedAfterMemberOfClassificationRefsetChange() throws ServiceException {
+		// Extension MRCM domain reference set, below the reference set type exported for classification
+		conceptService.create(new Concept(Concepts.REFSET_MRCM_ATTRIBUTE_DOMAIN).addAxiom(new Relationship(Concepts.ISA, Concepts.SNOMEDCT_ROOT)), TASK);
+		conceptService.create(new Concept("123123125001").addAxiom(new Relationship(Concepts.ISA, Concepts.REFSET_MRCM_ATTRIBUTE_DOMAIN)), TASK);
+		previous.setLastCommitDate(branchService.findLatest(TASK).getHead());
+		classificationRepository.save(previous);
+		assertNotNull(incrementalClassificationService.findReusableClassification(TASK, REASONER));
+
+		referenceSetMemberService.createMember(TASK, new ReferenceSetMember(Concepts.CORE_MODULE, "123123125001", "123123123001"));
+
+		assertNull(incrementalClassificationService.findReusableClassification(TASK, REASONER));
+	}
+
+	@Test
+	void testNotReusedAfterRebase() throws ServiceException {
+		conceptService.create(new Concept("123123124001").addAxiom(new Relationship(Concepts.ISA, Concepts.SNOMEDCT_ROOT)), MAIN);
+		branchMergeService.rebaseSync(TASK, Collections.emptySet());
+
+		assertNull(incrementalClassificationService.findReusableClassification(TASK, REASONER));
+	}
+
+	@Test
+	void testNotReusedForOtherReasoner() {
+		assertNotNull(incrementalClassificationService.findReusableClassification(TASK, REASONER));
+		assertNull(incrementalClassificationService.findReusableClassification(TASK, "other.ReasonerFactory"));
+	}
+
+}
@@ -0,0 +1,152 @@
+package org.snomed.snowstorm.core.data.services.identifier;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.domain.jobs.IdentifierSequence;
+import org.snomed.snowstorm.core.data.services.ConceptService;
+import org.snomed.snowstorm.core.data.services.ServiceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalSequenceIdentifierSourceTest extends AbstractTest {
+
+	private static final int EXTENSION_NAMESPACE = 1000003;
+
+	@Autowired
+	private ElasticsearchRestTemplate elasticsearchTemplate;
+
+	@Autowired
+	private LocalRandomIdentifierSource localRandomIdentifierSource;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@Test
+	void testReserveIds() throws ServiceException {
+		LocalSequenceIdentifierSource identifierSource = new LocalSequenceIdentifierSource(elasticsearchTemplate, 100, 10);
+		List<Long> ids = identifierSource.reserveIds(EXTENSION_NAMESPACE, "10", 250);
+		assertEquals(250, ids.size());
+		assertEquals(250, new LongOpenHashSet(ids).size());
+		for (Long id : ids) {
+			String sctid = id.toString();
+			assertTrue(VerhoeffCheck.validateLastChecksumDigit(sctid), sctid);
+			assertTrue(sctid.endsWith(EXTENSION_NAMESPACE + "10" + sctid.charAt(sctid.length() - 1)), sctid);
+			assertTrue(IdentifierService.isConceptId(sctid), sctid);
+		}
+		// Sequential within the thread range
+		assertEquals(getItemId(ids.get(0), true) + 1, getItemId(ids.get(1), true));
+
+		// Another instance continues after the persisted high-water mark
+		LocalSequenceIdentifierSource secondSource = new LocalSequenceIdentifierSource(elasticsearchTemplate, 100, 10);
+		long maxItemId = ids.stream().mapToLong(id -> getItemId(id, true)).max().orElseThrow();
+		List<Long> moreIds = secondSource.reserveIds(EXTENSION_NAMESPACE, "10", 10);
+		assertTrue(getItemId(moreIds.get(0), true) > maxItemId);
+	}
+
+	@Test
+	void testIdentifiersAlreadyUsedAreSkipped() throws ServiceException {
+		LocalSequenceIdentifierSource identifierSource = new LocalSequenceIdentifierSource(elasticsearchTemplate, 100, 100);
+		// Find the next identifiers by reserving them with another instance
+		List<Long> nextIds = new LocalSequenceIdentifierSource(elasticsearchTemplate, 100, 100).reserveIds(0, "00", 1);
+		long nextItemId = getItemId(nextIds.get(0), false) + 100;
+		String usedId = Long.toString(LocalSequenceIdentifierSource.toSctid(nextItemId + 1, "00"));
+		conceptService.create(new Concept(usedId).addFSN("Test"), MAIN);
+
+		List<Long> ids = identifierSource.reserveIds(0, "00", 3);
+		assertEquals(LocalSequenceIdentifierSource.toSctid(nextItemId, "00"), ids.get(0));
+		assertEquals(LocalSequenceIdentifierSource.toSctid(nextItemId + 2, "00"), ids.get(1));
+		assertEquals(LocalSequenceIdentifierSource.toSctid(nextItemId + 3, "00"), ids.get(2));
+	}
+
+	@Test
+	void testFirstBlockReservedByOneInstance() throws Exception {
+		ExecutorService executorService = Executors.newFixedThreadPool(2);
+		try {
+			for (int round = 0; round < 10; round++) {
+				// Start from a sequence that does not exist yet
+				elasticsearchTemplate.delete(IdentifierSequence.getId(EXTENSION_NAMESPACE, "12"), IdentifierSequence.class);
+				CountDownLatch start = new CountDownLatch(1);
+				List<Callable<List<Long>>> tasks = new ArrayList<>();
+				for (int instance = 0; instance < 2; instance++) {
+					LocalSequenceIdentifierSource identifierSource = new LocalSequenceIdentifierSource(elasticsearchTemplate, 100, 100);
+					tasks.add(() -> {
+						start.await();
+						return identifierSource.reserveIds(EXTENSION_NAMESPACE, "12", 10);
+					});
+				}
+				List<Future<List<Long>>> futures = new ArrayList<>();
+				for (Callable<List<Long>> task : tasks) {
+					futures.add(executorService.submit(task));
+				}
+				start.countDown();
+				Set<Long> allIds = new LongOpenHashSet();
+				for (Future<List<Long>> future : futures) {
+					allIds.addAll(future.get());
+				}
+				assertEquals(20, allIds.size(), "Both instances reserved the same first block.");
+			}
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	@Test
+	void testThroughputAndUniquenessAcrossThreads() throws Exception {
+		int threads = 8;
+		int requestsPerThread = 200;
+		int idsPerRequest = 50;
+
+		LocalSequenceIdentifierSource sequenceSource = new LocalSequenceIdentifierSource(elasticsearchTemplate, 10_000, 100);
+		Set<Long> sequenceIds = reserveConcurrently("local-sequence", sequenceSource, threads, requestsPerThread, idsPerRequest);
+		assertEquals(threads * requestsPerThread * idsPerRequest, sequenceIds.size());
+
+		// A tenth of the load with the random source for comparison.
+		// Uniqueness is not asserted because the random source relies on identifiers being saved to avoid repeats.
+		reserveConcurrently("local-random", localRandomIdentifierSource, threads, requestsPerThread / 10, idsPerRequest);
+	}
+
+	private Set<Long> reserveConcurrently(String name, IdentifierSource identifierSource, int threads, int requestsPerThread, int idsPerRequest) throws Exception {
+		ExecutorService executorService = Executors.newFixedThreadPool(threads);
+		try {
+			List<Callable<List<Long>>> tasks = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				tasks.add(() -> {
+					List<Long> ids = new ArrayList<>();
+					for (int request = 0; request < requestsPerThread; request++) {
+						ids.addAll(identifierSource.reserveIds(EXTENSION_NAMESPACE, "11", idsPerRequest));
+					}
+					return ids;
+				});
+			}
+			long start = System.nanoTime();
+			Set<Long> allIds = new LongOpenHashSet();
+			for (Future<List<Long>> future : executorService.invokeAll(tasks)) {
+				allIds.addAll(future.get());
+			}
+			double seconds = (System.nanoTime() - start) / 1_000_000_000d;
+			logger.info("{}: {} identifiers reserved by {} threads in {} seconds, {} per second.",
+					name, allIds.size(), threads, String.format("%.2f", seconds), Math.round(allIds.size() / seconds));
+			return allIds;
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	// Removes namespace, partition and check digit
+	private long getItemId(Long sctid, boolean extension) {
+		String id = sctid.toString();
+		return Long.parseLong(id.substring(0, id.length() - (extension ? 10 : 3)));
+	}
+
+}
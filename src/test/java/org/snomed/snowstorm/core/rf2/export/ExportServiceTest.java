@@ -15,14 +15,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -705,6 +704,38 @@ class ExportServiceTest extends AbstractTest {
 		}
 	}
 
+	@Test
+	void exportClassificationInputMatchesClassificationFileExport() throws IOException {
+		File exportFile = exportService.exportRF2ArchiveFile("MAIN", "20210731", RF2Type.DELTA, true);
+		exportFile.deleteOnExit();
+		ByteArrayOutputStream streamedExport = new ByteArrayOutputStream();
+		exportService.exportClassificationInput("MAIN", "20210731", streamedExport);
+
+		Map<String, List<String>> fileEntries;
+		try (ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(exportFile))) {
+			fileEntries = getEntries(zipInputStream);
+		}
+		Map<String, List<String>> streamedEntries;
+		try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(streamedExport.toByteArray()))) {
+			streamedEntries = getEntries(zipInputStream);
+		}
+
+		// Same entries in the same order
+		assertEquals(new ArrayList<>(fileEntries.keySet()), new ArrayList<>(streamedEntries.keySet()));
+		assertEquals(fileEntries, streamedEntries);
+		assertTrue(streamedEntries.containsKey("SnomedCT_Export/RF2Release/Terminology/sct2_StatedRelationship_Delta_INT_20210731.txt"));
+		assertEquals(2, streamedEntries.get("SnomedCT_Export/RF2Release/Terminology/sct2_sRefset_OWLExpression733073007Delta_INT_20210731.txt").size());
+	}
+
+	private Map<String, List<String>> getEntries(ZipInputStream zipInputStream) throws IOException {
+		Map<String, List<String>> entries = new LinkedHashMap<>();
+		ZipEntry zipEntry;
+		while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+			entries.put(zipEntry.getName(), getLines(zipInputStream));
+		}
+		return entries;
+	}
+
 	void printLines(List<String> lines) {
 		for (String l : lines) {
 			System.out.println(l);
@@ -0,0 +1,160 @@
+package org.snomed.snowstorm.core.rf2.synthetic;
+
+import java.util.List;
+
+import static org.snomed.snowstorm.core.data.domain.Concepts.GB_EN_LANG_REFSET;
+import static org.snomed.snowstorm.core.data.domain.Concepts.US_EN_LANG_REFSET;
+
+/**
+ * Size and shape of a synthetic edition. The defaults give a small edition; International Edition scale is around
+ * 360,000 concepts with a hierarchy depth of 20 and two synonyms per concept.
+ */
+public final class SyntheticEditionConfiguration {
+
+	private int conceptCount = 10_000;
+	private int hierarchyDepth = 8;
+	private float polyhierarchyRatio = 0.1f;
+	private int maxParents = 3;
+	private int synonymsPerConcept = 2;
+	private List<String> languageRefsets = List.of(US_EN_LANG_REFSET, GB_EN_LANG_REFSET);
+	private int attributesPerConcept = 1;
+	private float concreteValueRatio = 0.1f;
+	private float mapRatio = 0.2f;
+	private int releaseCount = 1;
+	private float changeRatio = 0.05f;
+	private String firstEffectiveTime = "20200131";
+	private long seed = 1;
+
+	public int getConceptCount() {
+		return conceptCount;
+	}
+
+	public SyntheticEditionConfiguration setConceptCount(int conceptCount) {
+		this.conceptCount = conceptCount;
+		return this;
+	}
+
+	public int getHierarchyDepth() {
+		return hierarchyDepth;
+	}
+
+	/**
+	 * Number of levels below the root. The number of children per concept is derived from this and the concept count.
+	 */
+	public SyntheticEditionConfiguration setHierarchyDepth(int hierarchyDepth) {
+		this.hierarchyDepth = hierarchyDepth;
+		return this;
+	}
+
+	public float getPolyhierarchyRatio() {
+		return polyhierarchyRatio;
+	}
+
+	/**
+	 * Proportion of concepts with more than one parent.
+	 */
+	public SyntheticEditionConfiguration setPolyhierarchyRatio(float polyhierarchyRatio) {
+		this.polyhierarchyRatio = polyhierarchyRatio;
+		return this;
+	}
+
+	public int getMaxParents() {
+		return maxParents;
+	}
+
+	public SyntheticEditionConfiguration setMaxParents(int maxParents) {
+		this.maxParents = maxParents;
+		return this;
+	}
+
+	public int getSynonymsPerConcept() {
+		return synonymsPerConcept;
+	}
+
+	public SyntheticEditionConfiguration setSynonymsPerConcept(int synonymsPerConcept) {
+		this.synonymsPerConcept = synonymsPerConcept;
+		return this;
+	}
+
+	public List<String> getLanguageRefsets() {
+		return languageRefsets;
+	}
+
+	public SyntheticEditionConfiguration setLanguageRefsets(List<String> languageRefsets) {
+		this.languageRefsets = languageRefsets;
+		return this;
+	}
+
+	public int getAttributesPerConcept() {
+		return attributesPerConcept;
+	}
+
+	public SyntheticEditionConfiguration setAttributesPerConcept(int attributesPerConcept) {
+		this.attributesPerConcept = attributesPerConcept;
+		return this;
+	}
+
+	public float getConcreteValueRatio() {
+		return concreteValueRatio;
+	}
+
+	public SyntheticEditionConfiguration setConcreteValueRatio(float concreteValueRatio) {
+		this.concreteValueRatio = concreteValueRatio;
+		return this;
+	}
+
+	public float getMapRatio() {
+		return mapRatio;
+	}
+
+	/**
+	 * Proportion of concepts with a member in the simple map reference set.
+	 */
+	public SyntheticEditionConfiguration setMapRatio(float mapRatio) {
+		this.mapRatio = mapRatio;
+		return this;
+	}
+
+	public int getReleaseCount() {
+		return releaseCount;
+	}
+
+	/**
+	 * Number of releases in the history. Releases after the first change some of the content, giving Full files with history
+	 * and Delta files with only the changes of the last release.
+	 */
+	public SyntheticEditionConfiguration setReleaseCount(int releaseCount) {
+		this.releaseCount = releaseCount;
+		return this;
+	}
+
+	public float getChangeRatio() {
+		return changeRatio;
+	}
+
+	/**
+	 * Proportion of concepts changed in each release after the first.
+	 */
+	public SyntheticEditionConfiguration setChangeRatio(float changeRatio) {
+		this.changeRatio = changeRatio;
+		return this;
+	}
+
+	public String getFirstEffectiveTime() {
+		return firstEffectiveTime;
+	}
+
+	public SyntheticEditionConfiguration setFirstEffectiveTime(String firstEffectiveTime) {
+		this.firstEffectiveTime = firstEffectiveTime;
+		return this;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public SyntheticEditionConfiguration setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+}
@@ -0,0 +1,469 @@
+package org.snomed.snowstorm.core.rf2.synthetic;
+
+import org.snomed.snowstorm.core.data.services.identifier.VerhoeffCheck;
+import org.snomed.snowstorm.core.rf2.RF2Type;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.snomed.snowstorm.core.data.domain.Concepts.*;
+
+/**
+ * Generates RF2 Snapshot, Delta or Full archives of synthetic content for scale testing, importable using ImportService.importArchive.
+ *
+ * Concepts form a polyhierarchy of the configured depth below the root. Each concept has an FSN, synonyms with members in
+ * each language reference set, an OWL axiom, inferred relationships including grouped attributes and, for some concepts,
+ * a concrete value and a simple map reference set member. Releases after the first inactivate and replace a synonym of some concepts.
+ *
+ * The content of each concept is derived from the seed and the position of the concept, so each file is written in a single pass
+ * without holding the edition in memory and the same configuration always gives the same content.
+ * Generating with one more release gives a Delta that applies on top of the Snapshot of the previous configuration.
+ *
+ * Run the main method to write an archive to disk, for example:
+ * SyntheticEditionGenerator output=/tmp/synthetic.zip type=SNAPSHOT concepts=360000 depth=20 releases=2
+ */
+public class SyntheticEditionGenerator {
+
+	public static final String OWL_AXIOM_REFSET = "733073007";
+	public static final String SIMPLE_MAP_REFSET = "446608001";
+	public static final String FINDING_SITE = "363698007";
+	public static final String STRENGTH_NUMERATOR_VALUE = "1142135004";
+	public static final String SEMANTIC_TAG = "finding";
+	private static final String CONCEPT_MODEL_ATTRIBUTE = "410662002";
+	private static final String ROLE_GROUP = "609096000";
+
+	private static final long FIRST_ITEM_ID = 1_000_000L;
+	private static final String TAB = "\t";
+	private static final String CRLF = "\r\n";
+
+	public static final String[] VOCABULARY = {"acute", "chronic", "fracture", "lesion", "infection", "bacterial", "viral", "pain", "left", "right",
+			"upper", "lower", "limb", "bone", "skin", "heart", "lung", "kidney", "liver", "muscle", "joint", "inflammation", "disorder",
+			"syndrome", "congenital", "traumatic", "benign", "malignant", "neoplasm", "abscess", "ulcer", "cyst", "hemorrhage", "stenosis",
+			"edema", "deficiency", "allergy", "injury", "structure", "finding"};
+
+	// Metadata concepts used by the content: id, parent and FSN
+	private static final String[][] METADATA_CONCEPTS = {
+			{SNOMEDCT_ROOT, null, "SNOMED CT Concept (SNOMED RT+CTV3)"},
+			{CONCEPT_MODEL_ATTRIBUTE, SNOMEDCT_ROOT, "Concept model attribute (attribute)"},
+			{ISA, CONCEPT_MODEL_ATTRIBUTE, "Is a (attribute)"},
+			{ROLE_GROUP, CONCEPT_MODEL_ATTRIBUTE, "Role group (attribute)"},
+			{FINDING_SITE, CONCEPT_MODEL_ATTRIBUTE, "Finding site (attribute)"},
+			{STRENGTH_NUMERATOR_VALUE, CONCEPT_MODEL_ATTRIBUTE, "Has presentation strength numerator value (attribute)"}
+	};
+
+	private final SyntheticEditionConfiguration configuration;
+	private final int conceptCount;
+	private final int childrenPerConcept;
+	private final int[] levelStarts;
+	private final String[] effectiveTimes;
+	private final int descriptionSlots;
+	private final int relationshipSlots;
+
+	public SyntheticEditionGenerator(SyntheticEditionConfiguration configuration) {
+		this.configuration = configuration;
+		this.conceptCount = configuration.getConceptCount();
+		int depth = Math.max(1, configuration.getHierarchyDepth());
+
+		// Smallest number of children per concept that fits all concepts within the depth
+		int children = 1;
+		while (getCapacity(children, depth) < conceptCount) {
+			children++;
+		}
+		childrenPerConcept = children;
+		List<Integer> starts = new ArrayList<>();
+		int start = 0;
+		long levelSize = children;
+		while (start < conceptCount) {
+			starts.add(start);
+			start += (int) Math.min(levelSize, conceptCount - start);
+			levelSize *= children;
+		}
+		starts.add(conceptCount);
+		levelStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+
+		int releaseCount = Math.max(1, configuration.getReleaseCount());
+		effectiveTimes = new String[releaseCount];
+		LocalDate firstRelease = LocalDate.parse(configuration.getFirstEffectiveTime(), DateTimeFormatter.BASIC_ISO_DATE);
+		for (int release = 0; release < releaseCount; release++) {
+			effectiveTimes[release] = firstRelease.plusMonths(6L * release).format(DateTimeFormatter.BASIC_ISO_DATE);
+		}
+
+		// FSN, synonyms and a replacement synonym
+		descriptionSlots = Math.max(1, configuration.getSynonymsPerConcept()) + 2;
+		// Parents, attributes and a concrete value
+		relationshipSlots = Math.max(1, configuration.getMaxParents()) + configuration.getAttributesPerConcept() + 1;
+	}
+
+	private static long getCapacity(int children, int depth) {
+		long capacity = 0;
+		long levelSize = 1;
+		for (int level = 0; level < depth && capacity < Integer.MAX_VALUE; level++) {
+			levelSize *= children;
+			capacity += levelSize;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Writes the archive to a temporary file which is deleted on exit.
+	 */
+	public File generateArchive(RF2Type type) throws IOException {
+		File archive = File.createTempFile("synthetic-edition-", ".zip");
+		archive.deleteOnExit();
+		try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(archive))) {
+			generateArchive(type, outputStream);
+		}
+		return archive;
+	}
+
+	public void generateArchive(RF2Type type, OutputStream outputStream) throws IOException {
+		int lastRelease = effectiveTimes.length - 1;
+		RowFilter rowFilter;
+		String fileType;
+		switch (type) {
+			case DELTA:
+				rowFilter = (release, latest) -> release == lastRelease;
+				fileType = "Delta";
+				break;
+			case FULL:
+				rowFilter = (release, latest) -> true;
+				fileType = "Full";
+				break;
+			default:
+				rowFilter = (release, latest) -> latest;
+				fileType = "Snapshot";
+		}
+		String effectiveTime = effectiveTimes[lastRelease];
+		String root = "SnomedCT_SyntheticEdition_INT_" + effectiveTime + "/" + fileType + "/";
+		String suffix = "INT_" + effectiveTime + ".txt";
+
+		ZipOutputStream zip = new ZipOutputStream(outputStream);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+
+		writeFile(zip, writer, rowFilter, root + "Terminology/sct2_Concept_" + fileType + "_" + suffix,
+				"id\teffectiveTime\tactive\tmoduleId\tdefinitionStatusId",
+				(concept, rows) -> rows.write(0, true, concept.conceptId, true, CORE_MODULE, PRIMITIVE));
+
+		writeFile(zip, writer, rowFilter, root + "Terminology/sct2_Description_" + fileType + "-en_" + suffix,
+				"id\teffectiveTime\tactive\tmoduleId\tconceptId\tlanguageCode\ttypeId\tterm\tcaseSignificanceId",
+				(concept, rows) -> forEachDescription(concept, (release, latest, descriptionId, active, typeId, term, acceptabilityId) ->
+						rows.write(release, latest, descriptionId, active, CORE_MODULE, concept.conceptId, "en", typeId, term, CASE_INSENSITIVE)));
+
+		writeFile(zip, writer, rowFilter, root + "Terminology/sct2_Relationship_" + fileType + "_" + suffix,
+				"id\teffectiveTime\tactive\tmoduleId\tsourceId\tdestinationId\trelationshipGroup\ttypeId\tcharacteristicTypeId\tmodifierId",
+				(concept, rows) -> {
+					int slot = 0;
+					for (String parent : concept.parents) {
+						rows.write(0, true, getRelationshipId(concept, slot++), true, CORE_MODULE, concept.conceptId, parent, "0", ISA, INFERRED_RELATIONSHIP, EXISTENTIAL);
+					}
+					slot = Math.max(1, configuration.getMaxParents());
+					for (String value : concept.attributeValues) {
+						rows.write(0, true, getRelationshipId(concept, slot++), true, CORE_MODULE, concept.conceptId, value, "1", FINDING_SITE, INFERRED_RELATIONSHIP, EXISTENTIAL);
+					}
+				});
+
+		writeFile(zip, writer, rowFilter, root + "Terminology/sct2_RelationshipConcreteValues_" + fileType + "_" + suffix,
+				"id\teffectiveTime\tactive\tmoduleId\tsourceId\tvalue\trelationshipGroup\ttypeId\tcharacteristicTypeId\tmodifierId",
+				(concept, rows) -> {
+					if (concept.concreteValue != null) {
+						rows.write(0, true, getRelationshipId(concept, relationshipSlots - 1), true, CORE_MODULE, concept.conceptId,
+								"#" + concept.concreteValue, "1", STRENGTH_NUMERATOR_VALUE, INFERRED_RELATIONSHIP, EXISTENTIAL);
+					}
+				});
+
+		writeFile(zip, writer, rowFilter, root + "Terminology/sct2_sRefset_OWLExpression" + fileType + "_" + suffix,
+				"id\teffectiveTime\tactive\tmoduleId\trefsetId\treferencedComponentId\towlExpression",
+				(concept, rows) -> {
+					if (!concept.parents.isEmpty()) {
+						rows.write(0, true, getMemberId(OWL_AXIOM_REFSET, concept.conceptId), true, CORE_MODULE, OWL_AXIOM_REFSET, concept.conceptId, getOwlExpression(concept));
+					}
+				});
+
+		writeFile(zip, writer, rowFilter, root + "Refset/Language/der2_cRefset_Language" + fileType + "-en_" + suffix,
+				"id\teffectiveTime\tactive\tmoduleId\trefsetId\treferencedComponentId\tacceptabilityId",
+				(concept, rows) -> forEachDescription(concept, (release, latest, descriptionId, active, typeId, term, acceptabilityId) -> {
+					for (String languageRefset : configuration.getLanguageRefsets()) {
+						rows.write(release, latest, getMemberId(languageRefset, descriptionId), active, CORE_MODULE, languageRefset, descriptionId, acceptabilityId);
+					}
+				}));
+
+		writeFile(zip, writer, rowFilter, root + "Refset/Map/der2_sRefset_SimpleMap" + fileType + "_" + suffix,
+				"id\teffectiveTime\tactive\tmoduleId\trefsetId\treferencedComponentId\tmapTarget",
+				(concept, rows) -> {
+					if (concept.mapTarget != null) {
+						rows.write(0, true, getMemberId(SIMPLE_MAP_REFSET, concept.conceptId), true, CORE_MODULE, SIMPLE_MAP_REFSET, concept.conceptId, concept.mapTarget);
+					}
+				});
+
+		zip.finish();
+		zip.flush();
+	}
+
+	private void writeFile(ZipOutputStream zip, Writer writer, RowFilter rowFilter, String path, String header, ConceptRowWriter conceptRowWriter) throws IOException {
+		zip.putNextEntry(new ZipEntry(path));
+		writer.write(header);
+		writer.write(CRLF);
+		RowSink rowSink = (release, latest, id, active, columns) -> {
+			if (rowFilter.include(release, latest)) {
+				writer.write(id);
+				writer.write(TAB);
+				writer.write(effectiveTimes[release]);
+				writer.write(TAB);
+				writer.write(active ? "1" : "0");
+				for (String column : columns) {
+					writer.write(TAB);
+					writer.write(column);
+				}
+				writer.write(CRLF);
+			}
+		};
+		for (int i = 0; i < METADATA_CONCEPTS.length; i++) {
+			conceptRowWriter.write(getMetadataConcept(i), rowSink);
+		}
+		for (int i = 0; i < conceptCount; i++) {
+			conceptRowWriter.write(getSyntheticConcept(i), rowSink);
+		}
+		writer.flush();
+		zip.closeEntry();
+	}
+
+	private void forEachDescription(ConceptPlan concept, DescriptionVisitor visitor) throws IOException {
+		visitor.visit(0, true, getDescriptionId(concept, 0), true, FSN, concept.fsn, PREFERRED);
+		for (int i = 0; i < concept.synonyms.size(); i++) {
+			String descriptionId = getDescriptionId(concept, i + 1);
+			String acceptabilityId = i == 0 ? PREFERRED : ACCEPTABLE;
+			boolean replaced = concept.changeRelease > 0 && i == concept.synonyms.size() - 1;
+			visitor.visit(0, !replaced, descriptionId, true, SYNONYM, concept.synonyms.get(i), acceptabilityId);
+			if (replaced) {
+				visitor.visit(concept.changeRelease, true, descriptionId, false, SYNONYM, concept.synonyms.get(i), acceptabilityId);
+				visitor.visit(concept.changeRelease, true, getDescriptionId(concept, descriptionSlots - 1), true, SYNONYM, concept.replacementSynonym, acceptabilityId);
+			}
+		}
+	}
+
+	private String getOwlExpression(ConceptPlan concept) {
+		List<String> conjuncts = new ArrayList<>();
+		for (String parent : concept.parents) {
+			conjuncts.add(":" + parent);
+		}
+		List<String> groupAttributes = new ArrayList<>();
+		for (String value : concept.attributeValues) {
+			groupAttributes.add("ObjectSomeValuesFrom(:" + FINDING_SITE + " :" + value + ")");
+		}
+		if (concept.concreteValue != null) {
+			groupAttributes.add("DataHasValue(:" + STRENGTH_NUMERATOR_VALUE + " \"" + concept.concreteValue + "\"^^xsd:integer)");
+		}
+		if (!groupAttributes.isEmpty()) {
+			conjuncts.add("ObjectSomeValuesFrom(:" + ROLE_GROUP + " " + intersectionOf(groupAttributes) + ")");
+		}
+		return "SubClassOf(:" + concept.conceptId + " " + intersectionOf(conjuncts) + ")";
+	}
+
+	private static String intersectionOf(List<String> expressions) {
+		return expressions.size() == 1 ? expressions.get(0) : "ObjectIntersectionOf(" + String.join(" ", expressions) + ")";
+	}
+
+	private ConceptPlan getMetadataConcept(int index) {
+		String[] metadata = METADATA_CONCEPTS[index];
+		ConceptPlan concept = new ConceptPlan(metadata[0], conceptCount + index);
+		if (metadata[1] != null) {
+			concept.parents.add(metadata[1]);
+		}
+		concept.fsn = metadata[2];
+		concept.synonyms.add(metadata[2].substring(0, metadata[2].lastIndexOf(" (")));
+		return concept;
+	}
+
+	private ConceptPlan getSyntheticConcept(int index) {
+		Random random = getRandom(index, 0);
+		ConceptPlan concept = new ConceptPlan(getConceptId(index), index);
+
+		int level = getLevel(index);
+		if (level == 0) {
+			concept.parents.add(SNOMEDCT_ROOT);
+		} else {
+			int parentLevelStart = levelStarts[level - 1];
+			int parentLevelSize = levelStarts[level] - parentLevelStart;
+			int position = index - levelStarts[level];
+			concept.parents.add(getConceptId(parentLevelStart + Math.min(position / childrenPerConcept, parentLevelSize - 1)));
+			if (configuration.getMaxParents() > 1 && random.nextFloat() < configuration.getPolyhierarchyRatio()) {
+				int extraParents = 1 + random.nextInt(configuration.getMaxParents() - 1);
+				for (int i = 0; i < extraParents; i++) {
+					String parent = getConceptId(parentLevelStart + random.nextInt(parentLevelSize));
+					if (!concept.parents.contains(parent)) {
+						concept.parents.add(parent);
+					}
+				}
+			}
+		}
+
+		for (int i = 0; i < configuration.getAttributesPerConcept(); i++) {
+			concept.attributeValues.add(getConceptId(random.nextInt(conceptCount)));
+		}
+		if (random.nextFloat() < configuration.getConcreteValueRatio()) {
+			concept.concreteValue = 1 + random.nextInt(1_000);
+		}
+		if (random.nextFloat() < configuration.getMapRatio()) {
+			concept.mapTarget = String.format("M%04d/%d", random.nextInt(10_000), random.nextInt(4));
+		}
+
+		// Index in terms keeps them unique
+		String preferredTerm = randomTerm(random) + " " + index;
+		concept.fsn = preferredTerm + " (" + SEMANTIC_TAG + ")";
+		concept.synonyms.add(preferredTerm);
+		for (int i = 1; i < configuration.getSynonymsPerConcept(); i++) {
+			concept.synonyms.add(randomTerm(random) + " " + index);
+		}
+
+		// Uses a separate random per release so that adding releases does not change earlier ones
+		for (int release = 1; release < effectiveTimes.length; release++) {
+			Random releaseRandom = getRandom(index, release);
+			if (releaseRandom.nextFloat() < configuration.getChangeRatio()) {
+				concept.changeRelease = release;
+				concept.replacementSynonym = randomTerm(releaseRandom) + " " + index;
+				break;
+			}
+		}
+		return concept;
+	}
+
+	private Random getRandom(int index, int release) {
+		return new Random(configuration.getSeed() * 1_000_003L + index * 31L + release * 1_000_000_007L);
+	}
+
+	private static String randomTerm(Random random) {
+		StringBuilder term = new StringBuilder();
+		int words = 2 + random.nextInt(3);
+		for (int w = 0; w < words; w++) {
+			if (w > 0) {
+				term.append(" ");
+			}
+			term.append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+		}
+		return Character.toUpperCase(term.charAt(0)) + term.substring(1);
+	}
+
+	private int getLevel(int index) {
+		int position = Arrays.binarySearch(levelStarts, index);
+		return position >= 0 ? position : -position - 2;
+	}
+
+	private String getDescriptionId(ConceptPlan concept, int slot) {
+		return toSctid(FIRST_ITEM_ID + (long) concept.idIndex * descriptionSlots + slot, "01");
+	}
+
+	private String getRelationshipId(ConceptPlan concept, int slot) {
+		return toSctid(FIRST_ITEM_ID + (long) concept.idIndex * relationshipSlots + slot, "02");
+	}
+
+	private static String getMemberId(String refsetId, String referencedComponentId) {
+		return UUID.nameUUIDFromBytes((refsetId + referencedComponentId).getBytes(StandardCharsets.UTF_8)).toString();
+	}
+
+	public static String toSctid(long itemId, String partitionId) {
+		String sctidWithoutCheck = itemId + partitionId;
+		return sctidWithoutCheck + VerhoeffCheck.calculateChecksum(sctidWithoutCheck, false);
+	}
+
+	public String getConceptId(int index) {
+		return toSctid(FIRST_ITEM_ID + index, "00");
+	}
+
+	/**
+	 * Ids of all synthetic concepts, excluding metadata.
+	 */
+	public List<String> getConceptIds() {
+		List<String> conceptIds = new ArrayList<>(conceptCount);
+		for (int i = 0; i < conceptCount; i++) {
+			conceptIds.add(getConceptId(i));
+		}
+		return conceptIds;
+	}
+
+	/**
+	 * Ids of synthetic concepts that have children, useful for ECL and value set expansion.
+	 */
+	public List<String> getParentConceptIds() {
+		List<String> conceptIds = new ArrayList<>();
+		for (int level = 0; level < levelStarts.length - 2; level++) {
+			int levelSize = levelStarts[level + 1] - levelStarts[level];
+			int nextLevelSize = levelStarts[level + 2] - levelStarts[level + 1];
+			int withChildren = Math.min(levelSize, (nextLevelSize + childrenPerConcept - 1) / childrenPerConcept);
+			for (int i = 0; i < withChildren; i++) {
+				conceptIds.add(getConceptId(levelStarts[level] + i));
+			}
+		}
+		return conceptIds;
+	}
+
+	public int getMetadataConceptCount() {
+		return METADATA_CONCEPTS.length;
+	}
+
+	public int getChildrenPerConcept() {
+		return childrenPerConcept;
+	}
+
+	public String getLastEffectiveTime() {
+		return effectiveTimes[effectiveTimes.length - 1];
+	}
+
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			String[] keyValue = arg.split("=", 2);
+			options.put(keyValue[0], keyValue.length > 1 ? keyValue[1] : "");
+		}
+		SyntheticEditionConfiguration configuration = new SyntheticEditionConfiguration()
+				.setConceptCount(Integer.parseInt(options.getOrDefault("concepts", "10000")))
+				.setHierarchyDepth(Integer.parseInt(options.getOrDefault("depth", "8")))
+				.setReleaseCount(Integer.parseInt(options.getOrDefault("releases", "1")))
+				.setSeed(Long.parseLong(options.getOrDefault("seed", "1")));
+		RF2Type type = RF2Type.valueOf(options.getOrDefault("type", "SNAPSHOT"));
+		File output = new File(options.getOrDefault("output", "synthetic-edition.zip"));
+		try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(output))) {
+			new SyntheticEditionGenerator(configuration).generateArchive(type, outputStream);
+		}
+		System.out.printf("Synthetic %s archive of %s concepts written to %s%n", type, configuration.getConceptCount(), output.getAbsolutePath());
+	}
+
+	private interface RowFilter {
+		boolean include(int release, boolean latest);
+	}
+
+	private interface RowSink {
+		void write(int release, boolean latest, String id, boolean active, String... columns) throws IOException;
+	}
+
+	private interface ConceptRowWriter {
+		void write(ConceptPlan concept, RowSink rows) throws IOException;
+	}
+
+	private interface DescriptionVisitor {
+		void visit(int release, boolean latest, String descriptionId, boolean active, String typeId, String term, String acceptabilityId) throws IOException;
+	}
+
+	private static final class ConceptPlan {
+
+		private final String conceptId;
+		private final int idIndex;
+		private final List<String> parents = new ArrayList<>();
+		private final List<String> attributeValues = new ArrayList<>();
+		private Integer concreteValue;
+		private String mapTarget;
+		private String fsn;
+		private final List<String> synonyms = new ArrayList<>();
+		private int changeRelease;
+		private String replacementSynonym;
+
+		private ConceptPlan(String conceptId, int idIndex) {
+			this.conceptId = conceptId;
+			this.idIndex = idIndex;
+		}
+	}
+}
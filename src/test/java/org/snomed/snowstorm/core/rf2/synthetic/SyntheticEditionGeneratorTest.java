@@ -0,0 +1,104 @@
+package org.snomed.snowstorm.core.rf2.synthetic;
+
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.domain.Description;
+import org.snomed.snowstorm.core.data.services.DescriptionService;
+import org.snomed.snowstorm.core.rf2.RF2Type;
+import org.snomed.snowstorm.core.rf2.rf2import.ImportJob;
+import org.snomed.snowstorm.core.rf2.rf2import.ImportService;
+import org.snomed.snowstorm.ecl.ECLQueryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticEditionGeneratorTest extends AbstractTest {
+
+	@Autowired
+	private ImportService importService;
+
+	@Autowired
+	private ECLQueryService eclQueryService;
+
+	@Autowired
+	private DescriptionService descriptionService;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	private SyntheticEditionConfiguration getConfiguration(int releaseCount) {
+		return new SyntheticEditionConfiguration()
+				.setConceptCount(300)
+				.setHierarchyDepth(4)
+				.setConcreteValueRatio(0.5f)
+				.setMapRatio(0.5f)
+				.setChangeRatio(0.2f)
+				.setReleaseCount(releaseCount);
+	}
+
+	@Test
+	void testSnapshotImport() throws Exception {
+		SyntheticEditionGenerator generator = new SyntheticEditionGenerator(getConfiguration(2));
+		importArchive(generator, RF2Type.SNAPSHOT, MAIN);
+
+		int allConcepts = 300 + generator.getMetadataConceptCount();
+		assertEquals(allConcepts, countEcl("<< 138875005", false));
+		assertEquals(allConcepts, countEcl("<< 138875005", true));
+		for (String parentId : generator.getParentConceptIds()) {
+			assertTrue(countEcl("<! " + parentId, false) > 0, parentId);
+		}
+		assertTrue(countEcl("^ " + SyntheticEditionGenerator.SIMPLE_MAP_REFSET, false) > 0);
+		assertTrue(countEcl("* : " + SyntheticEditionGenerator.STRENGTH_NUMERATOR_VALUE + " > #0", false) > 0);
+		assertTrue(countEcl("* : " + SyntheticEditionGenerator.FINDING_SITE + " = *", true) > 0);
+	}
+
+	@Test
+	void testDeltaOnPreviousSnapshotMatchesFull() throws Exception {
+		branchService.create("MAIN/A");
+		branchService.create("MAIN/B");
+		importArchive(new SyntheticEditionGenerator(getConfiguration(1)), RF2Type.SNAPSHOT, "MAIN/A");
+		importArchive(new SyntheticEditionGenerator(getConfiguration(2)), RF2Type.DELTA, "MAIN/A");
+		SyntheticEditionGenerator generator = new SyntheticEditionGenerator(getConfiguration(2));
+		importArchive(generator, RF2Type.FULL, "MAIN/B");
+
+		Map<String, Boolean> snapshotAndDelta = getDescriptionActiveStates("MAIN/A", generator);
+		Map<String, Boolean> full = getDescriptionActiveStates("MAIN/B", generator);
+		assertEquals(full, snapshotAndDelta);
+		assertTrue(full.containsValue(false), "Some synonyms replaced in the second release.");
+	}
+
+	private void importArchive(SyntheticEditionGenerator generator, RF2Type type, String branchPath) throws Exception {
+		String importId = importService.createJob(type, branchPath, false, false);
+		try (InputStream inputStream = new FileInputStream(generator.generateArchive(type))) {
+			importService.importArchive(importId, inputStream);
+		}
+		assertEquals(ImportJob.ImportStatus.COMPLETED, importService.getImportJobOrThrow(importId).getStatus());
+	}
+
+	private long countEcl(String ecl, boolean stated) {
+		Branch branch = branchService.findLatest(MAIN);
+		return eclQueryService.selectConceptIds(ecl, versionControlHelper.getBranchCriteria(branch), stated, PageRequest.of(0, 1)).getTotalElements();
+	}
+
+	private Map<String, Boolean> getDescriptionActiveStates(String branchPath, SyntheticEditionGenerator generator) {
+		Map<String, Boolean> activeStates = new TreeMap<>();
+		for (Description description : descriptionService.findDescriptionsByConceptId(branchPath, new HashSet<>(generator.getConceptIds()), false)) {
+			activeStates.put(description.getDescriptionId(), description.isActive());
+		}
+		return activeStates;
+	}
+
+}
@@ -0,0 +1,102 @@
+package org.snomed.snowstorm.fhir.services;
+
+import ca.uhn.fhir.context.FhirContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hl7.fhir.r4.model.CodeSystem;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.fhir.domain.FHIRConcept;
+import org.snomed.snowstorm.fhir.domain.FHIRProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.snomed.snowstorm.fhir.services.FHIRConceptService.CHILD;
+import static org.snomed.snowstorm.fhir.services.FHIRConceptService.PARENT;
+
+class FHIRCodeSystemStreamReaderTest {
+
+	static final String TEST_CODE_SYSTEM_URL = "http://example.com/fhir/CodeSystem/stream-test";
+
+	private final FHIRCodeSystemStreamReader reader = new FHIRCodeSystemStreamReader(new ObjectMapper(), FhirContext.forR4().newJsonParser());
+
+	@Test
+	void testReadConceptsAcrossManyBatches() throws IOException {
+		// More concepts than fit in one save batch, nested two levels below each top level concept
+		int topLevelConcepts = 3;
+		int childrenPerConcept = 400;
+		int expectedConcepts = topLevelConcepts + (topLevelConcepts * childrenPerConcept * 2);
+
+		Map<String, FHIRConcept> concepts = new HashMap<>();
+		try (FHIRCodeSystemStreamReader.CodeSystemStream codeSystemStream = reader.read(toStream(createCodeSystemJson(topLevelConcepts, childrenPerConcept, "")))) {
+			CodeSystem codeSystem = codeSystemStream.getCodeSystem();
+			assertEquals(TEST_CODE_SYSTEM_URL, codeSystem.getUrl());
+			assertEquals("1", codeSystem.getVersion());
+			assertEquals(CodeSystem.CodeSystemHierarchyMeaning.ISA, codeSystem.getHierarchyMeaning());
+
+			codeSystemStream.forEachRemaining(concept -> assertNull(concepts.put(concept.getCode(), concept), "Concept read twice " + concept.getCode()));
+			assertFalse(codeSystemStream.hasNext());
+		}
+		assertEquals(expectedConcepts, concepts.size());
+
+		FHIRConcept topLevel = concepts.get("A1");
+		assertEquals("Concept A1", topLevel.getDisplay());
+		assertTrue(topLevel.getParents().isEmpty());
+		assertEquals(childrenPerConcept, topLevel.getProperties().get(CHILD).size());
+
+		FHIRConcept child = concepts.get("A1-10");
+		assertEquals(Set.of("A1"), child.getParents());
+		assertEquals(List.of("A1"), child.getProperties().get(PARENT).stream().map(FHIRProperty::getValue).collect(Collectors.toList()));
+		assertEquals(List.of("A1-10-1"), child.getProperties().get(CHILD).stream().map(FHIRProperty::getValue).collect(Collectors.toList()));
+
+		FHIRConcept grandchild = concepts.get("A3-400-1");
+		assertEquals(Set.of("A3-400"), grandchild.getParents());
+		assertEquals("en", grandchild.getDesignations().get(0).getLanguage());
+		assertEquals("Designation A3-400-1", grandchild.getDesignations().get(0).getValue());
+	}
+
+	@Test
+	void testCodeSystemWithoutConcepts() throws IOException {
+		try (FHIRCodeSystemStreamReader.CodeSystemStream codeSystemStream = reader.read(toStream(createCodeSystemJson(0, 0, "")))) {
+			assertEquals(TEST_CODE_SYSTEM_URL, codeSystemStream.getCodeSystem().getUrl());
+			assertFalse(codeSystemStream.hasNext());
+		}
+	}
+
+	@Test
+	void testFieldAfterConceptsRejected() throws IOException {
+		try (FHIRCodeSystemStreamReader.CodeSystemStream codeSystemStream = reader.read(toStream(createCodeSystemJson(1, 1, ",\"publisher\":\"Test\"")))) {
+			assertThrows(UncheckedIOException.class, () -> codeSystemStream.forEachRemaining(concept -> {}));
+		}
+	}
+
+	/**
+	 * CodeSystem with top level concepts A1..An, each with children An-1..An-m which each have one child.
+	 */
+	static String createCodeSystemJson(int topLevelConcepts, int childrenPerConcept, String trailingFields) {
+		StringBuilder json = new StringBuilder("{\"resourceType\":\"CodeSystem\",\"url\":\"" + TEST_CODE_SYSTEM_URL + "\",\"version\":\"1\"," +
+				"\"status\":\"active\",\"hierarchyMeaning\":\"is-a\",\"content\":\"complete\",\"concept\":[");
+		for (int a = 1; a <= topLevelConcepts; a++) {
+			String code = "A" + a;
+			json.append(a > 1 ? "," : "").append("{\"code\":\"").append(code).append("\",\"display\":\"Concept ").append(code).append("\",\"concept\":[");
+			for (int b = 1; b <= childrenPerConcept; b++) {
+				String childCode = code + "-" + b;
+				String grandchildCode = childCode + "-1";
+				json.append(b > 1 ? "," : "").append("{\"code\":\"").append(childCode).append("\",\"display\":\"Concept ").append(childCode).append("\",")
+						.append("\"concept\":[{\"code\":\"").append(grandchildCode).append("\",\"display\":\"Concept ").append(grandchildCode).append("\",")
+						.append("\"designation\":[{\"language\":\"en\",\"value\":\"Designation ").append(grandchildCode).append("\"}]}]}");
+			}
+			json.append("]}");
+		}
+		return json.append("]").append(trailingFields).append("}").toString();
+	}
+
+	static InputStream toStream(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,69 @@
+package org.snomed.snowstorm.fhir.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.fhir.domain.FHIRCodeSystemVersion;
+import org.snomed.snowstorm.fhir.domain.FHIRConcept;
+import org.snomed.snowstorm.fhir.domain.FHIRProperty;
+import org.snomed.snowstorm.fhir.repositories.FHIRConceptRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.snomed.snowstorm.core.util.CollectionUtils.orEmpty;
+import static org.snomed.snowstorm.fhir.services.FHIRCodeSystemStreamReaderTest.createCodeSystemJson;
+import static org.snomed.snowstorm.fhir.services.FHIRCodeSystemStreamReaderTest.toStream;
+import static org.snomed.snowstorm.fhir.services.FHIRConceptService.CHILD;
+import static org.snomed.snowstorm.fhir.services.FHIRConceptService.PARENT;
+
+class FHIRConceptServiceTest extends AbstractFHIRTest {
+
+	@Autowired
+	private FHIRConceptService conceptService;
+
+	@Autowired
+	private FHIRCodeSystemService codeSystemService;
+
+	@Autowired
+	private FHIRConceptRepository conceptRepository;
+
+	private FHIRCodeSystemVersion codeSystemVersion;
+
+	@AfterEach
+	public void testAfter() {
+		if (codeSystemVersion != null) {
+			codeSystemService.deleteCodeSystemVersion(codeSystemVersion.getId());
+		}
+	}
+
+	@Test
+	void testSaveAllConceptsWhileReading() throws IOException {
+		FHIRCodeSystemStreamReader reader = new FHIRCodeSystemStreamReader(new ObjectMapper(), fhirJsonParser);
+		try (FHIRCodeSystemStreamReader.CodeSystemStream codeSystemStream = reader.read(toStream(createCodeSystemJson(3, 400, "")))) {
+			codeSystemVersion = codeSystemService.save(codeSystemStream.getCodeSystem());
+			conceptService.saveAllConcepts(codeSystemVersion, codeSystemStream);
+		}
+
+		// Every concept is saved once
+		List<FHIRConcept> savedConcepts = conceptRepository.findByCodeSystemVersion(codeSystemVersion.getId(), PageRequest.of(0, 5_000)).getContent();
+		assertEquals(2403, savedConcepts.size());
+		assertEquals(2403, savedConcepts.stream().map(FHIRConcept::getCode).collect(Collectors.toSet()).size());
+
+		// Hierarchy added once all concepts were read
+		FHIRConcept grandchild = conceptService.findConcept(codeSystemVersion, "A3-400-1");
+		assertEquals(codeSystemVersion.getId(), grandchild.getCodeSystemVersion());
+		assertEquals(Set.of("A3-400", "A3"), grandchild.getAncestors());
+		assertEquals(List.of("A3-400"), grandchild.getProperties().get(PARENT).stream().map(FHIRProperty::getValue).collect(Collectors.toList()));
+		assertTrue(orEmpty(grandchild.getProperties().get(CHILD)).isEmpty());
+
+		FHIRConcept topLevel = conceptService.findConcept(codeSystemVersion, "A1");
+		assertTrue(orEmpty(topLevel.getAncestors()).isEmpty());
+		assertEquals(400, topLevel.getProperties().get(CHILD).size());
+	}
+}
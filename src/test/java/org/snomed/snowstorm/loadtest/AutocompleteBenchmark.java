@@ -0,0 +1,85 @@
+package org.snomed.snowstorm.loadtest;
+
+import com.google.common.collect.Lists;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.*;
+
+/**
+ * Script to benchmark the description autocomplete endpoint against a running Snowstorm instance loaded with a full edition.
+ * This script was written for occasional non-production use.
+ *
+ * Each search term is "typed" one character at a time, starting from MIN_PREFIX_LENGTH characters, like a typeahead UI component.
+ * The latency of every request is recorded and percentiles are reported for the autocomplete endpoint
+ * and, for comparison, the standard description search endpoint.
+ *
+ * Update SNOWSTORM_API_URI and BRANCH to point at the server and edition to test.
+ */
+class AutocompleteBenchmark {
+
+	// Script configuration variables
+	private static final String SNOWSTORM_API_URI = "http://localhost:8080";
+	private static final String BRANCH = "MAIN";
+	private static final int MIN_PREFIX_LENGTH = 3;
+	private static final int WARM_UP_ROUNDS = 1;
+	private static final int MEASURED_ROUNDS = 3;
+	private static final List<String> SEARCH_TERMS = Lists.newArrayList(
+			"pneumonia",
+			"heart attack",
+			"myocardial infarction",
+			"diabetes mellitus type 2",
+			"fracture of femur",
+			"asthma",
+			"appendectomy",
+			"hypertension",
+			"pain in left knee",
+			"bacterial pneum"
+	);
+
+	public static void main(String[] args) {
+		RestTemplate restTemplate = new RestTemplateBuilder().rootUri(SNOWSTORM_API_URI).build();
+		AutocompleteBenchmark benchmark = new AutocompleteBenchmark();
+		benchmark.run(restTemplate, "autocomplete", "/browser/{branch}/descriptions/autocomplete?term={term}&limit=10");
+		benchmark.run(restTemplate, "standard search", "/browser/{branch}/descriptions?term={term}&active=true&conceptActive=true&groupByConcept=true&limit=10");
+	}
+
+	private void run(RestTemplate restTemplate, String name, String url) {
+		for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+			typeAllTerms(restTemplate, url);
+		}
+		List<Long> nanos = new ArrayList<>();
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			nanos.addAll(typeAllTerms(restTemplate, url));
+		}
+		Collections.sort(nanos);
+		System.out.printf("%s: %s requests, p50 = %sms, p95 = %sms, p99 = %sms, max = %sms%n", name, nanos.size(),
+				millis(percentile(nanos, 50)), millis(percentile(nanos, 95)), millis(percentile(nanos, 99)), millis(nanos.get(nanos.size() - 1)));
+	}
+
+	private List<Long> typeAllTerms(RestTemplate restTemplate, String url) {
+		List<Long> nanos = new ArrayList<>();
+		for (String term : SEARCH_TERMS) {
+			for (int length = MIN_PREFIX_LENGTH; length <= term.length(); length++) {
+				String prefix = term.substring(0, length);
+				if (prefix.endsWith(" ")) {
+					continue;
+				}
+				long start = System.nanoTime();
+				restTemplate.getForObject(url, String.class, BRANCH, prefix);
+				nanos.add(System.nanoTime() - start);
+			}
+		}
+		return nanos;
+	}
+
+	private static long percentile(List<Long> sortedValues, int percentile) {
+		int index = (int) Math.ceil((percentile / 100f) * sortedValues.size()) - 1;
+		return sortedValues.get(Math.max(index, 0));
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.1f", nanos / 1_000_000f);
+	}
+
+}
@@ -0,0 +1,288 @@
+package org.snomed.snowstorm.loadtest;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.TestConfig;
+import org.snomed.snowstorm.core.data.domain.CodeSystem;
+import org.snomed.snowstorm.core.data.services.CodeSystemService;
+import org.snomed.snowstorm.core.rf2.RF2Type;
+import org.snomed.snowstorm.core.rf2.rf2import.ImportJob;
+import org.snomed.snowstorm.core.rf2.rf2import.ImportService;
+import org.snomed.snowstorm.core.rf2.synthetic.SyntheticEditionConfiguration;
+import org.snomed.snowstorm.core.rf2.synthetic.SyntheticEditionGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End-to-end load test against a Snowstorm instance started on a random port with the test Elasticsearch container.
+ * A synthetic edition is imported, then a weighted mix of requests is sent at the target concurrency for a fixed duration.
+ * Latency percentiles, a latency histogram and throughput per endpoint are written to the report file.
+ *
+ * Not run by the default build. Run with: mvn -P loadtest test
+ * Configure using system properties, for example -Dloadtest.concepts=100000 -Dloadtest.concurrency=16
+ * <ul>
+ *     <li>loadtest.concepts - number of concepts in the synthetic edition, default 20000</li>
+ *     <li>loadtest.seed - seed for the synthetic edition and request mix, default 1</li>
+ *     <li>loadtest.concurrency - number of simulated clients, default 8</li>
+ *     <li>loadtest.warmup-seconds - requests during warm up are not measured, default 10</li>
+ *     <li>loadtest.duration-seconds - measured duration, default 60</li>
+ *     <li>loadtest.mix - endpoint weights, default browser-concept=4,ecl=2,description-search=3,fhir-expand=1,fhir-validate-code=1</li>
+ *     <li>loadtest.report - report file, default target/loadtest-report.txt</li>
+ * </ul>
+ */
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = TestConfig.class)
+class LoadTestHarness extends AbstractTest {
+
+	private static final String SNOMED_URI = "http://snomed.info/sct";
+
+	// Upper bounds of the histogram buckets in milliseconds
+	private static final long[] HISTOGRAM_BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000, 10_000};
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private ImportService importService;
+
+	@Autowired
+	private CodeSystemService codeSystemService;
+
+	private final int conceptCount = Integer.getInteger("loadtest.concepts", 20_000);
+	private final long seed = Long.getLong("loadtest.seed", 1);
+	private final int concurrency = Integer.getInteger("loadtest.concurrency", 8);
+	private final int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 10);
+	private final int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 60);
+	private final String mix = System.getProperty("loadtest.mix", "browser-concept=4,ecl=2,description-search=3,fhir-expand=1,fhir-validate-code=1");
+	private final String reportPath = System.getProperty("loadtest.report", "target/loadtest-report.txt");
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@Test
+	void runLoadTest() throws Exception {
+		SyntheticEditionGenerator generator = new SyntheticEditionGenerator(new SyntheticEditionConfiguration()
+				.setConceptCount(conceptCount)
+				.setSeed(seed));
+		long importSeconds = importSyntheticEdition(generator);
+
+		List<Endpoint> endpoints = getWeightedEndpoints(generator);
+		Map<String, EndpointStatistics> statistics = new TreeMap<>();
+		for (Endpoint endpoint : endpoints) {
+			statistics.putIfAbsent(endpoint.name, new EndpointStatistics());
+		}
+
+		RestTemplate restTemplate = new RestTemplateBuilder().rootUri("http://localhost:" + port).build();
+		long measureFrom = System.currentTimeMillis() + warmupSeconds * 1_000L;
+		long measureUntil = measureFrom + durationSeconds * 1_000L;
+		logger.info("Load test starting with {} clients, {} seconds warm up then {} seconds measured.", concurrency, warmupSeconds, durationSeconds);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(concurrency);
+		try {
+			List<Future<?>> clients = new ArrayList<>();
+			for (int client = 0; client < concurrency; client++) {
+				Random random = new Random(seed + client);
+				clients.add(executorService.submit(() -> {
+					long now;
+					while ((now = System.currentTimeMillis()) < measureUntil) {
+						Endpoint endpoint = endpoints.get(random.nextInt(endpoints.size()));
+						boolean measured = now >= measureFrom;
+						long start = System.nanoTime();
+						boolean success = true;
+						try {
+							endpoint.request.call(restTemplate, random);
+						} catch (RestClientException e) {
+							success = false;
+							logger.debug("{} request failed.", endpoint.name, e);
+						}
+						if (measured) {
+							statistics.get(endpoint.name).record(System.nanoTime() - start, success);
+						}
+					}
+					return null;
+				}));
+			}
+			for (Future<?> client : clients) {
+				client.get();
+			}
+		} finally {
+			executorService.shutdown();
+		}
+
+		writeReport(statistics, importSeconds);
+		assertTrue(statistics.values().stream().anyMatch(endpointStatistics -> endpointStatistics.getRequestCount() > 0), "No requests measured.");
+	}
+
+	private long importSyntheticEdition(SyntheticEditionGenerator generator) throws Exception {
+		File archive = generator.generateArchive(RF2Type.SNAPSHOT);
+		codeSystemService.createCodeSystem(new CodeSystem("SNOMEDCT", MAIN));
+		String importId = importService.createJob(RF2Type.SNAPSHOT, MAIN, true, false);
+		long start = System.currentTimeMillis();
+		try (InputStream inputStream = new FileInputStream(archive)) {
+			importService.importArchive(importId, inputStream);
+		}
+		long importSeconds = (System.currentTimeMillis() - start) / 1_000;
+		assertEquals(ImportJob.ImportStatus.COMPLETED, importService.getImportJobOrThrow(importId).getStatus());
+		logger.info("Synthetic edition of {} concepts imported in {} seconds.", conceptCount, importSeconds);
+		return importSeconds;
+	}
+
+	private List<Endpoint> getWeightedEndpoints(SyntheticEditionGenerator generator) {
+		List<String> conceptIds = generator.getConceptIds();
+		List<String> parentConceptIds = generator.getParentConceptIds();
+		String[] words = SyntheticEditionGenerator.VOCABULARY;
+
+		Map<String, EndpointRequest> requests = new HashMap<>();
+		requests.put("browser-concept", (restTemplate, random) ->
+				restTemplate.getForObject("/browser/{branch}/concepts/{conceptId}", String.class, MAIN, randomItem(conceptIds, random)));
+		requests.put("ecl", (restTemplate, random) ->
+				restTemplate.getForObject("/{branch}/concepts?ecl={ecl}&limit=50", String.class, MAIN, "<< " + randomItem(parentConceptIds, random)));
+		requests.put("description-search", (restTemplate, random) ->
+				restTemplate.getForObject("/browser/{branch}/descriptions?term={term}&active=true&groupByConcept=true&limit=50", String.class,
+						MAIN, words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)].substring(0, 3)));
+		requests.put("fhir-expand", (restTemplate, random) ->
+				restTemplate.getForObject("/fhir/ValueSet/$expand?url={url}&count=50", String.class,
+						SNOMED_URI + "?fhir_vs=ecl/<<" + randomItem(parentConceptIds, random)));
+		requests.put("fhir-validate-code", (restTemplate, random) ->
+				restTemplate.getForObject("/fhir/CodeSystem/$validate-code?url={url}&code={code}", String.class, SNOMED_URI, randomItem(conceptIds, random)));
+
+		// Each endpoint is added once per unit of weight so that a uniform random choice follows the mix
+		List<Endpoint> endpoints = new ArrayList<>();
+		for (String entry : mix.split(",")) {
+			String[] nameAndWeight = entry.trim().split("=");
+			String name = nameAndWeight[0];
+			EndpointRequest request = requests.get(name);
+			if (request == null) {
+				throw new IllegalArgumentException(String.format("Unknown load test endpoint '%s', expected one of %s.", name, new TreeSet<>(requests.keySet())));
+			}
+			int weight = nameAndWeight.length > 1 ? Integer.parseInt(nameAndWeight[1]) : 1;
+			for (int i = 0; i < weight; i++) {
+				endpoints.add(new Endpoint(name, request));
+			}
+		}
+		return endpoints;
+	}
+
+	private static String randomItem(List<String> items, Random random) {
+		return items.get(random.nextInt(items.size()));
+	}
+
+	private void writeReport(Map<String, EndpointStatistics> statistics, long importSeconds) throws IOException {
+		File reportFile = new File(reportPath);
+		if (reportFile.getParentFile() != null) {
+			reportFile.getParentFile().mkdirs();
+		}
+		try (PrintWriter report = new PrintWriter(new FileWriter(reportFile))) {
+			report.printf("Snowstorm load test %s%n", new Date());
+			report.printf("Synthetic edition: %s concepts, imported in %s seconds%n", conceptCount, importSeconds);
+			report.printf("Clients: %s, warm up: %s seconds, measured: %s seconds, mix: %s%n%n", concurrency, warmupSeconds, durationSeconds, mix);
+			report.printf("%-20s %10s %8s %10s %10s %10s %10s %10s%n", "endpoint", "requests", "errors", "req/sec", "p50 ms", "p95 ms", "p99 ms", "max ms");
+			for (Map.Entry<String, EndpointStatistics> entry : statistics.entrySet()) {
+				EndpointStatistics endpointStatistics = entry.getValue();
+				long[] sortedNanos = endpointStatistics.getSortedLatencies();
+				report.printf("%-20s %10s %8s %10.1f %10s %10s %10s %10s%n", entry.getKey(), endpointStatistics.getRequestCount(),
+						endpointStatistics.errors.get(), endpointStatistics.getRequestCount() / (double) durationSeconds,
+						millis(percentile(sortedNanos, 50)), millis(percentile(sortedNanos, 95)), millis(percentile(sortedNanos, 99)),
+						millis(sortedNanos.length > 0 ? sortedNanos[sortedNanos.length - 1] : 0));
+			}
+			report.println();
+			report.println("Latency histogram, requests per bucket");
+			report.printf("%-20s", "endpoint");
+			for (long bucket : HISTOGRAM_BUCKETS) {
+				report.printf(" %8s", "<=" + bucket);
+			}
+			report.printf(" %8s%n", ">" + HISTOGRAM_BUCKETS[HISTOGRAM_BUCKETS.length - 1]);
+			for (Map.Entry<String, EndpointStatistics> entry : statistics.entrySet()) {
+				report.printf("%-20s", entry.getKey());
+				for (long count : histogram(entry.getValue().getSortedLatencies())) {
+					report.printf(" %8s", count);
+				}
+				report.println();
+			}
+		}
+		logger.info("Load test report written to {}", reportFile.getAbsolutePath());
+	}
+
+	private static long[] histogram(long[] sortedNanos) {
+		long[] counts = new long[HISTOGRAM_BUCKETS.length + 1];
+		for (long nanos : sortedNanos) {
+			int bucket = 0;
+			while (bucket < HISTOGRAM_BUCKETS.length && nanos > HISTOGRAM_BUCKETS[bucket] * 1_000_000) {
+				bucket++;
+			}
+			counts[bucket]++;
+		}
+		return counts;
+	}
+
+	private static long percentile(long[] sortedValues, int percentile) {
+		if (sortedValues.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil((percentile / 100f) * sortedValues.length) - 1;
+		return sortedValues[Math.max(index, 0)];
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.1f", nanos / 1_000_000f);
+	}
+
+	private interface EndpointRequest {
+		void call(RestTemplate restTemplate, Random random) throws RestClientException;
+	}
+
+	private static final class Endpoint {
+
+		private final String name;
+		private final EndpointRequest request;
+
+		private Endpoint(String name, EndpointRequest request) {
+			this.name = name;
+			this.request = request;
+		}
+	}
+
+	private static final class EndpointStatistics {
+
+		private final LongArrayList latencies = new LongArrayList();
+		private final AtomicLong errors = new AtomicLong();
+
+		private synchronized void record(long nanos, boolean success) {
+			latencies.add(nanos);
+			if (!success) {
+				errors.incrementAndGet();
+			}
+		}
+
+		private synchronized int getRequestCount() {
+			return latencies.size();
+		}
+
+		private synchronized long[] getSortedLatencies() {
+			long[] sorted = latencies.toLongArray();
+			Arrays.sort(sorted);
+			return sorted;
+		}
+	}
+
+}
@@ -0,0 +1,195 @@
+package org.snomed.snowstorm.loadtest;
+
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
+import io.kaicode.elasticvc.repositories.BranchRepository;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.config.Config;
+import org.snomed.snowstorm.core.data.domain.*;
+import org.snomed.snowstorm.core.data.services.CachingVersionControlHelper;
+import org.snomed.snowstorm.core.data.services.CodeSystemService;
+import org.snomed.snowstorm.core.data.services.ConceptService;
+import org.snomed.snowstorm.core.data.services.VersionsReplacedCompactionService;
+import org.snomed.snowstorm.core.rf2.RF2Type;
+import org.snomed.snowstorm.core.rf2.rf2import.ImportJob;
+import org.snomed.snowstorm.core.rf2.rf2import.ImportService;
+import org.snomed.snowstorm.core.rf2.synthetic.SyntheticEditionConfiguration;
+import org.snomed.snowstorm.core.rf2.synthetic.SyntheticEditionGenerator;
+import org.snomed.snowstorm.ecl.ECLQueryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures query latency on a branch against the size of its versionsReplaced sets.
+ * A synthetic edition is imported to MAIN and a task branch is given versionsReplaced sets of increasing size, made of ids
+ * which do not exist. Each size is measured with concept loads and ECL queries. The largest sets are then compacted and measured again.
+ *
+ * Not run by the default build. Run with: mvn -P loadtest test -Dloadtest.class=VersionsReplacedBenchmark
+ * <ul>
+ *     <li>loadtest.concepts - number of concepts in the synthetic edition, default 10000</li>
+ *     <li>loadtest.versions-replaced.sizes - entries per entity type, default 0,1000,10000,50000,100000</li>
+ *     <li>loadtest.versions-replaced.iterations - measured queries per size and query type, default 200</li>
+ *     <li>loadtest.report - report file, default target/versions-replaced-benchmark.txt</li>
+ * </ul>
+ */
+@TestPropertySource(properties = "cache.ecl.enabled=false")
+class VersionsReplacedBenchmark extends AbstractTest {
+
+	private static final String TASK_BRANCH = "MAIN/TASK";
+	private static final List<Class<?>> TYPES = List.of(Concept.class, Description.class, Relationship.class, ReferenceSetMember.class, QueryConcept.class);
+	private static final int WARMUP_ITERATIONS = 20;
+
+	@Autowired
+	private ImportService importService;
+
+	@Autowired
+	private CodeSystemService codeSystemService;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private BranchRepository branchRepository;
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	@Autowired
+	private ECLQueryService eclQueryService;
+
+	@Autowired
+	private VersionsReplacedCompactionService compactionService;
+
+	private final int conceptCount = Integer.getInteger("loadtest.concepts", 10_000);
+	private final String sizes = System.getProperty("loadtest.versions-replaced.sizes", "0,1000,10000,50000,100000");
+	private final int iterations = Integer.getInteger("loadtest.versions-replaced.iterations", 200);
+	private final String reportPath = System.getProperty("loadtest.report", "target/versions-replaced-benchmark.txt");
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@Test
+	void runBenchmark() throws Exception {
+		SyntheticEditionGenerator generator = new SyntheticEditionGenerator(new SyntheticEditionConfiguration().setConceptCount(conceptCount));
+		importSyntheticEdition(generator);
+		branchService.create(TASK_BRANCH);
+
+		List<String> rows = new ArrayList<>();
+		int largestSize = 0;
+		for (String size : sizes.split(",")) {
+			largestSize = Integer.parseInt(size.trim());
+			setVersionsReplaced(largestSize);
+			rows.add(measure(String.valueOf(largestSize), generator));
+		}
+
+		Map<String, Integer> removed = compactionService.compactVersionsReplaced(TASK_BRANCH);
+		assertEquals(largestSize * TYPES.size(), removed.values().stream().mapToInt(Integer::intValue).sum());
+		rows.add(measure(largestSize + " compacted", generator));
+
+		writeReport(rows);
+	}
+
+	private void importSyntheticEdition(SyntheticEditionGenerator generator) throws Exception {
+		File archive = generator.generateArchive(RF2Type.SNAPSHOT);
+		codeSystemService.createCodeSystem(new CodeSystem("SNOMEDCT", MAIN));
+		String importId = importService.createJob(RF2Type.SNAPSHOT, MAIN, true, false);
+		try (InputStream inputStream = new FileInputStream(archive)) {
+			importService.importArchive(importId, inputStream);
+		}
+		assertEquals(ImportJob.ImportStatus.COMPLETED, importService.getImportJobOrThrow(importId).getStatus());
+	}
+
+	// Simulates a long-lived branch which has hidden many parent versions
+	private void setVersionsReplaced(int size) {
+		Branch branch = branchService.findLatest(TASK_BRANCH);
+		Map<String, Set<String>> versionsReplaced = new HashMap<>();
+		for (Class<?> type : TYPES) {
+			versionsReplaced.put(type.getSimpleName(), new HashSet<>());
+			for (int i = 0; i < size; i++) {
+				versionsReplaced.get(type.getSimpleName()).add(UUID.randomUUID().toString());
+			}
+		}
+		branch.setVersionsReplaced(versionsReplaced);
+		branchRepository.save(branch);
+		if (versionControlHelper instanceof CachingVersionControlHelper) {
+			((CachingVersionControlHelper) versionControlHelper).evict(TASK_BRANCH);
+		}
+	}
+
+	private String measure(String label, SyntheticEditionGenerator generator) {
+		Random random = new Random(1);
+		List<String> conceptIds = generator.getConceptIds();
+		List<String> parentIds = generator.getParentConceptIds();
+
+		long[] conceptLoadNanos = new long[iterations];
+		long[] eclNanos = new long[iterations];
+		for (int i = -WARMUP_ITERATIONS; i < iterations; i++) {
+			Set<String> ids = random.ints(20, 0, conceptIds.size()).mapToObj(conceptIds::get).collect(Collectors.toSet());
+			long start = System.nanoTime();
+			conceptService.find(TASK_BRANCH, ids, Config.DEFAULT_LANGUAGE_DIALECTS);
+			long conceptLoad = System.nanoTime() - start;
+
+			String parentId = parentIds.get(random.nextInt(parentIds.size()));
+			start = System.nanoTime();
+			eclQueryService.selectConceptIds("<< " + parentId, versionControlHelper.getBranchCriteria(TASK_BRANCH), false, PageRequest.of(0, 100));
+			long ecl = System.nanoTime() - start;
+
+			if (i >= 0) {
+				conceptLoadNanos[i] = conceptLoad;
+				eclNanos[i] = ecl;
+			}
+		}
+		Arrays.sort(conceptLoadNanos);
+		Arrays.sort(eclNanos);
+		String row = String.format("%-20s %12s %12s %12s %12s", label,
+				millis(percentile(conceptLoadNanos, 50)), millis(percentile(conceptLoadNanos, 95)),
+				millis(percentile(eclNanos, 50)), millis(percentile(eclNanos, 95)));
+		logger.info(row);
+		return row;
+	}
+
+	private void writeReport(List<String> rows) throws IOException {
+		File reportFile = new File(reportPath);
+		if (reportFile.getParentFile() != null) {
+			reportFile.getParentFile().mkdirs();
+		}
+		try (PrintWriter report = new PrintWriter(new FileWriter(reportFile))) {
+			report.printf("Snowstorm versionsReplaced benchmark %s%n", new Date());
+			report.printf("Synthetic edition: %s concepts, %s measured queries per row, entries per entity type: %s%n%n", conceptCount, iterations, sizes);
+			report.printf("%-20s %12s %12s %12s %12s%n", "versionsReplaced", "load p50 ms", "load p95 ms", "ecl p50 ms", "ecl p95 ms");
+			rows.forEach(report::println);
+		}
+		logger.info("Benchmark report written to {}", reportFile.getAbsolutePath());
+	}
+
+	private static long percentile(long[] sortedValues, int percentile) {
+		if (sortedValues.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil((percentile / 100f) * sortedValues.length) - 1;
+		return sortedValues[Math.max(index, 0)];
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.1f", nanos / 1_000_000f);
+	}
+
+}
@@ -0,0 +1,56 @@
+package org.snomed.snowstorm.mrcm;
+
+import io.kaicode.elasticvc.api.BranchCriteria;
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.services.ServiceException;
+import org.snomed.snowstorm.mrcm.model.MRCM;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.snomed.snowstorm.core.data.domain.Concepts.ISA;
+
+class MRCMLoaderTest extends AbstractTest {
+
+	@Autowired
+	private MRCMLoader mrcmLoader;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Test
+	void testChildBranchSharesParentMRCMUntilChanged() throws ServiceException {
+		createRangeConstraint(MAIN, ISA, "<< 138875005");
+		MRCM mainMRCM = mrcmLoader.loadActiveMRCMFromCache(MAIN);
+		assertEquals(1, mainMRCM.getAttributeRanges().size());
+		assertSame(mainMRCM, mrcmLoader.loadActiveMRCMFromCache(MAIN));
+
+		// Child branch without MRCM changes of its own reuses the MRCM of the parent
+		branchService.create("MAIN/A");
+		assertSame(mainMRCM, mrcmLoader.loadActiveMRCMFromCache("MAIN/A"));
+
+		createRangeConstraint("MAIN/A", "123005000", "<< 138875005");
+		MRCM childMRCM = mrcmLoader.loadActiveMRCMFromCache("MAIN/A");
+		assertNotSame(mainMRCM, childMRCM);
+		assertEquals(2, childMRCM.getAttributeRanges().size());
+		assertSame(mainMRCM, mrcmLoader.loadActiveMRCMFromCache(MAIN));
+	}
+
+	@Test
+	void testBranchCriteriaOfEarlierVersionUsed() throws ServiceException {
+		createRangeConstraint(MAIN, ISA, "<< 138875005");
+		BranchCriteria earlierCriteria = versionControlHelper.getBranchCriteria(MAIN);
+		createRangeConstraint(MAIN, "123005000", "<< 138875005");
+
+		assertEquals(1, mrcmLoader.loadActiveMRCMFromCache(MAIN, earlierCriteria).getAttributeRanges().size());
+		MRCM headMRCM = mrcmLoader.loadActiveMRCMFromCache(MAIN, versionControlHelper.getBranchCriteria(MAIN));
+		assertEquals(2, headMRCM.getAttributeRanges().size());
+		assertSame(mrcmLoader.loadActiveMRCMFromCache(MAIN), headMRCM);
+	}
+
+}
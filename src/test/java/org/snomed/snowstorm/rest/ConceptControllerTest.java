@@ -1351,6 +1351,34 @@ class ConceptControllerTest extends AbstractTest {
 		});
 	}
 
+	@Test
+	void testConditionalGetUsingBranchHeadETag() throws ServiceException {
+		String url = "http://localhost:" + port + "/MAIN/concepts/257751006";
+		ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		String eTag = response.getHeaders().getETag();
+		assertNotNull(eTag);
+		assertTrue(response.getHeaders().getVary().containsAll(List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_LANGUAGE)));
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfNoneMatch(eTag);
+		assertEquals(HttpStatus.NOT_MODIFIED, restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class).getStatusCode());
+
+		// Content changes when the branch head moves
+		conceptService.create(new Concept(Concepts.CLINICAL_FINDING), "MAIN");
+		response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertNotEquals(eTag, response.getHeaders().getETag());
+
+		// Responses from version branches are served from the server side cache
+		String versionUrl = "http://localhost:" + port + "/MAIN/2019-07-31/concepts/257751006";
+		ResponseEntity<String> versionResponse = restTemplate.getForEntity(versionUrl, String.class);
+		assertEquals(HttpStatus.OK, versionResponse.getStatusCode());
+		ResponseEntity<String> cachedVersionResponse = restTemplate.getForEntity(versionUrl, String.class);
+		assertEquals(versionResponse.getBody(), cachedVersionResponse.getBody());
+		assertEquals(versionResponse.getHeaders().getETag(), cachedVersionResponse.getHeaders().getETag());
+	}
+
 	private ResponseEntity<String> putConcept(String conceptId, String conceptJson) {
 		HttpHeaders httpHeaders = new HttpHeaders();
 		httpHeaders.set("Content-Type", "application/json");
@@ -12,9 +12,12 @@ import org.snomed.snowstorm.TestConfig;
 import org.snomed.snowstorm.core.data.domain.*;
 import org.snomed.snowstorm.core.data.services.BranchMetadataKeys;
 import org.snomed.snowstorm.core.data.services.ConceptService;
+import org.snomed.snowstorm.core.data.services.NotFoundException;
 import org.snomed.snowstorm.core.data.services.ReferenceSetMemberService;
 import org.snomed.snowstorm.core.data.services.ServiceException;
+import org.snomed.snowstorm.validation.domain.BatchValidationJob;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -22,6 +25,8 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.snomed.snowstorm.core.data.domain.Concepts.*;
@@ -153,6 +158,25 @@ class DroolsValidationServiceTest extends AbstractTest {
         assertEquals("Active FSN should end with a valid semantic tag.", invalidContents.get(index).getMessage());
     }
 
+    @Test
+    void testValidateBatch() throws ServiceException, InterruptedException {
+        String jobId = droolValidationService.validateBatch(DEFAULT_BRANCH, "100001", false);
+        BatchValidationJob job = droolValidationService.getBatchValidationJobOrThrow(DEFAULT_BRANCH, jobId);
+        assertTrue(job.awaitFinished(30, TimeUnit.SECONDS), "Batch validation did not finish");
+        assertEquals(BatchValidationJob.Status.COMPLETED, job.getStatus(), job.getErrorMessage());
+        assertEquals(1, job.getTotal());
+        assertEquals(1, job.getValidatedCount());
+
+        List<InvalidContent> expected = droolValidationService.validateConcepts(DEFAULT_BRANCH, Collections.singleton(conceptService.find("100001", DEFAULT_BRANCH)));
+        List<InvalidContent> results = droolValidationService.getBatchValidationResults(DEFAULT_BRANCH, jobId, PageRequest.of(0, 100)).getContent();
+        assertEquals(expected.stream().map(InvalidContent::getMessage).collect(Collectors.toSet()),
+                results.stream().map(InvalidContent::getMessage).collect(Collectors.toSet()));
+        assertTrue(results.stream().anyMatch(invalidContent -> "Active concepts must have at least one IS A relationship.".equals(invalidContent.getMessage())));
+
+        // Jobs are only found on their own branch
+        assertThrows(NotFoundException.class, () -> droolValidationService.getBatchValidationJobOrThrow("MAIN/OTHER", jobId));
+    }
+
     private ReferenceSetMember constructMrcmRange(String referencedComponentId, String rangeConstraint) {
         ReferenceSetMember rangeMember = new ReferenceSetMember("900000000000207008", REFSET_MRCM_ATTRIBUTE_RANGE_INTERNATIONAL, referencedComponentId);
         rangeMember.setAdditionalField("rangeConstraint", rangeConstraint);
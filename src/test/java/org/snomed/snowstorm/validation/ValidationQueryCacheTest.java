@@ -0,0 +1,68 @@
+package org.snomed.snowstorm.validation;
+
+import io.kaicode.elasticvc.api.BranchService;
+import io.kaicode.elasticvc.api.VersionControlHelper;
+import io.kaicode.elasticvc.domain.Branch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.snomed.snowstorm.AbstractTest;
+import org.snomed.snowstorm.core.data.domain.Concept;
+import org.snomed.snowstorm.core.data.domain.Concepts;
+import org.snomed.snowstorm.core.data.domain.Relationship;
+import org.snomed.snowstorm.core.data.services.ConceptService;
+import org.snomed.snowstorm.core.data.services.QueryService;
+import org.snomed.snowstorm.core.data.services.ServiceException;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ValidationQueryCacheTest extends AbstractTest {
+
+	@Autowired
+	private ValidationQueryCache validationQueryCache;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	@Autowired
+	private BranchService branchService;
+
+	@Autowired
+	private VersionControlHelper versionControlHelper;
+
+	@Autowired
+	private QueryService queryService;
+
+	@BeforeEach
+	void setup() throws ServiceException {
+		validationQueryCache.clearCache();
+		conceptService.create(new Concept("100001").addAxiom(new Relationship(Concepts.ISA, Concepts.SNOMEDCT_ROOT)), MAIN);
+	}
+
+	@Test
+	void testSharedBetweenRequestsOnSameBranchVersion() throws ServiceException {
+		long hits = validationQueryCache.getCacheStatistics().getHitCount();
+		assertEquals(Set.of(Concepts.SNOMEDCT_ROOT), newDisposableQueryService().findAncestorIds(true, "100001"));
+		assertEquals(hits, validationQueryCache.getCacheStatistics().getHitCount());
+
+		// Another validation request on the same branch version uses the cached results
+		assertEquals(Set.of(Concepts.SNOMEDCT_ROOT), newDisposableQueryService().findAncestorIds(true, "100001"));
+		assertEquals(hits + 1, validationQueryCache.getCacheStatistics().getHitCount());
+
+		// New branch version is queried again
+		conceptService.create(new Concept("100002").addAxiom(new Relationship(Concepts.ISA, Concepts.SNOMEDCT_ROOT)), MAIN);
+		Concept concept = conceptService.find("100001", MAIN);
+		concept.getClassAxioms().iterator().next().getRelationships().iterator().next().setDestinationId("100002");
+		conceptService.update(concept, MAIN);
+		assertEquals(Set.of(Concepts.SNOMEDCT_ROOT, "100002"), newDisposableQueryService().findAncestorIds(true, "100001"));
+		assertEquals(hits + 1, validationQueryCache.getCacheStatistics().getHitCount());
+	}
+
+	private DisposableQueryService newDisposableQueryService() {
+		Branch branch = branchService.findLatest(MAIN);
+		return new DisposableQueryService(queryService, MAIN, versionControlHelper.getBranchCriteria(branch), validationQueryCache, branch.getHeadTimestamp());
+	}
+
+}